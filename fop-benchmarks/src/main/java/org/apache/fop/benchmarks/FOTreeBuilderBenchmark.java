@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.fo.FOEventHandler;
+
+/**
+ * Measures building the FO tree ({@link org.apache.fop.fo.FOTreeBuilder}) without layout:
+ * parsing, property resolution and validation of the formatting objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FOTreeBuilderBenchmark {
+
+    @Param({"TEXT", "TABLE", "MIXED"})
+    private SyntheticDocuments.Kind kind;
+
+    @Param("200")
+    private int size;
+
+    private String document;
+    private FopFactory fopFactory;
+    private TransformerFactory transformerFactory;
+
+    /** Generates the document and sets up the factories. */
+    @Setup
+    public void setUp() {
+        document = SyntheticDocuments.create(kind, size);
+        fopFactory = FopFactory.newInstance(new File(".").toURI());
+        transformerFactory = TransformerFactory.newInstance();
+    }
+
+    /**
+     * Builds the FO tree of the document.
+     * @return the user agent, so that the work isn't eliminated
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public FOUserAgent buildFOTree() throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setFOEventHandlerOverride(new FOEventHandler(userAgent) { });
+        Fop fop = fopFactory.newFop(userAgent);
+        Transformer transformer = transformerFactory.newTransformer();
+        transformer.transform(new StreamSource(new StringReader(document)),
+                new SAXResult(fop.getDefaultHandler()));
+        return userAgent;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.commons.io.FileUtils;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.hyphenation.Hyphenation;
+import org.apache.fop.hyphenation.HyphenationCache;
+import org.apache.fop.hyphenation.Hyphenator;
+
+/**
+ * Measures the hyphenation of the words of long German and Dutch documents through
+ * {@link Hyphenator}, the way the line layout manager asks for them, with and without the
+ * {@link HyphenationCache} of the factory. FOP doesn't ship hyphenation patterns, so the
+ * patterns are generated: a break before every consonant followed by a vowel and between
+ * doubled consonants, which gives a tree of a realistic size. The words are compounds of
+ * common stems with a skewed frequency, as in natural text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HyphenationBenchmark {
+
+    private static final int DOCUMENT_WORDS = 50000;
+
+    private static final String VOWELS = "aeiouyäöü";
+    private static final String CONSONANTS = "bcdfghjklmnpqrstvwxzß";
+
+    private static final String[] GERMAN_STEMS = {
+        "haus", "tür", "schlüssel", "bund", "straßen", "bahn", "wagen", "kinder", "garten",
+        "arbeit", "zeit", "gesetz", "buch", "verlag", "stadt", "verwaltung", "land", "wirtschaft",
+        "geschichte", "sprache", "schule", "lehrer", "versicherung", "gesellschaft", "recht",
+        "unternehmen", "regierung", "bericht", "wasser", "kraft", "werk", "fahrt", "zeitung",
+        "bildung", "forschung", "ministerium", "verkehr", "ordnung", "entwicklung", "leistung",
+        "der", "die", "und", "mit", "von", "für", "eine", "nicht", "auch", "werden"
+    };
+
+    private static final String[] DUTCH_STEMS = {
+        "huis", "deur", "sleutel", "bond", "straat", "spoor", "wagen", "kinder", "tuin",
+        "arbeid", "tijd", "wet", "boek", "uitgeverij", "stad", "bestuur", "land", "economie",
+        "geschiedenis", "taal", "school", "leraar", "verzekering", "maatschappij", "recht",
+        "onderneming", "regering", "verslag", "water", "kracht", "werk", "vaart", "krant",
+        "onderwijs", "onderzoek", "ministerie", "verkeer", "ordening", "ontwikkeling", "prestatie",
+        "de", "het", "en", "met", "van", "voor", "een", "niet", "ook", "worden"
+    };
+
+    /** The language of the document. */
+    @Param({"de", "nl"})
+    private String language;
+
+    /** Whether the factory caches hyphenated words. */
+    @Param({"false", "true"})
+    private boolean cache;
+
+    private File patternDir;
+    private FOUserAgent userAgent;
+    private InternalResourceResolver resourceResolver;
+    private String[] document;
+
+    /**
+     * Writes the patterns and creates the document.
+     * @throws IOException if the patterns can't be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        patternDir = File.createTempFile("hyph", "bench");
+        patternDir.delete();
+        patternDir.mkdir();
+        writePatterns(new File(patternDir, language + ".xml"));
+        resourceResolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                patternDir.toURI());
+        FopFactory fopFactory = FopFactory.newInstance(patternDir.toURI());
+        fopFactory.getHyphenationCache().setMaxEntries(
+                cache ? HyphenationCache.DEFAULT_MAX_ENTRIES : 0);
+        userAgent = fopFactory.newFOUserAgent();
+        document = createDocument("de".equals(language) ? GERMAN_STEMS : DUTCH_STEMS);
+    }
+
+    /**
+     * Deletes the patterns.
+     * @throws IOException if the patterns can't be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(patternDir);
+    }
+
+    /**
+     * Hyphenates all the words of the document.
+     * @return the number of hyphenation points
+     */
+    @Benchmark
+    public int hyphenateDocument() {
+        String lang = language + ".xml" + Hyphenator.XMLTYPE;
+        int points = 0;
+        for (String word : document) {
+            Hyphenation hyph = Hyphenator.hyphenate(lang, null, resourceResolver, null, word, 2, 2,
+                    userAgent);
+            if (hyph != null) {
+                points += hyph.length();
+            }
+        }
+        return points;
+    }
+
+    private static String[] createDocument(String[] stems) {
+        Random random = new Random(stems.length);
+        String[] words = new String[DOCUMENT_WORDS];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            int parts = 1 + random.nextInt(3);
+            for (int p = 0; p < parts; p++) {
+                // favour the first stems, the way a few words make most of a text
+                double r = random.nextDouble();
+                sb.append(stems[(int) (stems.length * r * r * r)]);
+            }
+            words[i] = sb.toString();
+        }
+        return words;
+    }
+
+    private static void writePatterns(File file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<hyphenation-info>\n<classes>\n");
+        String letters = VOWELS + CONSONANTS;
+        for (int i = 0; i < letters.length(); i++) {
+            char c = letters.charAt(i);
+            sb.append(c);
+            if (Character.toUpperCase(c) != c) {
+                sb.append(Character.toUpperCase(c));
+            }
+            sb.append('\n');
+        }
+        sb.append("</classes>\n<patterns>\n");
+        for (int i = 0; i < CONSONANTS.length(); i++) {
+            char c = CONSONANTS.charAt(i);
+            for (int j = 0; j < VOWELS.length(); j++) {
+                sb.append('1').append(c).append(VOWELS.charAt(j)).append('\n');
+            }
+            sb.append(c).append('1').append(c).append('\n');
+        }
+        sb.append("2sch\n2ch\n2ck\n2ng\n2ij\n");
+        sb.append("</patterns>\n</hyphenation-info>\n");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(sb.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.helpers.DefaultHandler;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFDocumentHandler;
+import org.apache.fop.render.intermediate.IFParser;
+import org.apache.fop.render.intermediate.IFSerializer;
+
+/**
+ * Measures parsing the intermediate format with {@link IFParser}. The target "if" feeds the
+ * parsed events to an {@link IFSerializer} which discards its output, so that mostly parsing
+ * is measured; the target "pdf" renders the intermediate format to PDF, as done when
+ * concatenating documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IFParserBenchmark {
+
+    @Param({"TEXT", "TABLE"})
+    private SyntheticDocuments.Kind kind;
+
+    @Param("200")
+    private int size;
+
+    @Param({"if", "pdf"})
+    private String target;
+
+    private FopFactory fopFactory;
+    private byte[] intermediate;
+
+    /**
+     * Renders the synthetic document to the intermediate format.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        fopFactory = FopFactory.newInstance(new File(".").toURI());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(SyntheticDocuments.create(kind, size))),
+                new SAXResult(fop.getDefaultHandler()));
+        intermediate = out.toByteArray();
+    }
+
+    /**
+     * Parses the intermediate format.
+     * @return the user agent, so that the work isn't eliminated
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public FOUserAgent parse() throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        IFDocumentHandler documentHandler;
+        if ("pdf".equals(target)) {
+            documentHandler = userAgent.getRendererFactory().createDocumentHandler(
+                    userAgent, MimeConstants.MIME_PDF);
+            documentHandler.setResult(new StreamResult(new NullOutputStream()));
+            documentHandler.setDefaultFontInfo(new FontInfo());
+        } else {
+            documentHandler = new IFSerializer(new IFContext(userAgent));
+            documentHandler.setResult(new SAXResult(new DefaultHandler()));
+        }
+        new IFParser().parse(new StreamSource(new ByteArrayInputStream(intermediate)),
+                documentHandler, userAgent);
+        return userAgent;
+    }
+}
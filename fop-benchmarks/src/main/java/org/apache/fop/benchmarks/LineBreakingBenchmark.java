@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.fo.Constants;
+import org.apache.fop.layoutmgr.BlockKnuthSequence;
+import org.apache.fop.layoutmgr.BreakingAlgorithm;
+import org.apache.fop.layoutmgr.KnuthBox;
+import org.apache.fop.layoutmgr.KnuthGlue;
+import org.apache.fop.layoutmgr.KnuthPenalty;
+import org.apache.fop.layoutmgr.KnuthSequence;
+
+/**
+ * Measures the Knuth/Plass line breaking in {@link BreakingAlgorithm} on synthetic justified
+ * paragraphs made of words, interword glue and hyphenation points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LineBreakingBenchmark {
+
+    private static final int LINE_WIDTH = 400000;
+    private static final int HYPHEN_WIDTH = 3330;
+
+    /** The number of words in the paragraph. */
+    @Param({"50", "500", "5000"})
+    private int words;
+
+    /**
+     * Whether the breakers reuse the nodes of the previous runs through a shared pool, like
+     * the ones of a line layout manager.
+     */
+    @Param({"false", "true"})
+    private boolean recycleNodes;
+
+    private KnuthSequence paragraph;
+
+    private BreakingAlgorithm.NodePool nodePool;
+
+    /** Creates the paragraph. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(words);
+        KnuthSequence seq = new BlockKnuthSequence();
+        for (int i = 0; i < words; i++) {
+            int syllables = 1 + random.nextInt(4);
+            for (int s = 0; s < syllables; s++) {
+                seq.add(new KnuthBox(5000 + random.nextInt(15000), null, false));
+                if (s < syllables - 1) {
+                    seq.add(new KnuthPenalty(HYPHEN_WIDTH, 50, true, null, false));
+                }
+            }
+            if (i < words - 1) {
+                seq.add(new KnuthGlue(2780, 1390, 930, null, false));
+            }
+        }
+        seq.add(new KnuthPenalty(0, KnuthPenalty.INFINITE, false, null, false));
+        seq.add(new KnuthGlue(0, 10000000, 0, null, false));
+        seq.add(new KnuthPenalty(0, -KnuthPenalty.INFINITE, false, null, false));
+        paragraph = seq;
+        nodePool = recycleNodes ? new BreakingAlgorithm.NodePool() : null;
+    }
+
+    /**
+     * Breaks the paragraph into lines.
+     * @return the number of lines
+     */
+    @Benchmark
+    public int breakParagraph() {
+        LineBreaker breaker = new LineBreaker(nodePool);
+        breaker.setConstantLineWidth(LINE_WIDTH);
+        return breaker.findBreakingPoints(paragraph, 1, true, BreakingAlgorithm.ALL_BREAKS);
+    }
+
+    /**
+     * Breaks the paragraph the way the line layout manager does for justified text: first
+     * without the hyphenation points, then with them, then in forced mode with a large
+     * threshold, all with the same breaker.
+     * @return the number of lines of the last pass
+     */
+    @Benchmark
+    public int breakParagraphInPasses() {
+        LineBreaker breaker = new LineBreaker(nodePool);
+        breaker.setConstantLineWidth(LINE_WIDTH);
+        breaker.findBreakingPoints(paragraph, 1, false, BreakingAlgorithm.NO_FLAGGED_PENALTIES);
+        breaker.findBreakingPoints(paragraph, 1, false, BreakingAlgorithm.ALL_BREAKS);
+        return breaker.findBreakingPoints(paragraph, 20, true, BreakingAlgorithm.ALL_BREAKS);
+    }
+
+    private static final class LineBreaker extends BreakingAlgorithm {
+
+        LineBreaker(BreakingAlgorithm.NodePool nodePool) {
+            super(Constants.EN_JUSTIFY, Constants.EN_START, true, false, 2);
+            setNodePool(nodePool);
+        }
+
+        @Override
+        public void updateData1(int total, double demerits) {
+        }
+
+        @Override
+        public void updateData2(KnuthNode bestActiveNode, KnuthSequence sequence, int total) {
+        }
+
+        @Override
+        protected int filterActiveNodes() {
+            return 0;
+        }
+    }
+}
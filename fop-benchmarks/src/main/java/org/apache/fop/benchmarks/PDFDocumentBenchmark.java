@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import org.apache.fop.pdf.PDFDocument;
+import org.apache.fop.pdf.PDFFilterList;
+import org.apache.fop.pdf.PDFPage;
+import org.apache.fop.pdf.PDFReference;
+import org.apache.fop.pdf.PDFStream;
+
+/**
+ * Measures the serialization of a {@link PDFDocument}: object numbering, stream encoding and
+ * the cross-reference table, with pages flushed as they are completed like the PDF renderer does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PDFDocumentBenchmark {
+
+    private static final int PAGE_WIDTH = 595000;
+    private static final int PAGE_HEIGHT = 842000;
+    private static final int LINES_PER_PAGE = 60;
+
+    @Param({"100", "1000"})
+    private int pages;
+
+    /** The number of threads compressing streams, 0 to compress on the serializing thread. */
+    @Param("0")
+    private int compressionThreads;
+
+    /**
+     * Creates and writes the document.
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    public long serialize() throws IOException {
+        CountingOutputStream out = new CountingOutputStream(new NullOutputStream());
+        PDFDocument doc = new PDFDocument("Apache FOP Benchmarks");
+        doc.setCompressionThreads(compressionThreads);
+        doc.outputHeader(out);
+        for (int p = 0; p < pages; p++) {
+            addPage(doc, p, out);
+        }
+        doc.outputTrailer(out);
+        return out.getByteCount();
+    }
+
+    private void addPage(PDFDocument doc, int pageIndex, OutputStream out) throws IOException {
+        PDFPage page = doc.getFactory().makePage(doc.getResources(),
+                PAGE_WIDTH / 1000, PAGE_HEIGHT / 1000, pageIndex);
+        PDFStream content = doc.getFactory().makeStream(PDFFilterList.CONTENT_FILTER, false);
+        StringBuilder sb = new StringBuilder(LINES_PER_PAGE * 64);
+        sb.append("BT\n/F1 10 Tf\n");
+        for (int line = 0; line < LINES_PER_PAGE; line++) {
+            sb.append("1 0 0 -1 56.7 ").append(800 - line * 12).append(" Tm [(Line ");
+            sb.append(line).append(" of page ").append(pageIndex).append(")-250(with)-250(kerned)]TJ\n");
+        }
+        sb.append("ET\n");
+        content.add(sb.toString());
+        doc.registerObject(content);
+        page.setContents(new PDFReference(content));
+        doc.addObject(page);
+        doc.output(out);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates the synthetic XSL-FO documents used by the benchmarks. The documents are generated
+ * from a fixed seed, so every run (and every release) measures exactly the same input.
+ */
+public final class SyntheticDocuments {
+
+    /** The kinds of document which can be generated. */
+    public enum Kind {
+        /** Justified, hyphenated running text with headings and inline markup. */
+        TEXT,
+        /** A long table with a header and four columns. */
+        TABLE,
+        /** Lists with nested blocks, footnotes and page number citations. */
+        MIXED
+    }
+
+    private static final long SEED = 0x464F50L;
+
+    private static final String[] WORDS = {
+        "the", "formatting", "object", "processor", "reads", "an", "XSL-FO", "tree", "and",
+        "produces", "pages", "of", "text", "with", "justified", "lines", "while", "keeping",
+        "widows", "orphans", "under", "control", "layout", "managers", "break", "paragraphs",
+        "into", "boxes", "glue", "penalties", "according", "to", "Knuth", "Plass", "algorithm",
+        "which", "minimises", "demerits", "over", "whole", "paragraph", "instead", "single",
+        "line", "hyphenation", "patterns", "help", "avoid", "loose", "typography", "renderer",
+        "serialises", "area", "intermediate", "format", "document", "portable", "fonts",
+        "embedded", "subset", "glyphs", "kerning", "ligatures", "a", "is", "by", "on", "for"
+    };
+
+    private SyntheticDocuments() {
+    }
+
+    /**
+     * Generates a document.
+     * @param kind the kind of document
+     * @param size the number of paragraphs, table rows or list items
+     * @return the XSL-FO document
+     */
+    public static String create(Kind kind, int size) {
+        Random random = new Random(SEED);
+        StringBuilder sb = new StringBuilder(size * 600);
+        startDocument(sb);
+        switch (kind) {
+        case TEXT:
+            appendText(sb, random, size);
+            break;
+        case TABLE:
+            appendTable(sb, random, size);
+            break;
+        case MIXED:
+            appendMixed(sb, random, size);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown document kind: " + kind);
+        }
+        endDocument(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Generates a sentence made of random words.
+     * @param random the random generator
+     * @param words the number of words
+     * @return the sentence
+     */
+    public static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0) {
+                sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                sb.append(word);
+            }
+        }
+        return sb.append('.').toString();
+    }
+
+    private static void startDocument(StringBuilder sb) {
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\" language=\"en\">\n");
+        sb.append("<fo:layout-master-set>\n");
+        sb.append("<fo:simple-page-master master-name=\"A4\" page-width=\"210mm\" page-height=\"297mm\"");
+        sb.append(" margin=\"20mm\">\n");
+        sb.append("<fo:region-body margin-top=\"15mm\" margin-bottom=\"15mm\"/>\n");
+        sb.append("<fo:region-before extent=\"10mm\"/>\n");
+        sb.append("<fo:region-after extent=\"10mm\"/>\n");
+        sb.append("</fo:simple-page-master>\n");
+        sb.append("</fo:layout-master-set>\n");
+        sb.append("<fo:page-sequence master-reference=\"A4\">\n");
+        sb.append("<fo:static-content flow-name=\"xsl-region-before\">\n");
+        sb.append("<fo:block font-size=\"9pt\" text-align=\"end\">Synthetic benchmark document</fo:block>\n");
+        sb.append("</fo:static-content>\n");
+        sb.append("<fo:static-content flow-name=\"xsl-region-after\">\n");
+        sb.append("<fo:block font-size=\"9pt\" text-align=\"center\">Page <fo:page-number/></fo:block>\n");
+        sb.append("</fo:static-content>\n");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\" font-family=\"serif\" font-size=\"10pt\">\n");
+    }
+
+    private static void endDocument(StringBuilder sb) {
+        sb.append("<fo:block id=\"last\"/>\n");
+        sb.append("</fo:flow>\n");
+        sb.append("</fo:page-sequence>\n");
+        sb.append("</fo:root>\n");
+    }
+
+    private static void appendText(StringBuilder sb, Random random, int paragraphs) {
+        for (int i = 0; i < paragraphs; i++) {
+            if (i % 10 == 0) {
+                sb.append("<fo:block font-family=\"sans-serif\" font-size=\"14pt\" font-weight=\"bold\"");
+                sb.append(" space-before=\"12pt\" space-after=\"6pt\" keep-with-next=\"always\">");
+                sb.append("Section ").append(i / 10 + 1).append("</fo:block>\n");
+            }
+            sb.append("<fo:block text-align=\"justify\" hyphenate=\"true\" space-after=\"4pt\"");
+            sb.append(" widows=\"2\" orphans=\"2\">");
+            int sentences = 3 + random.nextInt(6);
+            for (int s = 0; s < sentences; s++) {
+                String sentence = sentence(random, 6 + random.nextInt(14));
+                switch (random.nextInt(8)) {
+                case 0:
+                    sb.append("<fo:inline font-weight=\"bold\">").append(sentence).append("</fo:inline>");
+                    break;
+                case 1:
+                    sb.append("<fo:inline font-style=\"italic\">").append(sentence).append("</fo:inline>");
+                    break;
+                default:
+                    sb.append(sentence);
+                }
+                sb.append(' ');
+            }
+            sb.append("</fo:block>\n");
+        }
+    }
+
+    private static void appendTable(StringBuilder sb, Random random, int rows) {
+        sb.append("<fo:table table-layout=\"fixed\" width=\"100%\" border-collapse=\"separate\">\n");
+        sb.append("<fo:table-column column-width=\"15%\"/>\n");
+        sb.append("<fo:table-column column-width=\"35%\"/>\n");
+        sb.append("<fo:table-column column-width=\"35%\"/>\n");
+        sb.append("<fo:table-column column-width=\"15%\"/>\n");
+        sb.append("<fo:table-header font-weight=\"bold\">\n<fo:table-row>\n");
+        for (String title : new String[] {"Id", "Name", "Description", "Amount"}) {
+            sb.append("<fo:table-cell border=\"0.5pt solid black\" padding=\"2pt\"><fo:block>");
+            sb.append(title).append("</fo:block></fo:table-cell>\n");
+        }
+        sb.append("</fo:table-row>\n</fo:table-header>\n<fo:table-body>\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append("<fo:table-row>\n");
+            appendCell(sb, Integer.toString(i + 1), "end");
+            appendCell(sb, sentence(random, 2 + random.nextInt(3)), "start");
+            appendCell(sb, sentence(random, 5 + random.nextInt(20)), "justify");
+            appendCell(sb, String.format("%d.%02d", random.nextInt(10000), random.nextInt(100)), "end");
+            sb.append("</fo:table-row>\n");
+        }
+        sb.append("</fo:table-body>\n</fo:table>\n");
+    }
+
+    private static void appendCell(StringBuilder sb, String content, String align) {
+        sb.append("<fo:table-cell border=\"0.5pt solid black\" padding=\"2pt\"><fo:block text-align=\"");
+        sb.append(align).append("\">").append(content).append("</fo:block></fo:table-cell>\n");
+    }
+
+    private static void appendMixed(StringBuilder sb, Random random, int items) {
+        sb.append("<fo:list-block provisional-distance-between-starts=\"10mm\">\n");
+        for (int i = 0; i < items; i++) {
+            sb.append("<fo:list-item space-after=\"3pt\">\n");
+            sb.append("<fo:list-item-label end-indent=\"label-end()\"><fo:block>");
+            sb.append(i + 1).append(".</fo:block></fo:list-item-label>\n");
+            sb.append("<fo:list-item-body start-indent=\"body-start()\">\n");
+            sb.append("<fo:block id=\"item").append(i).append("\" text-align=\"justify\">");
+            sb.append(sentence(random, 10 + random.nextInt(30)));
+            if (i % 7 == 0) {
+                sb.append("<fo:footnote><fo:inline baseline-shift=\"super\" font-size=\"7pt\">");
+                sb.append(i / 7 + 1).append("</fo:inline><fo:footnote-body><fo:block font-size=\"8pt\">");
+                sb.append(sentence(random, 8 + random.nextInt(10)));
+                sb.append("</fo:block></fo:footnote-body></fo:footnote>");
+            }
+            if (i > 0 && i % 5 == 0) {
+                sb.append(" See item ").append(i - 5).append(" on page ");
+                sb.append("<fo:page-number-citation ref-id=\"item").append(i - 5).append("\"/>");
+                sb.append(" of <fo:page-number-citation ref-id=\"last\"/>.");
+            }
+            sb.append("</fo:block>\n");
+            if (i % 3 == 0) {
+                sb.append("<fo:block start-indent=\"body-start() + 5mm\" font-size=\"9pt\"");
+                sb.append(" border-start-style=\"solid\" border-start-width=\"1pt\"");
+                sb.append(" border-start-color=\"gray\" padding-start=\"2mm\">");
+                sb.append(sentence(random, 12 + random.nextInt(12))).append("</fo:block>\n");
+            }
+            sb.append("</fo:list-item-body>\n</fo:list-item>\n");
+        }
+        sb.append("</fo:list-block>\n");
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.fonts.Font;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.fonts.FontSetup;
+import org.apache.fop.fonts.FontTriplet;
+
+/**
+ * Measures text measurement through {@link Font}: character mapping, glyph widths and kerning,
+ * as done by the text layout manager for every character of a document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TextMeasurementBenchmark {
+
+    @Param({"sans-serif", "serif"})
+    private String family;
+
+    private Font font;
+    private char[] text;
+
+    /** Sets up the font and the text to measure. */
+    @Setup
+    public void setUp() {
+        FontInfo fontInfo = new FontInfo();
+        FontSetup.setup(fontInfo, true);
+        FontTriplet triplet = fontInfo.fontLookup(family, Font.STYLE_NORMAL, Font.WEIGHT_NORMAL);
+        font = fontInfo.getFontInstance(triplet, 10000);
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 10000) {
+            sb.append(SyntheticDocuments.sentence(random, 20)).append(' ');
+        }
+        text = sb.toString().toCharArray();
+    }
+
+    /**
+     * Measures the width of the text, character by character.
+     * @return the width of the text
+     */
+    @Benchmark
+    public int measureWidths() {
+        int width = 0;
+        for (char c : text) {
+            width += font.getCharWidth(c);
+        }
+        return width;
+    }
+
+    /**
+     * Measures the kerning adjustments of all character pairs of the text.
+     * @return the sum of the kerning adjustments
+     */
+    @Benchmark
+    public int measureKerning() {
+        int kerning = 0;
+        for (int i = 1; i < text.length; i++) {
+            kerning += font.getKernValue(text[i - 1], text[i]);
+        }
+        return kerning;
+    }
+
+    /**
+     * Maps the characters of the text to glyphs.
+     * @return the sum of the mapped characters
+     */
+    @Benchmark
+    public int mapCharacters() {
+        int sum = 0;
+        for (char c : text) {
+            sum += font.mapChar(c);
+        }
+        return sum;
+    }
+}
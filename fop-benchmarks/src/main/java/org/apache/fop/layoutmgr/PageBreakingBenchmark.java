@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.fo.Constants;
+import org.apache.fop.traits.MinOptMax;
+
+/**
+ * Measures {@link PageBreakingAlgorithm} on a synthetic block list: paragraphs of lines
+ * separated by stretchable space, with widow/orphan keeps expressed as infinite penalties.
+ * This benchmark lives in the layout manager package since the algorithm is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PageBreakingBenchmark {
+
+    private static final int PAGE_HEIGHT = 700000;
+    private static final int LINE_HEIGHT = 12000;
+
+    /** The number of paragraphs in the flow. */
+    @Param({"100", "1000", "5000"})
+    private int paragraphs;
+
+    private KnuthSequence blockList;
+
+    /** Creates the block list. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(paragraphs);
+        KnuthSequence seq = new BlockKnuthSequence();
+        for (int p = 0; p < paragraphs; p++) {
+            int lines = 1 + random.nextInt(12);
+            for (int l = 0; l < lines; l++) {
+                seq.add(new KnuthBox(LINE_HEIGHT, null, false));
+                if (l < lines - 1) {
+                    //keep the first and last two lines of a paragraph together
+                    boolean keep = l == 0 || l >= lines - 2;
+                    seq.add(new KnuthPenalty(0, keep ? KnuthPenalty.INFINITE : 0, false, null, false));
+                }
+            }
+            if (p < paragraphs - 1) {
+                seq.add(new KnuthPenalty(0, 0, false, null, false));
+                seq.add(new KnuthGlue(6000, 2000, 1000, null, false));
+            }
+        }
+        seq.add(new KnuthPenalty(0, KnuthPenalty.INFINITE, false, null, false));
+        seq.add(new KnuthGlue(0, 10000000, 0, null, false));
+        seq.add(new KnuthPenalty(0, -KnuthPenalty.INFINITE, false, null, false));
+        blockList = seq;
+    }
+
+    /**
+     * Breaks the block list into pages.
+     * @return the number of pages
+     */
+    @Benchmark
+    public int breakPages() {
+        PageBreakingAlgorithm algorithm = new PageBreakingAlgorithm(null, null, null,
+                Constants.EN_START, Constants.EN_START, MinOptMax.ZERO, false, false, false);
+        algorithm.setConstantLineWidth(PAGE_HEIGHT);
+        return algorithm.findBreakingPoints(blockList, 1, true, BreakingAlgorithm.ALL_BREAKS);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.io.OutputStream;
+import java.util.Map;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+
+/**
+ * Describes one document to be rendered by a {@link BatchRenderer}. The source is either an
+ * XSL-FO document or, if a stylesheet is set, the XML document that is transformed into XSL-FO.
+ * The output stream is not closed after rendering, it remains owned by the caller.
+ */
+public class BatchJob {
+
+    private final Source source;
+    private final String outputFormat;
+    private final OutputStream outputStream;
+
+    private Templates templates;
+    private Map<String, Object> parameters;
+    private FOUserAgent userAgent;
+    private Object id;
+
+    /**
+     * Creates a new job.
+     * @param source the XSL-FO document, or the XML document if a stylesheet is set
+     * @param outputFormat the MIME type of the output format (ex. "application/pdf")
+     * @param outputStream the stream the rendered document is written to
+     */
+    public BatchJob(Source source, String outputFormat, OutputStream outputStream) {
+        this.source = source;
+        this.outputFormat = outputFormat;
+        this.outputStream = outputStream;
+    }
+
+    /** @return the source document */
+    public Source getSource() {
+        return source;
+    }
+
+    /** @return the MIME type of the output format */
+    public String getOutputFormat() {
+        return outputFormat;
+    }
+
+    /** @return the stream the rendered document is written to */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Sets the compiled stylesheet that turns the source into XSL-FO. Compiled stylesheets
+     * are thread-safe and should be shared by all jobs that use the same stylesheet.
+     * @param templates the stylesheet, or null if the source is XSL-FO
+     * @return this job
+     */
+    public BatchJob setTemplates(Templates templates) {
+        this.templates = templates;
+        return this;
+    }
+
+    /** @return the stylesheet, or null if the source is XSL-FO */
+    public Templates getTemplates() {
+        return templates;
+    }
+
+    /**
+     * Sets the parameters that are passed to the stylesheet.
+     * @param parameters the stylesheet parameters
+     * @return this job
+     */
+    public BatchJob setParameters(Map<String, Object> parameters) {
+        this.parameters = parameters;
+        return this;
+    }
+
+    /** @return the stylesheet parameters, or null */
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Sets the user agent of this rendering run, for example to set document metadata. If no
+     * user agent is set, a new one with the factory's defaults is used. A user agent must not be
+     * shared between jobs.
+     * @param userAgent the user agent
+     * @return this job
+     */
+    public BatchJob setUserAgent(FOUserAgent userAgent) {
+        this.userAgent = userAgent;
+        return this;
+    }
+
+    /** @return the user agent of this rendering run, or null */
+    public FOUserAgent getUserAgent() {
+        return userAgent;
+    }
+
+    /**
+     * Sets an identifier for the caller's use, for example a file name.
+     * @param id the identifier
+     * @return this job
+     */
+    public BatchJob setId(Object id) {
+        this.id = id;
+        return this;
+    }
+
+    /** @return the identifier given by the caller, or null */
+    public Object getId() {
+        return id;
+    }
+
+    /** {@inheritDoc} */
+    public String toString() {
+        return "BatchJob[" + (id != null ? id : source.getSystemId()) + ", " + outputFormat + "]";
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+
+/**
+ * Renders a batch of documents on several threads. At most a fixed number of jobs are in
+ * progress at any time: taking the next job from the job iterable blocks until a worker is
+ * free, so a lazily produced batch is never read far ahead of the rendering.
+ * <p>
+ * All jobs share the {@link FopFactory} and with it the fonts, the hyphenation patterns and
+ * the image cache. Every job gets its own {@link FOUserAgent}. The identity transformers that
+ * feed XSL-FO to FOP are kept per worker thread.
+ * <p>
+ * By default the renderer runs the jobs on a pool of its own which is shut down after each
+ * batch. An application can pass its own executor instead, for example one that runs each
+ * task on a virtual thread.
+ */
+public class BatchRenderer {
+
+    private final FopFactory fopFactory;
+    private final int maxConcurrentJobs;
+    private final ExecutorService executor;
+
+    private final ThreadLocal<Transformer> identityTransformer = new ThreadLocal<Transformer>();
+
+    /**
+     * Creates a renderer that uses a thread pool of its own.
+     * @param fopFactory the factory that creates the {@link Fop} instances
+     * @param maxConcurrentJobs the number of worker threads
+     */
+    public BatchRenderer(FopFactory fopFactory, int maxConcurrentJobs) {
+        this(fopFactory, null, maxConcurrentJobs);
+    }
+
+    /**
+     * Creates a renderer that runs the jobs on the given executor. The executor is not shut down
+     * by the renderer.
+     * @param fopFactory the factory that creates the {@link Fop} instances
+     * @param executor the executor, or null to use a pool of the renderer's own
+     * @param maxConcurrentJobs the maximum number of jobs in progress at a time
+     */
+    public BatchRenderer(FopFactory fopFactory, ExecutorService executor, int maxConcurrentJobs) {
+        if (maxConcurrentJobs < 1) {
+            throw new IllegalArgumentException("maxConcurrentJobs must be at least 1");
+        }
+        this.fopFactory = fopFactory;
+        this.executor = executor;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    /**
+     * Renders all jobs and waits for them to finish. Jobs that fail don't stop the batch; their
+     * exception is reported in their result.
+     * @param jobs the jobs
+     * @return the results, in the order of the jobs
+     * @throws InterruptedException if the calling thread is interrupted while waiting. Jobs that
+     * were not started yet are cancelled.
+     * @throws RejectedExecutionException if the executor doesn't accept a job
+     */
+    public List<BatchResult> render(Iterable<BatchJob> jobs) throws InterruptedException {
+        ExecutorService exec = executor;
+        if (exec == null) {
+            exec = Executors.newFixedThreadPool(maxConcurrentJobs, new WorkerThreadFactory());
+        }
+        final Semaphore workers = new Semaphore(maxConcurrentJobs);
+        List<Future<BatchResult>> futures = new ArrayList<Future<BatchResult>>();
+        try {
+            for (final BatchJob job : jobs) {
+                workers.acquire();
+                final long submitted = System.currentTimeMillis();
+                try {
+                    futures.add(exec.submit(new Callable<BatchResult>() {
+                        public BatchResult call() {
+                            try {
+                                return renderJob(job, submitted);
+                            } finally {
+                                workers.release();
+                            }
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    //the task never runs, so it can't give its permit back
+                    workers.release();
+                    throw e;
+                }
+            }
+            List<BatchResult> results = new ArrayList<BatchResult>(futures.size());
+            for (Future<BatchResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            //renderJob() catches everything but errors
+            throw (Error) e.getCause();
+        } catch (InterruptedException e) {
+            for (Future<BatchResult> future : futures) {
+                future.cancel(false);
+            }
+            throw e;
+        } finally {
+            if (exec != executor) {
+                exec.shutdown();
+            }
+        }
+    }
+
+    private BatchResult renderJob(BatchJob job, long submitted) {
+        long start = System.currentTimeMillis();
+        FormattingResults results = null;
+        Exception failure = null;
+        try {
+            FOUserAgent userAgent = job.getUserAgent();
+            if (userAgent == null) {
+                userAgent = fopFactory.newFOUserAgent();
+            }
+            Fop fop = fopFactory.newFop(job.getOutputFormat(), userAgent, job.getOutputStream());
+            transform(job, new SAXResult(fop.getDefaultHandler()));
+            results = fop.getResults();
+        } catch (Exception e) {
+            failure = e;
+        }
+        long end = System.currentTimeMillis();
+        return new BatchResult(job, results, failure, start - submitted, end - start);
+    }
+
+    private void transform(BatchJob job, Result result) throws Exception {
+        if (job.getTemplates() != null) {
+            Transformer transformer = job.getTemplates().newTransformer();
+            if (job.getParameters() != null) {
+                for (Map.Entry<String, Object> param : job.getParameters().entrySet()) {
+                    transformer.setParameter(param.getKey(), param.getValue());
+                }
+            }
+            transformer.transform(job.getSource(), result);
+        } else {
+            Transformer transformer = getIdentityTransformer();
+            try {
+                transformer.transform(job.getSource(), result);
+            } finally {
+                transformer.reset();
+            }
+        }
+    }
+
+    private Transformer getIdentityTransformer() throws TransformerConfigurationException {
+        Transformer transformer = identityTransformer.get();
+        if (transformer == null) {
+            transformer = TransformerFactory.newInstance().newTransformer();
+            identityTransformer.set(transformer);
+        }
+        return transformer;
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+        private final int pool = POOL_COUNT.incrementAndGet();
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "FOP batch " + pool + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+/**
+ * The outcome of one {@link BatchJob}. A job either produced {@link FormattingResults} or
+ * failed with an exception; a failed job doesn't stop the other jobs of the batch.
+ */
+public class BatchResult {
+
+    private final BatchJob job;
+    private final FormattingResults results;
+    private final Exception failure;
+    private final long waitTime;
+    private final long elapsedTime;
+
+    BatchResult(BatchJob job, FormattingResults results, Exception failure,
+            long waitTime, long elapsedTime) {
+        this.job = job;
+        this.results = results;
+        this.failure = failure;
+        this.waitTime = waitTime;
+        this.elapsedTime = elapsedTime;
+    }
+
+    /** @return the job this result belongs to */
+    public BatchJob getJob() {
+        return job;
+    }
+
+    /** @return true if the job was rendered without an exception */
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    /** @return the formatting results, or null if the job failed */
+    public FormattingResults getFormattingResults() {
+        return results;
+    }
+
+    /** @return the exception the job failed with, or null */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /** @return the time in milliseconds the job waited for a free worker */
+    public long getWaitTime() {
+        return waitTime;
+    }
+
+    /** @return the time in milliseconds it took to render the job */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /** {@inheritDoc} */
+    public String toString() {
+        return job + (failure != null ? " failed: " + failure.getMessage()
+                : " " + results.getPageCount() + " pages") + " in " + elapsedTime + "ms";
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.fop.apps;
 
 // Java
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
@@ -56,8 +57,10 @@ import org.apache.fop.events.LoggingEventListener;
 import org.apache.fop.fo.ElementMappingRegistry;
 import org.apache.fop.fo.FOEventHandler;
 import org.apache.fop.fonts.FontManager;
+import org.apache.fop.hyphenation.HyphenationCache;
 import org.apache.fop.hyphenation.HyphenationTreeCache;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
+import org.apache.fop.layoutmgr.inline.ParagraphLayoutCache;
 import org.apache.fop.render.ImageHandlerRegistry;
 import org.apache.fop.render.Renderer;
 import org.apache.fop.render.RendererConfig;
@@ -105,6 +108,12 @@ public class FOUserAgent {
     private FOEventHandler foEventHandlerOverride;
     private boolean locatorEnabled = true; // true by default (for error messages).
     private boolean conserveMemoryPolicy;
+    private boolean compressedPageCache;
+    private boolean twoPassLayout;
+    private boolean targetedHyphenation;
+    private ParagraphLayoutCache paragraphLayoutCache;
+    private int layoutThreads;
+    private int pageBreakingWindow;
     private EventBroadcaster eventBroadcaster = new FOPEventBroadcaster();
     private StructureTreeEventHandler structureTreeEventHandler
             = DummyStructureTreeEventHandler.INSTANCE;
@@ -150,6 +159,7 @@ public class FOUserAgent {
         setTargetResolution(factory.getTargetResolution());
         setAccessibility(factory.isAccessibilityEnabled());
         setKeepEmptyTags(factory.isKeepEmptyTags());
+        setLayoutThreads(factory.getLayoutThreads());
         imageSessionContext = new AbstractImageSessionContext(factory.getFallbackResolver()) {
 
             public ImageContext getParentContext() {
@@ -163,6 +173,20 @@ public class FOUserAgent {
             public Source resolveURI(String uri) {
                 return FOUserAgent.this.resolveURI(uri);
             }
+
+            //The reusable sources are shared by pages painted on several threads
+
+            public synchronized Source getSource(String uri) {
+                return super.getSource(uri);
+            }
+
+            public synchronized Source needSource(String uri) throws FileNotFoundException {
+                return super.needSource(uri);
+            }
+
+            public synchronized void returnSource(String uri, Source src) {
+                super.returnSource(uri, src);
+            }
         };
     }
 
@@ -597,6 +621,15 @@ public class FOUserAgent {
 
         private EventListener rootListener;
 
+        private volatile boolean suppressed;
+
+        //Only adjusts the severity of suppressed events, so they are fatal in the same cases
+        private final EventListener suppressingListener = new FOPEventListenerProxy(
+                new EventListener() {
+                    public void processEvent(Event event) {
+                    }
+                }, FOUserAgent.this);
+
         public FOPEventBroadcaster() {
             //Install a temporary event listener that catches the first event to
             //do some initialization.
@@ -618,7 +651,11 @@ public class FOUserAgent {
 
         /** {@inheritDoc} */
         public void broadcastEvent(Event event) {
-            rootListener.processEvent(event);
+            if (suppressed) {
+                suppressingListener.processEvent(event);
+            } else {
+                rootListener.processEvent(event);
+            }
         }
 
     }
@@ -641,6 +678,185 @@ public class FOUserAgent {
         this.conserveMemoryPolicy = conserveMemoryPolicy;
     }
 
+    /**
+     * Check whether pages cached by the memory-conservation policy are kept in memory.
+     *
+     * @return true if cached pages are kept compressed in memory instead of temporary files
+     */
+    public boolean isCompressedPageCacheEnabled() {
+        return this.compressedPageCache;
+    }
+
+    /**
+     * Controls where the memory-conservation policy keeps pages that wait for the resolution
+     * of forward references. By default they are written to temporary files; if enabled,
+     * they are kept compressed in memory, which avoids the file I/O at the cost of some
+     * heap. Has no effect unless {@link #setConserveMemoryPolicy(boolean)} is enabled.
+     *
+     * @param compressedPageCache true to keep cached pages compressed in memory
+     */
+    public void setCompressedPageCache(boolean compressedPageCache) {
+        this.compressedPageCache = compressedPageCache;
+    }
+
+    /**
+     * Check whether two-pass layout is enabled.
+     *
+     * @return true if the document is laid out twice
+     */
+    public boolean isTwoPassLayoutEnabled() {
+        return this.twoPassLayout;
+    }
+
+    /**
+     * Enables two-pass layout. The FO document is buffered in memory and laid out once
+     * without producing output to find the pages all IDs end up on. The second pass then
+     * resolves page-number-citations and internal links to IDs further down the document
+     * right away, so pages are rendered as soon as they are finished instead of waiting for
+     * the IDs. This keeps documents with a table of contents at the front from being held in
+     * memory completely, at the cost of laying out the document twice. Forward citations are
+     * laid out with their final text rather than a placeholder, which may move content; if an
+     * ID ends up on another page than in the first pass, a warning is logged. Only applies
+     * to output formats that use FOP's layout engine.
+     *
+     * @param twoPassLayout true to enable two-pass layout
+     */
+    public void setTwoPassLayout(boolean twoPassLayout) {
+        this.twoPassLayout = twoPassLayout;
+    }
+
+    /**
+     * Check whether hyphenation is limited to the words that may end a line.
+     *
+     * @return true if only words near candidate line breaks are hyphenated
+     */
+    public boolean isTargetedHyphenationEnabled() {
+        return this.targetedHyphenation;
+    }
+
+    /**
+     * Limits hyphenation to the words that may end a line. By default, every word of a
+     * paragraph with hyphenate="true" is hyphenated before it is broken into lines. With
+     * targeted hyphenation, the paragraph is first broken without hyphenation; words are only
+     * hyphenated if that fails or the text is justified, and then only the words next to the
+     * line breaks found, before breaking the paragraph again. Ragged text that breaks well
+     * without hyphenation is not hyphenated at all. The breaks may differ from those of full
+     * hyphenation when the best break with hyphenation is far from the breaks found without.
+     *
+     * @param targetedHyphenation true to hyphenate only words near candidate line breaks
+     */
+    public void setTargetedHyphenation(boolean targetedHyphenation) {
+        this.targetedHyphenation = targetedHyphenation;
+    }
+
+    /**
+     * Returns the cache of line breaking results used during layout.
+     *
+     * @return the paragraph layout cache, or null if paragraphs are always broken anew
+     */
+    public ParagraphLayoutCache getParagraphLayoutCache() {
+        return this.paragraphLayoutCache;
+    }
+
+    /**
+     * Sets a cache of line breaking results. With a cache, a paragraph whose content and
+     * available width were already seen, like a footer repeated on every page or a label
+     * repeated in many table cells, reuses the line breaks found the first time instead of
+     * running the line breaking algorithm again. The same cache may be set on several user
+     * agents to share it between documents. By default there is no cache.
+     *
+     * @param paragraphLayoutCache the cache, or null to disable caching
+     */
+    public void setParagraphLayoutCache(ParagraphLayoutCache paragraphLayoutCache) {
+        this.paragraphLayoutCache = paragraphLayoutCache;
+    }
+
+    /**
+     * Suppresses or re-enables the broadcasting of events. Used while laying out the
+     * document for two-pass layout, so problems are only reported once.
+     *
+     * @param suppressed true to discard all events
+     */
+    void setEventsSuppressed(boolean suppressed) {
+        ((FOPEventBroadcaster) this.eventBroadcaster).suppressed = suppressed;
+    }
+
+    /**
+     * Check whether independent page-sequences may be laid out in parallel.
+     *
+     * @return true if parallel page-sequence layout is enabled
+     */
+    public boolean isParallelLayoutEnabled() {
+        return this.layoutThreads > 0;
+    }
+
+    /**
+     * Controls whether page-sequences that do not depend on each other (explicit
+     * initial-page-number, no page-number citations, links or document-wide marker
+     * retrieval) are laid out concurrently. Their pages are still handed to the renderer
+     * in document order. Page-sequences that do not qualify are laid out serially.
+     *
+     * @param parallelLayout true to enable parallel page-sequence layout with one thread per
+     *          available processor
+     * @see #setLayoutThreads(int)
+     */
+    public void setParallelLayout(boolean parallelLayout) {
+        setLayoutThreads(parallelLayout ? Runtime.getRuntime().availableProcessors() : 0);
+    }
+
+    /**
+     * Returns the number of threads laying out independent page-sequences in parallel.
+     *
+     * @return the number of layout threads, 0 if parallel page-sequence layout is disabled
+     */
+    public int getLayoutThreads() {
+        return this.layoutThreads;
+    }
+
+    /**
+     * Sets the number of threads laying out independent page-sequences in parallel. The
+     * threads belong to the rendering run and are released when the document ends. The
+     * default is taken from the factory configuration.
+     *
+     * @param layoutThreads the number of layout threads, 0 to disable parallel page-sequence
+     *          layout
+     * @see #setParallelLayout(boolean)
+     */
+    public void setLayoutThreads(int layoutThreads) {
+        if (layoutThreads < 0) {
+            throw new IllegalArgumentException("layoutThreads must not be negative");
+        }
+        this.layoutThreads = layoutThreads;
+    }
+
+    /**
+     * Returns the number of pages the page breaker looks ahead in windowed page breaking.
+     *
+     * @return the size of the page breaking window in pages, 0 if windowed page breaking
+     * is disabled
+     */
+    public int getPageBreakingWindow() {
+        return this.pageBreakingWindow;
+    }
+
+    /**
+     * Enables windowed page breaking for long flows. Instead of collecting the element list
+     * of a whole flow before breaking it into pages, the flow is broken in windows of roughly
+     * the given number of pages. All but the last page of a window are added to the area
+     * tree right away and layout continues after them, so memory use no longer grows with the
+     * length of a page-sequence and the first pages are rendered early. Page breaks are
+     * only optimal within a window, so the result may differ slightly from the default.
+     *
+     * @param pages the size of the window in pages (at least 2), or 0 to disable windowed
+     * page breaking
+     */
+    public void setPageBreakingWindow(int pages) {
+        if (pages != 0 && pages < 2) {
+            throw new IllegalArgumentException("The page breaking window must be at least 2 pages");
+        }
+        this.pageBreakingWindow = pages;
+    }
+
     /**
      * Check whether complex script features are enabled.
      *
@@ -819,6 +1035,14 @@ public class FOUserAgent {
         return factory.getHyphenationTreeCache();
     }
 
+    /**
+     * Returns the cache of hyphenated words, shared by all documents of the factory.
+     * @return the hyphenation cache
+     */
+    public HyphenationCache getHyphenationCache() {
+        return factory.getHyphenationCache();
+    }
+
     public void setKeepEmptyTags(boolean b) {
         getRendererOptions().put(Accessibility.KEEP_EMPTY_TAGS, b);
     }
@@ -101,7 +101,11 @@ public class Fop {
      * @throws FOPException if setting up the DefaultHandler fails
      */
     private void createDefaultHandler() throws FOPException {
-        this.foTreeBuilder = new FOTreeBuilder(outputFormat, foUserAgent, stream);
+        if (foUserAgent.isTwoPassLayoutEnabled()) {
+            this.foTreeBuilder = new TwoPassFOTreeBuilder(outputFormat, foUserAgent, stream);
+        } else {
+            this.foTreeBuilder = new FOTreeBuilder(outputFormat, foUserAgent, stream);
+        }
     }
 
     /**
@@ -252,6 +252,14 @@ public class FopConfParser {
                     false));
         }
 
+        if (cfg.getChild("layout-threads", false) != null) {
+            try {
+                fopFactoryBuilder.setLayoutThreads(cfg.getChild("layout-threads").getValueAsInteger());
+            } catch (ConfigurationException e) {
+                LogUtil.handleException(log, e, strict);
+            }
+        }
+
         setHyphenationBase(cfg, resourceResolver, baseURI, fopFactoryBuilder);
         setHyphPatNames(cfg, fopFactoryBuilder, strict);
 
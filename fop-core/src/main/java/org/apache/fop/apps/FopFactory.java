@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -43,10 +44,14 @@ import org.apache.fop.apps.io.ResourceResolverFactory;
 import org.apache.fop.configuration.Configuration;
 import org.apache.fop.fo.ElementMapping;
 import org.apache.fop.fo.ElementMappingRegistry;
+import org.apache.fop.fonts.FontInfo;
 import org.apache.fop.fonts.FontManager;
+import org.apache.fop.hyphenation.HyphenationCache;
 import org.apache.fop.hyphenation.HyphenationTreeCache;
+import org.apache.fop.hyphenation.Hyphenator;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
 import org.apache.fop.render.ImageHandlerRegistry;
+import org.apache.fop.render.Renderer;
 import org.apache.fop.render.RendererConfig;
 import org.apache.fop.render.RendererConfig.RendererConfigParser;
 import org.apache.fop.render.RendererFactory;
@@ -91,6 +96,8 @@ public final class FopFactory implements ImageContext {
 
     private HyphenationTreeCache hyphenationTreeCache;
 
+    private HyphenationCache hyphenationCache;
+
     private FopFactory(FopFactoryConfig config) {
         this.config = config;
         this.resolver = ResourceResolverFactory.createInternalResourceResolver(config.getBaseURI(),
@@ -172,10 +179,62 @@ public final class FopFactory implements ImageContext {
         return userAgent;
     }
 
+    /**
+     * Does the setup work that is otherwise done while rendering the first document to the
+     * given output format. The renderer configuration is parsed, the configured fonts are
+     * detected and the hyphenation patterns for the given languages are loaded. All of it is
+     * kept by this factory, so calling this once at startup takes that cost off the first
+     * rendering run.
+     * @param outputFormat the MIME type of the output format (ex. "application/pdf")
+     * @param languages the languages whose hyphenation patterns are loaded, either as
+     * language code (ex. "de") or as language and country code (ex. "de_CH")
+     * @throws FOPException if the renderer or its fonts can't be set up
+     */
+    public void preload(String outputFormat, String... languages) throws FOPException {
+        FOUserAgent userAgent = newFOUserAgent();
+        Renderer renderer = rendererFactory.createRenderer(userAgent, outputFormat);
+        renderer.setupFontInfo(new FontInfo());
+        for (String language : languages) {
+            int sep = language.indexOf('_');
+            String lang = sep < 0 ? language : language.substring(0, sep);
+            String country = sep < 0 ? null : language.substring(sep + 1);
+            Hyphenator.getHyphenationTree(lang, country, userAgent.getHyphenationResourceResolver(),
+                    getHyphenationPatternNames(), userAgent);
+        }
+    }
+
     boolean isComplexScriptFeaturesEnabled() {
         return config.isComplexScriptFeaturesEnabled();
     }
 
+    int getLayoutThreads() {
+        return config.getLayoutThreads();
+    }
+
+    /**
+     * Renders a batch of documents using one worker thread per available processor. See
+     * {@link BatchRenderer} for details.
+     * @param jobs the documents to render
+     * @return the result of each job, in the order of the jobs
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<BatchResult> renderAll(Iterable<BatchJob> jobs) throws InterruptedException {
+        return renderAll(jobs, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Renders a batch of documents with at most the given number of documents in progress at a
+     * time. See {@link BatchRenderer} for details.
+     * @param jobs the documents to render
+     * @param maxConcurrentJobs the number of worker threads
+     * @return the result of each job, in the order of the jobs
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<BatchResult> renderAll(Iterable<BatchJob> jobs, int maxConcurrentJobs)
+            throws InterruptedException {
+        return new BatchRenderer(this, maxConcurrentJobs).render(jobs);
+    }
+
     /**
      * Returns a new {@link Fop} instance. FOP will be configured with a default user agent
      * instance.
@@ -444,10 +503,23 @@ public final class FopFactory implements ImageContext {
         return this.colorSpaceCache;
     }
 
-    public HyphenationTreeCache getHyphenationTreeCache() {
+    public synchronized HyphenationTreeCache getHyphenationTreeCache() {
         if (hyphenationTreeCache == null) {
             hyphenationTreeCache = new HyphenationTreeCache();
         }
         return hyphenationTreeCache;
     }
+
+    /**
+     * Returns the cache of hyphenated words, shared by all documents produced with this
+     * factory. Its size can be changed, or caching disabled, with
+     * {@link HyphenationCache#setMaxEntries(int)}.
+     * @return the hyphenation cache
+     */
+    public synchronized HyphenationCache getHyphenationCache() {
+        if (hyphenationCache == null) {
+            hyphenationCache = new HyphenationCache();
+        }
+        return hyphenationCache;
+    }
 }
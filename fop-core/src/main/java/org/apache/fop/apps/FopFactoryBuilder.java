@@ -327,6 +327,19 @@ public final class FopFactoryBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of threads laying out independent page-sequences of a document in
+     * parallel. The user agents created by the factory start with this value.
+     *
+     * @param layoutThreads the number of layout threads, 0 to lay out serially
+     * @return <code>this</code>
+     * @see FOUserAgent#setLayoutThreads(int)
+     */
+    public FopFactoryBuilder setLayoutThreads(int layoutThreads) {
+        fopFactoryConfigBuilder.setLayoutThreads(layoutThreads);
+        return this;
+    }
+
     public static class FopFactoryConfigImpl implements FopFactoryConfig {
 
         private final EnvironmentProfile enviro;
@@ -368,6 +381,8 @@ public final class FopFactoryBuilder {
 
         private Map<String, String> hyphPatNames;
 
+        private int layoutThreads;
+
         private static final class ImageContextImpl implements ImageContext {
 
             private final FopFactoryConfig config;
@@ -488,6 +503,11 @@ public final class FopFactoryBuilder {
             return hyphPatNames;
         }
 
+        /** {@inheritDoc} */
+        public int getLayoutThreads() {
+            return layoutThreads;
+        }
+
         public FallbackResolver getFallbackResolver() {
             return enviro.getFallbackResolver();
         }
@@ -529,6 +549,8 @@ public final class FopFactoryBuilder {
         void setComplexScriptFeaturesEnabled(boolean csf);
 
         void setHyphPatNames(Map<String, String> hyphPatNames);
+
+        void setLayoutThreads(int layoutThreads);
     }
 
     private static final class CompletedFopFactoryConfigBuilder implements FopFactoryConfigBuilder {
@@ -613,6 +635,10 @@ public final class FopFactoryBuilder {
             throwIllegalStateException();
         }
 
+        public void setLayoutThreads(int layoutThreads) {
+            throwIllegalStateException();
+        }
+
     }
 
     private static final class ActiveFopFactoryConfigBuilder implements FopFactoryConfigBuilder {
@@ -697,6 +723,13 @@ public final class FopFactoryBuilder {
         public void setHyphPatNames(Map<String, String> hyphPatNames) {
             config.hyphPatNames = hyphPatNames;
         }
+
+        public void setLayoutThreads(int layoutThreads) {
+            if (layoutThreads < 0) {
+                throw new IllegalArgumentException("layoutThreads must not be negative");
+            }
+            config.layoutThreads = layoutThreads;
+        }
     }
 
 }
@@ -166,6 +166,12 @@ public interface FopFactoryConfig {
     /** @return the hyphenation pattern names */
     Map<String, String> getHyphenationPatternNames();
 
+    /**
+     * Returns the number of threads laying out independent page-sequences in parallel.
+     * @return the number of layout threads, 0 if page-sequences are laid out serially
+     */
+    int getLayoutThreads();
+
     InternalResourceResolver getHyphenationResourceResolver();
 
     /**
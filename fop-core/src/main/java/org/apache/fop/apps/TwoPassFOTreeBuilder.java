@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.io.OutputStream;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+import org.apache.fop.area.AreaTreeHandler;
+import org.apache.fop.area.LayoutOnlyAreaTreeHandler;
+import org.apache.fop.fo.DelegatingFOEventHandler;
+import org.apache.fop.fo.FOEventHandler;
+import org.apache.fop.fo.FOTreeBuilder;
+
+/**
+ * FO tree builder for two-pass layout (see {@link FOUserAgent#setTwoPassLayout(boolean)}).
+ * The SAX events of the FO document are recorded. At the end of the document, they are
+ * replayed to a layout-only FO tree builder, which finds the pages all IDs end up on, and
+ * then to this builder, which produces the output with the IDs resolved in advance. Output
+ * formats that don't use the layout engine are processed in a single pass.
+ */
+final class TwoPassFOTreeBuilder extends FOTreeBuilder {
+
+    private final FOUserAgent userAgent;
+    private final String outputFormat;
+    private final AreaTreeHandler areaTreeHandler;
+
+    private List<RecordedEvent> events = new java.util.ArrayList<RecordedEvent>();
+    private Locator locator;
+
+    /**
+     * Creates a new instance.
+     * @param outputFormat the MIME type of the output format to use
+     * @param userAgent the user agent in effect for this process
+     * @param stream the output stream to direct the results to
+     * @throws FOPException if the FO tree builder cannot be created
+     */
+    TwoPassFOTreeBuilder(String outputFormat, FOUserAgent userAgent, OutputStream stream)
+            throws FOPException {
+        super(outputFormat, userAgent, stream);
+        this.userAgent = userAgent;
+        this.outputFormat = outputFormat;
+        FOEventHandler handler = getEventHandler();
+        while (handler instanceof DelegatingFOEventHandler) {
+            handler = ((DelegatingFOEventHandler) handler).getDelegate();
+        }
+        this.areaTreeHandler = (handler instanceof AreaTreeHandler ? (AreaTreeHandler) handler
+                : null);
+    }
+
+    private boolean isRecording() {
+        return areaTreeHandler != null && events != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+        if (!isRecording()) {
+            super.setDocumentLocator(locator);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startDocument() throws SAXException {
+        if (!isRecording()) {
+            super.startDocument();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startElement(String namespaceURI, String localName, String rawName,
+            Attributes attlist) throws SAXException {
+        if (isRecording()) {
+            events.add(new StartElement(locator, namespaceURI, localName, rawName, attlist));
+        } else {
+            super.startElement(namespaceURI, localName, rawName, attlist);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endElement(String uri, String localName, String rawName) throws SAXException {
+        if (isRecording()) {
+            events.add(new EndElement(locator, uri, localName, rawName));
+        } else {
+            super.endElement(uri, localName, rawName);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void characters(char[] data, int start, int length) throws SAXException {
+        if (isRecording()) {
+            events.add(new Characters(locator, data, start, length));
+        } else {
+            super.characters(data, start, length);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocument() throws SAXException {
+        if (!isRecording()) {
+            super.endDocument();
+            return;
+        }
+        List<RecordedEvent> recorded = events;
+        events = null;
+        layOut(recorded);
+        replay(recorded, new DefaultHandler() {
+            public void setDocumentLocator(Locator locator) {
+                TwoPassFOTreeBuilder.super.setDocumentLocator(locator);
+            }
+
+            public void startDocument() throws SAXException {
+                TwoPassFOTreeBuilder.super.startDocument();
+            }
+
+            public void endDocument() throws SAXException {
+                TwoPassFOTreeBuilder.super.endDocument();
+            }
+
+            public void startElement(String uri, String localName, String qName,
+                    Attributes atts) throws SAXException {
+                TwoPassFOTreeBuilder.super.startElement(uri, localName, qName, atts);
+            }
+
+            public void endElement(String uri, String localName, String qName)
+                    throws SAXException {
+                TwoPassFOTreeBuilder.super.endElement(uri, localName, qName);
+            }
+
+            public void characters(char[] ch, int start, int length) throws SAXException {
+                TwoPassFOTreeBuilder.super.characters(ch, start, length);
+            }
+        });
+    }
+
+    /** Runs the layout pass and hands the ID locations it found to the area tree handler. */
+    private void layOut(List<RecordedEvent> recorded) throws SAXException {
+        LayoutOnlyAreaTreeHandler layoutHandler;
+        try {
+            layoutHandler = new LayoutOnlyAreaTreeHandler(userAgent, outputFormat);
+        } catch (FOPException e) {
+            throw new SAXException(e);
+        }
+        userAgent.setEventsSuppressed(true);
+        try {
+            replay(recorded, new FOTreeBuilder(userAgent, layoutHandler));
+        } finally {
+            userAgent.setEventsSuppressed(false);
+        }
+        areaTreeHandler.getIDTracker().preResolveIDs(layoutHandler.getIDTracker());
+    }
+
+    private void replay(List<RecordedEvent> recorded, ContentHandler handler)
+            throws SAXException {
+        LocatorImpl replayLocator = null;
+        if (locator != null) {
+            replayLocator = new LocatorImpl();
+            handler.setDocumentLocator(replayLocator);
+        }
+        handler.startDocument();
+        for (RecordedEvent event : recorded) {
+            if (replayLocator != null) {
+                replayLocator.setSystemId(event.systemId);
+                replayLocator.setPublicId(event.publicId);
+                replayLocator.setLineNumber(event.lineNumber);
+                replayLocator.setColumnNumber(event.columnNumber);
+            }
+            event.replay(handler);
+        }
+        handler.endDocument();
+    }
+
+    private abstract static class RecordedEvent {
+
+        private final String systemId;
+        private final String publicId;
+        private final int lineNumber;
+        private final int columnNumber;
+
+        RecordedEvent(Locator locator) {
+            if (locator != null) {
+                systemId = locator.getSystemId();
+                publicId = locator.getPublicId();
+                lineNumber = locator.getLineNumber();
+                columnNumber = locator.getColumnNumber();
+            } else {
+                systemId = null;
+                publicId = null;
+                lineNumber = -1;
+                columnNumber = -1;
+            }
+        }
+
+        abstract void replay(ContentHandler handler) throws SAXException;
+    }
+
+    private static final class StartElement extends RecordedEvent {
+
+        private final String uri;
+        private final String localName;
+        private final String qName;
+        private final Attributes attributes;
+
+        StartElement(Locator locator, String uri, String localName, String qName,
+                Attributes attributes) {
+            super(locator);
+            this.uri = uri;
+            this.localName = localName;
+            this.qName = qName;
+            this.attributes = new AttributesImpl(attributes);
+        }
+
+        void replay(ContentHandler handler) throws SAXException {
+            handler.startElement(uri, localName, qName, attributes);
+        }
+    }
+
+    private static final class EndElement extends RecordedEvent {
+
+        private final String uri;
+        private final String localName;
+        private final String qName;
+
+        EndElement(Locator locator, String uri, String localName, String qName) {
+            super(locator);
+            this.uri = uri;
+            this.localName = localName;
+            this.qName = qName;
+        }
+
+        void replay(ContentHandler handler) throws SAXException {
+            handler.endElement(uri, localName, qName);
+        }
+    }
+
+    private static final class Characters extends RecordedEvent {
+
+        private final char[] data;
+
+        Characters(Locator locator, char[] data, int start, int length) {
+            super(locator);
+            this.data = new char[length];
+            System.arraycopy(data, start, this.data, 0, length);
+        }
+
+        void replay(ContentHandler handler) throws SAXException {
+            handler.characters(data, 0, data.length);
+        }
+    }
+}
@@ -21,8 +21,16 @@ package org.apache.fop.area;
 
 // Java
 import java.io.OutputStream;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.xml.sax.SAXException;
 
@@ -89,6 +97,15 @@ public class AreaTreeHandler extends FOEventHandler {
 
     private int idGen;
 
+    // Threads laying out independent page-sequences in parallel (null if disabled),
+    // shut down at the end of the document
+    private ExecutorService layoutPool;
+
+    private int layoutThreads;
+
+    // Page-sequences submitted to the layout pool and not merged yet, in document order
+    private LinkedList<PendingLayout> pendingLayouts;
+
     /**
      * Constructor.
      *
@@ -116,6 +133,55 @@ public class AreaTreeHandler extends FOEventHandler {
         if (log.isDebugEnabled()) {
             statistics = new Statistics();
         }
+
+        if (userAgent.isParallelLayoutEnabled()) {
+            this.layoutThreads = userAgent.getLayoutThreads();
+            this.layoutPool = createLayoutPool(layoutThreads);
+            this.pendingLayouts = new LinkedList<PendingLayout>();
+        }
+    }
+
+    private static ExecutorService createLayoutPool(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "FOP page-sequence layout");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        //Don't keep idle threads around if the document is never finished
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void shutdownLayoutPool() {
+        if (layoutPool != null) {
+            for (PendingLayout pending : pendingLayouts) {
+                pending.future.cancel(false);
+            }
+            pendingLayouts.clear();
+            layoutPool.shutdown();
+            layoutPool = null;
+        }
+    }
+
+    /**
+     * Constructor for handlers that lay out a page-sequence on behalf of another handler.
+     * The new handler shares the user agent, the fonts and the layout manager maker of
+     * the given handler but uses its own area tree model and ID tracker.
+     *
+     * @param parent the handler the page-sequence belongs to
+     * @param model the area tree model to use
+     * @param idTracker the ID tracker to use
+     */
+    AreaTreeHandler(AreaTreeHandler parent, AreaTreeModel model, IDTracker idTracker) {
+        this.foUserAgent = parent.foUserAgent;
+        this.fontInfo = parent.fontInfo;
+        this.lmMaker = parent.lmMaker;
+        this.useComplexScriptFeatures = parent.useComplexScriptFeatures;
+        this.model = model;
+        this.idTracker = idTracker;
     }
 
     /**
@@ -226,7 +292,7 @@ public class AreaTreeHandler extends FOEventHandler {
         rootFObj = pageSequence.getRoot();
 
         //Before the first page-sequence...
-        if (this.prevPageSeqLM == null) {
+        if (this.prevPageSeqLM == null && !hasPendingLayouts()) {
             // extension attachments from fo:root
             wrapAndAddExtensionAttachments(rootFObj.getExtensionAttachments());
             // extension attachments from fo:declarations
@@ -236,7 +302,15 @@ public class AreaTreeHandler extends FOEventHandler {
             }
         }
 
-        finishPrevPageSequence(pageSequence.getInitialPageNumber());
+        Numeric initialPageNumber = pageSequence.getInitialPageNumber();
+        if (hasPendingLayouts()) {
+            pendingLayouts.getLast().task.requestFinish(initialPageNumber);
+            if (!PageSequenceLayoutTask.isExplicit(initialPageNumber)) {
+                // the page numbers depend on the preceding page-sequences
+                mergePendingLayouts(true);
+            }
+        }
+        finishPrevPageSequence(initialPageNumber);
         pageSequence.initPageNumber();
     }
 
@@ -261,6 +335,13 @@ public class AreaTreeHandler extends FOEventHandler {
 
         // If no main flow, nothing to layout!
         if (pageSequence.getMainFlow() != null) {
+            if (layoutPool != null) {
+                if (PageSequenceLayoutTask.isIndependent(pageSequence, getUserAgent())) {
+                    submitLayout(pageSequence);
+                    return;
+                }
+                mergePendingLayouts(true);
+            }
             PageSequenceLayoutManager pageSLM;
             pageSLM = getLayoutManagerMaker().makePageSequenceLayoutManager(
                     this, pageSequence);
@@ -283,6 +364,7 @@ public class AreaTreeHandler extends FOEventHandler {
         if (statistics != null) {
             statistics.end();
         }
+        mergePendingLayouts(true);
 
         ExternalDocumentLayoutManager edLM;
         edLM = getLayoutManagerMaker().makeExternalDocumentLayoutManager(this, document);
@@ -293,6 +375,72 @@ public class AreaTreeHandler extends FOEventHandler {
 
     }
 
+    private boolean hasPendingLayouts() {
+        return pendingLayouts != null && !pendingLayouts.isEmpty();
+    }
+
+    /**
+     * Hands an independent page-sequence to the layout pool. To keep the number of
+     * unrendered pages bounded, this waits for the oldest pending page-sequence once
+     * twice as many page-sequences as there are worker threads are pending.
+     */
+    private void submitLayout(PageSequence pageSequence) {
+        PageSequenceLayoutTask task = new PageSequenceLayoutTask(this, pageSequence);
+        pendingLayouts.add(new PendingLayout(task, layoutPool.submit(task)));
+        mergePendingLayouts(false);
+        while (pendingLayouts.size() > 2 * layoutThreads) {
+            mergeNextLayout();
+        }
+    }
+
+    /**
+     * Merges the pending page-sequences into the area tree in document order.
+     * @param wait true to wait for all of them, false to only merge those that are
+     *          already laid out
+     */
+    private void mergePendingLayouts(boolean wait) {
+        while (hasPendingLayouts() && (wait || pendingLayouts.getFirst().future.isDone())) {
+            mergeNextLayout();
+        }
+    }
+
+    private void mergeNextLayout() {
+        PendingLayout pending = pendingLayouts.removeFirst();
+        try {
+            pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shutdownLayoutPool();
+            throw new IllegalStateException("Interrupted while waiting for page-sequence layout");
+        } catch (ExecutionException e) {
+            // the document is abandoned: don't keep the pool busy with its other page-sequences
+            shutdownLayoutPool();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        PageSequenceLayoutManager unfinished = pending.task.merge();
+        if (unfinished != null) {
+            prevPageSeqLM = unfinished;
+        }
+    }
+
+    private static final class PendingLayout {
+
+        private final PageSequenceLayoutTask task;
+
+        private final Future<PageSequenceLayoutTask> future;
+
+        PendingLayout(PageSequenceLayoutTask task, Future<PageSequenceLayoutTask> future) {
+            this.task = task;
+            this.future = future;
+        }
+    }
+
     /**
      * Called by the PageSequenceLayoutManager when it is finished with a
      * page-sequence.
@@ -316,6 +464,13 @@ public class AreaTreeHandler extends FOEventHandler {
     @Override
     public void endDocument() throws SAXException {
 
+        if (layoutPool != null) {
+            try {
+                mergePendingLayouts(true);
+            } finally {
+                shutdownLayoutPool();
+            }
+        }
         finishPrevPageSequence(null);
         // process fox:destination elements
         if (rootFObj != null) {
@@ -382,7 +537,7 @@ public class AreaTreeHandler extends FOEventHandler {
      *
      * @return the generated key.
      */
-    public String generatePageViewportKey() {
+    public synchronized String generatePageViewportKey() {
         this.idGen++;
         return "P" + this.idGen;
     }
@@ -20,11 +20,8 @@
 package org.apache.fop.area;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.HashMap;
@@ -45,11 +42,15 @@ import org.apache.fop.fonts.FontInfo;
  * A simple cached render pages model.
  * If the page is prepared for later rendering then this saves
  * the page contents to a file and once the page is resolved
- * the contents are reloaded.
+ * the contents are reloaded. If {@link FOUserAgent#isCompressedPageCacheEnabled()} is set,
+ * the page contents are kept compressed in memory instead.
  */
 public class CachedRenderPagesModel extends RenderPagesModel {
 
     private Map<PageViewport, URI> pageMap = new HashMap<PageViewport, URI>();
+    private Map<PageViewport, byte[]> memoryPageMap = new HashMap<PageViewport, byte[]>();
+
+    private final PageCache pageCache;
 
     /** Base directory to save temporary file in, typically points to the user's temp dir. */
     private final URI tempBaseURI;
@@ -68,6 +69,7 @@ public class CachedRenderPagesModel extends RenderPagesModel {
             FontInfo fontInfo, OutputStream stream) throws FOPException {
         super(userAgent, outputFormat, fontInfo, stream);
         tempBaseURI = TEMP_URI_GENERATOR.generate();
+        pageCache = new PageCache(userAgent.isCompressedPageCacheEnabled());
     }
 
     /** {@inheritDoc} */
@@ -79,17 +81,21 @@ public class CachedRenderPagesModel extends RenderPagesModel {
                 if (pageViewport != newpage) {
                     try {
                         // load page from cache
-                        URI tempURI = pageMap.get(pageViewport);
-                        log.debug("Loading page from: " + tempURI);
-                        InputStream inStream = renderer.getUserAgent().getResourceResolver().getResource(tempURI);
-                        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(inStream));
-                        try {
-                            pageViewport.loadPage(in);
-                        } finally {
-                            IOUtils.closeQuietly(inStream);
-                            IOUtils.closeQuietly(in);
+                        byte[] data = memoryPageMap.remove(pageViewport);
+                        if (data != null) {
+                            pageCache.load(pageViewport, data);
+                        } else {
+                            URI tempURI = pageMap.get(pageViewport);
+                            log.debug("Loading page from: " + tempURI);
+                            InputStream inStream = renderer.getUserAgent().getResourceResolver()
+                                    .getResource(tempURI);
+                            try {
+                                pageCache.load(pageViewport, new BufferedInputStream(inStream));
+                            } finally {
+                                IOUtils.closeQuietly(inStream);
+                            }
+                            pageMap.remove(pageViewport);
                         }
-                        pageMap.remove(pageViewport);
                     } catch (Exception e) {
                         AreaEventProducer eventProducer = AreaEventProducer.Provider.get(
                                 renderer.getUserAgent().getEventBroadcaster());
@@ -115,22 +121,26 @@ public class CachedRenderPagesModel extends RenderPagesModel {
 
     /**
      * Save a page.
-     * It saves the contents of the page to a file.
+     * It saves the contents of the page to a file, or to memory if the compressed page cache
+     * is enabled.
      *
      * @param page the page to prepare
      */
     protected void savePage(PageViewport page) {
         try {
             // save page to cache
-            ObjectOutputStream tempstream;
+            byte[] data = pageCache.save(page);
+            if (renderer.getUserAgent().isCompressedPageCacheEnabled()) {
+                memoryPageMap.put(page, data);
+                return;
+            }
             String fname = "/fop-page-" + page.getPageIndex() + ".ser";
             URI tempURI = URI.create(tempBaseURI + fname);
             OutputStream outStream = renderer.getUserAgent().getResourceResolver().getOutputStream(tempURI);
-            tempstream = new ObjectOutputStream(new BufferedOutputStream(outStream));
             try {
-                page.savePage(tempstream);
+                outStream.write(data);
             } finally {
-                IOUtils.closeQuietly(tempstream);
+                IOUtils.closeQuietly(outStream);
             }
             pageMap.put(page, tempURI);
             if (log.isDebugEnabled()) {
@@ -148,6 +158,7 @@ public class CachedRenderPagesModel extends RenderPagesModel {
     @Override
     public void endDocument() throws SAXException {
         super.endDocument();
+        pageCache.dispose();
     }
 }
 
@@ -50,6 +50,14 @@ public class IDTracker {
 
     private Set<String> alreadyResolvedIDs = new java.util.HashSet<String>();
 
+    // The pages on which each ID was found by a previous layout pass of the document:
+    // the key of the first page, the page number string of the first and of the last page
+    private Map<String, String[]> preResolvedIDs = Collections.emptyMap();
+
+    // IDs that were referenced before they were laid out and resolved in advance
+    private Set<String> usedPreResolvedIDs
+            = Collections.synchronizedSet(new java.util.HashSet<String>());
+
     /**
      * Tie a PageViewport with an ID found on a child area of the PV. Note that
      * an area with a given ID may be on more than one PV, hence an ID may have
@@ -69,6 +77,14 @@ public class IDTracker {
             pvList.add(pv);
             // signal the PageViewport that it is the first PV to contain this id:
             pv.setFirstWithID(id);
+            String[] preResolved = preResolvedIDs.get(id);
+            if (preResolved != null && usedPreResolvedIDs.contains(id)
+                    && (!preResolved[1].equals(pv.getPageNumberString())
+                            || !preResolved[0].equals(pv.getKey()))) {
+                LOG.warn("ID \"" + id + "\" moved from page " + preResolved[1] + " to page "
+                        + pv.getPageNumberString() + " after the layout pass; references to it"
+                        + " resolved in advance may be wrong");
+            }
             /*
              * See if this ID is in the unresolved idref list, if so resolve
              * Resolvable objects tied to it.
@@ -239,6 +255,60 @@ public class IDTracker {
         todo.add(res);
     }
 
+    /**
+     * Takes over the pages on which the IDs were found by a previous layout pass of the same
+     * document. References to IDs that are not laid out yet are then resolved in advance
+     * with {@link #getPreResolvedPageNumber(String, boolean)} and
+     * {@link #getPreResolvedPageKey(String)}, so the pages containing them don't have to
+     * wait for the IDs.
+     *
+     * @param previousPass the ID tracker of the previous layout pass
+     */
+    public void preResolveIDs(IDTracker previousPass) {
+        preResolvedIDs = new java.util.HashMap<String, String[]>();
+        for (Map.Entry<String, List<PageViewport>> entry : previousPass.idLocations.entrySet()) {
+            List<PageViewport> pvList = entry.getValue();
+            if (!pvList.isEmpty()) {
+                PageViewport first = pvList.get(0);
+                PageViewport last = pvList.get(pvList.size() - 1);
+                preResolvedIDs.put(entry.getKey(), new String[] {first.getKey(),
+                        first.getPageNumberString(), last.getPageNumberString()});
+            }
+        }
+    }
+
+    /**
+     * Returns the page number of the first or last page the given ID was found on by a previous
+     * layout pass.
+     *
+     * @param id the ID
+     * @param last true for the last page containing the ID, false for the first one
+     * @return the page number string, or null if the ID is not known from a previous pass
+     */
+    public String getPreResolvedPageNumber(String id, boolean last) {
+        String[] preResolved = getPreResolved(id);
+        return preResolved != null ? preResolved[last ? 2 : 1] : null;
+    }
+
+    /**
+     * Returns the key of the first page the given ID was found on by a previous layout pass.
+     *
+     * @param id the ID
+     * @return the page viewport key, or null if the ID is not known from a previous pass
+     */
+    public String getPreResolvedPageKey(String id) {
+        String[] preResolved = getPreResolved(id);
+        return preResolved != null ? preResolved[0] : null;
+    }
+
+    private String[] getPreResolved(String id) {
+        String[] preResolved = preResolvedIDs.get(id);
+        if (preResolved != null) {
+            usedPreResolvedIDs.add(id);
+        }
+        return preResolved;
+    }
+
     /**
      * Replace all id locations pointing to the old page view port with a new one. This is
      * necessary when a layouted page is replaced with a new one (e.g. last page handling).
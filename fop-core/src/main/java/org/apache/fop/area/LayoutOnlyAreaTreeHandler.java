@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.OutputStream;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.render.Renderer;
+
+/**
+ * An area tree handler that only lays out the document. The fonts are set up as for the
+ * given output format, but the pages are discarded as soon as they are finished, so only
+ * the page-sequences, the page viewports and the ID locations remain available. This is
+ * used by the layout pass of two-pass layout to find the pages the IDs end up on.
+ */
+public class LayoutOnlyAreaTreeHandler extends AreaTreeHandler {
+
+    /**
+     * Creates a new instance.
+     *
+     * @param userAgent FOUserAgent object for process
+     * @param outputFormat the MIME type of the output format the fonts are set up for
+     * @throws FOPException if the fonts cannot be set up
+     */
+    public LayoutOnlyAreaTreeHandler(FOUserAgent userAgent, String outputFormat)
+            throws FOPException {
+        super(userAgent, outputFormat, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setupModel(FOUserAgent userAgent, String outputFormat,
+            OutputStream stream) throws FOPException {
+        Renderer renderer = userAgent.getRendererFactory().createRenderer(userAgent, outputFormat);
+        renderer.setupFontInfo(fontInfo);
+        if (!fontInfo.isSetupValid()) {
+            throw new FOPException("No default font defined by OutputConverter");
+        }
+        this.model = new AreaTreeModel() {
+            @Override
+            public void addPage(PageViewport page) {
+                super.addPage(page);
+                page.clear();
+            }
+        };
+    }
+}
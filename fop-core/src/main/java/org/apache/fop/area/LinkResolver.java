@@ -89,16 +89,33 @@ public class LinkResolver implements Resolvable, Serializable {
      */
     public void resolveIDRef(String id, PageViewport pv) {
         if (idRef.equals(id) && pv != null) {
-            resolved = true;
-            if (area != null) {
-                Trait.InternalLink iLink = new Trait.InternalLink(pv.getKey(), idRef);
-                area.addTrait(Trait.INTERNAL_LINK, iLink);
-                area = null; // break circular reference from basic link area to this resolver
-            }
+            resolveIDRef(pv.getKey());
             resolveDependents(id, pv);
         }
     }
 
+    /**
+     * Resolve by adding an InternalLink trait to the area, using the page the target was
+     * found on by a previous layout pass (see {@link IDTracker#preResolveIDs(IDTracker)}).
+     *
+     * @param id the target id (should be equal to the object's idRef)
+     * @param pageKey the key of the PageViewport containing the first area with the given id
+     */
+    public void resolveIDRef(String id, String pageKey) {
+        if (idRef.equals(id) && pageKey != null) {
+            resolveIDRef(pageKey);
+        }
+    }
+
+    private void resolveIDRef(String pageKey) {
+        resolved = true;
+        if (area != null) {
+            Trait.InternalLink iLink = new Trait.InternalLink(pageKey, idRef);
+            area.addTrait(Trait.INTERNAL_LINK, iLink);
+            area = null; // break circular reference from basic link area to this resolver
+        }
+    }
+
     /**
      * Add dependent resolvable. Used to resolve second-order resolvables that
      * depend on resolution of this resolver.
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Serializes page contents for {@link CachedRenderPagesModel}. Area trees are written with
+ * Java serialization, but class descriptors are not repeated in every page: each class is
+ * assigned a number the first time it is written and later pages only refer to that number.
+ * The descriptors are kept in this object, so pages can only be read back by the instance
+ * that wrote them. The scratch buffer, the deflater and the inflater are reused for all pages.
+ */
+class PageCache {
+
+    private final List<ObjectStreamClass> classes = new java.util.ArrayList<ObjectStreamClass>();
+    private final Map<String, Integer> classIndices = new java.util.HashMap<String, Integer>();
+
+    private final boolean compress;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+
+    /**
+     * Creates a new page cache.
+     * @param compress true if the serialized pages are to be deflated
+     */
+    PageCache(boolean compress) {
+        this.compress = compress;
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.inflater = compress ? new Inflater() : null;
+    }
+
+    /**
+     * Serializes the contents of a page. The page contents are released afterwards.
+     * @param page the page to save
+     * @return the serialized page contents
+     * @throws IOException if an I/O error occurs
+     */
+    byte[] save(PageViewport page) throws IOException {
+        buffer.reset();
+        OutputStream out = buffer;
+        if (compress) {
+            deflater.reset();
+            out = new DeflaterOutputStream(buffer, deflater, 4096);
+        }
+        ObjectOutputStream objectOut = new CompactObjectOutputStream(out);
+        page.savePage(objectOut);
+        objectOut.close();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Restores the contents of a page previously serialized by this instance.
+     * @param page the page to load
+     * @param data the serialized page contents
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if a class of the page contents cannot be found
+     */
+    void load(PageViewport page, byte[] data) throws IOException, ClassNotFoundException {
+        load(page, new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Restores the contents of a page previously serialized by this instance.
+     * @param page the page to load
+     * @param in the stream to read the serialized page contents from
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if a class of the page contents cannot be found
+     */
+    void load(PageViewport page, InputStream in) throws IOException, ClassNotFoundException {
+        if (compress) {
+            inflater.reset();
+            in = new InflaterInputStream(in, inflater, 4096);
+        }
+        page.loadPage(new CompactObjectInputStream(in));
+    }
+
+    /** Releases the resources held by this cache. */
+    void dispose() {
+        if (compress) {
+            deflater.end();
+            inflater.end();
+        }
+    }
+
+    private static void writeIndex(OutputStream out, int index) throws IOException {
+        while ((index & ~0x7F) != 0) {
+            out.write((index & 0x7F) | 0x80);
+            index >>>= 7;
+        }
+        out.write(index);
+    }
+
+    private static int readIndex(InputStream in) throws IOException {
+        int index = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Unexpected end of cached page");
+            }
+            index |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return index;
+            }
+        }
+        throw new IOException("Malformed class reference in cached page");
+    }
+
+    private final class CompactObjectOutputStream extends ObjectOutputStream {
+
+        CompactObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            Integer index = classIndices.get(desc.getName());
+            if (index == null) {
+                index = classes.size();
+                classes.add(desc);
+                classIndices.put(desc.getName(), index);
+            }
+            writeIndex(this, index);
+        }
+    }
+
+    private final class CompactObjectInputStream extends ObjectInputStream {
+
+        CompactObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException {
+            int index = readIndex(this);
+            if (index >= classes.size()) {
+                throw new IOException("Unknown class reference in cached page: " + index);
+            }
+            return classes.get(index);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            Class<?> c = desc.forClass();
+            return c != null ? c : super.resolveClass(desc);
+        }
+    }
+}
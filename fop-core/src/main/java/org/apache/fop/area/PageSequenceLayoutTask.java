@@ -0,0 +1,475 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.datatypes.Numeric;
+import org.apache.fop.fo.Constants;
+import org.apache.fop.fo.FONode;
+import org.apache.fop.fo.FObj;
+import org.apache.fop.fo.flow.AbstractPageNumberCitation;
+import org.apache.fop.fo.flow.BasicLink;
+import org.apache.fop.fo.flow.Footnote;
+import org.apache.fop.fo.flow.ListItem;
+import org.apache.fop.fo.flow.Marker;
+import org.apache.fop.fo.flow.RetrieveMarker;
+import org.apache.fop.fo.flow.table.Table;
+import org.apache.fop.fo.pagination.AbstractPageSequence;
+import org.apache.fop.fonts.DeferredSubsetMapping;
+import org.apache.fop.layoutmgr.PageSequenceLayoutManager;
+
+/**
+ * Lays out a single, self-contained page-sequence on a worker thread.
+ * <p>
+ * While the task runs, everything the layout managers hand to the area tree model and
+ * the ID tracker is recorded in a journal instead of being applied to the document-wide
+ * instances. The journal is replayed in document order by the thread driving the
+ * {@link AreaTreeHandler} (see {@link #merge()}), after which the task forwards directly
+ * to the document-wide instances so force-page-count handling and the end of the
+ * page-sequence are processed as in serial layout.
+ * <p>
+ * Page keys can't be taken from the parent handler while the task runs, as tasks run in
+ * no particular order. The task hands out placeholder keys instead and replaces them by
+ * keys from the parent handler when it is merged, so every page gets the key it would
+ * get in serial layout. This keeps the keys pre-resolved by a first layout pass valid.
+ * Links to targets in the same page-sequence are therefore not resolved while the task
+ * runs, but by the document-wide ID tracker when the journal is replayed.
+ * <p>
+ * The glyphs the task adds to the subsets of embedded fonts are journaled as well (see
+ * {@link DeferredSubsetMapping}), so the subsets don't depend on the order the tasks run in.
+ */
+class PageSequenceLayoutTask implements Callable<PageSequenceLayoutTask> {
+
+    private final AreaTreeHandler parent;
+
+    private static final String PLACEHOLDER_KEY_PREFIX = "pending-";
+
+    private final List<Runnable> journal = new java.util.ArrayList<Runnable>();
+
+    /** The pages that have been handed to the area tree model or the ID tracker. */
+    private final Set<PageViewport> keyedPages
+            = Collections.newSetFromMap(new IdentityHashMap<PageViewport, Boolean>());
+
+    private int placeholderKeyCount;
+
+    private final PageSequenceLayoutManager pageSLM;
+
+    private boolean merged;
+
+    private boolean finishRequested;
+
+    private Numeric nextInitialPageNumber;
+
+    /**
+     * Creates a new layout task.
+     * @param parent the area tree handler the page-sequence belongs to
+     * @param pageSequence the page-sequence to lay out
+     */
+    PageSequenceLayoutTask(AreaTreeHandler parent,
+            org.apache.fop.fo.pagination.PageSequence pageSequence) {
+        this.parent = parent;
+        AreaTreeHandler handler = new DeferringAreaTreeHandler(parent,
+                new DeferringAreaTreeModel(), new DeferringIDTracker());
+        this.pageSLM = parent.getLayoutManagerMaker().makePageSequenceLayoutManager(
+                handler, pageSequence);
+    }
+
+    /**
+     * Indicates whether a page-sequence can be laid out independently of the page-sequences
+     * around it. This is the case if its page numbers don't depend on the preceding
+     * page-sequence, if it doesn't share a page-sequence-master and if it contains nothing
+     * that needs to resolve an ID or look at pages of other page-sequences. Links to IDs
+     * defined in the page-sequence itself are allowed.
+     * @param pageSequence the page-sequence
+     * @param userAgent the user agent
+     * @return true if the page-sequence may be laid out in parallel
+     */
+    static boolean isIndependent(org.apache.fop.fo.pagination.PageSequence pageSequence,
+            FOUserAgent userAgent) {
+        if (userAgent.isAccessibilityEnabled()
+                || !isExplicit(pageSequence.getInitialPageNumber())
+                || pageSequence.getRoot().getLayoutMasterSet().getPageSequenceMaster(
+                        pageSequence.getMasterReference()) != null) {
+            return false;
+        }
+        Set<String> ids = new java.util.HashSet<String>();
+        Set<String> linkTargets = new java.util.HashSet<String>();
+        if (!isSelfContained(pageSequence.getTitleFO(), ids, linkTargets)) {
+            return false;
+        }
+        for (FONode flow : pageSequence.getFlowMap().values()) {
+            if (!isSelfContained(flow, ids, linkTargets)) {
+                return false;
+            }
+        }
+        return ids.containsAll(linkTargets);
+    }
+
+    /**
+     * Indicates whether the given initial-page-number is an explicit page number.
+     * @param initialPageNumber the initial-page-number trait
+     * @return true if it is not auto, auto-odd or auto-even
+     */
+    static boolean isExplicit(Numeric initialPageNumber) {
+        return initialPageNumber != null && initialPageNumber.getEnum() == 0;
+    }
+
+    private static boolean isSelfContained(FONode node, Set<String> ids,
+            Set<String> linkTargets) {
+        if (node == null) {
+            return true;
+        }
+        if (node instanceof AbstractPageNumberCitation
+                || (node instanceof RetrieveMarker
+                        && ((RetrieveMarker) node).getRetrieveBoundary() == Constants.EN_DOCUMENT)) {
+            return false;
+        }
+        if (!(node instanceof FObj)) {
+            return true;
+        }
+        FObj fobj = (FObj) node;
+        if (fobj.getId() != null) {
+            ids.add(fobj.getId());
+        }
+        if (fobj instanceof BasicLink && ((BasicLink) fobj).hasInternalDestination()) {
+            linkTargets.add(((BasicLink) fobj).getInternalDestination());
+        }
+        if (fobj.hasMarkers()) {
+            for (Marker marker : fobj.getMarkers().values()) {
+                if (!isSelfContained(marker, ids, linkTargets)) {
+                    return false;
+                }
+            }
+        }
+        // children not kept in the regular child list
+        if (fobj instanceof Table) {
+            Table table = (Table) fobj;
+            if (!isSelfContained(table.getTableHeader(), ids, linkTargets)
+                    || !isSelfContained(table.getTableFooter(), ids, linkTargets)) {
+                return false;
+            }
+        } else if (fobj instanceof Footnote) {
+            Footnote footnote = (Footnote) fobj;
+            return isSelfContained(footnote.getFootnoteCitation(), ids, linkTargets)
+                    && isSelfContained(footnote.getFootnoteBody(), ids, linkTargets);
+        } else if (fobj instanceof ListItem) {
+            ListItem item = (ListItem) fobj;
+            return isSelfContained(item.getLabel(), ids, linkTargets)
+                    && isSelfContained(item.getBody(), ids, linkTargets);
+        }
+        FONode.FONodeIterator iter = fobj.getChildNodes();
+        if (iter != null) {
+            while (iter.hasNext()) {
+                if (!isSelfContained(iter.next(), ids, linkTargets)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public PageSequenceLayoutTask call() {
+        DeferredSubsetMapping fontSubsets = DeferredSubsetMapping.start(journal);
+        try {
+            pageSLM.activateLayout();
+        } finally {
+            fontSubsets.stop();
+        }
+        return this;
+    }
+
+    /**
+     * Records that the next page-sequence has started, so this page-sequence can be
+     * finished as soon as it has been merged. Only the first request is recorded, as in
+     * serial layout.
+     * @param initialPageNumber the initial-page-number of the next page-sequence
+     *          (null at the end of the document)
+     */
+    void requestFinish(Numeric initialPageNumber) {
+        if (!finishRequested) {
+            finishRequested = true;
+            nextInitialPageNumber = initialPageNumber;
+        }
+    }
+
+    /**
+     * Replays the journal against the document-wide area tree model and ID tracker. Must be
+     * called on the thread driving the {@link AreaTreeHandler} after the task has completed.
+     * @return the page-sequence layout manager if the page-sequence still has to be finished
+     *          by the caller, null if it has been finished already
+     */
+    PageSequenceLayoutManager merge() {
+        assignPageKeys();
+        for (Runnable step : journal) {
+            step.run();
+        }
+        journal.clear();
+        merged = true;
+        if (finishRequested) {
+            pageSLM.doForcePageCount(nextInitialPageNumber);
+            pageSLM.finishPageSequence();
+            return null;
+        }
+        return pageSLM;
+    }
+
+    /**
+     * Replaces the placeholder keys of the task's pages by keys from the parent handler. The
+     * keys are requested in the order the placeholders were handed out.
+     */
+    private void assignPageKeys() {
+        String[] keys = new String[placeholderKeyCount];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = parent.generatePageViewportKey();
+        }
+        for (PageViewport pv : keyedPages) {
+            String key = pv.getKey();
+            if (key.startsWith(PLACEHOLDER_KEY_PREFIX)) {
+                pv.setKey(keys[Integer.parseInt(key.substring(PLACEHOLDER_KEY_PREFIX.length()))]);
+            }
+        }
+        keyedPages.clear();
+    }
+
+    private void trackPage(PageViewport pv) {
+        if (pv != null) {
+            keyedPages.add(pv);
+        }
+    }
+
+    /**
+     * Area tree handler used by the layout managers of the task. It shares the user agent,
+     * the fonts and the layout manager maker with the parent handler.
+     */
+    private final class DeferringAreaTreeHandler extends AreaTreeHandler {
+
+        DeferringAreaTreeHandler(AreaTreeHandler parentHandler, AreaTreeModel model,
+                IDTracker idTracker) {
+            super(parentHandler, model, idTracker);
+        }
+
+        @Override
+        public String generatePageViewportKey() {
+            if (merged) {
+                return parent.generatePageViewportKey();
+            }
+            return PLACEHOLDER_KEY_PREFIX + placeholderKeyCount++;
+        }
+
+        @Override
+        public void notifyPageSequenceFinished(AbstractPageSequence pageSequence,
+                int pageCount) {
+            parent.notifyPageSequenceFinished(pageSequence, pageCount);
+        }
+    }
+
+    /** Area tree model that only knows about the page-sequence being laid out. */
+    private final class DeferringAreaTreeModel extends AreaTreeModel {
+
+        private final List<PageViewport> pages = new java.util.ArrayList<PageViewport>();
+
+        private AreaTreeModel target() {
+            return parent.getAreaTreeModel();
+        }
+
+        @Override
+        public void startPageSequence(final PageSequence pageSequence) {
+            if (merged) {
+                target().startPageSequence(pageSequence);
+                return;
+            }
+            currentPageSequence = pageSequence;
+            journal.add(new Runnable() {
+                public void run() {
+                    target().startPageSequence(pageSequence);
+                }
+            });
+        }
+
+        @Override
+        public void addPage(final PageViewport page) {
+            if (merged) {
+                target().addPage(page);
+                return;
+            }
+            pages.add(page);
+            trackPage(page);
+            journal.add(new Runnable() {
+                public void run() {
+                    target().addPage(page);
+                }
+            });
+        }
+
+        @Override
+        public PageSequence getCurrentPageSequence() {
+            return merged ? target().getCurrentPageSequence() : currentPageSequence;
+        }
+
+        @Override
+        public int getPageSequenceCount() {
+            if (merged) {
+                return target().getPageSequenceCount();
+            }
+            return currentPageSequence != null ? 1 : 0;
+        }
+
+        @Override
+        public int getPageCount(int seq) {
+            return merged ? target().getPageCount(seq) : pages.size();
+        }
+
+        @Override
+        public PageViewport getPage(int seq, int count) {
+            return merged ? target().getPage(seq, count) : pages.get(count);
+        }
+    }
+
+    /**
+     * ID tracker that answers queries from the IDs of the page-sequence being laid out and
+     * journals all changes for the document-wide ID tracker. References aren't resolved
+     * before the task is merged: the pages only have placeholder keys until then, which
+     * would end up in the internal links. The journaled references are resolved by the
+     * document-wide ID tracker once the pages have their final keys.
+     */
+    private final class DeferringIDTracker extends IDTracker {
+
+        private IDTracker target() {
+            return parent.getIDTracker();
+        }
+
+        @Override
+        public void associateIDWithPageViewport(final String id, final PageViewport pv) {
+            if (merged) {
+                target().associateIDWithPageViewport(id, pv);
+                return;
+            }
+            super.associateIDWithPageViewport(id, pv);
+            trackPage(pv);
+            journal.add(new Runnable() {
+                public void run() {
+                    target().associateIDWithPageViewport(id, pv);
+                }
+            });
+        }
+
+        @Override
+        public void signalPendingID(final String id) {
+            if (merged) {
+                target().signalPendingID(id);
+                return;
+            }
+            super.signalPendingID(id);
+            journal.add(new Runnable() {
+                public void run() {
+                    target().signalPendingID(id);
+                }
+            });
+        }
+
+        @Override
+        public void signalIDProcessed(final String id) {
+            if (merged) {
+                target().signalIDProcessed(id);
+                return;
+            }
+            super.signalIDProcessed(id);
+            journal.add(new Runnable() {
+                public void run() {
+                    target().signalIDProcessed(id);
+                }
+            });
+        }
+
+        @Override
+        public void tryIDResolution(final PageViewport pv) {
+            if (merged) {
+                target().tryIDResolution(pv);
+                return;
+            }
+            super.tryIDResolution(pv);
+            trackPage(pv);
+            journal.add(new Runnable() {
+                public void run() {
+                    target().tryIDResolution(pv);
+                }
+            });
+        }
+
+        @Override
+        public void addUnresolvedIDRef(final String idref, final Resolvable res) {
+            if (merged) {
+                target().addUnresolvedIDRef(idref, res);
+                return;
+            }
+            journal.add(new Runnable() {
+                public void run() {
+                    target().addUnresolvedIDRef(idref, res);
+                }
+            });
+        }
+
+        @Override
+        public void replacePageViewPort(final PageViewport oldPageViewPort,
+                final PageViewport newPageViewPort) {
+            if (merged) {
+                target().replacePageViewPort(oldPageViewPort, newPageViewPort);
+                return;
+            }
+            super.replacePageViewPort(oldPageViewPort, newPageViewPort);
+            trackPage(oldPageViewPort);
+            trackPage(newPageViewPort);
+            journal.add(new Runnable() {
+                public void run() {
+                    target().replacePageViewPort(oldPageViewPort, newPageViewPort);
+                }
+            });
+        }
+
+        @Override
+        public boolean alreadyResolvedID(String id) {
+            return merged ? target().alreadyResolvedID(id) : super.alreadyResolvedID(id);
+        }
+
+        @Override
+        public List<PageViewport> getPageViewportsContainingID(String id) {
+            // hides the pages of the task from link resolution until they have their keys
+            return merged ? target().getPageViewportsContainingID(id)
+                    : Collections.<PageViewport>emptyList();
+        }
+
+        @Override
+        public String getPreResolvedPageNumber(String id, boolean last) {
+            return target().getPreResolvedPageNumber(id, last);
+        }
+
+        @Override
+        public String getPreResolvedPageKey(String id) {
+            return target().getPreResolvedPageKey(id);
+        }
+    }
+}
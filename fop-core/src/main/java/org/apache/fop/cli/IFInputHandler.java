@@ -19,23 +19,31 @@
 
 package org.apache.fop.cli;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Vector;
 
 import javax.xml.transform.Result;
+import javax.xml.transform.Source;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamResult;
 
+import org.apache.commons.io.IOUtils;
+
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.render.intermediate.IFBinaryReader;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFException;
 import org.apache.fop.render.intermediate.IFParser;
 import org.apache.fop.render.intermediate.IFUtil;
 
 /**
- * InputHandler for the intermediate format XML as input.
+ * InputHandler for the intermediate format (XML or its binary encoding) as input.
  */
 public class IFInputHandler extends InputHandler {
 
@@ -58,6 +66,29 @@ public class IFInputHandler extends InputHandler {
         super(iffile);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected Source createMainSource() {
+        if (this.sourcefile != null) {
+            //The intermediate format may also be in its binary encoding
+            InputStream in = null;
+            boolean binary = false;
+            try {
+                in = new BufferedInputStream(new FileInputStream(this.sourcefile));
+                binary = IFBinaryReader.isBinaryIF(in);
+            } catch (IOException ioe) {
+                //handled by the XML source
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+            if (binary) {
+                //the reader opens the file again and closes it once it has been parsed
+                return IFBinaryReader.createSource(this.sourcefile.toURI().toASCIIString());
+            }
+        }
+        return super.createMainSource();
+    }
+
     /** {@inheritDoc} */
     public void renderTo(FOUserAgent userAgent, String outputFormat, OutputStream out)
                 throws FOPException {
@@ -74,6 +74,15 @@ public abstract class DelegatingFOEventHandler extends FOEventHandler {
         this.delegate = delegate;
     }
 
+    /**
+     * Returns the object to which all FO events are forwarded.
+     *
+     * @return the delegate
+     */
+    public FOEventHandler getDelegate() {
+        return delegate;
+    }
+
     @Override
     public FOUserAgent getUserAgent() {
         return delegate.getUserAgent();
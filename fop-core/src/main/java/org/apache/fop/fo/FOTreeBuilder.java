@@ -110,6 +110,24 @@ public class FOTreeBuilder extends DefaultHandler {
             foEventHandler = new FO2StructureTreeConverter(
                     foUserAgent.getStructureTreeEventHandler(), foEventHandler);
         }
+        setupBuilderContext();
+    }
+
+    /**
+     * <code>FOTreeBuilder</code> constructor for a given {@link FOEventHandler}. Unlike
+     * the other constructor, this does not add structure tree handling for accessibility.
+     *
+     * @param foUserAgent   the {@link FOUserAgent} in effect for this process
+     * @param foEventHandler the handler that receives the FO events
+     */
+    public FOTreeBuilder(FOUserAgent foUserAgent, FOEventHandler foEventHandler) {
+        this.userAgent = foUserAgent;
+        this.elementMappingRegistry = userAgent.getElementMappingRegistry();
+        this.foEventHandler = foEventHandler;
+        setupBuilderContext();
+    }
+
+    private void setupBuilderContext() {
         builderContext = new FOTreeBuilderContext();
         builderContext.setPropertyListMaker(new PropertyListMaker() {
             public PropertyList make(FObj fobj, PropertyList parentPropertyList) {
@@ -668,7 +668,7 @@ public abstract class PropertyList {
      * @throws PropertyException if there's a problem while processing the properties
      */
     public CommonMarginBlock getMarginBlockProps() throws PropertyException {
-        return new CommonMarginBlock(this);
+        return CommonMarginBlock.getInstance(this);
     }
 
     /**
@@ -677,7 +677,7 @@ public abstract class PropertyList {
      * @throws PropertyException if there's a problem while processing the properties
      */
     public CommonMarginInline getMarginInlineProps() throws PropertyException {
-        return new CommonMarginInline(this);
+        return CommonMarginInline.getInstance(this);
     }
 
     /**
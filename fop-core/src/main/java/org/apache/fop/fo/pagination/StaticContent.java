@@ -24,6 +24,7 @@ import org.xml.sax.Locator;
 
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.fo.FONode;
+import org.apache.fop.fo.FObj;
 import org.apache.fop.fo.ValidationException;
 
 /**
@@ -32,6 +33,8 @@ import org.apache.fop.fo.ValidationException;
  */
 public class StaticContent extends Flow {
 
+    private boolean pageIndependent;
+
     /**
      * @param parent FONode that is the parent of this object
      */
@@ -56,9 +59,57 @@ public class StaticContent extends Flow {
         if (firstChild == null && getUserAgent().validateStrictly()) {
             missingChildElementError("(%block;)+");
         }
+        pageIndependent = isPageIndependent(this);
         getFOEventHandler().endStatic(this);
     }
 
+    /**
+     * Indicates whether this static content looks the same on every page it is placed on:
+     * it doesn't contain page numbers, page number citations, retrieved markers, links,
+     * change bars, IDs or extension elements. The areas of page-independent static
+     * content may be reused for all the pages that share the same region.
+     * @return true if the content doesn't depend on the page
+     */
+    public boolean isPageIndependent() {
+        return pageIndependent;
+    }
+
+    private static boolean isPageIndependent(FONode node) {
+        FONodeIterator iter = node.getChildNodes();
+        if (iter == null) {
+            return true;
+        }
+        while (iter.hasNext()) {
+            FONode child = iter.next();
+            if (!(child instanceof FObj)) {
+                continue;
+            }
+            FObj fobj = (FObj) child;
+            if (!FO_URI.equals(fobj.getNamespaceURI()) || fobj.hasId()) {
+                return false;
+            }
+            switch (fobj.getNameId()) {
+            case FO_PAGE_NUMBER:
+            case FO_PAGE_NUMBER_CITATION:
+            case FO_PAGE_NUMBER_CITATION_LAST:
+            case FO_RETRIEVE_MARKER:
+            case FO_RETRIEVE_TABLE_MARKER:
+            case FO_BASIC_LINK:
+            case FO_CHANGE_BAR_BEGIN:
+            case FO_CHANGE_BAR_END:
+                return false;
+            case FO_INSTREAM_FOREIGN_OBJECT:
+                //the foreign content is rendered as a whole
+                break;
+            default:
+                if (!isPageIndependent(fobj)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      * <br>XSL Content Model: (%block;)+
@@ -22,6 +22,7 @@ package org.apache.fop.fo.properties;
 import org.apache.fop.fo.Constants;
 import org.apache.fop.fo.PropertyList;
 import org.apache.fop.fo.expr.PropertyException;
+import org.apache.fop.util.CompareUtil;
 
 /**
  * The "role" and "source-document" properties, see Section 7.5 of the XSL-FO 1.1
@@ -31,6 +32,10 @@ public final class CommonAccessibility {
 
     private static final CommonAccessibility DEFAULT_INSTANCE = new CommonAccessibility(null, null);
 
+    /** cache holding canonical instances for the FOs with a role or source document */
+    private static final PropertyCache<CommonAccessibility> CACHE
+            = new PropertyCache<CommonAccessibility>();
+
     private final String sourceDocument;
 
     private final String role;
@@ -60,7 +65,7 @@ public final class CommonAccessibility {
         if (sourceDocument == null && role == null) {
             return DEFAULT_INSTANCE;
         } else {
-            return new CommonAccessibility(sourceDocument, role);
+            return CACHE.fetch(new CommonAccessibility(sourceDocument, role));
         }
     }
 
@@ -82,4 +87,22 @@ public final class CommonAccessibility {
         return role;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CommonAccessibility)) {
+            return false;
+        }
+        CommonAccessibility other = (CommonAccessibility) obj;
+        return CompareUtil.equal(sourceDocument, other.sourceDocument)
+                && CompareUtil.equal(role, other.role);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * CompareUtil.getHashCode(sourceDocument) + CompareUtil.getHashCode(role);
+    }
+
 }
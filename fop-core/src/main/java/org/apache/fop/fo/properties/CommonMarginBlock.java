@@ -23,6 +23,7 @@ import org.apache.fop.datatypes.Length;
 import org.apache.fop.fo.Constants;
 import org.apache.fop.fo.PropertyList;
 import org.apache.fop.fo.expr.PropertyException;
+import org.apache.fop.util.CompareUtil;
 
 /**
  * Store all common margin properties for blocks.
@@ -30,6 +31,14 @@ import org.apache.fop.fo.expr.PropertyException;
  * Public "structure" allows direct member access.
  */
 public class CommonMarginBlock {
+
+    /** cache holding canonical CommonMarginBlock instances (only those with absolute lengths) */
+    private static final PropertyCache<CommonMarginBlock> CACHE
+            = new PropertyCache<CommonMarginBlock>();
+
+    /** hashcode of this instance */
+    private int hash = -1;
+
     /**
      * The "margin-top" property.
      */
@@ -88,6 +97,50 @@ public class CommonMarginBlock {
         endIndent = pList.get(Constants.PR_END_INDENT).getLength();
     }
 
+    /**
+     * Returns a CommonMarginBlock instance for the given PropertyList.
+     * If all the lengths are absolute, a canonical instance shared by all the
+     * FOs with the same margins, spaces and indents is returned.
+     * If not, a distinct instance is returned.
+     *
+     * @param pList the PropertyList to get the properties from
+     * @return a CommonMarginBlock instance corresponding to the properties
+     * @throws PropertyException if there was a problem getting the properties
+     */
+    public static CommonMarginBlock getInstance(PropertyList pList) throws PropertyException {
+        CommonMarginBlock newInstance = new CommonMarginBlock(pList);
+        if (isAbsolute(newInstance.marginTop)
+                && isAbsolute(newInstance.marginBottom)
+                && isAbsolute(newInstance.marginLeft)
+                && isAbsolute(newInstance.marginRight)
+                && isAbsolute(newInstance.startIndent)
+                && isAbsolute(newInstance.endIndent)
+                && isAbsolute(newInstance.spaceBefore)
+                && isAbsolute(newInstance.spaceAfter)) {
+            // resolve the ranges now, as the layout would do with any context, so
+            // that equal instances still compare equal once one of them was used
+            resolveOptimum(newInstance.spaceBefore);
+            resolveOptimum(newInstance.spaceAfter);
+            return CACHE.fetch(newInstance);
+        } else {
+            return newInstance;
+        }
+    }
+
+    private static boolean isAbsolute(Length length) {
+        return length == null || length.isAbsolute();
+    }
+
+    private static boolean isAbsolute(SpaceProperty space) {
+        return space == null || space.isAbsolute();
+    }
+
+    private static void resolveOptimum(SpaceProperty space) {
+        if (space != null) {
+            space.getOptimum(null);
+        }
+    }
+
     /** {@inheritDoc} */
     public String toString() {
         return "CommonMarginBlock:\n"
@@ -100,4 +153,41 @@ public class CommonMarginBlock {
             + startIndent + ", " + endIndent + ")\n";
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CommonMarginBlock)) {
+            return false;
+        }
+        CommonMarginBlock other = (CommonMarginBlock) obj;
+        return CompareUtil.equal(marginTop, other.marginTop)
+                && CompareUtil.equal(marginBottom, other.marginBottom)
+                && CompareUtil.equal(marginLeft, other.marginLeft)
+                && CompareUtil.equal(marginRight, other.marginRight)
+                && CompareUtil.equal(spaceBefore, other.spaceBefore)
+                && CompareUtil.equal(spaceAfter, other.spaceAfter)
+                && CompareUtil.equal(startIndent, other.startIndent)
+                && CompareUtil.equal(endIndent, other.endIndent);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == -1) {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + CompareUtil.getHashCode(marginTop);
+            result = prime * result + CompareUtil.getHashCode(marginBottom);
+            result = prime * result + CompareUtil.getHashCode(marginLeft);
+            result = prime * result + CompareUtil.getHashCode(marginRight);
+            result = prime * result + CompareUtil.getHashCode(spaceBefore);
+            result = prime * result + CompareUtil.getHashCode(spaceAfter);
+            result = prime * result + CompareUtil.getHashCode(startIndent);
+            result = prime * result + CompareUtil.getHashCode(endIndent);
+            hash = result;
+        }
+        return hash;
+    }
+
 }
@@ -23,6 +23,7 @@ import org.apache.fop.datatypes.Length;
 import org.apache.fop.fo.Constants;
 import org.apache.fop.fo.PropertyList;
 import org.apache.fop.fo.expr.PropertyException;
+import org.apache.fop.util.CompareUtil;
 
 /**
  * Store all common margin properties for inlines.
@@ -30,6 +31,14 @@ import org.apache.fop.fo.expr.PropertyException;
  * Public "structure" allows direct member access.
  */
 public class CommonMarginInline {
+
+    /** cache holding canonical CommonMarginInline instances (only those with absolute lengths) */
+    private static final PropertyCache<CommonMarginInline> CACHE
+            = new PropertyCache<CommonMarginInline>();
+
+    /** hashcode of this instance */
+    private int hash = -1;
+
     // @SuppressFBWarnings("URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
     /**
      * The "margin-top" property.
@@ -75,4 +84,78 @@ public class CommonMarginInline {
         spaceStart = pList.get(Constants.PR_SPACE_START).getSpace();
         spaceEnd = pList.get(Constants.PR_SPACE_END).getSpace();
     }
+
+    /**
+     * Returns a CommonMarginInline instance for the given PropertyList.
+     * If all the lengths are absolute, a canonical instance shared by all the
+     * FOs with the same margins and spaces is returned.
+     * If not, a distinct instance is returned.
+     *
+     * @param pList the PropertyList to get the properties from
+     * @return a CommonMarginInline instance corresponding to the properties
+     * @throws PropertyException if there was a problem getting the properties
+     */
+    public static CommonMarginInline getInstance(PropertyList pList) throws PropertyException {
+        CommonMarginInline newInstance = new CommonMarginInline(pList);
+        if (isAbsolute(newInstance.marginTop)
+                && isAbsolute(newInstance.marginBottom)
+                && isAbsolute(newInstance.marginLeft)
+                && isAbsolute(newInstance.marginRight)
+                && isAbsolute(newInstance.spaceStart)
+                && isAbsolute(newInstance.spaceEnd)) {
+            // see CommonMarginBlock.getInstance()
+            resolveOptimum(newInstance.spaceStart);
+            resolveOptimum(newInstance.spaceEnd);
+            return CACHE.fetch(newInstance);
+        } else {
+            return newInstance;
+        }
+    }
+
+    private static boolean isAbsolute(Length length) {
+        return length == null || length.isAbsolute();
+    }
+
+    private static boolean isAbsolute(SpaceProperty space) {
+        return space == null || space.isAbsolute();
+    }
+
+    private static void resolveOptimum(SpaceProperty space) {
+        if (space != null) {
+            space.getOptimum(null);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CommonMarginInline)) {
+            return false;
+        }
+        CommonMarginInline other = (CommonMarginInline) obj;
+        return CompareUtil.equal(marginTop, other.marginTop)
+                && CompareUtil.equal(marginBottom, other.marginBottom)
+                && CompareUtil.equal(marginLeft, other.marginLeft)
+                && CompareUtil.equal(marginRight, other.marginRight)
+                && CompareUtil.equal(spaceStart, other.spaceStart)
+                && CompareUtil.equal(spaceEnd, other.spaceEnd);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == -1) {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + CompareUtil.getHashCode(marginTop);
+            result = prime * result + CompareUtil.getHashCode(marginBottom);
+            result = prime * result + CompareUtil.getHashCode(marginLeft);
+            result = prime * result + CompareUtil.getHashCode(marginRight);
+            result = prime * result + CompareUtil.getHashCode(spaceStart);
+            result = prime * result + CompareUtil.getHashCode(spaceEnd);
+            hash = result;
+        }
+        return hash;
+    }
 }
@@ -293,6 +293,20 @@ public class LengthRangeProperty extends Property implements CompoundDatatype {
         return this.optimum;
     }
 
+    /**
+     * Indicates whether the components of this range are independent of any percentage
+     * evaluation context.
+     * @return true if none of the components is a relative length
+     */
+    public boolean isAbsolute() {
+        return isAbsolute(minimum) && isAbsolute(optimum) && isAbsolute(maximum);
+    }
+
+    private static boolean isAbsolute(Property component) {
+        Length length = (component == null ? null : component.getLength());
+        return length == null || length.isAbsolute();
+    }
+
     /** {@inheritDoc} */
     public String toString() {
         return "LengthRange["
@@ -19,13 +19,12 @@
 
 package org.apache.fop.fo.properties;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
@@ -35,38 +34,34 @@ import org.apache.commons.logging.LogFactory;
  * Thread-safe cache that minimizes the memory requirements by fetching an instance from the cache
  * that is equal to the given one. Internally the instances are stored in WeakReferences in order to
  * be reclaimed when they are no longer referenced.
+ * <p>
+ * The cache is split into segments selected by hash code. Lookups of cached instances do not
+ * lock; adding an instance locks its segment only. Instances with the same hash code are chained,
+ * so they can all be cached at the same time. Entries whose referents were reclaimed are removed
+ * as the garbage collector reports them, when an instance is next added to their segment.
  * @param <T> The type of values that are cached
  */
 public final class PropertyCache<T> {
 
     private static final Log LOG = LogFactory.getLog(PropertyCache.class);
 
-    /**
-     * Determines if the cache is used based on the value of the system property
-     * org.apache.fop.fo.properties.use-cache
-     */
-    private final boolean useCache;
+    /** number of segments, a power of two */
+    private static final int SEGMENT_COUNT = 16;
 
-    /**
-     * The underlying map that stores WeakReferences to the cached entries. The map keys are the
-     * hashCode of the cached entries. The map values are a WeakRefence to the cached entries. When
-     * two cached entries have the same hash code, the last one is kept but this should be an
-     * exception case (otherwise the hashCode() method of T needs to be fixed).
-     */
-    private final ConcurrentMap<Integer, WeakReference<T>> map;
+    /** shift selecting a segment from the most significant bits of a spread hash code */
+    private static final int SEGMENT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
 
-    /**
-     * Counts the number of entries put in the map in order to periodically check and remove the
-     * entries whose referents have been reclaimed.
-     */
-    private final AtomicInteger putCounter;
+    /** initial number of buckets per segment, a power of two */
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
 
     /**
-     * Lock to prevent concurrent cleanup of the map.
+     * Determines if the cache is used based on the value of the system property
+     * org.apache.fop.fo.properties.use-cache
      */
-    private final Lock cleanupLock;
+    private final boolean useCache;
 
-    private final AtomicInteger hashCodeCollisionCounter;
+    /** the segments, or null if the cache isn't used */
+    private final Segment<T>[] segments;
 
     /**
      * Creates a new cache. The "org.apache.fop.fo.properties.use-cache" system
@@ -74,31 +69,44 @@ public final class PropertyCache<T> {
      * cached or not. If not, then the {@link #fetch(Object)} method will simply
      * return its argument. To enable the cache, set this property to "true"
      * (case insensitive).
+     * <p>
+     * Cache hits are only counted if the "org.apache.fop.fo.properties.cache-statistics"
+     * system property is set to "true" or debug logging is enabled for this class, as every
+     * lookup would otherwise update a counter shared by all threads.
      */
     public PropertyCache() {
-        boolean useCache;
-        try {
-            useCache = Boolean.valueOf(
-                    System.getProperty("org.apache.fop.fo.properties.use-cache", "true"));
-        } catch (SecurityException e) {
-            useCache = true;
-            LOG.info("Unable to access org.apache.fop.fo.properties.use-cache"
-                   + " due to security restriction; defaulting to 'true'.");
-        }
+        this(LOG.isDebugEnabled() || getBooleanProperty(
+                "org.apache.fop.fo.properties.cache-statistics", false));
+    }
+
+    /**
+     * Creates a new cache.
+     * @param countHits true if cache hits are counted
+     */
+    @SuppressWarnings("unchecked")
+    PropertyCache(boolean countHits) {
+        boolean useCache = getBooleanProperty("org.apache.fop.fo.properties.use-cache", true);
         if (useCache) {
-            this.map = new ConcurrentHashMap<Integer, WeakReference<T>>();
-            this.putCounter = new AtomicInteger();
-            this.cleanupLock = new ReentrantLock();
-            this.hashCodeCollisionCounter = new AtomicInteger();
+            this.segments = new Segment[SEGMENT_COUNT];
+            for (int i = 0; i < SEGMENT_COUNT; i++) {
+                this.segments[i] = new Segment<T>(countHits);
+            }
         } else {
-            this.map = null;
-            this.putCounter = null;
-            this.cleanupLock = null;
-            this.hashCodeCollisionCounter = null;
+            this.segments = null;
         }
         this.useCache = useCache;
     }
 
+    private static boolean getBooleanProperty(String name, boolean defaultValue) {
+        try {
+            return Boolean.valueOf(System.getProperty(name, String.valueOf(defaultValue)));
+        } catch (SecurityException e) {
+            LOG.info("Unable to access " + name
+                   + " due to security restriction; defaulting to '" + defaultValue + "'.");
+            return defaultValue;
+        }
+    }
+
     /**
      * Returns a cached version of the given object. If the object is not yet in
      * the cache, it will be added and then returned.
@@ -115,80 +123,214 @@ public final class PropertyCache<T> {
             return null;
         }
 
-        Integer hashCode = obj.hashCode();
+        int hash = spread(obj.hashCode());
+        return segments[hash >>> SEGMENT_SHIFT].fetch(obj, hash);
+    }
 
-        WeakReference<T> weakRef = map.get(hashCode);
-        if (weakRef == null) {
-            weakRef = map.putIfAbsent(hashCode, new WeakReference<T>(obj));
-            attemptCleanup();
+    /**
+     * Returns the number of times {@link #fetch(Object)} returned an instance that
+     * was already cached. Hits are only counted if cache statistics are enabled.
+     * @return the hit count, or 0 if hits aren't counted
+     */
+    public long getHitCount() {
+        long hits = 0;
+        if (useCache) {
+            for (Segment<T> segment : segments) {
+                hits += segment.hits != null ? segment.hits.get() : 0;
+            }
+        }
+        return hits;
+    }
 
-            if (weakRef == null) {
-                return obj;
+    /**
+     * Returns the number of times {@link #fetch(Object)} added the given instance to the cache.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        long misses = 0;
+        if (useCache) {
+            for (Segment<T> segment : segments) {
+                misses += segment.misses;
             }
-            // else another thread added a value, continue.
         }
+        return misses;
+    }
 
-        T cached = weakRef.get();
-        if (cached != null) {
-            if (eq(cached, obj)) {
-                return cached;
-            } else {
-                /*
-                 * Log a message when obj.getClass() does not implement correctly the equals() or
-                 * hashCode() method. It is expected that only very few objects will have the
-                 * same hashCode but will not be equal.
-                 */
-                if ((hashCodeCollisionCounter.incrementAndGet() % 10) == 0) {
-                    LOG.info(hashCodeCollisionCounter.get() + " hashCode() collisions for "
-                            + obj.getClass().getName());
-                }
+    /**
+     * Returns the number of entries removed from the cache after their instance was
+     * reclaimed by the garbage collector.
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        long evictions = 0;
+        if (useCache) {
+            for (Segment<T> segment : segments) {
+                evictions += segment.evictions;
             }
+        }
+        return evictions;
+    }
 
+    /**
+     * Returns the number of entries in the cache. This includes entries whose instance was
+     * reclaimed but which haven't been removed yet.
+     * @return the number of entries
+     */
+    public int size() {
+        int size = 0;
+        if (useCache) {
+            for (Segment<T> segment : segments) {
+                size += segment.count.get();
+            }
         }
+        return size;
+    }
 
-        // Adds a new or replaces an existing entry with obj that has the same hash code
-        map.put(hashCode, new WeakReference<T>(obj));
-        attemptCleanup();
-        return obj;
-
-        /*
-         * Another thread might add first. We could check this using map.replace() instead of
-         * map.put() and then recursively call fetch(obj). But if in the meantime, garbage
-         * collection kicks in, we might end up with a StackOverflowException. Not caching an entry
-         * is tolerable, after all it's configurable.
-         */
+    /** {@inheritDoc} */
+    public String toString() {
+        return "PropertyCache[size: " + size() + ", hits: " + getHitCount()
+                + ", misses: " + getMissCount() + ", evictions: " + getEvictionCount() + "]";
+    }
+
+    /**
+     * Spreads the bits of the hash code, as poor hash codes would otherwise
+     * crowd a few segments and buckets.
+     */
+    private static int spread(int h) {
+        h += (h << 15) ^ 0xffffcd7d;
+        h ^= (h >>> 10);
+        h += (h << 3);
+        h ^= (h >>> 6);
+        h += (h << 2) + (h << 14);
+        return h ^ (h >>> 16);
     }
 
+    /** A weakly referenced cached instance, chained with the others in its bucket. */
+    private static final class Entry<T> extends WeakReference<T> {
+
+        private final int hash;
+
+        private volatile Entry<T> next;
 
-    private void attemptCleanup() {
-        if ((putCounter.incrementAndGet() % 10000) != 0) {
-            return;
+        Entry(T referent, int hash, Entry<T> next, ReferenceQueue<T> queue) {
+            super(referent, queue);
+            this.hash = hash;
+            this.next = next;
         }
+    }
+
+    /**
+     * A hash table of weakly referenced instances. Readers traverse the chains without
+     * locking; all structural changes happen while holding the lock. A reader racing with
+     * a change may fail to find an instance, in which case it looks again under the lock
+     * before adding it, so that a single instance is cached for equal objects.
+     */
+    private static final class Segment<T> extends ReentrantLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient ReferenceQueue<T> queue = new ReferenceQueue<T>();
+
+        private transient volatile AtomicReferenceArray<Entry<T>> table
+                = new AtomicReferenceArray<Entry<T>>(INITIAL_SEGMENT_CAPACITY);
 
-        // Lock as there is no need for concurrent cleanup and protect us, on JDK5, from
-        // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6312056
-        if (cleanupLock.tryLock()) {
-            try {
-                cleanReclaimedMapEntries();
-            } finally {
-                cleanupLock.unlock();
+        private final AtomicInteger count = new AtomicInteger();
+
+        /** null if hits aren't counted */
+        private final AtomicLong hits;
+
+        /** only changed while holding the lock */
+        private volatile long misses;
+
+        /** only changed while holding the lock */
+        private volatile long evictions;
+
+        Segment(boolean countHits) {
+            hits = countHits ? new AtomicLong() : null;
+        }
+
+        T fetch(T obj, int hash) {
+            T cached = find(table, obj, hash);
+            if (cached == null) {
+                lock();
+                try {
+                    expungeStaleEntries();
+                    AtomicReferenceArray<Entry<T>> tab = table;
+                    cached = find(tab, obj, hash);
+                    if (cached == null) {
+                        if (count.get() >= tab.length() - (tab.length() >>> 2)) {
+                            tab = resize(tab);
+                        }
+                        int index = hash & (tab.length() - 1);
+                        tab.set(index, new Entry<T>(obj, hash, tab.get(index), queue));
+                        count.incrementAndGet();
+                        misses++;
+                        return obj;
+                    }
+                } finally {
+                    unlock();
+                }
+            }
+            if (hits != null) {
+                hits.incrementAndGet();
             }
+            return cached;
         }
-    }
 
-    private void cleanReclaimedMapEntries() {
-        Iterator<Map.Entry<Integer, WeakReference<T>>> iterator = map.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<Integer, WeakReference<T>> entry = iterator.next();
-            WeakReference<T> weakRef = entry.getValue();
-            T r = weakRef.get();
-            if (r == null) {
-                iterator.remove();
+        private T find(AtomicReferenceArray<Entry<T>> tab, T obj, int hash) {
+            for (Entry<T> e = tab.get(hash & (tab.length() - 1)); e != null; e = e.next) {
+                if (e.hash == hash) {
+                    T cached = e.get();
+                    if (cached != null && (cached == obj || cached.equals(obj))) {
+                        return cached;
+                    }
+                }
             }
+            return null;
         }
-    }
 
-    private boolean eq(Object p, Object q) {
-        return (p == q || p.equals(q));
+        private AtomicReferenceArray<Entry<T>> resize(AtomicReferenceArray<Entry<T>> oldTab) {
+            AtomicReferenceArray<Entry<T>> newTab
+                    = new AtomicReferenceArray<Entry<T>>(oldTab.length() * 2);
+            int mask = newTab.length() - 1;
+            for (int i = 0; i < oldTab.length(); i++) {
+                Entry<T> e = oldTab.get(i);
+                while (e != null) {
+                    // moved entries only ever point to moved entries, so chains stay acyclic
+                    // for the readers still traversing the old table
+                    Entry<T> next = e.next;
+                    int index = e.hash & mask;
+                    e.next = newTab.get(index);
+                    newTab.set(index, e);
+                    e = next;
+                }
+            }
+            table = newTab;
+            return newTab;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void expungeStaleEntries() {
+            Reference<? extends T> ref;
+            while ((ref = queue.poll()) != null) {
+                Entry<T> stale = (Entry<T>) ref;
+                AtomicReferenceArray<Entry<T>> tab = table;
+                int index = stale.hash & (tab.length() - 1);
+                Entry<T> prev = null;
+                for (Entry<T> e = tab.get(index); e != null; e = e.next) {
+                    if (e == stale) {
+                        if (prev == null) {
+                            tab.set(index, e.next);
+                        } else {
+                            prev.next = e.next;
+                        }
+                        count.decrementAndGet();
+                        evictions++;
+                        break;
+                    }
+                    prev = e;
+                }
+            }
+        }
     }
 }
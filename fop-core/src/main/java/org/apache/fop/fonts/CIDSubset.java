@@ -19,6 +19,7 @@
 
 package org.apache.fop.fonts;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
@@ -38,21 +39,29 @@ import org.apache.fop.util.CharUtilities;
  */
 public class CIDSubset implements CIDSet {
 
+    private static final int INITIAL_CAPACITY = 256;
+
     /**
      * usedGlyphs contains orginal, new glyph index (glyph index -> char selector)
      */
     private Map<Integer, Integer> usedGlyphs = new LinkedHashMap<Integer, Integer>();
 
+    /**
+     * selectors contains the same mapping as usedGlyphs for lookups without boxing
+     * (glyph index -> char selector, 0 if the glyph isn't used)
+     */
+    private int[] selectors = new int[INITIAL_CAPACITY];
+
     /**
      * usedGlyphsIndex contains new glyph, original index (char selector -> glyph index)
      */
-    private Map<Integer, Integer> usedGlyphsIndex = new HashMap<Integer, Integer>();
+    private int[] usedGlyphsIndex = new int[INITIAL_CAPACITY];
     private int usedGlyphsCount;
 
     /**
      * usedCharsIndex contains new glyph, original char (char selector -> Unicode)
      */
-    private Map<Integer, Integer> usedCharsIndex = new HashMap<Integer, Integer>();
+    private int[] usedCharsIndex = new int[INITIAL_CAPACITY];
 
     /**
      * A map between the original character and it's GID in the original font.
@@ -60,33 +69,40 @@ public class CIDSubset implements CIDSet {
     private Map<Integer, Integer> charToGIDs = new HashMap<Integer, Integer>();
 
 
+    /**
+     * The font, also the lock guarding the subset. The font maps characters while holding it
+     * and page-sequences laid out in parallel read the subset concurrently.
+     */
     private final MultiByteFont font;
 
     public CIDSubset(MultiByteFont mbf) {
         font = mbf;
         // The zeroth value is reserved for .notdef
         usedGlyphs.put(0, 0);
-        usedGlyphsIndex.put(0, 0);
+        usedGlyphsIndex[0] = 0;
+        usedCharsIndex[0] = CharUtilities.NOT_A_CHARACTER;
         usedGlyphsCount++;
     }
 
     /** {@inheritDoc} */
     public int getOriginalGlyphIndex(int index) {
-        Integer glyphIndex = usedGlyphsIndex.get(index);
-        if (glyphIndex != null) {
-            return glyphIndex;
-        } else {
-            return -1;
+        synchronized (font) {
+            if (index >= 0 && index < usedGlyphsCount) {
+                return usedGlyphsIndex[index];
+            } else {
+                return -1;
+            }
         }
     }
 
     /** {@inheritDoc} */
     public int getUnicode(int index) {
-        Integer mapValue = usedCharsIndex.get(index);
-        if (mapValue != null) {
-            return mapValue;
-        } else {
-            return CharUtilities.NOT_A_CHARACTER;
+        synchronized (font) {
+            if (index >= 0 && index < usedGlyphsCount) {
+                return usedCharsIndex[index];
+            } else {
+                return CharUtilities.NOT_A_CHARACTER;
+            }
         }
     }
 
@@ -97,25 +113,58 @@ public class CIDSubset implements CIDSet {
 
     /** {@inheritDoc} */
     public int mapCodePoint(int glyphIndex, int codePoint) {
-        // Reencode to a new subset font or get the reencoded value
-        // IOW, accumulate the accessed characters and build a character map for them
-        Integer subsetCharSelector = usedGlyphs.get(glyphIndex);
-        if (subsetCharSelector == null) {
-            int selector = usedGlyphsCount;
-            usedGlyphs.put(glyphIndex, selector);
-            usedGlyphsIndex.put(selector, glyphIndex);
-            usedCharsIndex.put(selector, codePoint);
-            charToGIDs.put(codePoint, glyphIndex);
-            usedGlyphsCount++;
-            return selector;
-        } else {
-            return subsetCharSelector;
+        synchronized (font) {
+            // Reencode to a new subset font or get the reencoded value
+            // IOW, accumulate the accessed characters and build a character map for them
+            int subsetCharSelector = getSelector(glyphIndex);
+            if (subsetCharSelector < 0) {
+                int selector = usedGlyphsCount;
+                usedGlyphs.put(glyphIndex, selector);
+                if (glyphIndex >= selectors.length) {
+                    selectors = Arrays.copyOf(selectors, Math.max(glyphIndex + 1, selectors.length * 2));
+                }
+                selectors[glyphIndex] = selector;
+                if (selector == usedGlyphsIndex.length) {
+                    usedGlyphsIndex = Arrays.copyOf(usedGlyphsIndex, selector * 2);
+                    usedCharsIndex = Arrays.copyOf(usedCharsIndex, selector * 2);
+                }
+                usedGlyphsIndex[selector] = glyphIndex;
+                usedCharsIndex[selector] = codePoint;
+                charToGIDs.put(codePoint, glyphIndex);
+                usedGlyphsCount++;
+                return selector;
+            } else {
+                return subsetCharSelector;
+            }
         }
     }
 
+    /**
+     * Returns the character selector of a glyph without adding it to the subset.
+     * @param glyphIndex the original glyph index
+     * @return the character selector or -1 if the glyph isn't in the subset
+     */
+    int findSelector(int glyphIndex) {
+        synchronized (font) {
+            return getSelector(glyphIndex);
+        }
+    }
+
+    private int getSelector(int glyphIndex) {
+        if (glyphIndex == 0) {
+            return 0;
+        }
+        if (glyphIndex > 0 && glyphIndex < selectors.length && selectors[glyphIndex] != 0) {
+            return selectors[glyphIndex];
+        }
+        return usedGlyphs.containsKey(glyphIndex) ? usedGlyphs.get(glyphIndex) : -1;
+    }
+
     /** {@inheritDoc} */
     public Map<Integer, Integer> getGlyphs() {
-        return Collections.unmodifiableMap(this.usedGlyphs);
+        synchronized (font) {
+            return Collections.unmodifiableMap(new LinkedHashMap<Integer, Integer>(this.usedGlyphs));
+        }
     }
 
     /** {@inheritDoc} */
@@ -124,21 +173,27 @@ public class CIDSubset implements CIDSet {
         // This is why we can safely cast the value of usedCharsIndex.get(selector)
         // to int . BTW is a question if it should be changed to int as getUnicode
         // or left like this.
-        int selector = usedGlyphs.get(glyphIndex);
-        return (char) usedCharsIndex.get(selector).intValue();
+        synchronized (font) {
+            int selector = usedGlyphs.get(glyphIndex);
+            return (char) usedCharsIndex[selector];
+        }
     }
 
     /** {@inheritDoc} */
     public int getGIDFromChar(char ch) {
-        return charToGIDs.get((int) ch);
+        synchronized (font) {
+            return charToGIDs.get((int) ch);
+        }
     }
 
     /** {@inheritDoc} */
     public char[] getChars() {
         StringBuilder buf = new StringBuilder();
 
-        for (int i = 0; i < usedGlyphsCount; i++) {
-            buf.appendCodePoint(getUnicode(i));
+        synchronized (font) {
+            for (int i = 0; i < usedGlyphsCount; i++) {
+                buf.appendCodePoint(getUnicode(i));
+            }
         }
 
         return buf.toString().toCharArray();
@@ -146,14 +201,18 @@ public class CIDSubset implements CIDSet {
 
     /** {@inheritDoc} */
     public int getNumberOfGlyphs() {
-        return this.usedGlyphsCount;
+        synchronized (font) {
+            return this.usedGlyphsCount;
+        }
     }
 
     /** {@inheritDoc} */
     public BitSet getGlyphIndices() {
         BitSet bitset = new BitSet();
-        for (Integer cid : usedGlyphs.keySet()) {
-            bitset.set(cid);
+        synchronized (font) {
+            for (Integer cid : usedGlyphs.keySet()) {
+                bitset.set(cid);
+            }
         }
         return bitset;
     }
@@ -161,12 +220,14 @@ public class CIDSubset implements CIDSet {
     /** {@inheritDoc} */
     public int[] getWidths() {
         int[] widths = font.getWidths();
-        int[] tmpWidth = new int[getNumberOfGlyphs()];
-        for (int i = 0, c = getNumberOfGlyphs(); i < c; i++) {
-            int nwx = Math.max(0, getOriginalGlyphIndex(i));
-            tmpWidth[i] = widths[nwx];
+        synchronized (font) {
+            int[] tmpWidth = new int[getNumberOfGlyphs()];
+            for (int i = 0, c = getNumberOfGlyphs(); i < c; i++) {
+                int nwx = Math.max(0, getOriginalGlyphIndex(i));
+                tmpWidth[i] = widths[nwx];
+            }
+            return tmpWidth;
         }
-        return tmpWidth;
     }
 
 }
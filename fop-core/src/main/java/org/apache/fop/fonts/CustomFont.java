@@ -76,10 +76,12 @@ public abstract class CustomFont extends Typeface
     private int strikeoutThickness;
 
     private Map<Integer, Map<Integer, Integer>> kerning;
+    private volatile KerningTable kerningTable;
 
     private boolean useKerning = true;
     /** the character map, mapping Unicode ranges to glyph indices. */
     protected List<CMapSegment> cmap = new ArrayList<CMapSegment>();
+    private boolean cmapShared;
     private boolean useAdvanced = true;
     private boolean simulateStyle;
     protected List<SimpleSingleByteEncoding> additionalEncodings;
@@ -324,6 +326,23 @@ public abstract class CustomFont extends Typeface
         }
     }
 
+    /**
+     * Returns the kerning information of this font in a form which can be looked up without
+     * allocating objects. The table is built from the kerning map on first use.
+     * @return the kerning table, empty if kerning is disabled or not available
+     */
+    public KerningTable getKerningTable() {
+        if (!hasKerningInfo()) {
+            return KerningTable.EMPTY;
+        }
+        KerningTable table = kerningTable;
+        if (table == null) {
+            table = KerningTable.valueOf(kerning);
+            kerningTable = table;
+        }
+        return table;
+    }
+
     /**
      * Used to determine if advanced typographic features are enabled.
      * By default, this is false, but may be overridden by subclasses.
@@ -511,6 +530,7 @@ public abstract class CustomFont extends Typeface
             kerning = new HashMap<Integer, Map<Integer, Integer>>();
         }
         this.kerning.put(key, value);
+        this.kerningTable = null;
     }
 
     /**
@@ -524,6 +544,19 @@ public abstract class CustomFont extends Typeface
         } else {
             this.kerning = kerningMap;
         }
+        this.kerningTable = null;
+    }
+
+    /**
+     * Replaces the existing kerning map with a new one together with its kerning table,
+     * so that fonts sharing the same kerning map don't have to build the table again.
+     * @param kerningMap the kerning map (the integers are character codes)
+     * @param kerningTable the kerning table built from the kerning map
+     */
+    public void replaceKerningMap(Map<Integer, Map<Integer, Integer>> kerningMap,
+            KerningTable kerningTable) {
+        replaceKerningMap(kerningMap);
+        this.kerningTable = kerningTable;
     }
 
     /**
@@ -532,10 +565,37 @@ public abstract class CustomFont extends Typeface
      * @param cmap the character map
      */
     public void setCMap(CMapSegment[] cmap) {
-        this.cmap.clear();
+        if (cmapShared) {
+            this.cmap = new ArrayList<CMapSegment>(cmap.length);
+            cmapShared = false;
+        } else {
+            this.cmap.clear();
+        }
         Collections.addAll(this.cmap, cmap);
     }
 
+    /**
+     * Sets a character map which is shared with other fonts loaded from the same font file.
+     * The list is not modified by the font, which copies it before adding segments.
+     * @param cmap the character map
+     */
+    public void setSharedCMap(List<CMapSegment> cmap) {
+        this.cmap = cmap;
+        cmapShared = true;
+    }
+
+    /**
+     * Adds a segment to the character map.
+     * @param segment the segment
+     */
+    protected void addCMapSegment(CMapSegment segment) {
+        if (cmapShared) {
+            cmap = new ArrayList<CMapSegment>(cmap);
+            cmapShared = false;
+        }
+        cmap.add(segment);
+    }
+
     /**
      * Returns the character map for this font. It maps all available Unicode characters
      * to their glyph indices inside the font.
@@ -650,7 +710,7 @@ public abstract class CustomFont extends Typeface
      * Adds a character to additional encodings
      * @param ch character to map
      */
-    protected char mapUnencodedChar(char ch) {
+    protected synchronized char mapUnencodedChar(char ch) {
         if (this.unencodedCharacters != null) {
             SingleByteFont.UnencodedCharacter unencoded = this.unencodedCharacters.get(ch);
             if (unencoded != null) {
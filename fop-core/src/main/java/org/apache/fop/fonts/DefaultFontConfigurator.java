@@ -68,6 +68,13 @@ public class DefaultFontConfigurator implements FontConfigurator<EmbedFontInfo>
      * @throws FOPException if an exception occurs while processing the configuration
      */
     public List<EmbedFontInfo> configure(FontConfig fontInfoConfig) throws FOPException {
+        if (fontInfoConfig != null) {
+            List<EmbedFontInfo> configuredFonts = fontManager.getConfiguredFonts(fontInfoConfig,
+                    listener);
+            if (configuredFonts != null) {
+                return configuredFonts;
+            }
+        }
         List<EmbedFontInfo> fontInfoList = new ArrayList<EmbedFontInfo>();
         if (fontInfoConfig != null) {
             assert fontInfoConfig instanceof DefaultFontConfig;
@@ -77,16 +84,18 @@ public class DefaultFontConfigurator implements FontConfigurator<EmbedFontInfo>
                 log.debug("Starting font configuration...");
                 start = System.currentTimeMillis();
             }
-            FontAdder fontAdder = new FontAdder(fontManager, resourceResolver, listener);
+            // the font list is shared, so remember the events for later documents
+            FontEventRecorder events = new FontEventRecorder(listener);
+            FontAdder fontAdder = new FontAdder(fontManager, resourceResolver, events);
             // native o/s search (autodetect) configuration
             fontManager.autoDetectFonts(adobeFontInfoConfig.isAutoDetectFonts(), fontAdder, strict,
-                    listener, fontInfoList);
+                    events, fontInfoList);
             // Add configured directories to FontInfo list
-            addDirectories(adobeFontInfoConfig, fontAdder, fontInfoList);
+            addDirectories(adobeFontInfoConfig, fontAdder, fontInfoList, events);
             // Add configured fonts to FontInfo
             FontCache fontCache = fontManager.getFontCache();
             try {
-                addFonts(adobeFontInfoConfig, fontCache, fontInfoList);
+                addFonts(adobeFontInfoConfig, fontCache, fontInfoList, events);
             } catch (URISyntaxException use) {
                 LogUtil.handleException(log, use, strict);
             }
@@ -105,17 +114,20 @@ public class DefaultFontConfigurator implements FontConfigurator<EmbedFontInfo>
                 log.debug("Finished font configuration in "
                         + (System.currentTimeMillis() - start) + "ms");
             }
+            fontInfoList = Collections.unmodifiableList(fontInfoList);
+            fontManager.setConfiguredFonts(fontInfoConfig, fontInfoList, events);
+            return fontInfoList;
         }
         return Collections.unmodifiableList(fontInfoList);
     }
 
     private void addDirectories(DefaultFontConfig fontInfoConfig, FontAdder fontAdder,
-            List<EmbedFontInfo> fontInfoList) throws FOPException {
+            List<EmbedFontInfo> fontInfoList, FontEventListener events) throws FOPException {
         // directory (multiple font) configuration
         List<Directory> directories = fontInfoConfig.getDirectories();
         for (Directory directory : directories) {
             // add fonts found in directory
-            FontFileFinder fontFileFinder = new FontFileFinder(directory.isRecursive() ? -1 : 1, listener);
+            FontFileFinder fontFileFinder = new FontFileFinder(directory.isRecursive() ? -1 : 1, events);
             List<URL> fontURLList;
             try {
                 fontURLList = fontFileFinder.find(directory.getDirectory());
@@ -129,19 +141,20 @@ public class DefaultFontConfigurator implements FontConfigurator<EmbedFontInfo>
     }
 
     private void addFonts(DefaultFontConfig fontInfoConfig, FontCache fontCache,
-            List<EmbedFontInfo> fontInfoList) throws FOPException, URISyntaxException {
+            List<EmbedFontInfo> fontInfoList, FontEventListener events)
+            throws FOPException, URISyntaxException {
         // font file (singular) configuration
         List<DefaultFontConfig.Font> fonts = fontInfoConfig.getFonts();
         for (DefaultFontConfig.Font font : fonts) {
-            EmbedFontInfo embedFontInfo = getFontInfo(font, fontCache);
+            EmbedFontInfo embedFontInfo = getFontInfo(font, fontCache, events);
             if (embedFontInfo != null) {
                 fontInfoList.add(embedFontInfo);
             }
         }
     }
 
-    private EmbedFontInfo getFontInfo(DefaultFontConfig.Font font, FontCache fontCache)
-            throws FOPException, URISyntaxException {
+    private EmbedFontInfo getFontInfo(DefaultFontConfig.Font font, FontCache fontCache,
+            FontEventListener events) throws FOPException, URISyntaxException {
         String embed = font.getEmbedURI();
         String metrics = font.getMetrics();
         String afm = font.getAfm();
@@ -160,7 +173,7 @@ public class DefaultFontConfigurator implements FontConfigurator<EmbedFontInfo>
         if (tripletList.size() == 0) {
             URI fontUri = resourceResolver.resolveFromBase(embedUri);
             FontInfoFinder finder = new FontInfoFinder();
-            finder.setEventListener(listener);
+            finder.setEventListener(events);
             EmbedFontInfo[] infos = finder.find(fontUri, resourceResolver, fontCache);
             return infos[0]; //When subFont is set, only one font is returned
         }
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Defers the glyphs the current thread adds to the subsets of embedded fonts.
+ * <p>
+ * Subset fonts number their glyphs in the order they are first used. Page-sequences laid
+ * out in parallel would add them in thread order, so the subsets, and with them the
+ * output, would change from run to run. While a deferral is active on a thread, a glyph
+ * that isn't in the subset yet gets a provisional character selector that is only valid
+ * on that thread, and adding it to the subset is recorded as a step of the given journal.
+ * Replaying the journal in document order adds the glyphs in the order serial layout would.
+ */
+public final class DeferredSubsetMapping {
+
+    private static final ThreadLocal<DeferredSubsetMapping> CURRENT
+            = new ThreadLocal<DeferredSubsetMapping>();
+
+    /**
+     * Provisional selectors are handed out downwards from here. A subset would need more
+     * than 60000 glyphs before they could be confused with the selectors of the subset.
+     */
+    private static final int FIRST_PROVISIONAL_SELECTOR = 0xFFFF;
+
+    private final List<Runnable> journal;
+
+    /** the glyphs added by this thread per font, indexed by provisional selector */
+    private final Map<MultiByteFont, List<Integer>> glyphs
+            = new IdentityHashMap<MultiByteFont, List<Integer>>();
+
+    /** the provisional selectors per font (glyph index -> char selector) */
+    private final Map<MultiByteFont, Map<Integer, Integer>> selectors
+            = new IdentityHashMap<MultiByteFont, Map<Integer, Integer>>();
+
+    private DeferredSubsetMapping(List<Runnable> journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Starts deferring the subset additions of the current thread.
+     * @param journal the list the additions are appended to, as steps that have to be run
+     *          on a single thread in document order
+     * @return the deferral, to be stopped on the same thread
+     */
+    public static DeferredSubsetMapping start(List<Runnable> journal) {
+        DeferredSubsetMapping deferral = new DeferredSubsetMapping(journal);
+        CURRENT.set(deferral);
+        return deferral;
+    }
+
+    /**
+     * Stops deferring the subset additions of the current thread. The provisional selectors
+     * handed out must not be used after this.
+     */
+    public void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the deferral active on the current thread.
+     * @return the deferral or null if subset additions are applied immediately
+     */
+    static DeferredSubsetMapping getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Maps a glyph to a character selector. Must be called while holding the lock of the font.
+     * @param font the font
+     * @param subset the subset of the font
+     * @param glyphIndex the original glyph index
+     * @param codePoint the Unicode code point the glyph is used for
+     * @param unencoded true if the character has to be mapped to the additional encodings
+     *          of the font as well when it's added
+     * @return the selector of the subset if the glyph is in it already, a provisional
+     *          selector otherwise
+     */
+    int mapCodePoint(final MultiByteFont font, final CIDSubset subset, final int glyphIndex,
+            final int codePoint, final boolean unencoded) {
+        int selector = subset.findSelector(glyphIndex);
+        if (selector >= 0) {
+            return selector;
+        }
+        Map<Integer, Integer> fontSelectors = selectors.get(font);
+        if (fontSelectors == null) {
+            fontSelectors = new HashMap<Integer, Integer>();
+            selectors.put(font, fontSelectors);
+            glyphs.put(font, new ArrayList<Integer>());
+        }
+        Integer provisional = fontSelectors.get(glyphIndex);
+        if (provisional != null) {
+            return provisional;
+        }
+        List<Integer> fontGlyphs = glyphs.get(font);
+        selector = FIRST_PROVISIONAL_SELECTOR - fontGlyphs.size();
+        fontGlyphs.add(glyphIndex);
+        fontSelectors.put(glyphIndex, selector);
+        journal.add(new Runnable() {
+            public void run() {
+                font.addToSubset(glyphIndex, codePoint, unencoded);
+            }
+        });
+        return selector;
+    }
+
+    /**
+     * Returns the original glyph index for a provisional selector.
+     * @param font the font
+     * @param selector the character selector
+     * @return the glyph index or -1 if the selector isn't a provisional one of this thread
+     */
+    int getOriginalGlyphIndex(MultiByteFont font, int selector) {
+        List<Integer> fontGlyphs = glyphs.get(font);
+        int index = FIRST_PROVISIONAL_SELECTOR - selector;
+        if (fontGlyphs != null && index >= 0 && index < fontGlyphs.size()) {
+            return fontGlyphs.get(index);
+        }
+        return -1;
+    }
+}
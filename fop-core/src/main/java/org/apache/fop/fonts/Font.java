@@ -82,6 +82,8 @@ public class Font implements Substitutable, Positionable {
 
     private final FontMetrics metric;
 
+    private volatile KerningTable kerningTable;
+
     /**
      * Main constructor
      * @param key key of the font
@@ -204,16 +206,27 @@ public class Font implements Substitutable, Positionable {
             return 0;
         }
 
-        Map<Integer, Integer> kernPair = getKerning().get(ch1);
-        if (kernPair != null) {
-            Integer width = kernPair.get(ch2);
-            if (width != null) {
-                return width * getFontSize() / 1000;
-            }
+        int width = getKerningTable().getKernValue(ch1, ch2);
+        if (width != 0) {
+            return width * getFontSize() / 1000;
         }
         return 0;
     }
 
+    private KerningTable getKerningTable() {
+        KerningTable table = kerningTable;
+        if (table == null) {
+            FontMetrics realMetrics = getRealFontMetrics();
+            if (realMetrics instanceof CustomFont) {
+                table = ((CustomFont) realMetrics).getKerningTable();
+            } else {
+                table = KerningTable.valueOf(getKerning());
+            }
+            kerningTable = table;
+        }
+        return table;
+    }
+
     /**
      * Returns the width of a character
      * @param charnum character to look up
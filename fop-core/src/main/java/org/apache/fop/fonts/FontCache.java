@@ -19,21 +19,28 @@
 
 package org.apache.fop.fonts;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -46,6 +53,10 @@ import org.apache.fop.util.LogUtil;
 
 /**
  * Fop cache (currently only used for font info caching)
+ * <p>
+ * The cache is stored in a binary file (see {@link FontCacheFile}) which is memory-mapped
+ * when it is loaded. The font infos of a font file are only decoded when they are needed.
+ * When saving, entries added by other processes sharing the cache file are merged in.
  */
 public final class FontCache implements Serializable {
 
@@ -64,6 +75,12 @@ public final class FontCache implements Serializable {
     /** font cache file path */
     private static final String DEFAULT_CACHE_FILENAME = "fop-fonts.cache";
 
+    /** number of times the cache file is tried to be replaced */
+    private static final int REPLACE_ATTEMPTS = 5;
+
+    /** milliseconds to wait after the first failed attempt to replace the cache file */
+    private static final long REPLACE_RETRY_DELAY = 50;
+
     /** has this cache been changed since it was last read? */
     private transient boolean changed;
 
@@ -84,10 +101,42 @@ public final class FontCache implements Serializable {
      */
     private Map<String, Long> failedFontMap;
 
+    /** the file this cache was loaded from, holds the entries that haven't been decoded yet */
+    private transient FontCacheFile source;
+
+    /** urls removed since the cache was loaded, they are not merged back in when saving */
+    private transient Set<String> removedUrls;
+
+    /** true if the cache was cleared, nothing is merged back in when saving */
+    private transient boolean cleared;
+
+    /** Creates an empty font cache. */
+    public FontCache() {
+    }
+
+    private FontCache(FontCacheFile source) {
+        this.source = source;
+        this.failedFontMap = new HashMap<String, Long>(source.getFailedFonts());
+        this.fontfileMap = new HashMap<String, CachedFontFile>();
+        for (String url : source.getFontFileUrls()) {
+            //decoded on first access, see getCachedFontFile()
+            fontfileMap.put(url, null);
+        }
+    }
+
     private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
         ois.defaultReadObject();
     }
 
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        synchronized (changeLock) {
+            for (String url : new ArrayList<String>(getFontFileMap().keySet())) {
+                getCachedFontFile(url);
+            }
+            oos.defaultWriteObject();
+        }
+    }
+
     private static File getUserHome() {
         return toDirectory(System.getProperty("user.home"));
     }
@@ -159,18 +208,7 @@ public final class FontCache implements Serializable {
                     log.trace("Loading font cache from "
                             + cacheFile.getCanonicalPath());
                 }
-                InputStream in = new BufferedInputStream(new FileInputStream(cacheFile));
-                ObjectInputStream oin = new ObjectInputStream(in);
-                try {
-                    return (FontCache) oin.readObject();
-                } finally {
-                    IOUtils.closeQuietly(oin);
-                }
-            } catch (ClassNotFoundException e) {
-                // We don't really care about the exception since it's just a
-                // cache file
-                log.warn("Could not read font cache. Discarding font cache file. Reason: "
-                        + e.getMessage());
+                return new FontCache(FontCacheFile.open(cacheFile));
             } catch (IOException ioe) {
                 // We don't really care about the exception since it's just a
                 // cache file
@@ -210,14 +248,7 @@ public final class FontCache implements Serializable {
             if (changed) {
                 try {
                     log.trace("Writing font cache to " + cacheFile.getCanonicalPath());
-                    OutputStream out = new java.io.FileOutputStream(cacheFile);
-                    out = new java.io.BufferedOutputStream(out);
-                    ObjectOutputStream oout = new ObjectOutputStream(out);
-                    try {
-                        oout.writeObject(this);
-                    } finally {
-                        IOUtils.closeQuietly(oout);
-                    }
+                    writeCacheFile(cacheFile);
                 } catch (IOException ioe) {
                     LogUtil.handleException(log, ioe, true);
                 }
@@ -227,6 +258,111 @@ public final class FontCache implements Serializable {
         }
     }
 
+    private void writeCacheFile(File cacheFile) throws IOException {
+        // file locks are held by the JVM, so writers within one JVM are serialized here
+        synchronized (FontCache.class) {
+            // the lock file is never deleted: a process waiting on a deleted lock file
+            // wouldn't exclude a process that locks a new file of the same name
+            RandomAccessFile lockFile = new RandomAccessFile(cacheFile.getPath() + ".lock", "rw");
+            try {
+                FileLock lock = lockFile.getChannel().lock();
+                try {
+                    Map<String, Long> failedFonts = new LinkedHashMap<String, Long>(getFailedFontMap());
+                    Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+                    for (Map.Entry<String, CachedFontFile> entry : getFontFileMap().entrySet()) {
+                        CachedFontFile cachedFontFile = entry.getValue();
+                        entries.put(entry.getKey(), cachedFontFile == null
+                                ? source.getRawEntry(entry.getKey())
+                                : FontCacheFile.encodeEntry(cachedFontFile.lastModified(),
+                                        cachedFontFile.getEmbedFontInfos()));
+                    }
+                    mergeFromDisk(cacheFile, failedFonts, entries);
+                    File tempFile = File.createTempFile(cacheFile.getName(), ".tmp",
+                            cacheFile.getAbsoluteFile().getParentFile());
+                    try {
+                        FontCacheFile.write(tempFile, failedFonts, entries);
+                        replace(tempFile, cacheFile);
+                    } finally {
+                        tempFile.delete();
+                    }
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                lockFile.close();
+            }
+        }
+    }
+
+    /**
+     * Adds the entries another process has written to the cache file since it was loaded.
+     */
+    private void mergeFromDisk(File cacheFile, Map<String, Long> failedFonts,
+            Map<String, byte[]> entries) {
+        if (cleared || !cacheFile.exists() || (source != null && source.isCurrent(cacheFile))) {
+            return;
+        }
+        FontCacheFile onDisk;
+        try {
+            onDisk = FontCacheFile.open(cacheFile);
+        } catch (IOException ioe) {
+            log.debug("Font cache file not merged: " + ioe.getMessage());
+            return;
+        }
+        for (String url : onDisk.getFontFileUrls()) {
+            if (!entries.containsKey(url) && !isRemoved(url)) {
+                entries.put(url, onDisk.getRawEntry(url));
+            }
+        }
+        for (Map.Entry<String, Long> failed : onDisk.getFailedFonts().entrySet()) {
+            if (!failedFonts.containsKey(failed.getKey()) && !isRemoved(failed.getKey())) {
+                failedFonts.put(failed.getKey(), failed.getValue());
+            }
+        }
+    }
+
+    /**
+     * Moves the new cache file over the old one. The old file is never overwritten in place,
+     * as other processes may be reading it. Windows refuses to replace a file another process
+     * has open, so the move is retried a few times before giving up.
+     */
+    private static void replace(File source, File target) throws IOException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                try {
+                    Files.move(source.toPath(), target.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(source.toPath(), target.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+                return;
+            } catch (FileSystemException e) {
+                if (attempt >= REPLACE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Font cache file not replaced, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(REPLACE_RETRY_DELAY * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private boolean isRemoved(String url) {
+        return removedUrls != null && removedUrls.contains(url);
+    }
+
+    private void noteRemoved(String url) {
+        if (removedUrls == null) {
+            removedUrls = new HashSet<String>();
+        }
+        removedUrls.add(url);
+    }
+
     /**
      * creates a key given a font info for the font mapping
      *
@@ -313,6 +449,31 @@ public final class FontCache implements Serializable {
         return fontfileMap;
     }
 
+    /**
+     * Returns the cached font file, decoding it from the cache file if necessary.
+     */
+    private CachedFontFile getCachedFontFile(String embedUrl) {
+        synchronized (changeLock) {
+            CachedFontFile cachedFontFile = getFontFileMap().get(embedUrl);
+            if (cachedFontFile == null && source != null && getFontFileMap().containsKey(embedUrl)) {
+                try {
+                    List<EmbedFontInfo> fontInfos = new ArrayList<EmbedFontInfo>();
+                    cachedFontFile = new CachedFontFile(source.readEntry(embedUrl, fontInfos));
+                    for (EmbedFontInfo fontInfo : fontInfos) {
+                        cachedFontFile.put(fontInfo);
+                    }
+                    getFontFileMap().put(embedUrl, cachedFontFile);
+                } catch (IOException ioe) {
+                    log.warn("Discarding font cache entry for " + embedUrl + ": " + ioe.getMessage());
+                    getFontFileMap().remove(embedUrl);
+                    noteRemoved(embedUrl);
+                    changed = true;
+                }
+            }
+            return cachedFontFile;
+        }
+    }
+
     /**
      * Adds a font info to cache
      *
@@ -323,8 +484,8 @@ public final class FontCache implements Serializable {
         String cacheKey = getCacheKey(fontInfo);
         synchronized (changeLock) {
             CachedFontFile cachedFontFile;
-            if (containsFont(cacheKey)) {
-                cachedFontFile = getFontFileMap().get(cacheKey);
+            cachedFontFile = getCachedFontFile(cacheKey);
+            if (cachedFontFile != null) {
                 if (!cachedFontFile.containsFont(fontInfo)) {
                     cachedFontFile.put(fontInfo);
                 }
@@ -351,7 +512,7 @@ public final class FontCache implements Serializable {
      * @return CachedFontFile object
      */
     public CachedFontFile getFontFile(String embedUrl) {
-        return containsFont(embedUrl) ? getFontFileMap().get(embedUrl) : null;
+        return containsFont(embedUrl) ? getCachedFontFile(embedUrl) : null;
     }
 
     /**
@@ -368,7 +529,9 @@ public final class FontCache implements Serializable {
      */
     public EmbedFontInfo[] getFontInfos(String embedUrl, long lastModified) {
         CachedFontFile cff = getFontFile(embedUrl);
-        if (cff.lastModified() == lastModified) {
+        if (cff == null) {
+            return null;
+        } else if (cff.lastModified() == lastModified) {
             return cff.getEmbedFontInfos();
         } else {
             removeFont(embedUrl);
@@ -389,6 +552,7 @@ public final class FontCache implements Serializable {
                     log.trace("Font removed from cache: " + embedUrl);
                 }
                 getFontFileMap().remove(embedUrl);
+                noteRemoved(embedUrl);
                 changed = true;
             }
         }
@@ -412,6 +576,7 @@ public final class FontCache implements Serializable {
                     // this font has been changed so lets remove it
                     // from failed font map for now
                     getFailedFontMap().remove(embedUrl);
+                    noteRemoved(embedUrl);
                     changed = true;
                 }
                 return true;
@@ -455,6 +620,8 @@ public final class FontCache implements Serializable {
             }
             fontfileMap = null;
             failedFontMap = null;
+            source = null;
+            cleared = true;
             changed = true;
         }
     }
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The on-disk representation of the {@link FontCache}. The file starts with an index
+ * of the cached font files which is read eagerly. The font infos of a font file are
+ * only decoded from the memory-mapped file when they are asked for. On Windows, where a
+ * mapped file can't be replaced until the mapping has been garbage collected, the file
+ * is read into memory instead.
+ * <p>
+ * Layout (all numbers big-endian):
+ * <pre>
+ * int magic, int version
+ * int n, n * (string url, long lastModified)            failed fonts
+ * int n, n * (string url, int offset, int length)       index into the data section
+ * data section: per font file
+ *     long lastModified, int n, n * font info
+ * </pre>
+ * Strings are written as their UTF-8 length followed by the bytes, -1 for null.
+ */
+final class FontCacheFile {
+
+    /** "FOPC" */
+    private static final int MAGIC = 0x464F5043;
+
+    /** Change this value if the layout changes, older files are discarded. */
+    static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final boolean MAP_FILES
+            = !System.getProperty("os.name", "").startsWith("Windows");
+
+    private final File file;
+
+    private final long lastModified;
+
+    private final long length;
+
+    private final ByteBuffer data;
+
+    private final Map<String, Long> failedFonts = new LinkedHashMap<String, Long>();
+
+    private final Map<String, int[]> index = new LinkedHashMap<String, int[]>();
+
+    private FontCacheFile(File file) throws IOException {
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            this.length = channel.size();
+            this.lastModified = file.lastModified();
+            ByteBuffer buffer;
+            if (MAP_FILES) {
+                //The mapping stays valid after the channel has been closed
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            } else {
+                buffer = ByteBuffer.allocate((int) length);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    //read until the buffer is full
+                }
+                buffer.flip();
+            }
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a font cache file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported font cache version " + version);
+            }
+            for (int i = 0, n = buffer.getInt(); i < n; i++) {
+                failedFonts.put(readString(buffer), buffer.getLong());
+            }
+            for (int i = 0, n = buffer.getInt(); i < n; i++) {
+                index.put(readString(buffer), new int[] {buffer.getInt(), buffer.getInt()});
+            }
+            this.data = buffer.slice();
+        } catch (RuntimeException e) {
+            //BufferUnderflowException and friends for truncated or corrupt files
+            throw new IOException("Corrupt font cache file: " + e);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Opens a font cache file. Only the index is read.
+     * @param file the cache file
+     * @return the font cache file
+     * @throws IOException if the file can't be read or isn't a font cache file of this version
+     */
+    static FontCacheFile open(File file) throws IOException {
+        return new FontCacheFile(file);
+    }
+
+    /**
+     * Indicates whether the given file is the one that was opened and hasn't been
+     * replaced or modified since.
+     * @param cacheFile the cache file on disk
+     * @return true if the file is unchanged
+     */
+    boolean isCurrent(File cacheFile) {
+        return file.getAbsoluteFile().equals(cacheFile.getAbsoluteFile())
+                && cacheFile.lastModified() == lastModified && cacheFile.length() == length;
+    }
+
+    /** @return the failed fonts (url -&gt; last modified date) */
+    Map<String, Long> getFailedFonts() {
+        return Collections.unmodifiableMap(failedFonts);
+    }
+
+    /** @return the urls of the cached font files */
+    Iterable<String> getFontFileUrls() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    /**
+     * Indicates whether the cache file contains an entry for the given font file.
+     * @param url the font file url
+     * @return true if there is an entry
+     */
+    boolean containsFontFile(String url) {
+        return index.containsKey(url);
+    }
+
+    /**
+     * Returns the encoded entry of a font file as it is stored in the file.
+     * @param url the font file url
+     * @return the encoded entry or null
+     */
+    byte[] getRawEntry(String url) {
+        int[] location = index.get(url);
+        if (location == null) {
+            return null;
+        }
+        byte[] entry = new byte[location[1]];
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(location[0]);
+        buffer.get(entry);
+        return entry;
+    }
+
+    /**
+     * Returns the last modified date of the font file and decodes its font infos.
+     * @param url the font file url
+     * @param fontInfos receives the decoded font infos
+     * @return the last modified date of the font file
+     * @throws IOException if the entry is corrupt
+     */
+    long readEntry(String url, List<EmbedFontInfo> fontInfos) throws IOException {
+        int[] location = index.get(url);
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(location[0]);
+        try {
+            long fileLastModified = buffer.getLong();
+            for (int i = 0, n = buffer.getInt(); i < n; i++) {
+                fontInfos.add(readFontInfo(buffer));
+            }
+            return fileLastModified;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt font cache entry for " + url + ": " + e);
+        }
+    }
+
+    /**
+     * Encodes the entry of a font file.
+     * @param lastModified the last modified date of the font file
+     * @param fontInfos the font infos of the font file
+     * @return the encoded entry
+     * @throws IOException if an I/O error occurs
+     */
+    static byte[] encodeEntry(long lastModified, EmbedFontInfo[] fontInfos) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(lastModified);
+        out.writeInt(fontInfos.length);
+        for (EmbedFontInfo fontInfo : fontInfos) {
+            writeFontInfo(out, fontInfo);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a complete font cache file.
+     * @param target the file to write to
+     * @param failedFonts the failed fonts (url -&gt; last modified date)
+     * @param entries the encoded entries of the font files (url -&gt; entry)
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(File target, Map<String, Long> failedFonts, Map<String, byte[]> entries)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(
+                new java.io.FileOutputStream(target)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(failedFonts.size());
+            for (Map.Entry<String, Long> failed : failedFonts.entrySet()) {
+                writeString(out, failed.getKey());
+                out.writeLong(failed.getValue());
+            }
+            out.writeInt(entries.size());
+            int offset = 0;
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(offset);
+                out.writeInt(entry.getValue().length);
+                offset += entry.getValue().length;
+            }
+            for (byte[] entry : entries.values()) {
+                out.write(entry);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeFontInfo(DataOutputStream out, EmbedFontInfo fontInfo)
+            throws IOException {
+        FontUris fontUris = fontInfo.getFontUris();
+        writeURI(out, fontUris.getEmbed());
+        writeURI(out, fontUris.getMetrics());
+        writeURI(out, fontUris.getAfm());
+        writeURI(out, fontUris.getPfm());
+        out.writeBoolean(fontInfo.getKerning());
+        out.writeBoolean(fontInfo.getAdvanced());
+        writeString(out, fontInfo.getSubFontName());
+        writeString(out, fontInfo.getPostScriptName());
+        writeString(out, fontInfo.getEncodingMode().name());
+        writeString(out, fontInfo.getEmbeddingMode().name());
+        out.writeBoolean(fontInfo.getSimulateStyle());
+        out.writeBoolean(fontInfo.getEmbedAsType1());
+        List<FontTriplet> triplets = fontInfo.getFontTriplets();
+        out.writeInt(triplets.size());
+        for (FontTriplet triplet : triplets) {
+            writeString(out, triplet.getName());
+            writeString(out, triplet.getStyle());
+            out.writeInt(triplet.getWeight());
+            out.writeInt(triplet.getPriority());
+        }
+    }
+
+    private static EmbedFontInfo readFontInfo(ByteBuffer in) throws IOException {
+        FontUris fontUris = new FontUris(readURI(in), readURI(in), readURI(in), readURI(in));
+        boolean kerning = in.get() != 0;
+        boolean advanced = in.get() != 0;
+        String subFontName = readString(in);
+        String postScriptName = readString(in);
+        EncodingMode encodingMode = EncodingMode.valueOf(readString(in));
+        EmbeddingMode embeddingMode = EmbeddingMode.valueOf(readString(in));
+        boolean simulateStyle = in.get() != 0;
+        boolean embedAsType1 = in.get() != 0;
+        int tripletCount = in.getInt();
+        List<FontTriplet> triplets = new ArrayList<FontTriplet>(tripletCount);
+        for (int i = 0; i < tripletCount; i++) {
+            triplets.add(new FontTriplet(readString(in), readString(in), in.getInt(), in.getInt()));
+        }
+        EmbedFontInfo fontInfo = new EmbedFontInfo(fontUris, kerning, advanced, triplets,
+                subFontName, encodingMode, embeddingMode, simulateStyle, embedAsType1);
+        fontInfo.setPostScriptName(postScriptName);
+        return fontInfo;
+    }
+
+    private static void writeURI(DataOutputStream out, URI uri) throws IOException {
+        writeString(out, uri == null ? null : uri.toString());
+    }
+
+    private static URI readURI(ByteBuffer in) throws IOException {
+        String uri = readString(in);
+        try {
+            return uri == null ? null : new URI(uri);
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.List;
+
+/**
+ * A font event listener that forwards the events to another listener and records them. Font
+ * lists built from a font configuration are shared between documents, so the events reported
+ * while building such a list are replayed to the listener of every document re-using it.
+ */
+public final class FontEventRecorder implements FontEventListener {
+
+    private final FontEventListener delegate;
+
+    private final List<RecordedEvent> events = new java.util.ArrayList<RecordedEvent>();
+
+    /**
+     * Creates a new recorder.
+     * @param delegate the listener the events are forwarded to (may be null)
+     */
+    public FontEventRecorder(FontEventListener delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Reports all recorded events to the given listener.
+     * @param listener the listener
+     */
+    public void replay(FontEventListener listener) {
+        List<RecordedEvent> recorded;
+        synchronized (events) {
+            recorded = new java.util.ArrayList<RecordedEvent>(events);
+        }
+        for (RecordedEvent event : recorded) {
+            event.replay(listener);
+        }
+    }
+
+    private void record(RecordedEvent event) {
+        synchronized (events) {
+            events.add(event);
+        }
+        if (delegate != null) {
+            event.replay(delegate);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void fontSubstituted(final Object source, final FontTriplet requested,
+            final FontTriplet effective) {
+        record(new RecordedEvent() {
+            void replay(FontEventListener listener) {
+                listener.fontSubstituted(source, requested, effective);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void fontLoadingErrorAtAutoDetection(final Object source, final String fontURL,
+            final Exception e) {
+        record(new RecordedEvent() {
+            void replay(FontEventListener listener) {
+                listener.fontLoadingErrorAtAutoDetection(source, fontURL, e);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void glyphNotAvailable(final Object source, final char ch, final String fontName) {
+        record(new RecordedEvent() {
+            void replay(FontEventListener listener) {
+                listener.glyphNotAvailable(source, ch, fontName);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void fontDirectoryNotFound(final Object source, final String dir) {
+        record(new RecordedEvent() {
+            void replay(FontEventListener listener) {
+                listener.fontDirectoryNotFound(source, dir);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void svgTextStrokedAsShapes(final Object source, final String fontFamily) {
+        record(new RecordedEvent() {
+            void replay(FontEventListener listener) {
+                listener.svgTextStrokedAsShapes(source, fontFamily);
+            }
+        });
+    }
+
+    private abstract static class RecordedEvent {
+        abstract void replay(FontEventListener listener);
+    }
+}
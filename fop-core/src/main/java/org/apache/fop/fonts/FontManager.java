@@ -21,6 +21,7 @@ package org.apache.fop.fonts;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.io.InternalResourceResolver;
@@ -52,6 +53,10 @@ public class FontManager {
     /** FontTriplet matcher for fonts that shall be referenced rather than embedded. */
     private FontTriplet.Matcher referencedFontsMatcher;
 
+    /** Font lists already built from a font configuration, so directories aren't scanned again */
+    private final Map<FontConfig, ConfiguredFonts> configuredFonts
+            = new java.util.WeakHashMap<FontConfig, ConfiguredFonts>();
+
     /**
      * Main constructor
      *
@@ -72,6 +77,7 @@ public class FontManager {
      */
     public void setResourceResolver(InternalResourceResolver resourceResolver) {
         this.resourceResolver = resourceResolver;
+        clearConfiguredFonts();
     }
 
     public InternalResourceResolver getResourceResolver() {
@@ -173,6 +179,7 @@ public class FontManager {
      */
     public void setReferencedFontsMatcher(FontTriplet.Matcher matcher) {
         this.referencedFontsMatcher = matcher;
+        clearConfiguredFonts();
     }
 
     /**
@@ -229,4 +236,67 @@ public class FontManager {
             fontDetector.detect(this, fontAdder, strict, listener, fontInfoList);
         }
     }
+
+    /**
+     * Returns the font list previously built from the given font configuration.
+     * @param fontConfig the font configuration
+     * @return the font list, or null if the configuration hasn't been processed, yet
+     */
+    public List<EmbedFontInfo> getConfiguredFonts(FontConfig fontConfig) {
+        return getConfiguredFonts(fontConfig, null);
+    }
+
+    /**
+     * Returns the font list previously built from the given font configuration and reports
+     * the font events that occurred while building it to the given listener.
+     * @param fontConfig the font configuration
+     * @param listener the listener for font related events (may be null)
+     * @return the font list, or null if the configuration hasn't been processed, yet
+     */
+    public List<EmbedFontInfo> getConfiguredFonts(FontConfig fontConfig, FontEventListener listener) {
+        ConfiguredFonts fonts;
+        synchronized (configuredFonts) {
+            fonts = configuredFonts.get(fontConfig);
+        }
+        if (fonts == null) {
+            return null;
+        }
+        if (listener != null) {
+            fonts.events.replay(listener);
+        }
+        return fonts.fontInfoList;
+    }
+
+    /**
+     * Remembers the font list built from the given font configuration so subsequent
+     * documents don't have to detect the fonts again. The list is kept as long as the
+     * font configuration is referenced, i.e. usually for the lifetime of the FopFactory.
+     * @param fontConfig the font configuration
+     * @param fontInfoList the unmodifiable font list
+     * @param events the font events reported while building the font list
+     */
+    public void setConfiguredFonts(FontConfig fontConfig, List<EmbedFontInfo> fontInfoList,
+            FontEventRecorder events) {
+        synchronized (configuredFonts) {
+            configuredFonts.put(fontConfig, new ConfiguredFonts(fontInfoList, events));
+        }
+    }
+
+    private void clearConfiguredFonts() {
+        synchronized (configuredFonts) {
+            configuredFonts.clear();
+        }
+    }
+
+    private static final class ConfiguredFonts {
+
+        private final List<EmbedFontInfo> fontInfoList;
+
+        private final FontEventRecorder events;
+
+        private ConfiguredFonts(List<EmbedFontInfo> fontInfoList, FontEventRecorder events) {
+            this.fontInfoList = fontInfoList;
+            this.events = events;
+        }
+    }
 }
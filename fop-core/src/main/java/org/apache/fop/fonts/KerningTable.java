@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable kerning table which stores the kerning pairs of a font in two primitive arrays
+ * so that they can be looked up without boxing. The pairs are kept as sorted <code>long</code>
+ * keys, the first character in the upper and the second character in the lower 32 bits, and
+ * are found by binary search.
+ */
+public final class KerningTable {
+
+    /** An empty kerning table. */
+    public static final KerningTable EMPTY = new KerningTable(new long[0], new int[0]);
+
+    private final long[] pairs;
+    private final int[] values;
+
+    private KerningTable(long[] pairs, int[] values) {
+        this.pairs = pairs;
+        this.values = values;
+    }
+
+    /**
+     * Creates a kerning table from a kerning map as returned by
+     * {@link FontMetrics#getKerningInfo()}.
+     * @param kerning the kerning map (may be null)
+     * @return the kerning table
+     */
+    public static KerningTable valueOf(Map<Integer, Map<Integer, Integer>> kerning) {
+        if (kerning == null || kerning.isEmpty()) {
+            return EMPTY;
+        }
+        int count = 0;
+        for (Map<Integer, Integer> second : kerning.values()) {
+            if (second != null) {
+                count += second.size();
+            }
+        }
+        long[] pairs = new long[count];
+        int i = 0;
+        for (Map.Entry<Integer, Map<Integer, Integer>> first : kerning.entrySet()) {
+            if (first.getValue() == null) {
+                continue;
+            }
+            for (Map.Entry<Integer, Integer> second : first.getValue().entrySet()) {
+                if (second.getValue() != null) {
+                    pairs[i++] = toKey(first.getKey(), second.getKey());
+                }
+            }
+        }
+        if (i < count) {
+            pairs = Arrays.copyOf(pairs, i);
+        }
+        Arrays.sort(pairs);
+        int[] values = new int[pairs.length];
+        for (int j = 0; j < pairs.length; j++) {
+            values[j] = kerning.get((int) (pairs[j] >> 32)).get((int) pairs[j]);
+        }
+        return new KerningTable(pairs, values);
+    }
+
+    private static long toKey(int ch1, int ch2) {
+        return ((long) ch1 << 32) | (ch2 & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the kerning value for a pair of characters.
+     * @param ch1 the first character
+     * @param ch2 the second character
+     * @return the kerning value in font units, 0 if the pair isn't kerned
+     */
+    public int getKernValue(int ch1, int ch2) {
+        int index = Arrays.binarySearch(pairs, toKey(ch1, ch2));
+        return index >= 0 ? values[index] : 0;
+    }
+
+    /** @return true if the table doesn't contain any kerning pair */
+    public boolean isEmpty() {
+        return pairs.length == 0;
+    }
+
+    /** @return the number of kerning pairs */
+    public int size() {
+        return pairs.length;
+    }
+}
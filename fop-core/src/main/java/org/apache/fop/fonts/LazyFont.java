@@ -95,12 +95,11 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
         return sbuf.toString();
     }
 
-    private void load(boolean fail) {
+    private synchronized void load(boolean fail) {
         if (!isMetricsLoaded) {
             try {
                 if (fontUris.getMetrics() != null) {
                     // Use of XML based font metrics is DEPRECATED!
-                    // @todo Possible thread problem here
                     XMLFontMetricsReader reader = null;
                     InputStream in = resourceResolver.getResource(fontUris.getMetrics());
                     InputSource src = new InputSource(in);
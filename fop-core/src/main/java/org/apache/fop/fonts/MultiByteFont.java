@@ -80,6 +80,9 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     private boolean isOTFFile;
 
+    /** The tables shared with other fonts, kept reachable as long as this font */
+    private SharedGlyphMetrics sharedTables;
+
     // since for most users the most likely glyphs are in the first cmap segments we store their mapping.
     private static final int NUM_MOST_LIKELY_GLYPHS = 256;
     private int[] mostLikelyGlyphs = new int[NUM_MOST_LIKELY_GLYPHS];
@@ -192,7 +195,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
     /** {@inheritDoc} */
     public int getWidth(int i, int size) {
         if (isEmbeddable()) {
-            int glyphIndex = cidSet.getOriginalGlyphIndex(i);
+            int glyphIndex = getOriginalGlyphIndex(i);
             return size * width[glyphIndex];
         } else {
             return size * width[i];
@@ -207,7 +210,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
     }
 
     public Rectangle getBoundingBox(int glyphIndex, int size) {
-        int index = isEmbeddable() ? cidSet.getOriginalGlyphIndex(glyphIndex) : glyphIndex;
+        int index = isEmbeddable() ? getOriginalGlyphIndex(glyphIndex) : glyphIndex;
         Rectangle bbox = boundingBoxes[index];
         return new Rectangle(bbox.x * size, bbox.y * size, bbox.width * size, bbox.height * size);
     }
@@ -228,7 +231,8 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
         if (idx < NUM_MOST_LIKELY_GLYPHS && mostLikelyGlyphs[idx] != 0) {
             return mostLikelyGlyphs[idx];
         }
-        for (CMapSegment i : cmap) {
+        for (int n = 0, count = cmap.size(); n < count; n++) {
+            CMapSegment i = cmap.get(n);
             if (retIdx == 0
                     && i.getUnicodeStart() <= idx
                     && i.getUnicodeEnd() >= idx) {
@@ -252,7 +256,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
      */
     protected synchronized void addPrivateUseMapping(int pu, int gi) {
         assert findGlyphIndex(pu) == SingleByteEncoding.NOT_FOUND_CODE_POINT;
-        cmap.add(new CMapSegment(pu, pu, gi));
+        addCMapSegment(new CMapSegment(pu, pu, gi));
     }
 
     /**
@@ -360,7 +364,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     /** {@inheritDoc} */
     @Override
-    public char mapChar(char c) {
+    public synchronized char mapChar(char c) {
         notifyMapOperation();
         int glyphIndex = findGlyphIndex(c);
         if (glyphIndex == SingleByteEncoding.NOT_FOUND_CODE_POINT) {
@@ -369,6 +373,10 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
                 glyphIndex = findGlyphIndex(Typeface.NOT_FOUND);
             }
         }
+        DeferredSubsetMapping deferred = getDeferredSubsetMapping();
+        if (deferred != null) {
+            return (char) deferred.mapCodePoint(this, (CIDSubset) cidSet, glyphIndex, c, true);
+        }
         if (isEmbeddable()) {
             glyphIndex = cidSet.mapChar(glyphIndex, c);
         }
@@ -380,7 +388,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     /** {@inheritDoc} */
     @Override
-    public int mapCodePoint(int cp) {
+    public synchronized int mapCodePoint(int cp) {
         notifyMapOperation();
         int glyphIndex = findGlyphIndex(cp);
         if (glyphIndex == SingleByteEncoding.NOT_FOUND_CODE_POINT) {
@@ -394,12 +402,49 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
                 glyphIndex = findGlyphIndex(Typeface.NOT_FOUND);
             }
         }
+        DeferredSubsetMapping deferred = getDeferredSubsetMapping();
+        if (deferred != null) {
+            return (char) deferred.mapCodePoint(this, (CIDSubset) cidSet, glyphIndex, cp, false);
+        }
         if (isEmbeddable()) {
             glyphIndex = cidSet.mapCodePoint(glyphIndex, cp);
         }
         return (char) glyphIndex;
     }
 
+    /**
+     * Adds a glyph to the subset as {@link #mapChar(char)} or {@link #mapCodePoint(int)}
+     * would have done while the addition was deferred.
+     * @param glyphIndex the original glyph index
+     * @param codePoint the Unicode code point the glyph is used for
+     * @param unencoded true if the glyph was mapped by {@link #mapChar(char)}
+     * @see DeferredSubsetMapping
+     */
+    synchronized void addToSubset(int glyphIndex, int codePoint, boolean unencoded) {
+        int selector = cidSet.mapCodePoint(glyphIndex, codePoint);
+        if (unencoded && isCID() && selector > 256) {
+            mapUnencodedChar((char) codePoint);
+        }
+    }
+
+    private DeferredSubsetMapping getDeferredSubsetMapping() {
+        if (isEmbeddable() && cidSet instanceof CIDSubset) {
+            return DeferredSubsetMapping.getCurrent();
+        }
+        return null;
+    }
+
+    private int getOriginalGlyphIndex(int selector) {
+        DeferredSubsetMapping deferred = getDeferredSubsetMapping();
+        if (deferred != null) {
+            int glyphIndex = deferred.getOriginalGlyphIndex(this, selector);
+            if (glyphIndex >= 0) {
+                return glyphIndex;
+            }
+        }
+        return cidSet.getOriginalGlyphIndex(selector);
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean hasChar(char c) {
@@ -444,6 +489,18 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
         this.width = wds;
     }
 
+    /**
+     * Sets the glyph metrics this font shares with other fonts loaded from the same font file.
+     * They replace the width and bounding box arrays, and the font refers to them so the
+     * shared tables aren't released while it uses them.
+     * @param sharedTables the shared glyph metrics
+     */
+    public void setSharedTables(SharedGlyphMetrics sharedTables) {
+        this.sharedTables = sharedTables;
+        this.width = sharedTables.getWidths();
+        this.boundingBoxes = sharedTables.getBoundingBoxes();
+    }
+
     /**
      * Sets the bounding boxes array.
      * @param boundingBoxes array of bounding boxes.
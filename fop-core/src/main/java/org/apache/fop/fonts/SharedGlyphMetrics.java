@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.awt.Rectangle;
+
+/**
+ * The glyph widths and bounding boxes of a CID-keyed font, shared by all the
+ * {@link MultiByteFont} instances loaded from the same font file. The metrics are copied when
+ * the holder is created and are only handed to the fonts in this package, so a font can't
+ * change the metrics of the other fonts sharing them.
+ */
+public class SharedGlyphMetrics {
+
+    private final int[] widths;
+    private final Rectangle[] boundingBoxes;
+
+    /**
+     * Creates a new holder with copies of the given metrics.
+     * @param widths the advance widths indexed by glyph index
+     * @param boundingBoxes the bounding boxes indexed by glyph index
+     */
+    protected SharedGlyphMetrics(int[] widths, Rectangle[] boundingBoxes) {
+        this.widths = widths.clone();
+        this.boundingBoxes = new Rectangle[boundingBoxes.length];
+        for (int i = 0; i < boundingBoxes.length; i++) {
+            if (boundingBoxes[i] != null) {
+                this.boundingBoxes[i] = new Rectangle(boundingBoxes[i]);
+            }
+        }
+    }
+
+    /** @return the advance widths, not to be modified */
+    int[] getWidths() {
+        return widths;
+    }
+
+    /** @return the bounding boxes, not to be modified */
+    Rectangle[] getBoundingBoxes() {
+        return boundingBoxes;
+    }
+}
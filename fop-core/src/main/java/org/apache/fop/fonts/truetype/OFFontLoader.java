@@ -108,17 +108,33 @@ public class OFFontLoader extends FontLoader {
      * @throws IOException if an I/O error occurs
      */
     private void read(String ttcFontName) throws IOException {
+        SharedFontTables.Key key = null;
+        SharedFontTables shared = null;
+        if (isCid()) {
+            key = SharedFontTables.createKey(resourceResolver.resolveFromBase(fontFileURI),
+                    ttcFontName, useKerning, useAdvanced);
+            if (key != null) {
+                shared = SharedFontTables.get(key);
+            }
+        }
         InputStream in = resourceResolver.getResource(this.fontFileURI);
         try {
             FontFileReader reader = new FontFileReader(in);
             String header = readHeader(reader);
             boolean isCFF = header.equals("OTTO");
-            OpenFont otf = (isCFF) ? new OTFFile(useKerning, useAdvanced) : new TTFFile(useKerning, useAdvanced);
+            //Kerning and advanced tables are taken from the shared tables if available
+            boolean readKerning = useKerning && shared == null;
+            boolean readAdvanced = useAdvanced && shared == null;
+            OpenFont otf = (isCFF) ? new OTFFile(readKerning, readAdvanced)
+                    : new TTFFile(readKerning, readAdvanced);
             boolean supported = otf.readFont(reader, header, ttcFontName);
             if (!supported) {
                 throw new IOException("The font does not have a Unicode cmap table: " + fontFileURI);
             }
-            buildFont(otf, ttcFontName, embedAsType1);
+            if (key != null && shared == null) {
+                shared = SharedFontTables.share(key, otf);
+            }
+            buildFont(otf, ttcFontName, embedAsType1, shared);
             loaded = true;
         } finally {
             IOUtils.closeQuietly(in);
@@ -133,11 +149,13 @@ public class OFFontLoader extends FontLoader {
         return null;
     }
 
-    private void buildFont(OpenFont otf, String ttcFontName, boolean embedAsType1) {
-        boolean isCid = this.embedded;
-        if (this.encodingMode == EncodingMode.SINGLE_BYTE) {
-            isCid = false;
-        }
+    private boolean isCid() {
+        return this.embedded && this.encodingMode != EncodingMode.SINGLE_BYTE;
+    }
+
+    private void buildFont(OpenFont otf, String ttcFontName, boolean embedAsType1,
+            SharedFontTables shared) {
+        boolean isCid = isCid();
 
         CustomFont font;
         if (isCid) {
@@ -190,8 +208,12 @@ public class OFFontLoader extends FontLoader {
             } else {
                 multiFont.setCIDType(CIDFontType.CIDTYPE2);
             }
-            multiFont.setWidthArray(otf.getWidths());
-            multiFont.setBBoxArray(otf.getBoundingBoxes());
+            if (shared != null) {
+                multiFont.setSharedTables(shared);
+            } else {
+                multiFont.setWidthArray(otf.getWidths());
+                multiFont.setBBoxArray(otf.getBoundingBoxes());
+            }
         } else {
             singleFont.setFontType(FontType.TRUETYPE);
             singleFont.setEncoding(otf.getCharSetName());
@@ -200,13 +222,24 @@ public class OFFontLoader extends FontLoader {
             singleFont.setTrueTypePostScriptVersion(otf.getPostScriptVersion());
             copyGlyphMetricsSingleByte(otf);
         }
-        returnFont.setCMap(getCMap(otf));
-
-        if (otf.getKerning() != null && useKerning) {
-            copyKerning(otf, isCid);
-        }
-        if (useAdvanced) {
-            copyAdvanced(otf);
+        if (shared != null) {
+            multiFont.setSharedCMap(shared.getCMap());
+            if (shared.getKerning() != null && useKerning) {
+                returnFont.replaceKerningMap(shared.getKerning(), shared.getKerningTable());
+            }
+            if (useAdvanced) {
+                multiFont.setGDEF(shared.getGDEF());
+                multiFont.setGSUB(shared.getGSUB());
+                multiFont.setGPOS(shared.getGPOS());
+            }
+        } else {
+            returnFont.setCMap(getCMap(otf));
+            if (otf.getKerning() != null && useKerning) {
+                copyKerning(otf, isCid);
+            }
+            if (useAdvanced) {
+                copyAdvanced(otf);
+            }
         }
         if (this.embedded) {
             if (otf.isEmbeddable()) {
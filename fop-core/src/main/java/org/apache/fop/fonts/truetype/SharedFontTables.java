@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts.truetype;
+
+import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.fop.complexscripts.fonts.GlyphDefinitionTable;
+import org.apache.fop.complexscripts.fonts.GlyphPositioningTable;
+import org.apache.fop.complexscripts.fonts.GlyphSubstitutionTable;
+import org.apache.fop.fonts.CMapSegment;
+import org.apache.fop.fonts.KerningTable;
+import org.apache.fop.fonts.SharedGlyphMetrics;
+
+/**
+ * The glyph metric tables of a CID-keyed OpenType font which can be shared by all the
+ * {@link org.apache.fop.fonts.MultiByteFont} instances loaded from the same font file.
+ * <p>
+ * The tables are kept in a process-wide store so that every {@link org.apache.fop.fonts.FontInfo}
+ * and every {@link org.apache.fop.apps.FopFactory} in the JVM uses a single copy of the widths,
+ * bounding boxes, character map, kerning and advanced typographic tables of a font. The store
+ * only holds soft references to the {@code SharedFontTables} instances. Every font using the
+ * tables refers to its instance (see {@link org.apache.fop.fonts.MultiByteFont#setSharedTables}),
+ * so the tables stay in the store while a font uses them and may be released under memory
+ * pressure once no font refers to them any more. Only fonts loaded from local files are shared,
+ * since the file's size and modification date are part of the key.
+ * <p>
+ * The tables must be treated as read-only by the fonts using them. The widths and bounding
+ * boxes are only accessible to the fonts themselves, and the character map is copied by a font
+ * before it adds a mapping of its own.
+ */
+final class SharedFontTables extends SharedGlyphMetrics {
+
+    private static final ConcurrentMap<Key, TablesReference> STORE
+            = new ConcurrentHashMap<Key, TablesReference>();
+
+    private static final ReferenceQueue<SharedFontTables> QUEUE
+            = new ReferenceQueue<SharedFontTables>();
+
+    private final List<CMapSegment> cmap;
+    private final Map<Integer, Map<Integer, Integer>> kerning;
+    private final KerningTable kerningTable;
+    private final GlyphDefinitionTable gdef;
+    private final GlyphSubstitutionTable gsub;
+    private final GlyphPositioningTable gpos;
+
+    private SharedFontTables(OpenFont otf) {
+        super(otf.getWidths(), otf.getBoundingBoxes());
+        cmap = Collections.unmodifiableList(new ArrayList<CMapSegment>(otf.getCMaps()));
+        kerning = otf.getKerning() != null
+                ? Collections.unmodifiableMap(otf.getKerning()) : null;
+        kerningTable = KerningTable.valueOf(kerning);
+        gdef = otf.getGDEF();
+        gsub = otf.getGSUB();
+        gpos = otf.getGPOS();
+    }
+
+    /**
+     * Creates the key identifying the tables of a font file with the given loading options.
+     * @param fontFileURI the resolved URI of the font file
+     * @param ttcFontName the name of the font in a TrueType Collection or null
+     * @param useKerning true if kerning information is loaded
+     * @param useAdvanced true if advanced typographic tables are loaded
+     * @return the key or null if the tables of this font can't be shared
+     */
+    static Key createKey(URI fontFileURI, String ttcFontName, boolean useKerning, boolean useAdvanced) {
+        if (fontFileURI == null || !"file".equals(fontFileURI.getScheme())) {
+            return null;
+        }
+        File file;
+        try {
+            file = new File(fontFileURI);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+        return new Key(fontFileURI.toASCIIString(), ttcFontName, useKerning, useAdvanced,
+                file.lastModified(), file.length());
+    }
+
+    /**
+     * Returns the shared tables for the given key.
+     * @param key the key as returned by {@link #createKey}
+     * @return the tables or null if they haven't been loaded or have been released
+     */
+    static SharedFontTables get(Key key) {
+        expungeStaleEntries();
+        TablesReference ref = STORE.get(key);
+        return ref != null ? ref.get() : null;
+    }
+
+    /**
+     * Extracts the metric tables from a font which has just been read and makes them available
+     * to other fonts. If another thread shared the tables of the same font in the meantime,
+     * those are returned instead.
+     * @param key the key as returned by {@link #createKey}
+     * @param otf the font which was read with the options given in the key
+     * @return the shared tables
+     */
+    static SharedFontTables share(Key key, OpenFont otf) {
+        SharedFontTables tables = new SharedFontTables(otf);
+        TablesReference ref = new TablesReference(key, tables);
+        while (true) {
+            TablesReference existing = STORE.putIfAbsent(key, ref);
+            if (existing == null) {
+                return tables;
+            }
+            SharedFontTables existingTables = existing.get();
+            if (existingTables != null) {
+                return existingTables;
+            }
+            if (STORE.replace(key, existing, ref)) {
+                return tables;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of font tables currently held in the store.
+     * @return the number of entries
+     */
+    static int size() {
+        expungeStaleEntries();
+        return STORE.size();
+    }
+
+    /** Discards all the tables held in the store. */
+    static void clear() {
+        STORE.clear();
+    }
+
+    private static void expungeStaleEntries() {
+        Reference<? extends SharedFontTables> ref;
+        while ((ref = QUEUE.poll()) != null) {
+            TablesReference tablesRef = (TablesReference) ref;
+            STORE.remove(tablesRef.key, tablesRef);
+        }
+    }
+
+    /** @return the character map, not modifiable */
+    List<CMapSegment> getCMap() {
+        return cmap;
+    }
+
+    /** @return the kerning table or null if the font has none or kerning wasn't loaded */
+    Map<Integer, Map<Integer, Integer>> getKerning() {
+        return kerning;
+    }
+
+    /** @return the kerning table built from the kerning map */
+    KerningTable getKerningTable() {
+        return kerningTable;
+    }
+
+    /** @return the glyph definition table or null */
+    GlyphDefinitionTable getGDEF() {
+        return gdef;
+    }
+
+    /** @return the glyph substitution table or null */
+    GlyphSubstitutionTable getGSUB() {
+        return gsub;
+    }
+
+    /** @return the glyph positioning table or null */
+    GlyphPositioningTable getGPOS() {
+        return gpos;
+    }
+
+    private static final class TablesReference extends SoftReference<SharedFontTables> {
+
+        private final Key key;
+
+        TablesReference(Key key, SharedFontTables tables) {
+            super(tables, QUEUE);
+            this.key = key;
+        }
+    }
+
+    /** Identifies a font file and the options it was loaded with. */
+    static final class Key {
+
+        private final String uri;
+        private final String ttcFontName;
+        private final boolean useKerning;
+        private final boolean useAdvanced;
+        private final long lastModified;
+        private final long length;
+
+        private Key(String uri, String ttcFontName, boolean useKerning, boolean useAdvanced,
+                long lastModified, long length) {
+            this.uri = uri;
+            this.ttcFontName = ttcFontName;
+            this.useKerning = useKerning;
+            this.useAdvanced = useAdvanced;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return uri.equals(other.uri)
+                    && (ttcFontName == null ? other.ttcFontName == null
+                            : ttcFontName.equals(other.ttcFontName))
+                    && useKerning == other.useKerning
+                    && useAdvanced == other.useAdvanced
+                    && lastModified == other.lastModified
+                    && length == other.length;
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            int hash = uri.hashCode();
+            hash = 31 * hash + (ttcFontName != null ? ttcFontName.hashCode() : 0);
+            hash = 31 * hash + (useKerning ? 1 : 0);
+            hash = 31 * hash + (useAdvanced ? 1 : 0);
+            hash = 31 * hash + (int) (lastModified ^ (lastModified >>> 32));
+            return 31 * hash + (int) (length ^ (length >>> 32));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of hyphenated words. Natural-language text repeats a limited vocabulary, so most
+ * words the line layout asks to hyphenate were already hyphenated before, in the same
+ * document or in an earlier one. The cache is keyed on the language, the country, the
+ * remain and push character counts and the word, and also remembers words that have no
+ * hyphenation. The least recently used words are evicted when it is full.
+ * <p>
+ * The cache is thread-safe. There is one per {@link org.apache.fop.apps.FopFactory}, shared
+ * by all documents produced with it, since they also share the hyphenation patterns. To keep
+ * layout threads from contending for one lock, large caches are split into segments by the
+ * hash of the key, each with its own lock and its own share of the maximum number of words.
+ * The eviction order is then least recently used per segment, which approximates it for the
+ * whole cache.
+ */
+public final class HyphenationCache {
+
+    /** The default maximum number of cached words. */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** Marks a word that has no hyphenation. */
+    private static final Hyphenation NONE = new Hyphenation("", new int[0]);
+
+    /** The maximum number of segments. */
+    private static final int MAX_SEGMENTS = 16;
+
+    /** The minimum number of words per segment, smaller caches have fewer segments. */
+    private static final int MIN_SEGMENT_ENTRIES = 256;
+
+    private final Segment[] segments;
+
+    private volatile int maxEntries;
+
+    /** Creates a cache for up to {@link #DEFAULT_MAX_ENTRIES} words. */
+    public HyphenationCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache.
+     * @param maxEntries the maximum number of cached words, 0 to disable caching
+     */
+    public HyphenationCache(int maxEntries) {
+        int segmentCount = Math.max(1, Math.min(MAX_SEGMENTS, maxEntries / MIN_SEGMENT_ENTRIES));
+        segments = new Segment[Integer.highestOneBit(segmentCount)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+        setMaxEntries(maxEntries);
+    }
+
+    /** @return the maximum number of cached words */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the maximum number of cached words. Words in excess are evicted as new words are
+     * added.
+     * @param maxEntries the maximum number of cached words, 0 to disable caching
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        int segmentMaxEntries = (maxEntries + segments.length - 1) / segments.length;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.maxEntries = segmentMaxEntries;
+                if (maxEntries == 0) {
+                    segment.clear();
+                }
+            }
+        }
+    }
+
+    /** @return the number of words answered from the cache */
+    public long getHitCount() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+            }
+        }
+        return hits;
+    }
+
+    /** @return the number of words that were not in the cache */
+    public long getMissCount() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                misses += segment.misses;
+            }
+        }
+        return misses;
+    }
+
+    /** @return the ratio of the words answered from the cache, 0 if none was asked yet */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long requests = hits + getMissCount();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /** @return the number of cached words */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /** Removes all cached words and resets the statistics. */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.hits = 0;
+                segment.misses = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the hyphenation of a word, computing it with the given tree if it isn't cached.
+     * @param tree the hyphenation tree of the language and country, or null if there is none
+     * @param lang the language
+     * @param country the country (may be null or "none")
+     * @param word the word
+     * @param remainCharCount the minimum number of characters before a hyphenation point
+     * @param pushCharCount the minimum number of characters after a hyphenation point
+     * @return the hyphenation, or null if the word cannot be hyphenated
+     */
+    public Hyphenation hyphenate(HyphenationTree tree, String lang, String country, String word,
+            int remainCharCount, int pushCharCount) {
+        if (tree == null) {
+            return null;
+        }
+        if (maxEntries == 0) {
+            return tree.hyphenate(word, remainCharCount, pushCharCount);
+        }
+        Key key = new Key(lang, country, word, remainCharCount, pushCharCount);
+        Segment segment = segments[(key.hash ^ (key.hash >>> 16)) & (segments.length - 1)];
+        synchronized (segment) {
+            Hyphenation hyph = segment.get(key);
+            if (hyph != null) {
+                segment.hits++;
+                return hyph == NONE ? null : hyph;
+            }
+            segment.misses++;
+            // hyphenate while holding the lock so a miss takes a single locked section,
+            // words of the other segments can be looked up meanwhile
+            hyph = tree.hyphenate(word, remainCharCount, pushCharCount);
+            segment.put(key, hyph == null ? NONE : hyph);
+            return hyph;
+        }
+    }
+
+    /** A part of the cache with its own lock, evicting its least recently used word. */
+    private static final class Segment extends LinkedHashMap<Key, Hyphenation> {
+
+        private static final long serialVersionUID = 1L;
+
+        private int maxEntries;
+        private long hits;
+        private long misses;
+
+        Segment() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Hyphenation> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private static final class Key {
+
+        private final String lang;
+        private final String country;
+        private final String word;
+        private final int remainCharCount;
+        private final int pushCharCount;
+        private final int hash;
+
+        Key(String lang, String country, String word, int remainCharCount, int pushCharCount) {
+            this.lang = lang;
+            this.country = country;
+            this.word = word;
+            this.remainCharCount = remainCharCount;
+            this.pushCharCount = pushCharCount;
+            int h = word.hashCode();
+            h = 31 * h + (lang == null ? 0 : lang.hashCode());
+            h = 31 * h + (country == null ? 0 : country.hashCode());
+            h = 31 * h + remainCharCount;
+            this.hash = 31 * h + pushCharCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                    && remainCharCount == other.remainCharCount
+                    && pushCharCount == other.pushCharCount
+                    && word.equals(other.word)
+                    && equals(lang, other.lang)
+                    && equals(country, other.country);
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
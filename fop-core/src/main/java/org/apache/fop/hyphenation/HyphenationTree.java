@@ -20,6 +20,7 @@
 package org.apache.fop.hyphenation;
 
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -27,11 +28,14 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.xml.sax.InputSource;
 
@@ -48,6 +52,15 @@ public class HyphenationTree extends TernaryTree implements PatternConsumer {
 
     private static final long serialVersionUID = -7842107987915665573L;
 
+    /** Magic number ("FHYP") at the start of a compiled hyphenation tree. */
+    public static final int FORMAT_MAGIC = 0x46485950;
+
+    /** Version of the compiled hyphenation tree format. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte STOPLIST_STRING = 0;
+    private static final byte STOPLIST_HYPHEN = 1;
+
     /**
      * value space: stores the interletter values
      */
@@ -80,6 +93,110 @@ public class HyphenationTree extends TernaryTree implements PatternConsumer {
         ois.defaultReadObject();
     }
 
+    /**
+     * Writes this tree in the compiled hyphenation format. Unlike Java serialization,
+     * the compiled format is a flat sequence of big-endian arrays that can be
+     * read back directly from a (memory-mapped) buffer by {@link #read(ByteBuffer)}.
+     * @param out the output stream; it is flushed but not closed
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(FORMAT_MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        writeNodes(data);
+        classmap.writeNodes(data);
+        data.writeInt(vspace.length());
+        data.write(vspace.getArray(), 0, vspace.length());
+        data.writeInt(stoplist.size());
+        for (Object o : stoplist.entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            writeString(data, (String) entry.getKey());
+            List items = (List) entry.getValue();
+            data.writeInt(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                Object item = items.get(i);
+                if (item instanceof Hyphen) {
+                    Hyphen hyphen = (Hyphen) item;
+                    data.writeByte(STOPLIST_HYPHEN);
+                    writeString(data, hyphen.preBreak);
+                    writeString(data, hyphen.noBreak);
+                    writeString(data, hyphen.postBreak);
+                } else {
+                    data.writeByte(STOPLIST_STRING);
+                    writeString(data, (String) item);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a tree in the compiled hyphenation format written by {@link #write(OutputStream)}.
+     * @param in the buffer, positioned at the start of the compiled tree
+     * @return the hyphenation tree
+     * @throws HyphenationException if the buffer doesn't contain a compiled tree
+     * of a supported version
+     */
+    public static HyphenationTree read(ByteBuffer in) throws HyphenationException {
+        if (in.remaining() < 8 || in.getInt() != FORMAT_MAGIC) {
+            throw new HyphenationException("Not a compiled hyphenation tree");
+        }
+        int version = in.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new HyphenationException("Unsupported compiled hyphenation tree version: "
+                    + version);
+        }
+        try {
+            HyphenationTree tree = new HyphenationTree();
+            tree.readNodes(in);
+            tree.classmap.readNodes(in);
+            int len = in.getInt();
+            tree.vspace = new ByteVector(new byte[len + 1]);
+            tree.vspace.alloc(len);
+            in.get(tree.vspace.getArray(), 0, len);
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                String word = readString(in);
+                int size = in.getInt();
+                ArrayList items = new ArrayList(size);
+                for (int j = 0; j < size; j++) {
+                    if (in.get() == STOPLIST_HYPHEN) {
+                        items.add(new Hyphen(readString(in), readString(in), readString(in)));
+                    } else {
+                        items.add(readString(in));
+                    }
+                }
+                tree.stoplist.put(word, items);
+            }
+            return tree;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, NegativeArraySizeException...
+            throw new HyphenationException("Corrupt compiled hyphenation tree: " + e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(s.length());
+            out.writeChars(s);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) {
+            return null;
+        }
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = in.getChar();
+        }
+        return new String(chars);
+    }
+
     /**
      * Packs the values by storing them in 4 bits, two values into a byte
      * Values range is from 0 to 9. We use zero as terminator,
@@ -100,7 +100,7 @@ public class HyphenationTreeCache {
      * available.
      * @param key the key (ex. "de_CH" or "en")
      */
-    public void noteMissing(String key) {
+    public synchronized void noteMissing(String key) {
         if (missingHyphenationTrees == null) {
             missingHyphenationTrees = new java.util.HashSet();
         }
@@ -114,7 +114,7 @@ public class HyphenationTreeCache {
      * @param key the key (ex. "de_CH" or "en")
      * @return true if the hyphenation tree is unavailable
      */
-    public boolean isMissing(String key) {
+    public synchronized boolean isMissing(String key) {
         return (missingHyphenationTrees != null && missingHyphenationTrees.contains(key));
     }
 
@@ -20,11 +20,18 @@
 package org.apache.fop.hyphenation;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.xml.sax.InputSource;
 
@@ -54,6 +61,14 @@ public final class Hyphenator {
     public static final String HYPTYPE = Hyphenator.class.toString() + "HYP";
     public static final String XMLTYPE = Hyphenator.class.toString() + "XML";
 
+    /**
+     * Precompiled hyphenation trees found in the resources, by URL. They can't change
+     * while the class loader is alive and are only read after loading, so they are
+     * shared by all user agents in the JVM.
+     */
+    private static final Map<String, HyphenationTree> FOP_TREES
+            = new ConcurrentHashMap<String, HyphenationTree>();
+
     private Hyphenator() {
     }
 
@@ -107,8 +122,8 @@ public final class Hyphenator {
         return hTree;
     }
 
-    private static InputStream getResourceStream(String key) {
-        InputStream is = null;
+    private static URL getResourceURL(String key) {
+        URL url = null;
         // Try to use Context Class Loader to load the properties file.
         try {
             java.lang.reflect.Method getCCL = Thread.class.getMethod(
@@ -117,8 +132,7 @@ public final class Hyphenator {
                 ClassLoader contextClassLoader = (ClassLoader)getCCL.invoke(
                         Thread.currentThread(),
                         new Object[0]);
-                is = contextClassLoader.getResourceAsStream("hyph/" + key
-                                                            + ".hyp");
+                url = contextClassLoader.getResource("hyph/" + key + ".hyp");
             }
         } catch (NoSuchMethodException e) {
             //ignore, fallback further down
@@ -128,43 +142,111 @@ public final class Hyphenator {
             //ignore, fallback further down
         }
 
-        if (is == null) {
-            is = Hyphenator.class.getResourceAsStream("/hyph/" + key
-                                                      + ".hyp");
+        if (url == null) {
+            url = Hyphenator.class.getResource("/hyph/" + key + ".hyp");
         }
 
-        return is;
+        return url;
     }
 
+    /**
+     * Reads a precompiled hyphenation tree, either in the compiled format written by
+     * {@link HyphenationTree#write(java.io.OutputStream)} or as a serialized object.
+     */
     private static HyphenationTree readHyphenationTree(InputStream in) {
         HyphenationTree hTree = null;
         try {
-            ObjectInputStream ois = new ObjectInputStream(in);
-            hTree = (HyphenationTree)ois.readObject();
+            byte[] data = IOUtils.toByteArray(in);
+            if (isCompiledTree(ByteBuffer.wrap(data))) {
+                hTree = HyphenationTree.read(ByteBuffer.wrap(data));
+            } else {
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+                hTree = (HyphenationTree)ois.readObject();
+            }
         } catch (IOException ioe) {
             log.error("I/O error while loading precompiled hyphenation pattern file", ioe);
         } catch (ClassNotFoundException cnfe) {
             log.error("Error while reading hyphenation object from file", cnfe);
+        } catch (HyphenationException he) {
+            log.error("Error while reading compiled hyphenation pattern file", he);
         }
         return hTree;
     }
 
+    private static boolean isCompiledTree(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getInt(buffer.position())
+                == HyphenationTree.FORMAT_MAGIC;
+    }
+
+    /**
+     * Reads a precompiled hyphenation tree from a URL. Compiled trees in local files are
+     * memory-mapped rather than copied through a stream.
+     */
+    private static HyphenationTree readHyphenationTree(URL url) {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                File file = new File(url.toURI());
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    FileChannel channel = in.getChannel();
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    if (isCompiledTree(buffer)) {
+                        return HyphenationTree.read(buffer);
+                    }
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+            } catch (URISyntaxException use) {
+                log.debug("Cannot map " + url + ", reading it as a stream", use);
+            } catch (IllegalArgumentException iae) {
+                log.debug("Cannot map " + url + ", reading it as a stream", iae);
+            } catch (IOException ioe) {
+                log.error("I/O error while loading precompiled hyphenation pattern file", ioe);
+                return null;
+            } catch (HyphenationException he) {
+                log.error("Error while reading compiled hyphenation pattern file", he);
+                return null;
+            }
+        }
+        InputStream in = null;
+        try {
+            in = url.openStream();
+            return readHyphenationTree(in);
+        } catch (IOException ioe) {
+            log.error("I/O error while loading precompiled hyphenation pattern file", ioe);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
     /**
-     * Returns a hyphenation tree. This method looks in the resources (getResourceStream) for
-     * the hyphenation patterns.
+     * Returns a hyphenation tree. This method looks in the resources (getResourceURL) for
+     * the hyphenation patterns. Trees found there are loaded once and shared JVM-wide.
      * @param key the language/country key
      * @return the hyphenation tree or null if it wasn't found in the resources
      */
     public static HyphenationTree getFopHyphenationTree(String key) {
-        InputStream is = getResourceStream(key);
-        if (is == null) {
+        URL url = getResourceURL(key);
+        if (url == null) {
             if (log.isDebugEnabled()) {
                 log.debug("Couldn't find precompiled hyphenation pattern "
                           + key + " in resources");
             }
             return null;
         }
-        return readHyphenationTree(is);
+        String urlKey = url.toExternalForm();
+        HyphenationTree hTree = FOP_TREES.get(urlKey);
+        if (hTree == null) {
+            hTree = readHyphenationTree(url);
+            if (hTree != null) {
+                HyphenationTree existing = FOP_TREES.putIfAbsent(urlKey, hTree);
+                if (existing != null) {
+                    hTree = existing;
+                }
+            }
+        }
+        return hTree;
     }
 
     /**
@@ -252,7 +334,11 @@ public final class Hyphenator {
         if (hTree == null) {
             return null;
         }
-        return hTree.hyphenate(word, leftMin, rightMin);
+        HyphenationCache cache = foUserAgent.getHyphenationCache();
+        if (cache == null) {
+            return hTree.hyphenate(word, leftMin, rightMin);
+        }
+        return cache.hyphenate(hTree, lang, country, word, leftMin, rightMin);
     }
 
 }
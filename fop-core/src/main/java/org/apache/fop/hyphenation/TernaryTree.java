@@ -19,7 +19,10 @@
 
 package org.apache.fop.hyphenation;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Enumeration;
 import java.util.Stack;
 
@@ -709,6 +712,56 @@ public class TernaryTree implements Cloneable, Serializable {
 
     }
 
+    /**
+     * Writes the nodes of this tree as part of a compiled hyphenation tree.
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     * @see HyphenationTree#write(java.io.OutputStream)
+     */
+    void writeNodes(DataOutputStream out) throws IOException {
+        out.writeChar(root);
+        out.writeChar(freenode);
+        out.writeInt(length);
+        out.writeInt(lo.length);
+        writeChars(out, lo, lo.length);
+        writeChars(out, hi, hi.length);
+        writeChars(out, eq, eq.length);
+        writeChars(out, sc, sc.length);
+        out.writeInt(kv.length());
+        writeChars(out, kv.getArray(), kv.length());
+    }
+
+    /**
+     * Reads the nodes of this tree from a compiled hyphenation tree.
+     * @param in the buffer, positioned at the nodes
+     * @see HyphenationTree#read(ByteBuffer)
+     */
+    void readNodes(ByteBuffer in) {
+        root = in.getChar();
+        freenode = in.getChar();
+        length = in.getInt();
+        int nodeCount = in.getInt();
+        lo = readChars(in, nodeCount);
+        hi = readChars(in, nodeCount);
+        eq = readChars(in, nodeCount);
+        sc = readChars(in, nodeCount);
+        kv = new CharVector(readChars(in, in.getInt()));
+    }
+
+    private static void writeChars(DataOutputStream out, char[] chars, int count)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeChar(chars[i]);
+        }
+    }
+
+    private static char[] readChars(ByteBuffer in, int count) {
+        char[] chars = new char[count];
+        in.asCharBuffer().get(chars);
+        in.position(in.position() + count * 2);
+        return chars;
+    }
+
     /**
      * Print stats (for testing).
      */
@@ -378,10 +378,23 @@ public abstract class AbstractBreaker {
         log.debug("PLM> flow BPD =" + flowBPD);
 
         int nextSequenceStartsOn = Constants.EN_ANY;
+        // where the element list of the current page breaking window was started, to lay out
+        // the window again if none of its pages can be kept
+        LayoutContext windowStartContext = null;
+        int windowStartsOn = Constants.EN_ANY;
+        Position windowRestartPosition = null;
+        LayoutManager windowRestartLM = null;
+        List<KnuthElement> windowFirstElements = null;
+        int windowScale = 1;
         while (hasMoreContent()) {
             blockLists.clear();
 
             //*** Phase 1: Get Knuth elements ***
+            windowStartContext = LayoutContext.copyOf(childLC);
+            windowStartsOn = nextSequenceStartsOn;
+            windowRestartPosition = null;
+            windowRestartLM = null;
+            windowFirstElements = null;
             nextSequenceStartsOn = getNextBlockList(childLC, nextSequenceStartsOn);
             empty = empty && blockLists.size() == 0;
 
@@ -410,8 +423,40 @@ public abstract class AbstractBreaker {
                 int optimalPageCount = alg.findBreakingPoints(blockList, 1, true,
                         BreakingAlgorithm.ALL_BREAKS);
                 boolean ipdChangesOnNextPage = (alg.getIPDdifference() != 0);
+                boolean windowFull = false;
+                if (!ipdChangesOnNextPage && !alg.handlingFloat()
+                        && blockListIndex == blockLists.size() - 1 && isWindowFull()) {
+                    int keptPageCount = alg.handleWindowEnd(this);
+                    if (keptPageCount > 0) {
+                        log.debug("PLM> page breaking window full, keeping " + keptPageCount
+                                + " of " + optimalPageCount + " pages");
+                        optimalPageCount = keptPageCount;
+                        windowFull = true;
+                        windowScale = 1;
+                    } else if (canGetWindowAgain(windowRestartPosition, windowFirstElements)
+                            && extendWindow(windowFirstElements != null, windowScale + 1)) {
+                        // no page ends where layout can be restarted: lay out the content of
+                        // the window again, accumulating past its end
+                        windowScale++;
+                        log.debug("PLM> no page of the page breaking window can be kept,"
+                                + " extending it to " + windowScale + " times its size");
+                        childLC = LayoutContext.copyOf(windowStartContext);
+                        blockLists.clear();
+                        blockListIndex = -1;
+                        nextSequenceStartsOn = getNextBlockList(childLC, windowStartsOn,
+                                windowRestartPosition, windowRestartLM, windowFirstElements);
+                        continue;
+                    } else {
+                        LayoutManager lm = getCurrentChildLM();
+                        BlockLevelEventProducer eventProducer = BlockLevelEventProducer.Provider.get(
+                                lm.getFObj().getUserAgent().getEventBroadcaster());
+                        eventProducer.pageBreakingWindowEndsWithPageBreak(this,
+                                lm.getFObj().getLocator());
+                        windowScale = 1;
+                    }
+                }
                 boolean onLastPageAndIPDChanges = false;
-                if (!ipdChangesOnNextPage) {
+                if (!ipdChangesOnNextPage && !windowFull) {
                     onLastPageAndIPDChanges = (lastPageHasIPDChange(optimalPageCount) && !thereIsANonRestartableLM(alg)
                             && (shouldRedoLayout() || (wasLayoutRedone() && optimalPageCount > 1)));
                 }
@@ -419,6 +464,9 @@ public abstract class AbstractBreaker {
                         && pslm != null && pslm.getCurrentPage().isPagePositionOnly) {
                     return false;
                 }
+                // a full page breaking window is handled like an IPD change after the last
+                // page that is kept: layout restarts from the break ending that page
+                ipdChangesOnNextPage |= windowFull;
                 if (alg.handlingFloat()) {
                     nextSequenceStartsOn = handleFloatLayout(alg, optimalPageCount, blockList, childLC);
                 } else if (ipdChangesOnNextPage || onLastPageAndIPDChanges) {
@@ -448,6 +496,11 @@ public abstract class AbstractBreaker {
                     }
                     blockLists.clear();
                     blockListIndex = -1;
+                    windowStartContext = LayoutContext.copyOf(childLC);
+                    windowStartsOn = Constants.EN_COLUMN;
+                    windowRestartPosition = positionAtBreak;
+                    windowRestartLM = restartAtLM;
+                    windowFirstElements = firstElementsForRestart;
                     nextSequenceStartsOn = getNextBlockList(childLC, Constants.EN_COLUMN, positionAtBreak,
                             restartAtLM, firstElementsForRestart);
                 } else {
@@ -743,6 +796,36 @@ public abstract class AbstractBreaker {
         return nextSequenceStartsOn;
     }
 
+    /**
+     * Indicates whether the last element list ends because the page breaking window was full.
+     * Only implemented by the PageBreaker.
+     * @return true if the last element list ends at the end of a page breaking window
+     */
+    protected boolean isWindowFull() {
+        return false;
+    }
+
+    /**
+     * Indicates whether the element list of a page breaking window can be got again from the
+     * layout managers: it must not start with elements of a layout manager that can't restart.
+     */
+    private static boolean canGetWindowAgain(Position restartPosition, List<KnuthElement> firstElements) {
+        return firstElements == null || (restartPosition != null && firstElements.isEmpty());
+    }
+
+    /**
+     * Prepares for getting the element list of the last page breaking window again, with the
+     * window extended, because none of its pages ends where layout can be restarted.
+     * Only implemented by the PageBreaker.
+     * @param restart true if the window started at a restart position, false if it started
+     *          where the element list before it ended
+     * @param windowScale the size of the extended window, in multiples of the initial size
+     * @return true if the element list can be got again
+     */
+    protected boolean extendWindow(boolean restart, int windowScale) {
+        return false;
+    }
+
     protected boolean shouldRedoLayout() {
         return false;
     }
@@ -759,7 +842,7 @@ public abstract class AbstractBreaker {
     private boolean thereIsANonRestartableLM(PageBreakingAlgorithm alg) {
         KnuthNode optimalBreak = alg.getBestNodeForLastPage();
         if (optimalBreak != null) {
-            int positionIndex = optimalBreak.position;
+            int positionIndex = optimalBreak.getPosition();
             KnuthElement elementAtBreak = alg.getElement(positionIndex);
             Position positionAtBreak = elementAtBreak.getPosition();
             if (!(positionAtBreak instanceof SpaceResolver.SpaceHandlingBreakPosition)) {
@@ -129,6 +129,31 @@ public abstract class AbstractPageSequenceLayoutManager extends AbstractLayoutMa
         return null;
     }
 
+    /**
+     * Returns the page number of the first or last page containing the given ID according
+     * to a previous layout pass of the document.
+     *
+     * @param idref the idref trait needing to be resolved
+     * @param last true for the last page containing the ID, false for the first one
+     * @return the page number string, or null if the ID was not resolved in advance
+     * @see IDTracker#preResolveIDs(IDTracker)
+     */
+    public String getPreResolvedPageNumber(String idref, boolean last) {
+        return idTracker.getPreResolvedPageNumber(idref, last);
+    }
+
+    /**
+     * Returns the key of the first page containing the given ID according to a previous
+     * layout pass of the document.
+     *
+     * @param idref the idref trait needing to be resolved
+     * @return the page viewport key, or null if the ID was not resolved in advance
+     * @see IDTracker#preResolveIDs(IDTracker)
+     */
+    public String getPreResolvedPageKey(String idref) {
+        return idTracker.getPreResolvedPageKey(idref);
+    }
+
     /**
      * This returns the last PageViewport that contains an id trait
      * matching the idref argument, or null if no such PV exists.
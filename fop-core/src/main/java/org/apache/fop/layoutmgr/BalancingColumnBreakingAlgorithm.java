@@ -54,7 +54,7 @@ public class BalancingColumnBreakingAlgorithm extends PageBreakingAlgorithm {
             KnuthElement element, int fitnessClass, double r) {
         double demerits = Double.MAX_VALUE;
         if (idealBreaks == null) {
-            idealBreaks = calculateIdealBreaks(activeNode.position);
+            idealBreaks = calculateIdealBreaks(activeNode.getPosition());
         }
         LinkedList<Integer> curPossibility = getPossibilityTrail(activeNode);
         boolean notIdeal = false;
@@ -255,7 +255,7 @@ public class BalancingColumnBreakingAlgorithm extends PageBreakingAlgorithm {
         LinkedList<Integer> trail = new LinkedList<Integer>();
         KnuthNode previous = activeNode;
         do {
-            trail.addFirst(previous.position);
+            trail.addFirst(previous.getPosition());
             previous = previous.previous;
         } while (previous != null);
         return trail;
@@ -203,6 +203,16 @@ public interface BlockLevelEventProducer extends EventProducer {
      */
     void nonRestartableContentFlowingToNarrowerPage(Object source);
 
+    /**
+     * No page of a page breaking window ends where layout can be restarted and its content
+     * can't be laid out again with a larger window, so the window ends with a page break.
+     *
+     * @param source the event source
+     * @param loc the location of the error or null
+     * @event.severity WARN
+     */
+    void pageBreakingWindowEndsWithPageBreak(Object source, Locator loc);
+
     /**
      * A feasible layout has reached the given number of parts (columns or pages).
      *
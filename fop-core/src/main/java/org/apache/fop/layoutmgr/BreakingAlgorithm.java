@@ -19,6 +19,9 @@
 
 package org.apache.fop.layoutmgr;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -192,6 +195,9 @@ public abstract class BreakingAlgorithm {
     private boolean partOverflowRecoveryActivated = true;
     private KnuthNode lastRecovered;
 
+    /** The nodes to reuse if node recycling is enabled, null otherwise. */
+    private NodePool nodePool;
+
     /**
      * Create a new instance.
      *
@@ -226,34 +232,34 @@ public abstract class BreakingAlgorithm {
      */
     public class KnuthNode {
         /** index of the breakpoint represented by this node */
-        public final int position;
+        public int position;
 
         /** number of the line ending at this breakpoint */
-        public final int line;
+        public int line;
 
         /** fitness class of the line ending at this breakpoint. One of 0, 1, 2, 3. */
-        public final int fitness;
+        public int fitness;
 
         /** accumulated width of the KnuthElements up to after this breakpoint. */
-        public final int totalWidth;
+        public int totalWidth;
 
         /** accumulated stretchability of the KnuthElements up to after this breakpoint. */
-        public final int totalStretch;
+        public int totalStretch;
 
         /** accumulated shrinkability of the KnuthElements up to after this breakpoint. */
-        public final int totalShrink;
+        public int totalShrink;
 
         /** adjustment ratio if the line ends at this breakpoint */
-        public final double adjustRatio;
+        public double adjustRatio;
 
         /** available stretch of the line ending at this breakpoint */
-        public final int availableShrink;
+        public int availableShrink;
 
         /** available shrink of the line ending at this breakpoint */
-        public final int availableStretch;
+        public int availableStretch;
 
         /** difference between target and actual line width */
-        public final int difference;
+        public int difference;
 
         /** minimum total demerits up to this breakpoint */
         public double totalDemerits;
@@ -289,6 +295,19 @@ public abstract class BreakingAlgorithm {
                 int totalWidth, int totalStretch, int totalShrink,
                 double adjustRatio, int availableShrink, int availableStretch,
                 int difference, double totalDemerits, KnuthNode previous) {
+            reset(position, line, fitness, totalWidth, totalStretch, totalShrink,
+                    adjustRatio, availableShrink, availableStretch,
+                    difference, totalDemerits, previous);
+        }
+
+        /**
+         * Reinitializes a node for reuse; see the constructor for the parameters. The node
+         * fields aren't final for this reason, but are not meant to be changed otherwise.
+         */
+        void reset(int position, int line, int fitness,
+                int totalWidth, int totalStretch, int totalShrink,
+                double adjustRatio, int availableShrink, int availableStretch,
+                int difference, double totalDemerits, KnuthNode previous) {
             this.position = position;
             this.line = line;
             this.fitness = fitness;
@@ -301,13 +320,65 @@ public abstract class BreakingAlgorithm {
             this.difference = difference;
             this.totalDemerits = totalDemerits;
             this.previous = previous;
+            this.next = null;
+            this.fitRecoveryCounter = 0;
+        }
+
+        /** @return the index of the breakpoint represented by this node */
+        public int getPosition() {
+            return position;
+        }
+
+        /** @return the number of the line ending at this breakpoint */
+        public int getLine() {
+            return line;
+        }
+
+        /** @return the fitness class of the line ending at this breakpoint. One of 0, 1, 2, 3 */
+        public int getFitness() {
+            return fitness;
+        }
+
+        /** @return the accumulated width of the KnuthElements up to after this breakpoint */
+        public int getTotalWidth() {
+            return totalWidth;
+        }
+
+        /** @return the accumulated stretchability of the KnuthElements up to after this breakpoint */
+        public int getTotalStretch() {
+            return totalStretch;
+        }
+
+        /** @return the accumulated shrinkability of the KnuthElements up to after this breakpoint */
+        public int getTotalShrink() {
+            return totalShrink;
+        }
+
+        /** @return the adjustment ratio if the line ends at this breakpoint */
+        public double getAdjustRatio() {
+            return adjustRatio;
+        }
+
+        /** @return the available shrink of the line ending at this breakpoint */
+        public int getAvailableShrink() {
+            return availableShrink;
+        }
+
+        /** @return the available stretch of the line ending at this breakpoint */
+        public int getAvailableStretch() {
+            return availableStretch;
+        }
+
+        /** @return the difference between target and actual line width */
+        public int getDifference() {
+            return difference;
         }
 
         /** {@inheritDoc} */
         public String toString() {
             return "<KnuthNode at " + position + " "
                     + totalWidth + "+" + totalStretch + "-" + totalShrink
-                    + " line:" + line + " prev:" + (previous != null ? previous.position : -1)
+                    + " line:" + line + " prev:" + (previous != null ? previous.getPosition() : -1)
                     + " dem:" + totalDemerits
                     + " fitness:" + FitnessClasses.NAMES[fitness] + ">";
         }
@@ -579,7 +650,7 @@ public abstract class BreakingAlgorithm {
                 }
 
                 if (lastTooShort == null
-                        || lastForced.position == lastTooShort.position) {
+                        || lastForced.getPosition() == lastTooShort.getPosition()) {
                     lastForced = recoverFromOverflow();
                 } else {
                     lastForced = lastTooShort;
@@ -599,8 +670,8 @@ public abstract class BreakingAlgorithm {
         // for each active node, create a set of breaking points
         for (int i = startLine; i < endLine; i++) {
             for (KnuthNode node = getNode(i); node != null; node = node.next) {
-                updateData1(node.line, node.totalDemerits);
-                calculateBreakPoints(node, par, node.line);
+                updateData1(node.getLine(), node.totalDemerits);
+                calculateBreakPoints(node, par, node.getLine());
             }
         }
 
@@ -650,7 +721,7 @@ public abstract class BreakingAlgorithm {
 
         // content would overflow, insert empty line/page and try again
         return createNode(
-                lastTooLong.previous.position, lastTooLong.previous.line + 1, 1,
+                lastTooLong.previous.getPosition(), lastTooLong.previous.getLine() + 1, 1,
                 0, 0, 0,
                 0, 0, 0,
                 0, 0, lastTooLong.previous);
@@ -666,6 +737,81 @@ public abstract class BreakingAlgorithm {
         this.startLine = 0;
         this.endLine = 0;
         this.activeLines = new KnuthNode[20];
+        this.activeNodeCount = 0;
+        if (nodePool != null) {
+            // the nodes of the previous run are no longer referenced
+            this.lastDeactivated = null;
+            this.lastRecovered = null;
+            nodePool.inUse = 0;
+        }
+    }
+
+    /**
+     * Nodes to be reused by successive runs of breaking algorithms. A pool may be shared by
+     * several algorithm instances, e.g. the ones breaking the paragraphs of a block, as long
+     * as they don't run at the same time and no node is referenced after a run.
+     */
+    public static final class NodePool {
+
+        /** The maximum number of nodes kept for reuse */
+        private static final int MAX_SIZE = 4096;
+
+        private final List<KnuthNode> nodes = new ArrayList<KnuthNode>();
+
+        /** The number of nodes handed out by the current run of an algorithm */
+        private int inUse;
+    }
+
+    /**
+     * Enables or disables the recycling of nodes. When enabled, each run of
+     * {@link #findBreakingPoints(KnuthSequence, double, boolean, int)} reuses the nodes
+     * created by the previous runs instead of allocating new ones. Subclasses may only
+     * enable it if they don't keep references to nodes after a run, and if they don't
+     * override the {@code createNode} methods.
+     * @param recycle true to recycle the nodes
+     */
+    protected void setNodeRecycling(boolean recycle) {
+        setNodePool(recycle ? new NodePool() : null);
+    }
+
+    /**
+     * Sets the pool the nodes are taken from, for the same purpose as
+     * {@link #setNodeRecycling(boolean)}. Sharing the pool lets the algorithm reuse the
+     * nodes of other instances, e.g. the ones breaking the previous paragraphs.
+     * @param pool the node pool, null to disable recycling
+     */
+    protected void setNodePool(NodePool pool) {
+        nodePool = pool;
+    }
+
+    private KnuthNode newNode(int position, int line, int fitness,
+            int totalWidth, int totalStretch, int totalShrink,
+            double adjustRatio, int availableShrink, int availableStretch,
+            int difference, double totalDemerits, KnuthNode previous) {
+        if (nodePool == null) {
+            return new KnuthNode(position, line, fitness,
+                    totalWidth, totalStretch, totalShrink,
+                    adjustRatio, availableShrink, availableStretch,
+                    difference, totalDemerits, previous);
+        }
+        KnuthNode node;
+        if (nodePool.inUse < nodePool.nodes.size()) {
+            node = nodePool.nodes.get(nodePool.inUse++);
+            node.reset(position, line, fitness,
+                    totalWidth, totalStretch, totalShrink,
+                    adjustRatio, availableShrink, availableStretch,
+                    difference, totalDemerits, previous);
+        } else {
+            node = new KnuthNode(position, line, fitness,
+                    totalWidth, totalStretch, totalShrink,
+                    adjustRatio, availableShrink, availableStretch,
+                    difference, totalDemerits, previous);
+            if (nodePool.nodes.size() < NodePool.MAX_SIZE) {
+                nodePool.nodes.add(node);
+                nodePool.inUse++;
+            }
+        }
+        return node;
     }
 
     /**
@@ -692,10 +838,10 @@ public abstract class BreakingAlgorithm {
             int totalWidth, int totalStretch, int totalShrink,
             double adjustRatio, int availableShrink, int availableStretch,
             int difference, double totalDemerits, KnuthNode previous) {
-        return new KnuthNode(position, line, fitness,
-                             totalWidth, totalStretch, totalShrink,
-                             adjustRatio, availableShrink, availableStretch,
-                             difference, totalDemerits, previous);
+        return newNode(position, line, fitness,
+                       totalWidth, totalStretch, totalShrink,
+                       adjustRatio, availableShrink, availableStretch,
+                       difference, totalDemerits, previous);
     }
 
     /** Creates a new active node for a break from the best active node of the given
@@ -715,11 +861,11 @@ public abstract class BreakingAlgorithm {
      */
     protected KnuthNode createNode(int position, int line, int fitness,
                                    int totalWidth, int totalStretch, int totalShrink) {
-        return new KnuthNode(position, line, fitness,
-                             totalWidth, totalStretch, totalShrink, best.getAdjust(fitness),
-                             best.getAvailableShrink(fitness), best.getAvailableStretch(fitness),
-                             best.getDifference(fitness), best.getDemerits(fitness),
-                             best.getNode(fitness));
+        return newNode(position, line, fitness,
+                       totalWidth, totalStretch, totalShrink, best.getAdjust(fitness),
+                       best.getAvailableShrink(fitness), best.getAvailableStretch(fitness),
+                       best.getDifference(fitness), best.getDemerits(fitness),
+                       best.getNode(fitness));
     }
 
     /**
@@ -830,7 +976,7 @@ public abstract class BreakingAlgorithm {
      * node, if applicable.
      */
     protected final void replaceLastDeactivated() {
-        if (lastDeactivated.adjustRatio > 0) {
+        if (lastDeactivated.getAdjustRatio() > 0) {
             //last deactivated was too short
             lastTooShort = lastDeactivated;
         } else {
@@ -868,8 +1014,8 @@ public abstract class BreakingAlgorithm {
                 }
                 lastForced = lastRecovered;
                 lastRecovered = null;
-                startLine = lastForced.line;
-                endLine = lastForced.line;
+                startLine = lastForced.getLine();
+                endLine = lastForced.getLine();
                 log.debug("rolled back...");
             }
         } else {
@@ -891,19 +1037,19 @@ public abstract class BreakingAlgorithm {
         }
 
         restartingNode.totalDemerits = 0;
-        addNode(restartingNode.line, restartingNode);
-        startLine = restartingNode.line;
+        addNode(restartingNode.getLine(), restartingNode);
+        startLine = restartingNode.getLine();
         endLine = startLine + 1;
-        totalWidth = restartingNode.totalWidth;
-        totalStretch = restartingNode.totalStretch;
-        totalShrink = restartingNode.totalShrink;
+        totalWidth = restartingNode.getTotalWidth();
+        totalStretch = restartingNode.getTotalStretch();
+        totalShrink = restartingNode.getTotalShrink();
         lastTooShort = null;
         lastTooLong = null;
         // the width, stretch and shrink already include the width,
         // stretch and shrink of the suppressed glues;
         // advance in the sequence in order to avoid taking into account
         // these elements twice
-        int restartingIndex = restartingNode.position;
+        int restartingIndex = restartingNode.getPosition();
         while (restartingIndex + 1 < par.size()
                && !(getElement(restartingIndex + 1).isBox())) {
             restartingIndex++;
@@ -930,7 +1076,7 @@ public abstract class BreakingAlgorithm {
         lastTooLong = null;
         for (int line = startLine; line < endLine; line++) {
             for (KnuthNode node = getNode(line); node != null; node = node.next) {
-                if (node.position == elementIdx) {
+                if (node.getPosition() == elementIdx) {
                     continue;
                 }
                 int difference = computeDifference(node, element, elementIdx);
@@ -940,8 +1086,8 @@ public abstract class BreakingAlgorithm {
                 }
 
                 double r = computeAdjustmentRatio(node, difference);
-                int availableShrink = totalShrink - node.totalShrink;
-                int availableStretch = totalStretch - node.totalStretch;
+                int availableShrink = totalShrink - node.getTotalShrink();
+                int availableStretch = totalStretch - node.getTotalStretch();
 
                 if (log.isTraceEnabled()) {
                     log.trace("\tr=" + r + " difference=" + difference);
@@ -1184,7 +1330,7 @@ public abstract class BreakingAlgorithm {
     protected int computeDifference(KnuthNode activeNode, KnuthElement element,
                                     int elementIndex) {
         // compute the adjustment ratio
-        int actualWidth = totalWidth - activeNode.totalWidth;
+        int actualWidth = totalWidth - activeNode.getTotalWidth();
         if (element.isPenalty()) {
             actualWidth += element.getWidth();
         }
@@ -1208,14 +1354,14 @@ public abstract class BreakingAlgorithm {
     protected double computeAdjustmentRatio(KnuthNode activeNode, int difference) {
         // compute the adjustment ratio
         if (difference > 0) {
-            int maxAdjustment = totalStretch - activeNode.totalStretch;
+            int maxAdjustment = totalStretch - activeNode.getTotalStretch();
             if (maxAdjustment > 0) {
                 return (double) difference / maxAdjustment;
             } else {
                 return INFINITE_RATIO;
             }
         } else if (difference < 0) {
-            int maxAdjustment = totalShrink - activeNode.totalShrink;
+            int maxAdjustment = totalShrink - activeNode.getTotalShrink();
             if (maxAdjustment > 0) {
                 return (double) difference / maxAdjustment;
             } else {
@@ -1258,8 +1404,8 @@ public abstract class BreakingAlgorithm {
         }
 
         if (element.isPenalty() && ((KnuthPenalty) element).isPenaltyFlagged()
-            && getElement(activeNode.position).isPenalty()
-            && ((KnuthPenalty) getElement(activeNode.position)).isPenaltyFlagged()) {
+            && getElement(activeNode.getPosition()).isPenalty()
+            && ((KnuthPenalty) getElement(activeNode.getPosition())).isPenaltyFlagged()) {
             // add demerit for consecutive breaks at flagged penalties
             demerits += repeatedFlaggedDemerit;
             // there are at least two consecutive lines ending with a flagged penalty;
@@ -1269,7 +1415,7 @@ public abstract class BreakingAlgorithm {
             for (KnuthNode prevNode = activeNode.previous;
                  prevNode != null && flaggedPenaltiesCount <= maxFlaggedPenaltiesCount;
                  prevNode = prevNode.previous) {
-                KnuthElement prevElement = getElement(prevNode.position);
+                KnuthElement prevElement = getElement(prevNode.getPosition());
                 if (prevElement.isPenalty()
                     && ((KnuthPenalty) prevElement).isPenaltyFlagged()) {
                     // the previous line ends with a flagged penalty too
@@ -1287,7 +1433,7 @@ public abstract class BreakingAlgorithm {
                 demerits += BestRecords.INFINITE_DEMERITS;
             }
         }
-        if (Math.abs(fitnessClass - activeNode.fitness) > 1) {
+        if (Math.abs(fitnessClass - activeNode.getFitness()) > 1) {
             // add demerit for consecutive breaks
             // with very different fitness classes
             demerits += incompatibleFitnessDemerit;
@@ -1323,10 +1469,10 @@ public abstract class BreakingAlgorithm {
      * @return the node with the least demerit.
      */
     protected KnuthNode compareNodes(KnuthNode node1, KnuthNode node2) {
-        if (node1 == null || node2.position > node1.position) {
+        if (node1 == null || node2.getPosition() > node1.getPosition()) {
             return node2;
         }
-        if (node2.position == node1.position) {
+        if (node2.getPosition() == node1.getPosition()) {
             if (node2.totalDemerits < node1.totalDemerits) {
                 return node2;
             }
@@ -1447,7 +1593,7 @@ public abstract class BreakingAlgorithm {
                                       int total) {
         KnuthNode bestActiveNode = node;
         // use bestActiveNode to determine the optimum breakpoints
-        for (int i = node.line; i > 0; i--) {
+        for (int i = node.getLine(); i > 0; i--) {
             updateData2(bestActiveNode, par, total);
             bestActiveNode = bestActiveNode.previous;
         }
@@ -51,6 +51,21 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
 
     private boolean handlingFloat;
 
+    /** Content length of the element list being built, used for windowed page breaking */
+    private long windowContentLength;
+
+    /** True if the last element list was returned because the page breaking window was full */
+    private boolean windowFull;
+
+    /** The child the last element list started with, null if it didn't start at a child boundary */
+    private LayoutManager windowStartLM;
+
+    /** The size of the page breaking window of the next element list, in multiples of the initial size */
+    private int windowScale = 1;
+
+    /** True if the children are laid out again for an extended page breaking window */
+    private boolean windowExtended;
+
     /**
      * This is the top level layout manager.
      * It is created by the PageSequence FO.
@@ -105,9 +120,22 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
             }
             setCurrentChildLM(currentChildLM);
         } else {
+            boolean atChildBoundary = windowExtended || curChildLM == null || curChildLM.isFinished();
             currentChildLM = getChildLM();
+            windowStartLM = atChildBoundary ? currentChildLM : null;
+            // laying out the children of a window again: start each of them afresh
+            doReset = windowExtended;
         }
 
+        windowContentLength = 0;
+        windowFull = false;
+        long windowBPD = getWindowBPD(getFObj().getUserAgent().getPageBreakingWindow(),
+                context.getStackLimitBP().getOpt());
+        if (windowBPD < Long.MAX_VALUE / windowScale) {
+            windowBPD *= windowScale;
+        }
+        windowScale = 1;
+        windowExtended = false;
         while (currentChildLM != null) {
             if (!isRestart || doReset) {
                 if (doReset) {
@@ -125,6 +153,13 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
                 // restarted; force reset as of next child
                 doReset = true;
             }
+            if (windowBPD > 0 && windowContentLength >= windowBPD && hasNextChildLM()) {
+                // enough content for the page breaking window; the breaker will restart
+                // after the last page it keeps
+                windowFull = true;
+                SpaceResolver.resolveElementList(elements);
+                return elements;
+            }
             currentChildLM = getChildLM();
         }
 
@@ -157,6 +192,10 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
         context.updateKeepWithNextPending(childLC.getKeepWithNextPending());
 
         elements.addAll(childElements);
+        if (childLM.isRestartable()) {
+            // only count content in which layout can be restarted, so the window has pages to keep
+            windowContentLength += ElementListUtils.calcContentLength(childElements);
+        }
 
         if (ElementListUtils.endsWithForcedBreak(elements)) {
             // a descendant of this flow has break-before or break-after
@@ -234,6 +273,51 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
         return childElements;
     }
 
+    /**
+     * Returns the content length after which an element list is handed to the page breaker.
+     * @param pages the size of the page breaking window in pages, 0 to disable windowing
+     * @param pageBPD the block-progression-dimension available on a page, in millipoints
+     * @return the window length in millipoints, computed without overflowing an int
+     */
+    static long getWindowBPD(int pages, int pageBPD) {
+        return (long) pages * pageBPD;
+    }
+
+    /**
+     * Indicates whether the element list returned last ends because the page breaking window
+     * was full rather than at the end of the flow or at a forced break.
+     * @return true if the last element list ends at the end of a page breaking window
+     * @see org.apache.fop.apps.FOUserAgent#setPageBreakingWindow(int)
+     */
+    boolean isWindowFull() {
+        return windowFull;
+    }
+
+    /**
+     * Prepares for laying out the content of the last page breaking window again with a
+     * larger window, because none of its pages could be kept.
+     * @param restart true if the last element list was obtained by restarting the layout at a
+     *          position, which will be done again; false if this layout manager must go back to
+     *          the child the last element list started with
+     * @param scale the size of the window of the next element list, in multiples of the
+     *          initial size
+     * @return false if the last element list didn't start at a child boundary, so its content
+     *          can't be laid out again
+     */
+    boolean extendWindow(boolean restart, int scale) {
+        if (!restart) {
+            if (windowStartLM == null) {
+                return false;
+            }
+            windowStartLM.reset();
+            setCurrentChildLM(windowStartLM);
+            setFinished(false);
+            windowExtended = true;
+        }
+        windowScale = scale;
+        return true;
+    }
+
     /** {@inheritDoc} */
     @Override
     public int negotiateBPDAdjustment(int adj, KnuthElement lastElement) {
@@ -294,6 +294,21 @@ public class PageBreaker extends AbstractBreaker {
         return !childFLM.isFinished();
     }
 
+    /** {@inheritDoc} */
+    protected boolean isWindowFull() {
+        return childFLM.isWindowFull();
+    }
+
+    /** {@inheritDoc} */
+    protected boolean extendWindow(boolean restart, int windowScale) {
+        if (!childFLM.extendWindow(restart, windowScale)) {
+            return false;
+        }
+        // the page the window started on has been made already and is still empty
+        firstPart = true;
+        return true;
+    }
+
     /**
      * Adds an area to the flow layout manager
      * @param posIter the position iterator
@@ -771,7 +786,7 @@ public class PageBreaker extends AbstractBreaker {
         pageBreakHandled = true;
         List firstElements = Collections.EMPTY_LIST;
         KnuthNode floatNode = alg.getBestFloatEdgeNode();
-        int floatPosition = floatNode.position;
+        int floatPosition = floatNode.getPosition();
         KnuthElement floatElem = alg.getElement(floatPosition);
         Position positionAtBreak = floatElem.getPosition();
         if (!(positionAtBreak instanceof SpaceResolver.SpaceHandlingBreakPosition)) {
@@ -95,6 +95,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
 
     private int ipdDifference;
     private KnuthNode bestNodeForIPDChange;
+    private KnuthNode lastBreakNode;
     public KnuthNode bestNodeForLastPage;
 
     //Used to keep track of switches in keep-context
@@ -286,11 +287,11 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         KnuthNode node = lastBeforeKeepContextSwitch;
         lastBeforeKeepContextSwitch = null;
         // content would overflow, insert empty page/column(s) and try again
-        while (!pageProvider.endPage(node.line - 1)) {
+        while (!pageProvider.endPage(node.getLine() - 1)) {
             log.trace("Adding node for empty column");
             node = createNode(
-                    node.position,
-                    node.line + 1, 1,
+                    node.getPosition(),
+                    node.getLine() + 1, 1,
                     0, 0, 0,
                     0, 0, 0,
                     0, 0, node);
@@ -317,11 +318,11 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
          * and the other one corresponds to a page-break, return the page-break node
          */
         if (pageProvider != null) {
-            if (pageProvider.endPage(node1.line - 1)
-                    && !pageProvider.endPage(node2.line - 1)) {
+            if (pageProvider.endPage(node1.getLine() - 1)
+                    && !pageProvider.endPage(node2.getLine() - 1)) {
                 return node1;
-            } else if (pageProvider.endPage(node2.line - 1)
-                    && !pageProvider.endPage(node1.line - 1)) {
+            } else if (pageProvider.endPage(node2.getLine() - 1)
+                    && !pageProvider.endPage(node1.getLine() - 1)) {
                 return node2;
             }
         }
@@ -454,7 +455,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         if (footnotesPending) {
             // remove from footnotesList the note lists that will be met
             // after the restarting point
-            for (int j = currentIndex; j >= restartingNode.position; j--) {
+            for (int j = currentIndex; j >= restartingNode.getPosition(); j--) {
                 final KnuthElement resetElement = getElement(j);
                 if (resetElement instanceof KnuthBlockBox
                         && ((KnuthBlockBox) resetElement).hasAnchors()) {
@@ -549,7 +550,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
     protected int computeDifference(KnuthNode activeNode, KnuthElement element,
                                     int elementIndex) {
         KnuthPageNode pageNode = (KnuthPageNode) activeNode;
-        int actualWidth = totalWidth - pageNode.totalWidth;
+        int actualWidth = totalWidth - pageNode.getTotalWidth();
         int footnoteSplit;
         boolean canDeferOldFN;
         actualWidth += pageNode.totalVariantsWidth;
@@ -566,7 +567,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
                 // this page contains some footnote citations
                 // add the footnote separator width
                 actualWidth += footnoteSeparatorLength.getOpt();
-                if (actualWidth + allFootnotes <= getLineWidth(activeNode.line)) {
+                if (actualWidth + allFootnotes <= getLineWidth(activeNode.getLine())) {
                     // there is enough space to insert all footnotes:
                     // add the whole allFootnotes length
                     actualWidth += allFootnotes;
@@ -578,7 +579,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
                              pageNode, elementIndex))
                             || newFootnotes)
                            && (footnoteSplit = getFootnoteSplit(
-                               pageNode, getLineWidth(activeNode.line) - actualWidth,
+                               pageNode, getLineWidth(activeNode.getLine()) - actualWidth,
                                 canDeferOldFN)) > 0) {
                     // it is allowed to break or even defer footnotes if either:
                     //  - there are new footnotes in the last piece of content, and
@@ -608,7 +609,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         } else {
             // there are no footnotes
         }
-        int diff = getLineWidth(activeNode.line) - actualWidth;
+        int diff = getLineWidth(activeNode.getLine()) - actualWidth;
         if (autoHeight && diff < 0) {
             //getLineWidth() for auto-height parts return 0 so the diff will be negative
             return 0; //...but we don't want to shrink in this case. Stick to optimum.
@@ -644,7 +645,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
      * @return  true if footnotes can be deferred
      */
     private boolean canDeferOldFootnotes(KnuthPageNode node, int contentElementIndex) {
-        return (noBreakBetween(node.position, contentElementIndex)
+        return (noBreakBetween(node.getPosition(), contentElementIndex)
                 && deferredFootnotes(node.footnoteListIndex,
                         node.footnoteElementIndex, node.insertedFootnotes));
     }
@@ -858,7 +859,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
     protected double computeAdjustmentRatio(KnuthNode activeNode, int difference) {
         // compute the adjustment ratio
         if (difference > 0) {
-            int maxAdjustment = totalStretch - activeNode.totalStretch;
+            int maxAdjustment = totalStretch - activeNode.getTotalStretch();
             // add the footnote separator stretch if some footnote content will be added
             if (((KnuthPageNode) activeNode).insertedFootnotes < totalFootnotesLength) {
                 maxAdjustment += footnoteSeparatorLength.getStretch();
@@ -869,7 +870,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
                 return INFINITE_RATIO;
             }
         } else if (difference < 0) {
-            int maxAdjustment = totalShrink - activeNode.totalShrink;
+            int maxAdjustment = totalShrink - activeNode.getTotalShrink();
             // add the footnote separator shrink if some footnote content will be added
             if (((KnuthPageNode) activeNode).insertedFootnotes < totalFootnotesLength) {
                 maxAdjustment += footnoteSeparatorLength.getShrink();
@@ -907,12 +908,12 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         }
 
         if (element.isPenalty() && ((KnuthPenalty) element).isPenaltyFlagged()
-            && getElement(activeNode.position).isPenalty()
-            && ((KnuthPenalty) getElement(activeNode.position)).isPenaltyFlagged()) {
+            && getElement(activeNode.getPosition()).isPenalty()
+            && ((KnuthPenalty) getElement(activeNode.getPosition())).isPenaltyFlagged()) {
             // add demerit for consecutive breaks at flagged penalties
             demerits += repeatedFlaggedDemerit;
         }
-        if (Math.abs(fitnessClass - activeNode.fitness) > 1) {
+        if (Math.abs(fitnessClass - activeNode.getFitness()) > 1) {
             // add demerit for consecutive breaks
             // with very different fitness classes
             demerits += incompatibleFitnessDemerit;
@@ -959,7 +960,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         insertedFootnotesLength = lastNode.insertedFootnotes;
         footnoteListIndex = lastNode.footnoteListIndex;
         footnoteElementIndex = lastNode.footnoteElementIndex;
-        int availableBPD = getLineWidth(lastNode.line);
+        int availableBPD = getLineWidth(lastNode.getLine());
         int split = 0;
         KnuthPageNode prevNode = lastNode;
 
@@ -982,27 +983,27 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
                 // cannot add any content: create a new node and start again
                 // @SuppressFBWarnings("BC_UNCONFIRMED_CAST_OF_RETURN_VALUE")
                 KnuthPageNode node = (KnuthPageNode)
-                                     createNode(lastNode.position, prevNode.line + 1, 1,
+                                     createNode(lastNode.getPosition(), prevNode.getLine() + 1, 1,
                                                 insertedFootnotesLength - prevNode.insertedFootnotes,
                                                 0, 0,
                                                 0, 0, 0,
                                                 0, 0, prevNode);
-                addNode(node.line, node);
-                removeNode(prevNode.line, prevNode);
+                addNode(node.getLine(), node);
+                removeNode(prevNode.getLine(), prevNode);
 
                 prevNode = node;
-                availableBPD = getLineWidth(node.line);
+                availableBPD = getLineWidth(node.getLine());
             }
         }
         // create the last node
         // @SuppressFBWarnings("BC_UNCONFIRMED_CAST_OF_RETURN_VALUE")
         KnuthPageNode node = (KnuthPageNode)
-                             createNode(lastNode.position, prevNode.line + 1, 1,
+                             createNode(lastNode.getPosition(), prevNode.getLine() + 1, 1,
                                         totalFootnotesLength - prevNode.insertedFootnotes, 0, 0,
                                         0, 0, 0,
                                         0, 0, prevNode);
-        addNode(node.line, node);
-        removeNode(prevNode.line, prevNode);
+        addNode(node.getLine(), node);
+        removeNode(prevNode.getLine(), prevNode);
     }
 
     /**
@@ -1061,19 +1062,19 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
                 penalty.setActiveVariant(var);
             }
         }
-        int difference = bestActiveNode.difference;
-        if (difference + bestActiveNode.availableShrink < 0) {
+        int difference = bestActiveNode.getDifference();
+        if (difference + bestActiveNode.getAvailableShrink() < 0) {
             if (!autoHeight) {
                 if (layoutListener != null) {
-                    layoutListener.notifyOverflow(bestActiveNode.line - 1, -difference, getFObj());
+                    layoutListener.notifyOverflow(bestActiveNode.getLine() - 1, -difference, getFObj());
                 }
             }
         }
-        boolean isNonLastPage = (bestActiveNode.line < total);
+        boolean isNonLastPage = (bestActiveNode.getLine() < total);
         int blockAlignment = isNonLastPage ? alignment : alignmentLast;
         // it is always allowed to adjust space, so the ratio must be set regardless of
         // the value of the property display-align; the ratio must be <= 1
-        double ratio = bestActiveNode.adjustRatio;
+        double ratio = bestActiveNode.getAdjustRatio();
         if (ratio < 0) {
             // page break with a negative difference:
             // spaces always have enough shrink
@@ -1086,7 +1087,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
             // not-last page with a positive difference greater than the available stretch
             // spaces can stretch to fill the difference only partially
             ratio = 1;
-            difference -= bestActiveNode.availableStretch;
+            difference -= bestActiveNode.getAvailableStretch();
         } else {
             // last page with a positive difference:
             // spaces do not need to stretch
@@ -1102,12 +1103,12 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         // backwards, from the last one to the first one
         if (log.isDebugEnabled()) {
             log.debug("BBA> difference=" + difference + " ratio=" + ratio
-                    + " position=" + bestActiveNode.position);
+                    + " position=" + bestActiveNode.getPosition());
         }
         if (handlingFloat() && floatPosition == null) {
-            floatPosition = new FloatPosition(this.topLevelLM, bestActiveNode.position, ratio, difference);
+            floatPosition = new FloatPosition(this.topLevelLM, bestActiveNode.getPosition(), ratio, difference);
         } else {
-            boolean useRelayedFootnotes = relayingFootnotes && bestActiveNode.previous.position == 0;
+            boolean useRelayedFootnotes = relayingFootnotes && bestActiveNode.previous.getPosition() == 0;
             // compute the indexes of the first footnote list and the first element in that list
             int firstListIndex = (useRelayedFootnotes) ? previousFootnoteListIndex
                     : ((KnuthPageNode) bestActiveNode.previous).footnoteListIndex;
@@ -1125,7 +1126,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
             } else {
                 firstElementIndex++;
             }
-            insertPageBreakAsFirst(new PageBreakPosition(this.topLevelLM, bestActiveNode.position,
+            insertPageBreakAsFirst(new PageBreakPosition(this.topLevelLM, bestActiveNode.getPosition(),
                     firstListIndex, firstElementIndex, ((KnuthPageNode) bestActiveNode).footnoteListIndex,
                     ((KnuthPageNode) bestActiveNode).footnoteElementIndex, ratio, difference));
         }
@@ -1139,9 +1140,9 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         for (int i = startLine; i < endLine; i++) {
             for (KnuthNode node = getNode(i); node != null; node = node.next) {
                 if (favorSinglePart
-                        && node.line > 1
+                        && node.getLine() > 1
                         && bestActiveNode != null
-                        && Math.abs(bestActiveNode.difference) < bestActiveNode.availableShrink) {
+                        && Math.abs(bestActiveNode.getDifference()) < bestActiveNode.getAvailableShrink()) {
                     //favor current best node, so just skip the current node because it would
                     //result in more than one part
                 } else {
@@ -1153,7 +1154,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
             }
         }
         assert (bestActiveNode != null);
-        return bestActiveNode.line;
+        return bestActiveNode.getLine();
     }
 
     /**
@@ -1203,7 +1204,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
 
     @Override
     protected KnuthNode recoverFromOverflow() {
-        if (compareIPDs(getLastTooLong().line - 1) != 0) {
+        if (compareIPDs(getLastTooLong().getLine() - 1) != 0) {
             /**
              * If the IPD of the next page changes, disable the recovery mechanism as the
              * inline content has to be re-laid out according to the new IPD anyway.
@@ -1232,9 +1233,9 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
          * different ipd. So tweak the parameter to fall into the non-last-page
          * case.
          */
-        calculateBreakPoints(bestNodeForIPDChange, par, bestNodeForIPDChange.line + 1);
+        calculateBreakPoints(bestNodeForIPDChange, par, bestNodeForIPDChange.getLine() + 1);
         activeLines = null;
-        return bestNodeForIPDChange.line;
+        return bestNodeForIPDChange.getLine();
     }
 
     /**
@@ -1245,7 +1246,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
      */
     @Override
     protected void addNode(int line, KnuthNode node) {
-        if (node.position < par.size() - 1 && line > 0
+        if (node.getPosition() < par.size() - 1 && line > 0
                 && (ipdDifference = compareIPDs(line - 1)) != 0) {
             log.trace("IPD changes at page " + line);
             if (bestNodeForIPDChange == null
@@ -1253,7 +1254,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
                 bestNodeForIPDChange = node;
             }
         } else {
-            if (node.position == par.size() - 1) {
+            if (node.getPosition() == par.size() - 1) {
                 /*
                  * The whole sequence could actually fit on the last page before
                  * the IPD change. No need to do any special handling.
@@ -1271,6 +1272,49 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         return bestNodeForIPDChange;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void calculateBreakPoints(KnuthNode node, KnuthSequence par, int total) {
+        lastBreakNode = node;
+        super.calculateBreakPoints(node, par, total);
+    }
+
+    /**
+     * Drops the last part of the computed breaks so layout can be restarted after the part
+     * before it, like after an IPD change. Used for windowed page breaking, where the element
+     * list ended only because the window was full, so the last part isn't final. Parts are
+     * dropped as well if layout can't be restarted after them: when the break is inside a
+     * layout manager that is not restartable or when footnotes are deferred to a later part.
+     * @param breaker the breaker that restarts the layout
+     * @return the number of parts to be kept, or 0 if no part can be kept
+     */
+    int handleWindowEnd(AbstractBreaker breaker) {
+        KnuthNode node = lastBreakNode.previous;
+        while (node != null && node.getLine() > 0
+                && (((KnuthPageNode) node).insertedFootnotes < ((KnuthPageNode) node).totalFootnotes
+                        || !isRestartableBreak(breaker, node))) {
+            node = node.previous;
+        }
+        if (node == null || node.getLine() == 0) {
+            return 0;
+        }
+        while (pageBreaks.size() > node.getLine()) {
+            pageBreaks.removeLast();
+        }
+        bestNodeForIPDChange = node;
+        return node.getLine();
+    }
+
+    private boolean isRestartableBreak(AbstractBreaker breaker, KnuthNode node) {
+        for (int i = node.getPosition(); i < par.size(); i++) {
+            Position position = getElement(i).getPosition();
+            if (position != null && position.getPosition() != null) {
+                return !breaker.containsNonRestartableLM(position.getPosition());
+            }
+        }
+        return false;
+    }
+
     private int compareIPDs(int line) {
         if (pageProvider == null) {
             return 0;
@@ -1301,9 +1345,9 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
     }
 
     protected int handleFloat() {
-        calculateBreakPoints(bestFloatEdgeNode, par, bestFloatEdgeNode.line);
+        calculateBreakPoints(bestFloatEdgeNode, par, bestFloatEdgeNode.getLine());
         activeLines = null;
-        return bestFloatEdgeNode.line - 1;
+        return bestFloatEdgeNode.getLine() - 1;
     }
 
     protected KnuthNode getBestFloatEdgeNode() {
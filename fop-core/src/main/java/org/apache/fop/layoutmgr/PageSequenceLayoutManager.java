@@ -21,7 +21,9 @@ package org.apache.fop.layoutmgr;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -30,6 +32,7 @@ import org.apache.fop.area.Area;
 import org.apache.fop.area.AreaTreeHandler;
 import org.apache.fop.area.AreaTreeModel;
 import org.apache.fop.area.LineArea;
+import org.apache.fop.area.RegionReference;
 import org.apache.fop.complexscripts.bidi.BidiResolver;
 import org.apache.fop.fo.Constants;
 import org.apache.fop.fo.pagination.PageSequence;
@@ -60,6 +63,10 @@ public class PageSequenceLayoutManager extends AbstractPageSequenceLayoutManager
     /** Footnotes coming from repeated table footers, to be added after any other footnote. */
     private List<List<KnuthElement>> tableFooterFootnotes;
 
+    /** The areas of page-independent static content, by the side region they were laid out in. */
+    private final Map<SideRegion, List<Area>> staticContentAreas
+            = new HashMap<SideRegion, List<Area>>();
+
     private int startIntrusionAdjustment;
     private int endIntrusionAdjustment;
 
@@ -226,10 +233,31 @@ public class PageSequenceLayoutManager extends AbstractPageSequenceLayoutManager
             return;
         }
 
+        // static content that doesn't depend on the page is laid out once per page master,
+        // the other pages using the same region refer to the same areas
+        boolean reusable = sc.isPageIndependent()
+                && !getPageSequence().getUserAgent().isAccessibilityEnabled();
+        RegionReference region = curPage.getPageViewport().getRegionReference(regionID);
+        if (reusable) {
+            List<Area> areas = staticContentAreas.get(reg);
+            if (areas != null) {
+                for (Area area : areas) {
+                    region.addChildArea(area);
+                }
+                return;
+            }
+        }
+
+        int blockCount = region.getBlocks().size();
         StaticContentLayoutManager lm = getLayoutManagerMaker()
                                             .makeStaticContentLayoutManager(
                                                 this, sc, reg);
         lm.doLayout();
+        if (reusable && !lm.isOverflow()) {
+            List<Area> blocks = region.getBlocks();
+            staticContentAreas.put(reg,
+                    new ArrayList<Area>(blocks.subList(blockCount, blocks.size())));
+        }
     }
 
     /** {@inheritDoc} */
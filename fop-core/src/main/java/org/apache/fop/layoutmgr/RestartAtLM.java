@@ -115,7 +115,7 @@ class RestartAtLM {
 
     private int findPositionIndex(AbstractBreaker breaker, BreakingAlgorithm.KnuthNode optimalBreak,
                                   PageBreakingAlgorithm alg, int start) {
-        int positionIndex = (optimalBreak != null) ? optimalBreak.position : start;
+        int positionIndex = (optimalBreak != null) ? optimalBreak.getPosition() : start;
         for (int i = positionIndex; i < alg.par.size(); i++) {
             KnuthElement elementAtBreak = alg.getElement(i);
             if (elementAtBreak.getPosition() == null) {
@@ -96,8 +96,13 @@ public abstract class AbstractPageNumberCitationLayoutManager extends LeafNodeLa
             resolved = true;
             citationString = page.getPageNumberString();
         } else {
-            resolved = false;
-            citationString = "MMM"; // Use a place holder
+            // a previous layout pass may already know the page
+            citationString = getPSLM().getPreResolvedPageNumber(citation.getRefId(),
+                    getReferenceType() == UnresolvedPageNumber.LAST);
+            resolved = citationString != null;
+            if (!resolved) {
+                citationString = "MMM"; // Use a place holder
+            }
         }
     }
 
@@ -67,6 +67,10 @@ public class BasicLinkLayoutManager extends InlineLayoutManager {
             // if and when the link is resolved:
             LinkResolver res = new LinkResolver(idref, area);
             res.resolveIDRef(idref, pslm.getFirstPVWithID(idref));
+            if (!res.isResolved()) {
+                // a previous layout pass may already know the page
+                res.resolveIDRef(idref, pslm.getPreResolvedPageKey(idref));
+            }
             if (!res.isResolved()) {
                 pslm.addUnresolvedArea(idref, res);
                 if (area instanceof BasicLinkArea) {
@@ -20,6 +20,7 @@
 package org.apache.fop.layoutmgr.inline;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -95,6 +96,12 @@ public class LineLayoutManager extends InlineStackingLayoutManager
      */
     public static final int DEFAULT_SPACE_WIDTH = 3336;
 
+    /** number of words before a candidate line break hyphenated by targeted hyphenation */
+    private static final int WORDS_BEFORE_BREAK = 2;
+
+    /** number of words after a candidate line break hyphenated by targeted hyphenation */
+    private static final int WORDS_AFTER_BREAK = 4;
+
     /**
      * logging instance
      */
@@ -170,6 +177,8 @@ public class LineLayoutManager extends InlineStackingLayoutManager
 
     private LineLayoutPossibilities lineLayouts;
     private LineLayoutPossibilities[] lineLayoutsList;
+    /** the nodes of the line breaking algorithms, reused from one paragraph to the next */
+    private final BreakingAlgorithm.NodePool breakingNodePool = new BreakingAlgorithm.NodePool();
     private int ipd;
     /**
      * When layout must be re-started due to a change of IPD, there is no need
@@ -305,7 +314,8 @@ public class LineLayoutManager extends InlineStackingLayoutManager
         }
     }
 
-    private class LineBreakingAlgorithm extends BreakingAlgorithm {
+    private class LineBreakingAlgorithm extends BreakingAlgorithm
+            implements ParagraphLayoutCache.BreakHandler {
         private final LineLayoutManager thisLLM;
         private final int pageAlignment;
         private int activePossibility;
@@ -315,6 +325,10 @@ public class LineLayoutManager extends InlineStackingLayoutManager
         private final int lead;
         private final int follow;
         private static final double MAX_DEMERITS = 10e6;
+        private final ParagraphLayoutCache layoutCache;
+        private ParagraphLayoutCache.Layout recordedLayout;
+        /** true while only looking for candidate breaks: overflows are not reported */
+        private boolean probing;
 
         public LineBreakingAlgorithm(int pageAlign, int textAlign, int textAlignLast, int indent, int fillerWidth,
                 int lh, int ld, int fl, boolean first, int maxFlagCount, LineLayoutManager llm) {
@@ -326,10 +340,67 @@ public class LineLayoutManager extends InlineStackingLayoutManager
             follow = fl;
             thisLLM = llm;
             activePossibility = -1;
+            // the nodes are discarded once the line break positions have been computed
+            setNodePool(llm.breakingNodePool);
+            layoutCache = llm.getFObj().getUserAgent().getParagraphLayoutCache();
+        }
+
+        @Override
+        public int findBreakingPoints(KnuthSequence par, int startIndex,
+                                      double threshold, boolean force,
+                                      int allowedBreaks) {
+            ParagraphLayoutCache.Key key = null;
+            if (layoutCache != null) {
+                long thresholdBits = Double.doubleToLongBits(threshold);
+                key = ParagraphLayoutCache.createKey(par, startIndex,
+                        (int) (thresholdBits >>> 32), (int) thresholdBits, force ? 1 : 0,
+                        allowedBreaks, lineWidth, alignment, alignmentLast,
+                        indentFirstPart ? 1 : 0, maxFlaggedPenaltiesCount, pageAlignment,
+                        considerTooShort ? 1 : 0);
+            }
+            if (key == null) {
+                return super.findBreakingPoints(par, startIndex, threshold, force, allowedBreaks);
+            }
+            ParagraphLayoutCache.Layout layout = layoutCache.get(key);
+            if (layout != null) {
+                this.par = par;
+                return layout.replay(this);
+            }
+            int size = par.size();
+            recordedLayout = new ParagraphLayoutCache.Layout();
+            try {
+                int lines = super.findBreakingPoints(par, startIndex, threshold, force, allowedBreaks);
+                // the algorithm may have inserted an element to recover from an overflow
+                if (par.size() == size) {
+                    recordedLayout.complete(lines);
+                    layoutCache.put(key, recordedLayout);
+                }
+                return lines;
+            } finally {
+                recordedLayout = null;
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void addPossibility(int lineCount, double demerits) {
+            updateData1(lineCount, demerits);
+        }
+
+        /** {@inheritDoc} */
+        public void addBreak(int position, int previousPosition, int line, int difference,
+                int availableShrink, int availableStretch, double adjustRatio, int total) {
+            KnuthNode previous = new KnuthNode(previousPosition, line - 1, 1,
+                    0, 0, 0, 0, 0, 0, 0, 0, null);
+            KnuthNode node = new KnuthNode(position, line, 1, 0, 0, 0,
+                    adjustRatio, availableShrink, availableStretch, difference, 0, previous);
+            updateData2(node, par, total);
         }
 
         @Override
         public void updateData1(int lineCount, double demerits) {
+            if (recordedLayout != null) {
+                recordedLayout.addPossibility(lineCount, demerits);
+            }
             lineLayouts.addPossibility(lineCount, demerits);
             if (log.isTraceEnabled()) {
                 log.trace("Layout possibility in " + lineCount + " lines; break at position:");
@@ -340,12 +411,19 @@ public class LineLayoutManager extends InlineStackingLayoutManager
         public void updateData2(KnuthNode bestActiveNode,
                                 KnuthSequence par,
                                 int total) {
+            if (recordedLayout != null) {
+                recordedLayout.addBreak(bestActiveNode.getPosition(),
+                        bestActiveNode.previous != null ? bestActiveNode.previous.getPosition() : -1,
+                        bestActiveNode.getLine(),
+                        bestActiveNode.getDifference(), bestActiveNode.getAvailableShrink(),
+                        bestActiveNode.getAvailableStretch(), bestActiveNode.getAdjustRatio(), total);
+            }
             // compute indent and adjustment ratio, according to
             // the value of text-align and text-align-last
             int startIndent;
             int endIndent;
-            int difference = bestActiveNode.difference;
-            int textAlign = (bestActiveNode.line < total) ? alignment : alignmentLast;
+            int difference = bestActiveNode.getDifference();
+            int textAlign = (bestActiveNode.getLine() < total) ? alignment : alignmentLast;
 
             switch (textAlign) {
             case Constants.EN_START:
@@ -371,12 +449,12 @@ public class LineLayoutManager extends InlineStackingLayoutManager
             startIndent += (textAlign == Constants.EN_CENTER)
                       ? difference / 2 : (textAlign == Constants.EN_END) ? difference : 0;
             */
-            startIndent += (bestActiveNode.line == 1 && indentFirstPart && isFirstInBlock)
+            startIndent += (bestActiveNode.getLine() == 1 && indentFirstPart && isFirstInBlock)
                       ? textIndent : 0;
 
             double ratio = (textAlign == Constants.EN_JUSTIFY
-                || difference < 0 && -difference <= bestActiveNode.availableShrink)
-                        ? bestActiveNode.adjustRatio : 0;
+                || difference < 0 && -difference <= bestActiveNode.getAvailableShrink())
+                        ? bestActiveNode.getAdjustRatio() : 0;
 
             // add nodes at the beginning of the list, as they are found
             // backwards, from the last one to the first one
@@ -392,19 +470,19 @@ public class LineLayoutManager extends InlineStackingLayoutManager
                 addedPositions = 0;
             }
 
-            int lack = difference + bestActiveNode.availableShrink;
+            int lack = difference + bestActiveNode.getAvailableShrink();
             // if this LLM is nested inside a BlockContainerLayoutManager that is constraining
             // the available width and thus responsible for the overflow then we do not issue
             // warning event here and instead let the BCLM handle that at a later stage
-            if (lack < 0 && !handleOverflow(-lack)) {
+            if (lack < 0 && !probing && !handleOverflow(-lack)) {
                 InlineLevelEventProducer eventProducer
                     = InlineLevelEventProducer.Provider.get(
                         getFObj().getUserAgent().getEventBroadcaster());
                 if (curChildLM.getFObj() == null) {
-                    eventProducer.lineOverflows(this, getFObj().getName(), bestActiveNode.line,
+                    eventProducer.lineOverflows(this, getFObj().getName(), bestActiveNode.getLine(),
                             -lack, getFObj().getLocator());
                 } else {
-                    eventProducer.lineOverflows(this, curChildLM.getFObj().getName(), bestActiveNode.line,
+                    eventProducer.lineOverflows(this, curChildLM.getFObj().getName(), bestActiveNode.getLine(),
                         -lack, curChildLM.getFObj().getLocator());
                 }
             }
@@ -412,11 +490,11 @@ public class LineLayoutManager extends InlineStackingLayoutManager
             //log.debug("LLM> (" + (lineLayouts.getLineNumber(activePossibility) - addedPositions)
             //    + ") difference = " + difference + " ratio = " + ratio);
             lineLayouts.addBreakPosition(makeLineBreakPosition(par,
-                   (bestActiveNode.line > 1 ? bestActiveNode.previous.position + 1 : 0),
-                   bestActiveNode.position,
-                   bestActiveNode.availableShrink - (addedPositions > 0
+                   (bestActiveNode.getLine() > 1 ? bestActiveNode.previous.getPosition() + 1 : 0),
+                   bestActiveNode.getPosition(),
+                   bestActiveNode.getAvailableShrink() - (addedPositions > 0
                        ? 0 : ((Paragraph) par).lineFiller.getShrink()),
-                   bestActiveNode.availableStretch,
+                   bestActiveNode.getAvailableStretch(),
                    difference, ratio, startIndent, endIndent), activePossibility);
             addedPositions++;
         }
@@ -531,7 +609,7 @@ public class LineLayoutManager extends InlineStackingLayoutManager
                     for (KnuthNode node = getNode(i); node != null; node = node.next) {
                         //if (Math.abs(node.line - bestActiveNode.line) > maxDiff) {
                         //if (false) {
-                        if (node.line != bestActiveNode.line
+                        if (node.getLine() != bestActiveNode.getLine()
                             && node.totalDemerits > MAX_DEMERITS) {
                             //log.debug("                     XXX lines = "
                             //+ node.line + " demerits = " + node.totalDemerits);
@@ -553,7 +631,7 @@ public class LineLayoutManager extends InlineStackingLayoutManager
                     }
                 }
             }
-            return bestActiveNode.line;
+            return bestActiveNode.getLine();
         }
     }
 
@@ -855,13 +933,19 @@ public class LineLayoutManager extends InlineStackingLayoutManager
         alg.setConstantLineWidth(ipd);
         boolean canWrap = (wrapOption != EN_NO_WRAP);
         boolean canHyphenate = (canWrap && hyphenationProperties.hyphenate.getEnum() == EN_TRUE);
+        // true if only the words near the breaks of the first try are to be hyphenated
+        boolean hyphenateNearBreaks = false;
 
         // find hyphenation points, if allowed and not yet done
         if (canHyphenate && !hyphenationPerformed) {
             // make sure findHyphenationPoints() is bypassed if
             // the method is called twice (e.g. due to changing page-ipd)
             hyphenationPerformed = isLastPar;
-            findHyphenationPoints(currPar);
+            if (getFObj().getUserAgent().isTargetedHyphenationEnabled()) {
+                hyphenateNearBreaks = true;
+            } else {
+                findHyphenationPoints(currPar, null);
+            }
         }
 
         // first try: do not consider hyphenation points as legal breaks
@@ -869,6 +953,12 @@ public class LineLayoutManager extends InlineStackingLayoutManager
                 : BreakingAlgorithm.ONLY_FORCED_BREAKS);
         int breakingPoints = alg.findBreakingPoints(currPar, maxAdjustment, false, allowedBreaks);
 
+        if (hyphenateNearBreaks) {
+            // words are only hyphenated if the first try failed or the text is justified
+            breakingPoints = hyphenateNearBreaks(alg, currPar, breakingPoints, maxAdjustment,
+                    breakingPoints == 0 || alignment == EN_JUSTIFY);
+        }
+
         if (breakingPoints == 0 || alignment == EN_JUSTIFY) {
             // if the first try found a set of breaking points, save them
             if (breakingPoints > 0) {
@@ -1258,11 +1348,82 @@ public class LineLayoutManager extends InlineStackingLayoutManager
     }
 
     /**
-     * Find hyphenation points for every word in the current paragraph.
+     * Targeted hyphenation: hyphenates only the words next to the line breaks found by the
+     * first try, or by a forced run without hyphenation if the first try failed. Even if no
+     * word is hyphenated, the elements of text whose hyphenation changed in a previous
+     * paragraph are updated. If the element list changed, the first try is repeated, as the
+     * breaks it found refer to the elements before hyphenation.
+     *
+     * @param alg the line breaking algorithm
+     * @param currPar the paragraph
+     * @param breakingPoints the number of breaking points found by the first try
+     * @param maxAdjustment the threshold of the first try
+     * @param hyphenate true if the words near the breaks are to be hyphenated
+     * @return the number of breaking points found by the first try on the updated paragraph
+     */
+    private int hyphenateNearBreaks(LineBreakingAlgorithm alg, Paragraph currPar,
+            int breakingPoints, double maxAdjustment, boolean hyphenate) {
+        BitSet nearBreaks = new BitSet(currPar.size());
+        if (hyphenate) {
+            if (breakingPoints == 0) {
+                alg.probing = true;
+                alg.findBreakingPoints(currPar, 20, true, BreakingAlgorithm.NO_FLAGGED_PENALTIES);
+                alg.probing = false;
+            }
+            if (lineLayouts.getPossibilitiesNumber() > 0) {
+                for (int i = 0; i < lineLayouts.getChosenLineCount(); i++) {
+                    int breakIndex = lineLayouts.getChosenPosition(i).getLeafPos();
+                    markWords(currPar, breakIndex - 1, -1, WORDS_BEFORE_BREAK, nearBreaks);
+                    markWords(currPar, breakIndex + 1, 1, WORDS_AFTER_BREAK, nearBreaks);
+                }
+            }
+        }
+        int size = currPar.size();
+        findHyphenationPoints(currPar, nearBreaks);
+        if ((hyphenate && breakingPoints == 0) || currPar.size() != size) {
+            lineLayouts = new LineLayoutPossibilities();
+            alg.resetAlgorithm();
+            if (breakingPoints > 0) {
+                breakingPoints = alg.findBreakingPoints(currPar, maxAdjustment, false,
+                        BreakingAlgorithm.NO_FLAGGED_PENALTIES);
+            }
+        }
+        return breakingPoints;
+    }
+
+    /**
+     * Marks the boxes of the words next to an element of a paragraph.
+     *
+     * @param par the paragraph
+     * @param start the index of the first element to look at
+     * @param step 1 to mark the words after start, -1 to mark the words before it
+     * @param count the number of words to mark
+     * @param marks the indexes of the marked boxes
+     */
+    private static void markWords(Paragraph par, int start, int step, int count, BitSet marks) {
+        boolean inWord = false;
+        for (int i = start; i >= 0 && i < par.size(); i += step) {
+            KnuthElement element = (KnuthElement) par.get(i);
+            if (element.isBox() && !element.isAuxiliary()) {
+                marks.set(i);
+                inWord = true;
+            } else if (!element.isAuxiliary() && inWord) {
+                if (--count == 0) {
+                    return;
+                }
+                inWord = false;
+            }
+        }
+    }
+
+    /**
+     * Find hyphenation points for the words in the current paragraph.
      *
      * @param currPar the paragraph whose words will be hyphenated
+     * @param wordBoxes the indexes of the boxes of the words to hyphenate, or null to
+     * hyphenate every word
      */
-    private void findHyphenationPoints(Paragraph currPar) {
+    private void findHyphenationPoints(Paragraph currPar, BitSet wordBoxes) {
         // hyphenate every word
         ListIterator currParIterator = currPar.listIterator(currPar.ignoreAtStart);
         // list of TLM involved in hyphenation
@@ -1276,6 +1437,8 @@ public class LineLayoutManager extends InlineStackingLayoutManager
         // number of auxiliary KnuthElements between KnuthBoxes
         int auxCount;
         StringBuffer sbChars;
+        // no need for the word chars if no word will be hyphenated
+        boolean collectChars = (wordBoxes == null || !wordBoxes.isEmpty());
 
         // find all hyphenation points
         while (currParIterator.hasNext()) {
@@ -1297,8 +1460,12 @@ public class LineLayoutManager extends InlineStackingLayoutManager
             if (firstElement.isBox() && !firstElement.isAuxiliary()) {
                 boxCount = 1;
                 auxCount = 0;
+                boolean selected = (wordBoxes == null
+                        || wordBoxes.get(currParIterator.previousIndex()));
                 sbChars = new StringBuffer();
-                sbChars.append(currLM.getWordChars(firstElement.getPosition()));
+                if (collectChars) {
+                    sbChars.append(currLM.getWordChars(firstElement.getPosition()));
+                }
                 // look if next elements are boxes too
                 while (currParIterator.hasNext()) {
                     nextElement = (KnuthElement) currParIterator.next();
@@ -1310,7 +1477,11 @@ public class LineLayoutManager extends InlineStackingLayoutManager
                         }
                         // append text to recreate the whole word
                         boxCount++;
-                        sbChars.append(currLM.getWordChars(nextElement.getPosition()));
+                        selected |= (wordBoxes != null
+                                && wordBoxes.get(currParIterator.previousIndex()));
+                        if (collectChars) {
+                            sbChars.append(currLM.getWordChars(nextElement.getPosition()));
+                        }
                     } else if (!nextElement.isAuxiliary()) {
                         // a non-auxiliary non-box KnuthElement: stop
                         // go back to the last box or auxiliary element
@@ -1325,6 +1496,9 @@ public class LineLayoutManager extends InlineStackingLayoutManager
                         auxCount++;
                     }
                 }
+                if (!selected) {
+                    continue;
+                }
                 if (log.isTraceEnabled()) {
                     log.trace(" Word to hyphenate: " + sbChars);
                 }
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr.inline;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fop.layoutmgr.KnuthElement;
+import org.apache.fop.layoutmgr.KnuthPenalty;
+import org.apache.fop.layoutmgr.ListElement;
+
+/**
+ * A cache of line breaking results, so paragraphs that occur many times in a document, like
+ * the same footer on every page or the same label in many table cells, are only broken into
+ * lines once per distinct width. The cache is keyed on the content of the paragraph's element
+ * list (the widths, stretch, shrink and penalties of its elements, which depend on the text,
+ * the fonts and the properties) and on the parameters of the breaking algorithm, including the
+ * available width. It holds the line breaks and their adjustment data, not the element lists
+ * or the areas, which refer to the layout managers of each occurrence.
+ * <p>
+ * The cache is thread-safe and may be shared among several documents by setting it on each
+ * {@link org.apache.fop.apps.FOUserAgent}.
+ */
+public final class ParagraphLayoutCache {
+
+    /** The default maximum number of cached paragraphs. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /** Paragraphs with more elements than this are not cached. */
+    static final int MAX_ELEMENTS = 2000;
+
+    private static final int TYPE_BOX = 1;
+    private static final int TYPE_GLUE = 2;
+    private static final int TYPE_PENALTY = 3;
+
+    private final Map<Key, Layout> layouts;
+
+    private long hits;
+    private long misses;
+
+    /** Creates a cache for up to {@link #DEFAULT_MAX_ENTRIES} paragraphs. */
+    public ParagraphLayoutCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache. The least recently used paragraphs are evicted when it is full.
+     * @param maxEntries the maximum number of cached paragraphs
+     */
+    public ParagraphLayoutCache(final int maxEntries) {
+        layouts = new LinkedHashMap<Key, Layout>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Layout> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** @return the number of line breaking runs answered from the cache */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /** @return the number of line breaking runs that were not in the cache */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /** @return the number of cached paragraphs */
+    public synchronized int size() {
+        return layouts.size();
+    }
+
+    /** Removes all cached paragraphs. */
+    public synchronized void clear() {
+        layouts.clear();
+    }
+
+    /**
+     * Creates the key of a paragraph.
+     * @param elements the paragraph's element list
+     * @param parameters the parameters of the breaking algorithm
+     * @return the key, or null if the paragraph cannot be cached
+     */
+    static Key createKey(List elements, int... parameters) {
+        int size = elements.size();
+        if (size > MAX_ELEMENTS) {
+            return null;
+        }
+        int[] values = new int[parameters.length + 1 + size * 4];
+        System.arraycopy(parameters, 0, values, 0, parameters.length);
+        int pos = parameters.length;
+        values[pos++] = size;
+        for (int i = 0; i < size; i++) {
+            ListElement el = (ListElement) elements.get(i);
+            if (!(el instanceof KnuthElement)) {
+                return null;
+            }
+            KnuthElement element = (KnuthElement) el;
+            if (element.isBox()) {
+                values[pos++] = TYPE_BOX;
+                values[pos++] = element.getWidth();
+            } else if (element.isGlue()) {
+                values[pos++] = TYPE_GLUE;
+                values[pos++] = element.getWidth();
+                values[pos++] = element.getStretch();
+                values[pos++] = element.getShrink();
+            } else {
+                values[pos++] = ((KnuthPenalty) element).isPenaltyFlagged()
+                        ? -TYPE_PENALTY : TYPE_PENALTY;
+                values[pos++] = element.getWidth();
+                values[pos++] = element.getPenalty();
+            }
+        }
+        return new Key(Arrays.copyOf(values, pos));
+    }
+
+    /**
+     * Returns the cached layout of a paragraph.
+     * @param key the key of the paragraph
+     * @return the layout, or null if it is not cached
+     */
+    synchronized Layout get(Key key) {
+        Layout layout = layouts.get(key);
+        if (layout != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return layout;
+    }
+
+    /**
+     * Adds the layout of a paragraph to the cache.
+     * @param key the key of the paragraph
+     * @param layout the layout
+     */
+    synchronized void put(Key key, Layout layout) {
+        layouts.put(key, layout);
+    }
+
+    /** The key of a paragraph. */
+    static final class Key {
+
+        private final int[] values;
+        private final int hash;
+
+        private Key(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(values, ((Key) obj).values);
+        }
+    }
+
+    /** Receives the results of a line breaking run. */
+    interface BreakHandler {
+
+        /**
+         * Receives a layout possibility.
+         * @param lineCount the number of lines
+         * @param demerits the total demerits
+         */
+        void addPossibility(int lineCount, double demerits);
+
+        /**
+         * Receives a line break of the last possibility, from the last line to the first.
+         * @param position the index of the element at which the line ends
+         * @param previousPosition the index of the element at which the previous line ends
+         * @param line the line number
+         * @param difference the difference between the available and the natural width
+         * @param availableShrink the available shrink of the line
+         * @param availableStretch the available stretch of the line
+         * @param adjustRatio the adjustment ratio of the line
+         * @param total the number of lines of the possibility
+         */
+        void addBreak(int position, int previousPosition, int line, int difference,
+                int availableShrink, int availableStretch, double adjustRatio, int total);
+    }
+
+    /** The recorded results of a line breaking run. */
+    static final class Layout implements BreakHandler {
+
+        private static final int POSSIBILITY = 0;
+        private static final int BREAK = 1;
+
+        private int[] ints = new int[32];
+        private int intCount;
+        private double[] doubles = new double[8];
+        private int doubleCount;
+        private int result;
+
+        /** {@inheritDoc} */
+        public void addPossibility(int lineCount, double demerits) {
+            addInts(POSSIBILITY, lineCount);
+            addDouble(demerits);
+        }
+
+        /** {@inheritDoc} */
+        public void addBreak(int position, int previousPosition, int line, int difference,
+                int availableShrink, int availableStretch, double adjustRatio, int total) {
+            addInts(BREAK, position, previousPosition, line, difference,
+                    availableShrink, availableStretch, total);
+            addDouble(adjustRatio);
+        }
+
+        private void addInts(int... values) {
+            if (intCount + values.length > ints.length) {
+                ints = Arrays.copyOf(ints, Math.max(ints.length * 2, intCount + values.length));
+            }
+            System.arraycopy(values, 0, ints, intCount, values.length);
+            intCount += values.length;
+        }
+
+        private void addDouble(double value) {
+            if (doubleCount == doubles.length) {
+                doubles = Arrays.copyOf(doubles, doubles.length * 2);
+            }
+            doubles[doubleCount++] = value;
+        }
+
+        /**
+         * Sets the value returned by the breaking run and trims the recorded data.
+         * @param result the number of lines, or 0 if no set of breaks was found
+         */
+        void complete(int result) {
+            this.result = result;
+            ints = Arrays.copyOf(ints, intCount);
+            doubles = Arrays.copyOf(doubles, doubleCount);
+        }
+
+        /**
+         * Passes the recorded results to the given handler, in the same order as the
+         * breaking run produced them.
+         * @param handler the handler
+         * @return the value returned by the breaking run
+         */
+        int replay(BreakHandler handler) {
+            int i = 0;
+            int d = 0;
+            while (i < intCount) {
+                if (ints[i] == POSSIBILITY) {
+                    handler.addPossibility(ints[i + 1], doubles[d++]);
+                    i += 2;
+                } else {
+                    handler.addBreak(ints[i + 1], ints[i + 2], ints[i + 3], ints[i + 4],
+                            ints[i + 5], ints[i + 6], doubles[d++], ints[i + 7]);
+                    i += 8;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -20,8 +20,13 @@
 package org.apache.fop.pdf;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.output.CountingOutputStream;
 
@@ -32,6 +37,12 @@ import org.apache.fop.util.CloseBlockerOutputStream;
  */
 public abstract class AbstractPDFStream extends PDFObject {
 
+    /**
+     * Streams encoded on the fly which are larger than this are not encoded ahead of time,
+     * so their encoded data is written straight to the output instead of being buffered.
+     */
+    static final long ENCODE_AHEAD_SIZE_LIMIT = 1024 * 1024;
+
     private final PDFDictionary dictionary;
 
     /** The filters that should be applied */
@@ -41,6 +52,9 @@ public abstract class AbstractPDFStream extends PDFObject {
 
     private PDFNumber refLength = new PDFNumber();
 
+    /** The stream data being encoded by a compression worker, if any */
+    private Future<StreamCache> pendingEncoding;
+
     protected AbstractPDFStream() {
         this(true);
     }
@@ -166,8 +180,10 @@ public abstract class AbstractPDFStream extends PDFObject {
      */
     protected StreamCache encodeStream() throws IOException {
         //Allocate a temporary buffer to find out the size of the encoded stream
-        final StreamCache encodedStream = StreamCacheFactory.getInstance()
-                .createStreamCache(getSizeHint());
+        PDFDocument doc = getDocument();
+        StreamCacheFactory factory = doc != null ? doc.getStreamCacheFactory()
+                : StreamCacheFactory.getInstance();
+        final StreamCache encodedStream = factory.createStreamCache(getSizeHint());
         OutputStream filteredOutput
                 = getFilterList().applyFilters(encodedStream.getOutputStream());
         outputRawStreamData(filteredOutput);
@@ -210,6 +226,79 @@ public abstract class AbstractPDFStream extends PDFObject {
         return bytesWritten;
     }
 
+    /**
+     * Starts encoding the stream data on the given executor so the filters (usually
+     * compression) run while other objects are being written. {@link #output(OutputStream)}
+     * waits for the result, so the bytes written are the same as without an executor.
+     * @param executor the executor running the encoding tasks
+     * @return true if the stream data is being encoded, false if it will be encoded when
+     *          the stream is written
+     * @throws IOException if the size of the stream data can't be determined
+     */
+    boolean startEncoding(ExecutorService executor) throws IOException {
+        if (pendingEncoding != null) {
+            return true;
+        }
+        if (!isBackgroundEncodingSupported()
+                || (encodeOnTheFly && getRawDataSize() > ENCODE_AHEAD_SIZE_LIMIT)) {
+            return false;
+        }
+        setupFilterList();
+        pendingEncoding = executor.submit(new Callable<StreamCache>() {
+            public StreamCache call() throws IOException {
+                return encodeStream();
+            }
+        });
+        return true;
+    }
+
+    /** @return true if the stream data is being encoded by a compression worker */
+    boolean isEncodingPending() {
+        return pendingEncoding != null;
+    }
+
+    /**
+     * Returns the size of the stream data before it is encoded, or an estimate of it. The
+     * default implementation returns the size hint.
+     * @return the size of the raw stream data (0 if unknown)
+     * @throws IOException in case of an I/O problem
+     */
+    protected long getRawDataSize() throws IOException {
+        return getSizeHint();
+    }
+
+    /**
+     * Indicates whether the stream data is complete when the object is handed to the
+     * document for output, so it may be encoded ahead of time on another thread.
+     * Subclasses which only produce their data in {@link #output(OutputStream)} must
+     * return false.
+     * @return true if the stream data may be encoded in the background
+     */
+    protected boolean isBackgroundEncodingSupported() {
+        return true;
+    }
+
+    private StreamCache waitForEncoding() throws IOException {
+        try {
+            return pendingEncoding.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding " + getObjectID());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            pendingEncoding = null;
+        }
+    }
+
     /**
      * Overload the base object method so we don't have to copy
      * byte arrays around so much
@@ -217,20 +306,29 @@ public abstract class AbstractPDFStream extends PDFObject {
      */
     @Override
     public int output(OutputStream stream) throws IOException {
-        setupFilterList();
+        StreamCache encodedStream = null;
+        if (pendingEncoding != null) {
+            encodedStream = waitForEncoding();
+        } else {
+            setupFilterList();
+        }
 
         CountingOutputStream cout = new CountingOutputStream(stream);
         StringBuilder textBuffer = new StringBuilder(64);
 
-        StreamCache encodedStream = null;
         final Object lengthEntry;
         if (encodeOnTheFly) {
             if (!refLength.hasObjectNumber()) {
                 registerChildren();
             }
             lengthEntry = refLength;
+            if (encodedStream != null) {
+                refLength.setNumber(encodedStream.getSize());
+            }
         } else {
-            encodedStream = encodeStream();
+            if (encodedStream == null) {
+                encodedStream = encodeStream();
+            }
             lengthEntry = encodedStream.getSize();
         }
 
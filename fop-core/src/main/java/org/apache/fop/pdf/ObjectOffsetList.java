@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Compact list of indirect object offsets. Offsets are kept in a primitive array so a
+ * document with hundreds of thousands of objects does not pay for one boxed {@link Long}
+ * per object. Offsets that have not been recorded yet are reported as {@code null}.
+ */
+final class ObjectOffsetList extends AbstractList<Long> implements RandomAccess {
+
+    private static final long UNSET = -1L;
+
+    private long[] offsets = new long[1024];
+
+    private int size;
+
+    /** {@inheritDoc} */
+    public Long get(int index) {
+        checkIndex(index);
+        long offset = offsets[index];
+        return offset == UNSET ? null : Long.valueOf(offset);
+    }
+
+    /** {@inheritDoc} */
+    public Long set(int index, Long offset) {
+        Long previous = get(index);
+        offsets[index] = toPrimitive(offset);
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    public void add(int index, Long offset) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size + (size >> 1));
+        }
+        System.arraycopy(offsets, index, offsets, index + 1, size - index);
+        offsets[index] = toPrimitive(offset);
+        size++;
+        modCount++;
+    }
+
+    /** {@inheritDoc} */
+    public Long remove(int index) {
+        Long previous = get(index);
+        System.arraycopy(offsets, index + 1, offsets, index, size - index - 1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private static long toPrimitive(Long offset) {
+        if (offset == null) {
+            return UNSET;
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        return offset;
+    }
+}
@@ -422,6 +422,12 @@ public class PDFCMap extends PDFStream {
         return new CMapBuilder(writer, this.name);
     }
 
+    /** The CMap is only written in {@link #output(OutputStream)}. */
+    @Override
+    protected boolean isBackgroundEncodingSupported() {
+        return false;
+    }
+
     /** {@inheritDoc} */
     public int output(OutputStream stream) throws IOException {
         CMapBuilder builder = createCMapBuilder(getBufferWriter());
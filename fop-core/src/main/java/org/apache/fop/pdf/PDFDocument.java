@@ -31,7 +31,13 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -80,7 +86,7 @@ public class PDFDocument {
     protected long position;
 
     /** the character position of each object */
-    protected List<Long> indirectObjectOffsets = new ArrayList<Long>();
+    protected List<Long> indirectObjectOffsets = new ObjectOffsetList();
 
     protected List<PDFStructElem> structureTreeElements;
 
@@ -176,6 +182,12 @@ public class PDFDocument {
 
     private boolean formXObjectEnabled;
 
+    private int compressionThreads;
+
+    private ExecutorService compressionExecutor;
+
+    private StreamCacheFactory streamCacheFactory = StreamCacheFactory.getInstance();
+
     protected boolean outputStarted;
 
     /**
@@ -508,7 +520,10 @@ public class PDFDocument {
         }
         if (obj instanceof PDFPage) {
             this.pages.notifyKidRegistered((PDFPage)obj);
-            pageObjs.add((PDFPage) obj);
+            //Only linearization needs the page objects after they have been written
+            if (isLinearizationEnabled()) {
+                pageObjs.add((PDFPage) obj);
+            }
         }
         if (obj instanceof PDFLaunch) {
             this.launches.add((PDFLaunch) obj);
@@ -988,15 +1003,66 @@ public class PDFDocument {
      */
     public void output(OutputStream stream) throws IOException {
         outputStarted = true;
+        //Encode the streams on the worker threads while the objects are written in order
+        EncodingWindow encodingWindow = isParallelCompressionActive() ? new EncodingWindow() : null;
         //Write out objects until the list is empty. This approach (used with a
         //LinkedList) allows for output() methods to create and register objects
         //on the fly even during serialization.
         while (this.objects.size() > 0) {
+            if (encodingWindow != null) {
+                encodingWindow.fill();
+            }
             PDFObject object = this.objects.remove(0);
+            if (encodingWindow != null) {
+                encodingWindow.remove(object);
+            }
             streamIndirectObject(object, stream);
         }
     }
 
+    /**
+     * Starts encoding the next streams to be written on the compression threads. Only a
+     * couple of streams per thread are encoded ahead of the writing thread, so the encoded
+     * data waiting to be written doesn't pile up in memory.
+     */
+    private final class EncodingWindow {
+
+        private final ExecutorService executor = getCompressionExecutor();
+
+        private final int size = 2 * compressionThreads;
+
+        /** The number of objects at the head of the object list which have been looked at */
+        private int scanned;
+
+        /** The number of streams among them which are being encoded */
+        private int encoding;
+
+        void fill() throws IOException {
+            if (encoding >= size) {
+                return;
+            }
+            ListIterator<PDFObject> iter = objects.listIterator(scanned);
+            while (encoding < size && iter.hasNext()) {
+                PDFObject object = iter.next();
+                scanned++;
+                if (object instanceof AbstractPDFStream
+                        && ((AbstractPDFStream) object).startEncoding(executor)) {
+                    encoding++;
+                }
+            }
+        }
+
+        void remove(PDFObject object) {
+            if (scanned > 0) {
+                scanned--;
+                if (object instanceof AbstractPDFStream
+                        && ((AbstractPDFStream) object).isEncodingPending()) {
+                    encoding--;
+                }
+            }
+        }
+    }
+
     protected void writeTrailer(OutputStream stream, int first, int last, int size, long mainOffset, long startxref)
             throws IOException {
         TrailerOutputHelper trailerOutputHelper = mayCompressStructureTreeElements()
@@ -1095,9 +1161,17 @@ public class PDFDocument {
      * @throws IOException if there is an exception writing to the output stream
      */
     public void outputTrailer(OutputStream stream) throws IOException {
-        createDestinations();
-        output(stream);
-        outputTrailerObjectsAndXref(stream);
+        try {
+            createDestinations();
+            output(stream);
+            if (compressionExecutor != null) {
+                compressionExecutor.shutdown();
+                compressionExecutor = null;
+            }
+            outputTrailerObjectsAndXref(stream);
+        } finally {
+            streamCacheFactory.close();
+        }
     }
 
     private void createDestinations() {
@@ -1231,6 +1305,69 @@ public class PDFDocument {
         linearizationEnabled = b;
     }
 
+    /**
+     * Returns the factory for the stream caches holding encoded stream data until it is written.
+     * @return the stream cache factory
+     */
+    public StreamCacheFactory getStreamCacheFactory() {
+        return streamCacheFactory;
+    }
+
+    /**
+     * Sets the factory for the stream caches holding encoded stream data until it is written,
+     * for example a pooled factory that spills to a scratch file. A pooled factory is closed
+     * after the trailer has been written.
+     * @param streamCacheFactory the stream cache factory
+     */
+    public void setStreamCacheFactory(StreamCacheFactory streamCacheFactory) {
+        this.streamCacheFactory = streamCacheFactory;
+    }
+
+    /**
+     * Returns the number of threads used to compress streams.
+     * @return the number of compression threads, 0 if streams are compressed by the
+     * thread writing the document
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to compress streams. The objects are still
+     * written in order by the thread calling {@link #output(OutputStream)}, so the
+     * document is byte-identical to the one produced without compression threads.
+     * Encrypted and linearized documents are always compressed by the writing thread.
+     * @param compressionThreads the number of compression threads, 0 to disable
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("compressionThreads must not be negative");
+        }
+        this.compressionThreads = compressionThreads;
+    }
+
+    private boolean isParallelCompressionActive() {
+        return compressionThreads > 0 && !isEncryptionActive() && !isLinearizationEnabled();
+    }
+
+    private ExecutorService getCompressionExecutor() {
+        if (compressionExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(compressionThreads,
+                    compressionThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "FOP PDF compression");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            //Don't keep idle threads around if the document is never finished
+            executor.allowCoreThreadTimeOut(true);
+            compressionExecutor = executor;
+        }
+        return compressionExecutor;
+    }
+
     public boolean isFormXObjectEnabled() {
         return formXObjectEnabled;
     }
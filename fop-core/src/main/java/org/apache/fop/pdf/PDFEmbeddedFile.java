@@ -55,7 +55,7 @@ public class PDFEmbeddedFile extends PDFStream {
         super.populateStreamDict(lengthEntry);
         try {
             PDFDictionary dict = (PDFDictionary)get("Params");
-            dict.put("Size", Integer.valueOf(data.getSize()));
+            dict.put("Size", Integer.valueOf(getData().getSize()));
         } catch (IOException ioe) {
             //ignore and just skip this entry as it's optional
         }
@@ -79,6 +79,24 @@ public class PDFImageXObject extends PDFXObject {
         return length;
     }
 
+    /** The PDF/VT identifier is computed from the image data in {@link #output(OutputStream)}. */
+    @Override
+    protected boolean isBackgroundEncodingSupported() {
+        return !getDocument().getProfile().isPDFVTActive();
+    }
+
+    /** The size of the uncompressed image data. */
+    @Override
+    protected long getRawDataSize() {
+        PDFDeviceColorSpace colorSpace = pdfimage.getColorSpace();
+        if (colorSpace == null) {
+            return 0;
+        }
+        long bitsPerRow = (long) pdfimage.getWidth() * pdfimage.getBitsPerComponent()
+                * colorSpace.getNumComponents();
+        return (bitsPerRow + 7) / 8 * pdfimage.getHeight();
+    }
+
     /** {@inheritDoc} */
     protected void populateStreamDict(Object lengthEntry) {
         super.populateStreamDict(lengthEntry);
@@ -38,7 +38,8 @@ import java.security.NoSuchAlgorithmException;
 public class PDFStream extends AbstractPDFStream {
 
     /**
-     * The stream of PDF commands
+     * The stream of PDF commands, created when the first data is written (see
+     * {@link #getData()})
      */
     protected StreamCache data;
 
@@ -69,9 +70,15 @@ public class PDFStream extends AbstractPDFStream {
 
     private void setUp() {
         try {
-            data = StreamCacheFactory.getInstance().createStreamCache();
-            this.streamWriter = new OutputStreamWriter(
-                    getBufferOutputStream(), PDFDocument.ENCODING);
+            this.streamWriter = new OutputStreamWriter(new OutputStream() {
+                public void write(int b) throws IOException {
+                    getData().getOutputStream().write(b);
+                }
+
+                public void write(byte[] b, int off, int len) throws IOException {
+                    getData().getOutputStream().write(b, off, len);
+                }
+            }, PDFDocument.ENCODING);
             //Buffer to minimize calls to the converter
             this.streamWriter = new java.io.BufferedWriter(this.streamWriter);
         } catch (IOException e) {
@@ -79,6 +86,23 @@ public class PDFStream extends AbstractPDFStream {
         }
     }
 
+    /**
+     * Returns the buffer the stream data is written to. The buffer is only created when it's
+     * first needed, so streams which are attached to their document right after they have been
+     * created get it from the document's {@link StreamCacheFactory}.
+     * @return the buffer
+     * @throws IOException in case of an I/O problem
+     */
+    protected StreamCache getData() throws IOException {
+        if (data == null) {
+            PDFDocument doc = getDocument();
+            StreamCacheFactory factory = doc != null ? doc.getStreamCacheFactory()
+                    : StreamCacheFactory.getInstance();
+            data = factory.createStreamCache();
+        }
+        return data;
+    }
+
     /**
      * Append data to the stream
      *
@@ -143,7 +167,7 @@ public class PDFStream extends AbstractPDFStream {
         if (this.streamWriter != null) {
             flush(); //Just to be sure
         }
-        return this.data.getOutputStream();
+        return getData().getOutputStream();
     }
 
     /**
@@ -152,8 +176,8 @@ public class PDFStream extends AbstractPDFStream {
      * @throws IOException in case of an I/O problem
      */
     public void setData(byte[] data) throws IOException {
-        this.data.clear();
-        this.data.write(data);
+        getData().clear();
+        getData().write(data);
     }
 
     /**
@@ -163,7 +187,7 @@ public class PDFStream extends AbstractPDFStream {
     public int getDataLength() {
         try {
             flush();
-            return data.getSize();
+            return getData().getSize();
         } catch (Exception e) {
             //TODO throw the exception and catch it elsewhere
             e.printStackTrace();
@@ -174,13 +198,13 @@ public class PDFStream extends AbstractPDFStream {
     /** {@inheritDoc} */
     protected int getSizeHint() throws IOException {
         flush();
-        return data.getSize();
+        return getData().getSize();
     }
 
     /** {@inheritDoc} */
     protected void outputRawStreamData(OutputStream out) throws IOException {
         flush();
-        data.outputContents(out);
+        getData().outputContents(out);
     }
 
     /**
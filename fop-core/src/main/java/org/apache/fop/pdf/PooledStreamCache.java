@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StreamCache implementation that keeps its data in buffers taken from a
+ * {@link StreamCachePool} and moves it to the pool's scratch file when the stream gets large
+ * or the pool runs out of memory.
+ */
+class PooledStreamCache implements StreamCache {
+
+    private final StreamCachePool pool;
+
+    /** The filled buffers and scratch file regions, in order. */
+    private final List<Object> segments = new ArrayList<Object>();
+
+    /** The buffer currently being filled. */
+    private ByteBuffer current;
+
+    private boolean spilling;
+    private int size;
+    private OutputStream output;
+
+    /**
+     * Creates a new PooledStreamCache.
+     * @param pool the pool providing memory and the scratch file
+     */
+    PooledStreamCache(StreamCachePool pool) {
+        this.pool = pool;
+    }
+
+    /** {@inheritDoc} */
+    public OutputStream getOutputStream() throws IOException {
+        if (output == null) {
+            output = new OutputStream() {
+                public void write(int b) throws IOException {
+                    ensureSpace();
+                    current.put((byte) b);
+                    size++;
+                }
+
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        ensureSpace();
+                        int count = Math.min(len, current.remaining());
+                        current.put(b, off, count);
+                        off += count;
+                        len -= count;
+                        size += count;
+                    }
+                }
+            };
+        }
+        return output;
+    }
+
+    private void ensureSpace() throws IOException {
+        if (current == null) {
+            current = pool.takeBlock(false);
+            if (current == null) {
+                current = ByteBuffer.allocate(StreamCachePool.SMALL_BLOCK_SIZE);
+            }
+        } else if (!current.hasRemaining()) {
+            if (!spilling && size >= StreamCachePool.SPILL_THRESHOLD) {
+                //Large stream: move everything collected so far to the scratch file
+                spilling = true;
+                for (int i = 0; i < segments.size(); i++) {
+                    if (segments.get(i) instanceof ByteBuffer) {
+                        segments.set(i, spill((ByteBuffer) segments.get(i)));
+                    }
+                }
+            }
+            ByteBuffer next = spilling ? null : pool.takeBlock(true);
+            current.flip();
+            if (next == null) {
+                segments.add(spill(current));
+                current.clear();
+                if (current.capacity() < StreamCachePool.LARGE_BLOCK_SIZE) {
+                    //Use a larger staging buffer for writing to the scratch file
+                    pool.returnBlock(current);
+                    current = ByteBuffer.allocate(StreamCachePool.LARGE_BLOCK_SIZE);
+                }
+            } else {
+                segments.add(current);
+                current = next;
+            }
+        }
+    }
+
+    private Region spill(ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        Region region = new Region(pool.append(data), length);
+        if (data != current) {
+            pool.returnBlock(data);
+        }
+        return region;
+    }
+
+    /** {@inheritDoc} */
+    public void write(byte[] data) throws IOException {
+        getOutputStream().write(data);
+    }
+
+    /** {@inheritDoc} */
+    public int outputContents(OutputStream out) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (Object segment : segments) {
+            if (segment instanceof Region) {
+                Region region = (Region) segment;
+                pool.transferTo(region.offset, region.length, channel);
+            } else {
+                write((ByteBuffer) segment, channel);
+            }
+        }
+        current.flip();
+        try {
+            write(current, channel);
+        } finally {
+            //Continue appending after the data
+            current.position(current.limit());
+            current.limit(current.capacity());
+        }
+        return size;
+    }
+
+    private static void write(ByteBuffer block, WritableByteChannel channel) throws IOException {
+        ByteBuffer data = block.duplicate();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public int getSize() throws IOException {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    public void clear() throws IOException {
+        for (Object segment : segments) {
+            if (segment instanceof ByteBuffer) {
+                pool.returnBlock((ByteBuffer) segment);
+            }
+        }
+        segments.clear();
+        if (current != null) {
+            pool.returnBlock(current);
+            current = null;
+        }
+        spilling = false;
+        size = 0;
+        output = null;
+    }
+
+    /** A region of the scratch file. */
+    private static final class Region {
+
+        private final long offset;
+        private final int length;
+
+        Region(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.apache.fop.pdf;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -26,7 +27,9 @@ import java.io.IOException;
  */
 public final class StreamCacheFactory {
 
-    private static StreamCacheFactory memoryInstance = new StreamCacheFactory();
+    private static StreamCacheFactory memoryInstance = new StreamCacheFactory(null);
+
+    private final StreamCachePool pool;
 
     /**
      * Returns an instance of a StreamCacheFactory with the requested features.
@@ -36,11 +39,26 @@ public final class StreamCacheFactory {
         return memoryInstance;
     }
 
+    /**
+     * Returns a new StreamCacheFactory whose stream caches share a pool of off-heap memory
+     * and a single scratch file. Stream data is kept in memory up to the given limit; beyond
+     * that, and for streams larger than 1 MB, it is appended to the scratch file and copied
+     * from there to the output. Meant to be used for one document and closed at its end.
+     * @param memoryLimit the maximum number of bytes kept in memory by all stream caches
+     * @param directory the directory for the scratch file, null for the default temporary
+     * directory
+     * @return the new StreamCacheFactory
+     */
+    public static StreamCacheFactory newPooledInstance(long memoryLimit, File directory) {
+        return new StreamCacheFactory(new StreamCachePool(memoryLimit, directory));
+    }
+
     /**
      * Creates a new StreamCacheFactory.
-     * @param cacheToFile True if file shall be cached using a temporary file
+     * @param pool the pool shared by the stream caches, null for stream caches on the heap
      */
-    private StreamCacheFactory() {
+    private StreamCacheFactory(StreamCachePool pool) {
+        this.pool = pool;
     }
 
     /**
@@ -50,6 +68,9 @@ public final class StreamCacheFactory {
      * @return a new StreamCache for caching streams
      */
     public StreamCache createStreamCache() throws IOException {
+        if (pool != null) {
+            return new PooledStreamCache(pool);
+        }
         return new InMemoryStreamCache();
     }
 
@@ -61,6 +82,21 @@ public final class StreamCacheFactory {
      * @return a new StreamCache for caching streams
      */
     public StreamCache createStreamCache(int hintSize) throws IOException {
+        if (pool != null) {
+            return new PooledStreamCache(pool);
+        }
         return new InMemoryStreamCache(hintSize);
     }
+
+    /**
+     * Releases the memory and deletes the scratch file of a pooled factory. The stream caches
+     * created by this factory must not be used afterwards. Does nothing for the shared
+     * instance.
+     * @throws IOException if the scratch file can't be closed
+     */
+    public void close() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+    }
 }
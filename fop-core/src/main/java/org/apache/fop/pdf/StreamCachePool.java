@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Memory and scratch file shared by the {@link PooledStreamCache} instances of one document.
+ * Stream data is kept in direct buffers taken from a pool up to a fixed memory limit. Beyond
+ * that, and for large streams, the data is appended to a single scratch file that is deleted
+ * when the pool is closed. If a pool is dropped without being closed, for instance because
+ * rendering failed, its scratch file is deleted once the pool has been garbage collected and
+ * another pool is created.
+ */
+final class StreamCachePool {
+
+    private static final Log LOG = LogFactory.getLog(StreamCachePool.class);
+
+    /** Receives the references of the pools that were garbage collected. */
+    private static final ReferenceQueue<StreamCachePool> COLLECTED_POOLS
+            = new ReferenceQueue<StreamCachePool>();
+
+    /** Keeps the references of pools with a scratch file reachable until they are processed. */
+    private static final Set<ScratchFileReference> SCRATCH_FILE_REFERENCES
+            = Collections.synchronizedSet(new HashSet<ScratchFileReference>());
+
+    /** Size of the first buffer of a stream cache; most streams never need more. */
+    static final int SMALL_BLOCK_SIZE = 4 * 1024;
+
+    /** Size of all further buffers of a stream cache. */
+    static final int LARGE_BLOCK_SIZE = 64 * 1024;
+
+    /** Streams that grow beyond this size are moved to the scratch file. */
+    static final int SPILL_THRESHOLD = 1024 * 1024;
+
+    private final long memoryLimit;
+    private final File directory;
+
+    private final Deque<ByteBuffer> smallBlocks = new ArrayDeque<ByteBuffer>();
+    private final Deque<ByteBuffer> largeBlocks = new ArrayDeque<ByteBuffer>();
+    private long allocated;
+
+    private ScratchFile scratchFile;
+    private ScratchFileReference scratchFileReference;
+    private long scratchLength;
+
+    /**
+     * Creates a new pool.
+     * @param memoryLimit the maximum number of bytes kept in memory
+     * @param directory the directory for the scratch file, null for the default temporary directory
+     */
+    StreamCachePool(long memoryLimit, File directory) {
+        this.memoryLimit = memoryLimit;
+        this.directory = directory;
+        deleteAbandonedScratchFiles();
+    }
+
+    /**
+     * Takes a buffer from the pool.
+     * @param large true for a large buffer, false for a small one
+     * @return the cleared buffer, or null if the memory limit is reached
+     */
+    synchronized ByteBuffer takeBlock(boolean large) {
+        ByteBuffer block = large ? largeBlocks.poll() : smallBlocks.poll();
+        if (block == null) {
+            int size = large ? LARGE_BLOCK_SIZE : SMALL_BLOCK_SIZE;
+            if (allocated + size > memoryLimit) {
+                return null;
+            }
+            block = ByteBuffer.allocateDirect(size);
+            allocated += size;
+        }
+        return block;
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * @param block the buffer
+     */
+    synchronized void returnBlock(ByteBuffer block) {
+        if (!block.isDirect()) {
+            return;
+        }
+        block.clear();
+        if (block.capacity() == LARGE_BLOCK_SIZE) {
+            largeBlocks.push(block);
+        } else {
+            smallBlocks.push(block);
+        }
+    }
+
+    /**
+     * Appends the remaining bytes of the given buffer to the scratch file.
+     * @param data the data to append
+     * @return the offset of the data in the scratch file
+     * @throws IOException if the scratch file can't be written
+     */
+    synchronized long append(ByteBuffer data) throws IOException {
+        if (scratchFile == null) {
+            scratchFile = new ScratchFile(
+                    File.createTempFile("org.apache.fop.pdf.StreamCache-", ".temp", directory));
+            scratchFileReference = new ScratchFileReference(this, scratchFile);
+            SCRATCH_FILE_REFERENCES.add(scratchFileReference);
+        }
+        long offset = scratchLength;
+        while (data.hasRemaining()) {
+            scratchLength += scratchFile.channel.write(data, scratchLength);
+        }
+        return offset;
+    }
+
+    /**
+     * Copies a region of the scratch file to the given channel.
+     * @param offset the offset of the region
+     * @param length the length of the region
+     * @param target the channel to write to
+     * @throws IOException if an I/O error occurs
+     */
+    void transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+        FileChannel channel;
+        synchronized (this) {
+            channel = scratchFile.channel;
+        }
+        while (length > 0) {
+            long count = channel.transferTo(offset, length, target);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /** @return the number of bytes in the scratch file */
+    synchronized long getScratchLength() {
+        return scratchLength;
+    }
+
+    /** @return the number of bytes of memory allocated by this pool */
+    synchronized long getAllocatedMemory() {
+        return allocated;
+    }
+
+    /**
+     * Releases the pooled memory and deletes the scratch file. Stream caches created from this
+     * pool must not be used afterwards.
+     * @throws IOException if the scratch file can't be closed
+     */
+    synchronized void close() throws IOException {
+        smallBlocks.clear();
+        largeBlocks.clear();
+        allocated = 0;
+        if (scratchFile != null) {
+            SCRATCH_FILE_REFERENCES.remove(scratchFileReference);
+            scratchFileReference.clear();
+            scratchFileReference = null;
+            ScratchFile file = scratchFile;
+            scratchFile = null;
+            scratchLength = 0;
+            file.delete();
+        }
+    }
+
+    /** Deletes the scratch files of the pools that were garbage collected without being closed. */
+    private static void deleteAbandonedScratchFiles() {
+        Reference<? extends StreamCachePool> ref;
+        while ((ref = COLLECTED_POOLS.poll()) != null) {
+            ScratchFileReference scratchFileReference = (ScratchFileReference) ref;
+            SCRATCH_FILE_REFERENCES.remove(scratchFileReference);
+            try {
+                scratchFileReference.scratchFile.delete();
+            } catch (IOException e) {
+                LOG.warn("Unable to close the abandoned scratch file "
+                        + scratchFileReference.scratchFile.file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** The scratch file of a pool and the channel used to read and write it. */
+    private static final class ScratchFile {
+
+        private final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+
+        ScratchFile(File file) throws IOException {
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+        }
+
+        void delete() throws IOException {
+            try {
+                raf.close();
+            } finally {
+                if (!file.delete() && file.exists()) {
+                    LOG.warn("Unable to delete the scratch file " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tracks a pool with a scratch file. Only the scratch file is kept reachable, so that it can
+     * still be deleted after the pool was garbage collected.
+     */
+    private static final class ScratchFileReference extends PhantomReference<StreamCachePool> {
+
+        private final ScratchFile scratchFile;
+
+        ScratchFileReference(StreamCachePool pool, ScratchFile scratchFile) {
+            super(pool, COLLECTED_POOLS);
+            this.scratchFile = scratchFile;
+        }
+    }
+}
@@ -31,6 +31,9 @@ import org.apache.fop.pdf.PDFDocument;
  */
 public class CrossReferenceTable extends CrossReferenceObject {
 
+    /** Each entry is 20 bytes long, so this flushes roughly every 400 entries. */
+    private static final int FLUSH_THRESHOLD = 8192;
+
     private final List<Long> objectReferences;
 
     private final StringBuilder pdf = new StringBuilder(256);
@@ -49,11 +52,11 @@ public class CrossReferenceTable extends CrossReferenceObject {
     }
 
     public void output(OutputStream stream) throws IOException {
-        outputXref();
+        outputXref(stream);
         writeTrailer(stream);
     }
 
-    private void outputXref() throws IOException {
+    private void outputXref(OutputStream stream) throws IOException {
         if (first == 0) {
             pdf.append("xref\n0 ");
             pdf.append(last + 1);
@@ -73,12 +76,21 @@ public class CrossReferenceTable extends CrossReferenceObject {
             }
             String loc = padding.substring(s.length()) + s;
             pdf.append(loc).append(" 00000 n \n");
+            if (pdf.length() >= FLUSH_THRESHOLD) {
+                // don't build the whole table in memory for documents with many objects
+                flush(stream);
+            }
         }
     }
 
+    private void flush(OutputStream stream) throws IOException {
+        stream.write(PDFDocument.encode(pdf.toString()));
+        pdf.setLength(0);
+    }
+
     private void writeTrailer(OutputStream stream) throws IOException {
         pdf.append("trailer\n");
-        stream.write(PDFDocument.encode(pdf.toString()));
+        flush(stream);
         PDFDictionary dictionary = trailerDictionary.getDictionary();
         dictionary.put("/Size", size + 1);
         dictionary.output(stream);
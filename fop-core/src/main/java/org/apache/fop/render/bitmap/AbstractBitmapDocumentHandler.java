@@ -24,9 +24,17 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -49,6 +57,10 @@ import org.apache.fop.render.java2d.Java2DUtil;
 /**
  * Abstract {@link org.apache.fop.render.intermediate.IFDocumentHandler} implementation
  * for producing bitmap images.
+ * <p>
+ * If more than one rendering thread is configured, the painting calls for each page are
+ * recorded and the page is painted and, if every page goes to its own file, encoded on a
+ * worker thread. The pages are written in order by the thread delivering them.
  */
 public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
 
@@ -72,6 +84,11 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
     private Dimension currentPageDimensions;
     private BufferedImage currentImage;
 
+    private ExecutorService renderingExecutor;
+    private LinkedList<Future<PaintedPage>> paintingPages;
+    private RecordedPage currentRecording;
+    private PageSetup currentPageSetup;
+
     private BitmapRenderingSettings bitmapSettings = new BitmapRenderingSettings();
 
     private double scaleFactor = 1.0;
@@ -153,6 +170,10 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
                         getUserAgent().getOutputFile());
             }
             this.pageCount = 0;
+            if (getSettings().getRenderingThreads() > 1) {
+                this.renderingExecutor = createRenderingExecutor(getSettings().getRenderingThreads());
+                this.paintingPages = new LinkedList<Future<PaintedPage>>();
+            }
         } catch (IOException e) {
             throw new IFException("I/O error in startDocument()", e);
         }
@@ -165,6 +186,9 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
     /** {@inheritDoc} */
     public void endDocument() throws IFException {
         try {
+            if (this.renderingExecutor != null) {
+                writePaintedPages(0);
+            }
             if (this.multiImageWriter != null) {
                 this.multiImageWriter.close();
             }
@@ -172,10 +196,33 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
             this.imageWriter = null;
         } catch (IOException ioe) {
             throw new IFException("I/O error in endDocument()", ioe);
+        } finally {
+            shutdownRenderingExecutor();
         }
         super.endDocument();
     }
 
+    private ExecutorService createRenderingExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "FOP page rendering");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private void shutdownRenderingExecutor() {
+        if (this.renderingExecutor != null) {
+            for (Future<PaintedPage> page : this.paintingPages) {
+                page.cancel(true);
+            }
+            this.paintingPages = null;
+            this.renderingExecutor.shutdown();
+            this.renderingExecutor = null;
+        }
+    }
+
     /** {@inheritDoc} */
     public void startPageSequence(String id) throws IFException {
         //nop
@@ -228,12 +275,34 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
             bitmapHeight = (int) ((this.currentPageDimensions.height * scale / 1000f) + 0.5f);
         }
 
+        if (this.renderingExecutor != null) {
+            //Record the page, it is painted on a worker thread in endPageContent()
+            this.currentPageSetup = new PageSetup(bitmapWidth, bitmapHeight, scale, offset);
+            this.currentRecording = new RecordedPage(getContext());
+            return this.currentRecording.createPainter();
+        }
+
         //Set up bitmap to paint on
         if (currentImage == null || currentImage.getWidth() != bitmapWidth
                 || currentImage.getHeight() != bitmapHeight) {
             currentImage = createBufferedImage(bitmapWidth, bitmapHeight);
         }
-        Graphics2D graphics2D = this.currentImage.createGraphics();
+        Graphics2D graphics2D = createGraphics(this.currentImage, scale, offset);
+        return new Java2DPainter(graphics2D, getContext(), getFontInfo(), this);
+    }
+
+    /**
+     * Creates the graphics for painting a page on the given image. The page background is
+     * painted and the coordinate system is set up.
+     * @param image the image to paint on
+     * @param scale the scale factor (target pixels per 1000 points)
+     * @param offset the offset of the page in the image or null
+     * @return the graphics
+     */
+    private Graphics2D createGraphics(BufferedImage image, double scale, Point2D offset) {
+        int bitmapWidth = image.getWidth();
+        int bitmapHeight = image.getHeight();
+        Graphics2D graphics2D = image.createGraphics();
 
         // draw page background
         if (!getSettings().hasTransparentPageBackground()) {
@@ -246,7 +315,7 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
         graphics2D.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
                 RenderingHints.VALUE_FRACTIONALMETRICS_ON);
         if (getSettings().isAntiAliasingEnabled()
-                && this.currentImage.getColorModel().getPixelSize() > 1) {
+                && image.getColorModel().getPixelSize() > 1) {
             graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                     RenderingHints.VALUE_ANTIALIAS_ON);
             graphics2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
@@ -272,8 +341,7 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
             graphics2D.translate(offset.getX(), offset.getY());
         }
         graphics2D.scale(scale / 1000f, scale / 1000f);
-
-        return new Java2DPainter(graphics2D, getContext(), getFontInfo(), this);
+        return graphics2D;
     }
 
     /**
@@ -288,39 +356,93 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
 
     /** {@inheritDoc} */
     public void endPageContent() throws IFException {
+        if (this.renderingExecutor != null) {
+            this.paintingPages.add(this.renderingExecutor.submit(
+                    new PagePainter(this.currentRecording, this.currentPageSetup, this.pageCount)));
+            this.currentRecording = null;
+            this.currentPageSetup = null;
+            //Bound the number of pages held in memory
+            writePaintedPages(2 * getSettings().getRenderingThreads());
+            return;
+        }
         try {
-            if (this.multiImageWriter == null) {
-                switch (this.pageCount) {
-                case 1:
-                    this.imageWriter.writeImage(
-                            this.currentImage, this.outputStream,
-                            getSettings().getWriterParams());
-                    IOUtils.closeQuietly(this.outputStream);
-                    this.outputStream = null;
-                    break;
-                default:
-                    OutputStream out = this.multiFileUtil.createOutputStream(this.pageCount - 1);
-                    if (out == null) {
-                        BitmapRendererEventProducer eventProducer
-                            = BitmapRendererEventProducer.Provider.get(
-                                    getUserAgent().getEventBroadcaster());
-                        eventProducer.stoppingAfterFirstPageNoFilename(this);
-                    } else {
-                        try {
-                            this.imageWriter.writeImage(
-                                    this.currentImage, out,
-                                    getSettings().getWriterParams());
-                        } finally {
-                            IOUtils.closeQuietly(out);
-                        }
-                    }
+            writePage(this.currentImage, null, this.pageCount);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error while encoding BufferedImage", ioe);
+        }
+    }
+
+    /**
+     * Writes the pages painted on the worker threads in page order. Pages that are
+     * finished are written right away, and the oldest pages are waited for while more
+     * than the given number of pages are pending.
+     * @param maxPending the number of pages that may remain pending
+     * @throws IFException if painting or writing a page fails
+     */
+    private void writePaintedPages(int maxPending) throws IFException {
+        while (!this.paintingPages.isEmpty()
+                && (this.paintingPages.size() > maxPending || this.paintingPages.getFirst().isDone())) {
+            PaintedPage page;
+            try {
+                page = this.paintingPages.getFirst().get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IFException("Interrupted while waiting for a page to be painted", ie);
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof IFException) {
+                    throw (IFException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
                 }
+                throw new IFException("Error while painting a page", (Exception) cause);
+            }
+            this.paintingPages.removeFirst();
+            try {
+                writePage(page.image, page.encodedImage, page.pageNumber);
+            } catch (IOException ioe) {
+                throw new IFException("I/O error while encoding BufferedImage", ioe);
+            }
+        }
+    }
+
+    /**
+     * Writes a page to the output.
+     * @param image the page image, used if no encoded image is available
+     * @param encodedImage the page image already encoded by the image writer or null
+     * @param pageNumber the one-based number of the page
+     * @throws IOException if an I/O error occurs
+     */
+    private void writePage(BufferedImage image, byte[] encodedImage, int pageNumber)
+            throws IOException {
+        if (this.multiImageWriter == null) {
+            OutputStream out;
+            if (pageNumber == 1) {
+                out = this.outputStream;
+                this.outputStream = null;
             } else {
-                this.multiImageWriter.writeImage(this.currentImage,
-                        getSettings().getWriterParams());
+                out = this.multiFileUtil.createOutputStream(pageNumber - 1);
+                if (out == null) {
+                    BitmapRendererEventProducer eventProducer
+                        = BitmapRendererEventProducer.Provider.get(
+                                getUserAgent().getEventBroadcaster());
+                    eventProducer.stoppingAfterFirstPageNoFilename(this);
+                    return;
+                }
             }
-        } catch (IOException ioe) {
-            throw new IFException("I/O error while encoding BufferedImage", ioe);
+            try {
+                if (encodedImage != null) {
+                    out.write(encodedImage);
+                } else {
+                    this.imageWriter.writeImage(image, out, getSettings().getWriterParams());
+                }
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+        } else {
+            this.multiImageWriter.writeImage(image, getSettings().getWriterParams());
         }
     }
 
@@ -335,4 +457,71 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
                     + extension + " (" + extension.getClass().getName() + ")");
     }
 
+    /** The size and coordinate system of a recorded page's bitmap. */
+    private static final class PageSetup {
+
+        private final int bitmapWidth;
+        private final int bitmapHeight;
+        private final double scale;
+        private final Point2D offset;
+
+        PageSetup(int bitmapWidth, int bitmapHeight, double scale, Point2D offset) {
+            this.bitmapWidth = bitmapWidth;
+            this.bitmapHeight = bitmapHeight;
+            this.scale = scale;
+            this.offset = offset;
+        }
+    }
+
+    /** A page painted on a worker thread. */
+    private static final class PaintedPage {
+
+        private final int pageNumber;
+        private final BufferedImage image;
+        private final byte[] encodedImage;
+
+        PaintedPage(int pageNumber, BufferedImage image, byte[] encodedImage) {
+            this.pageNumber = pageNumber;
+            this.image = image;
+            this.encodedImage = encodedImage;
+        }
+    }
+
+    /**
+     * Paints a recorded page on a worker thread. If each page goes to its own file, the
+     * image is encoded as well.
+     */
+    private final class PagePainter implements Callable<PaintedPage> {
+
+        private final RecordedPage recording;
+        private final PageSetup setup;
+        private final int pageNumber;
+        /** the writer encoding the page, null if the page is written by a multi-image writer */
+        private final ImageWriter pageWriter;
+
+        PagePainter(RecordedPage recording, PageSetup setup, int pageNumber) {
+            this.recording = recording;
+            this.setup = setup;
+            this.pageNumber = pageNumber;
+            this.pageWriter = (multiImageWriter == null ? imageWriter : null);
+        }
+
+        public PaintedPage call() throws IFException, IOException {
+            BufferedImage image = createBufferedImage(setup.bitmapWidth, setup.bitmapHeight);
+            Graphics2D graphics2D = createGraphics(image, setup.scale, setup.offset);
+            IFContext pageContext = new IFContext(getUserAgent());
+            try {
+                recording.replay(new Java2DPainter(graphics2D, pageContext, getFontInfo(),
+                        AbstractBitmapDocumentHandler.this), pageContext);
+            } finally {
+                graphics2D.dispose();
+            }
+            if (pageWriter == null) {
+                return new PaintedPage(pageNumber, image, null);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            pageWriter.writeImage(image, out, getSettings().getWriterParams());
+            return new PaintedPage(pageNumber, null, out.toByteArray());
+        }
+    }
 }
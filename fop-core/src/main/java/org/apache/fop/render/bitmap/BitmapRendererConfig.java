@@ -41,6 +41,7 @@ import static org.apache.fop.render.bitmap.BitmapRendererOption.JAVA2D_TRANSPARE
 import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_QUALITY;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_QUALITY_ELEMENT;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_SPEED;
+import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_THREADS;
 
 /**
  * The Bitmap renderer config data object.
@@ -76,6 +77,10 @@ public class BitmapRendererConfig implements RendererConfig {
         return (Integer) get(COLOR_MODE);
     }
 
+    public Integer getRenderingThreads() {
+        return (Integer) get(RENDERING_THREADS);
+    }
+
     public boolean hasTransparentBackround() {
         Object result = get(JAVA2D_TRANSPARENT_PAGE_BACKGROUND);
         return (Boolean) (result != null ? result
@@ -133,6 +138,10 @@ public class BitmapRendererConfig implements RendererConfig {
                 String color = getValue(cfg, COLOR_MODE);
                 setParam(config, COLOR_MODE,
                         getBufferedImageIntegerFromColor(BitmapRendererOption.getValue(color)));
+
+                setParam(config, RENDERING_THREADS,
+                        getChild(cfg, RENDERING_THREADS).getValueAsInteger(
+                                (Integer) RENDERING_THREADS.getDefaultValue()));
             }
         }
 
@@ -40,7 +40,8 @@ public enum BitmapRendererOption implements RendererConfigOption {
     COLOR_MODE_RGB("rgb"),
     COLOR_MODE_GRAY("gray"),
     COLOR_MODE_BINARY("binary"),
-    COLOR_MODE_BILEVEL("bi-level");
+    COLOR_MODE_BILEVEL("bi-level"),
+    RENDERING_THREADS("rendering-threads", 0);
 
     private final String name;
     private final Object defaultValue;
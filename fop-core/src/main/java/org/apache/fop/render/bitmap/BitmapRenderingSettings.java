@@ -26,6 +26,7 @@ import org.apache.fop.render.java2d.Java2DRenderingSettings;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.ANTI_ALIASING;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.COLOR_MODE;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_QUALITY;
+import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_THREADS;
 
 /**
  * This class holds settings used when rendering to bitmaps.
@@ -44,6 +45,9 @@ public class BitmapRenderingSettings extends Java2DRenderingSettings {
     /** true if qualityRendering is set */
     private boolean qualityRendering = (Boolean) RENDERING_QUALITY.getDefaultValue();
 
+    /** number of threads painting pages, 0 or 1 to paint them on the calling thread */
+    private int renderingThreads = (Integer) RENDERING_THREADS.getDefaultValue();
+
     /**
      * Default constructor. Initializes the settings to their default values.
      */
@@ -107,6 +111,29 @@ public class BitmapRenderingSettings extends Java2DRenderingSettings {
         return this.qualityRendering;
     }
 
+    /**
+     * Sets the number of threads painting pages. With more than one thread, the pages
+     * received by the document handler are recorded and painted and encoded on worker
+     * threads. The images are still written in page order.
+     * @param threads the number of rendering threads, 0 or 1 to paint every page on the
+     * thread delivering it
+     */
+    public void setRenderingThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("The number of rendering threads must not be negative");
+        }
+        this.renderingThreads = threads;
+    }
+
+    /**
+     * Returns the number of threads painting pages.
+     * @return the number of rendering threads, 0 or 1 if pages are painted on the thread
+     * delivering them
+     */
+    public int getRenderingThreads() {
+        return this.renderingThreads;
+    }
+
     /**
      * Sets the compression method for the image writer.
      * @param compressionMethod the compression method name
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFException;
+import org.apache.fop.render.intermediate.IFPainter;
+
+/**
+ * Records the calls made to an {@link IFPainter} for one page so the page can be painted
+ * later, usually on another thread. Together with each call, the state of the document
+ * handler's {@link IFContext} is captured since painters look up foreign attributes and the
+ * page number there. Arguments the caller may reuse (arrays, rectangles, points and
+ * transforms) are copied.
+ */
+final class RecordedPage implements InvocationHandler {
+
+    private final IFContext context;
+
+    private final List<RecordedCall> calls = new ArrayList<RecordedCall>();
+
+    /**
+     * Creates a new recording.
+     * @param context the document handler's context whose state is captured with every call
+     */
+    RecordedPage(IFContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns a painter recording into this object.
+     * @return the recording painter
+     */
+    IFPainter createPainter() {
+        return (IFPainter) Proxy.newProxyInstance(IFPainter.class.getClassLoader(),
+                new Class<?>[] {IFPainter.class}, this);
+    }
+
+    /** {@inheritDoc} */
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            } else {
+                return "RecordedPage@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+        }
+        if ("isBackgroundRequired".equals(method.getName())) {
+            //Java2DPainter always requires the background to be painted
+            return Boolean.TRUE;
+        }
+        IFContext state = new IFContext(context.getUserAgent());
+        state.copyStateFrom(context);
+        calls.add(new RecordedCall(method, copyArguments(args), state));
+        return null;
+    }
+
+    /**
+     * Replays the recorded calls.
+     * @param painter the painter to replay the calls on
+     * @param painterContext the context used by the painter, it receives the state captured
+     *          with each call before the call is replayed
+     * @throws IFException if an error occurs while painting
+     */
+    void replay(IFPainter painter, IFContext painterContext) throws IFException {
+        for (RecordedCall call : calls) {
+            painterContext.copyStateFrom(call.state);
+            try {
+                call.method.invoke(painter, call.args);
+            } catch (InvocationTargetException ite) {
+                Throwable cause = ite.getCause();
+                if (cause instanceof IFException) {
+                    throw (IFException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IFException("Error while painting recorded page", (Exception) cause);
+            } catch (IllegalAccessException iae) {
+                throw new IFException("Cannot replay " + call.method.getName(), iae);
+            }
+        }
+    }
+
+    private static Object[] copyArguments(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] copy = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            copy[i] = copyArgument(args[i]);
+        }
+        return copy;
+    }
+
+    private static Object copyArgument(Object arg) {
+        if (arg instanceof int[]) {
+            return ((int[]) arg).clone();
+        } else if (arg instanceof int[][]) {
+            int[][] arrays = ((int[][]) arg).clone();
+            for (int i = 0; i < arrays.length; i++) {
+                if (arrays[i] != null) {
+                    arrays[i] = arrays[i].clone();
+                }
+            }
+            return arrays;
+        } else if (arg instanceof AffineTransform[]) {
+            AffineTransform[] transforms = ((AffineTransform[]) arg).clone();
+            for (int i = 0; i < transforms.length; i++) {
+                if (transforms[i] != null) {
+                    transforms[i] = new AffineTransform(transforms[i]);
+                }
+            }
+            return transforms;
+        } else if (arg instanceof AffineTransform) {
+            return new AffineTransform((AffineTransform) arg);
+        } else if (arg instanceof Rectangle) {
+            return new Rectangle((Rectangle) arg);
+        } else if (arg instanceof Point) {
+            return new Point((Point) arg);
+        } else if (arg instanceof Dimension) {
+            return new Dimension((Dimension) arg);
+        }
+        return arg;
+    }
+
+    private static final class RecordedCall {
+
+        private final Method method;
+        private final Object[] args;
+        private final IFContext state;
+
+        RecordedCall(Method method, Object[] args, IFContext state) {
+            this.method = method;
+            this.args = args;
+            this.state = state;
+        }
+    }
+}
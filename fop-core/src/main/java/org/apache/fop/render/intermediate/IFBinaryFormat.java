@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Constants and primitive encodings shared by {@link IFBinaryWriter} and {@link IFBinaryReader}.
+ * <p>
+ * A binary IF document starts with a 6 byte signature and a version byte, followed by
+ * records each starting with a tag byte. Element, attribute and namespace names as well as
+ * short attribute values are interned: a {@link #DEFINE_STRING} record appends them to the
+ * string table once and later records refer to them by their index plus one (0 stands for
+ * null). Likewise, a {@link #DEFINE_NAME} record defines the namespace, local name and
+ * qualified name of an element or attribute once. Integer attribute values and
+ * lists of integers (coordinates, adjustments) are stored as zig-zag encoded varints. Inside
+ * pages, a single integer is stored as the difference to the previous value of the same
+ * attribute on that page.
+ * Each page is stored as a {@link #PAGE} record holding its length, so readers can skip
+ * pages without decoding them. The strings first used on a page are defined before its
+ * page record. There is no index of page offsets: the string and name tables are built up
+ * while the document is read, so a page is always reached by reading the records before it.
+ */
+final class IFBinaryFormat {
+
+    /** The signature at the start of every binary IF document. */
+    static final byte[] SIGNATURE = {'F', 'O', 'P', 'I', 'F', 'B'};
+    /** The version of the encoding. */
+    static final int VERSION = 1;
+
+    /** Record: start element (namespace, local name, qualified name, attributes). */
+    static final int START_ELEMENT = 1;
+    /** Record: end of the innermost open element. */
+    static final int END_ELEMENT = 2;
+    /** Record: character data. */
+    static final int CHARACTERS = 3;
+    /** Record: start of a namespace prefix mapping. */
+    static final int START_PREFIX_MAPPING = 4;
+    /** Record: end of a namespace prefix mapping. */
+    static final int END_PREFIX_MAPPING = 5;
+    /** Record: processing instruction. */
+    static final int PROCESSING_INSTRUCTION = 6;
+    /** Record: a page, followed by its length and the page element's records. */
+    static final int PAGE = 7;
+    /** Record: appends a string to the string table. */
+    static final int DEFINE_STRING = 8;
+    /** Record: appends a namespace, local name and qualified name to the name table. */
+    static final int DEFINE_NAME = 9;
+
+    /** Attribute value: index into the string table. */
+    static final int VALUE_STRING_REF = 0;
+    /** Attribute value: string stored in place. */
+    static final int VALUE_STRING = 1;
+    /** Attribute value: an integer, relative to the previous value of the attribute on pages. */
+    static final int VALUE_INT = 2;
+    /** Attribute value: a space-separated list of integers. */
+    static final int VALUE_INT_LIST = 3;
+
+    /** Longer attribute values are not interned. */
+    static final int MAX_INTERNED_LENGTH = 40;
+    /** Attribute values are no longer interned once the string table has this size. */
+    static final int MAX_INTERNED_VALUES = 65536;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private IFBinaryFormat() {
+    }
+
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static void writeSignedVarint(OutputStream out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    static void writeString(OutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of binary intermediate format");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary intermediate format");
+    }
+
+    static int readSignedVarint(InputStream in) throws IOException {
+        int value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static byte[] readBytes(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int count = in.read(bytes, offset, length - offset);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of binary intermediate format");
+            }
+            offset += count;
+        }
+        return bytes;
+    }
+
+    static String readString(InputStream in) throws IOException {
+        return new String(readBytes(in, readVarint(in)), UTF_8);
+    }
+}
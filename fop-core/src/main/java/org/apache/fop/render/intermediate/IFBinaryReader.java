@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.transform.sax.SAXSource;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * XMLReader turning the binary encoding of the intermediate format written by
+ * {@link IFBinaryWriter} back into SAX events. {@link IFParser} uses it automatically for
+ * binary input streams. A range of pages may be selected: the other pages are reported as
+ * empty page elements without decoding their content.
+ */
+public class IFBinaryReader implements XMLReader {
+
+    private static final String NAMESPACES_FEATURE = "http://xml.org/sax/features/namespaces";
+    private static final String NAMESPACE_PREFIXES_FEATURE
+            = "http://xml.org/sax/features/namespace-prefixes";
+
+    private ContentHandler contentHandler;
+    private DTDHandler dtdHandler;
+    private EntityResolver entityResolver;
+    private ErrorHandler errorHandler;
+    private final Map<String, Boolean> features = new java.util.HashMap<String, Boolean>();
+
+    private int firstPage = 1;
+    private int lastPage = Integer.MAX_VALUE;
+
+    /** Creates a new reader. */
+    public IFBinaryReader() {
+        features.put(NAMESPACES_FEATURE, Boolean.TRUE);
+        features.put(NAMESPACE_PREFIXES_FEATURE, Boolean.FALSE);
+    }
+
+    /**
+     * Indicates whether a stream holds the binary encoding of the intermediate format. The
+     * stream is reset to its current position afterwards.
+     * @param in the stream, it must support {@link InputStream#mark(int)}
+     * @return true if the stream starts with the signature of the binary intermediate format
+     * @throws IOException if an I/O error occurs
+     */
+    public static boolean isBinaryIF(InputStream in) throws IOException {
+        byte[] signature = IFBinaryFormat.SIGNATURE;
+        in.mark(signature.length);
+        try {
+            for (byte b : signature) {
+                if (in.read() != b) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Creates a JAXP Source reading the binary intermediate format from a stream.
+     * @param in the stream
+     * @param systemId the system ID of the document (may be null)
+     * @return the Source
+     */
+    public static SAXSource createSource(InputStream in, String systemId) {
+        InputSource inputSource = new InputSource(in);
+        inputSource.setSystemId(systemId);
+        return new SAXSource(new IFBinaryReader(), inputSource);
+    }
+
+    /**
+     * Creates a JAXP Source reading the binary intermediate format from a system ID. The
+     * document is opened when it is parsed and closed afterwards.
+     * @param systemId the system ID of the document
+     * @return the Source
+     */
+    public static SAXSource createSource(String systemId) {
+        return new SAXSource(new IFBinaryReader(), new InputSource(systemId));
+    }
+
+    /**
+     * Selects the pages whose content is reported. The other pages are reported as empty
+     * page elements.
+     * @param firstPage the number of the first page (one-based)
+     * @param lastPage the number of the last page (inclusive)
+     */
+    public void setPageRange(int firstPage, int lastPage) {
+        this.firstPage = firstPage;
+        this.lastPage = lastPage;
+    }
+
+    /** {@inheritDoc} */
+    public boolean getFeature(String name) throws SAXNotRecognizedException {
+        Boolean value = features.get(name);
+        if (value == null) {
+            throw new SAXNotRecognizedException(name);
+        }
+        return value;
+    }
+
+    /** {@inheritDoc} */
+    public void setFeature(String name, boolean value) throws SAXNotRecognizedException {
+        if (!features.containsKey(name)) {
+            throw new SAXNotRecognizedException(name);
+        }
+        features.put(name, value);
+    }
+
+    /** {@inheritDoc} */
+    public Object getProperty(String name) throws SAXNotRecognizedException {
+        throw new SAXNotRecognizedException(name);
+    }
+
+    /** {@inheritDoc} */
+    public void setProperty(String name, Object value) throws SAXNotRecognizedException {
+        throw new SAXNotRecognizedException(name);
+    }
+
+    /** {@inheritDoc} */
+    public void setEntityResolver(EntityResolver resolver) {
+        this.entityResolver = resolver;
+    }
+
+    /** {@inheritDoc} */
+    public EntityResolver getEntityResolver() {
+        return this.entityResolver;
+    }
+
+    /** {@inheritDoc} */
+    public void setDTDHandler(DTDHandler handler) {
+        this.dtdHandler = handler;
+    }
+
+    /** {@inheritDoc} */
+    public DTDHandler getDTDHandler() {
+        return this.dtdHandler;
+    }
+
+    /** {@inheritDoc} */
+    public void setContentHandler(ContentHandler handler) {
+        this.contentHandler = handler;
+    }
+
+    /** {@inheritDoc} */
+    public ContentHandler getContentHandler() {
+        return this.contentHandler;
+    }
+
+    /** {@inheritDoc} */
+    public void setErrorHandler(ErrorHandler handler) {
+        this.errorHandler = handler;
+    }
+
+    /** {@inheritDoc} */
+    public ErrorHandler getErrorHandler() {
+        return this.errorHandler;
+    }
+
+    /** {@inheritDoc} */
+    public void parse(String systemId) throws IOException, SAXException {
+        parse(new InputSource(systemId));
+    }
+
+    /** {@inheritDoc} */
+    public void parse(InputSource input) throws IOException, SAXException {
+        InputStream in = input.getByteStream();
+        boolean close = false;
+        if (in == null) {
+            if (input.getSystemId() == null) {
+                throw new SAXException("The binary intermediate format can only be read"
+                        + " from a byte stream or a system ID");
+            }
+            in = new URL(input.getSystemId()).openStream();
+            close = true;
+        }
+        try {
+            new Decoder(new BufferedInputStream(in)).decode();
+        } finally {
+            if (close) {
+                in.close();
+            }
+        }
+    }
+
+    /** Decodes one document. */
+    private class Decoder {
+
+        private final InputStream in;
+        private final List<String> strings = new ArrayList<String>();
+        private final List<String[]> names = new ArrayList<String[]>();
+        private int[] lastValues = new int[64];
+        /** the number of open elements outside the current page, -1 outside pages */
+        private int pageDepth = -1;
+        private final LinkedList<String[]> elements = new LinkedList<String[]>();
+        private final AttributesImpl atts = new AttributesImpl();
+        private int pageNumber;
+
+        Decoder(InputStream in) {
+            this.in = in;
+        }
+
+        void decode() throws IOException, SAXException {
+            for (byte b : IFBinaryFormat.SIGNATURE) {
+                if (in.read() != b) {
+                    throw new SAXException("Not a binary intermediate format document");
+                }
+            }
+            int version = in.read();
+            if (version != IFBinaryFormat.VERSION) {
+                throw new SAXException("Unsupported binary intermediate format version: "
+                        + version);
+            }
+            contentHandler.startDocument();
+            int tag;
+            while ((tag = in.read()) >= 0) {
+                if (tag == IFBinaryFormat.PAGE) {
+                    int length = IFBinaryFormat.readVarint(in);
+                    pageNumber++;
+                    pageDepth = elements.size();
+                    Arrays.fill(lastValues, 0);
+                    if (pageNumber < firstPage || pageNumber > lastPage) {
+                        skipPage(IFBinaryFormat.readBytes(in, length));
+                    }
+                    //otherwise the page's records follow
+                } else {
+                    decodeRecord(tag, in);
+                }
+            }
+            if (!elements.isEmpty()) {
+                throw new SAXException("Unexpected end of binary intermediate format");
+            }
+            contentHandler.endDocument();
+        }
+
+        private void skipPage(byte[] page) throws IOException, SAXException {
+            InputStream pageIn = new ByteArrayInputStream(page);
+            int tag = pageIn.read();
+            if (tag != IFBinaryFormat.START_ELEMENT) {
+                throw new SAXException("Malformed page in binary intermediate format");
+            }
+            decodeRecord(tag, pageIn);
+            decodeRecord(IFBinaryFormat.END_ELEMENT, pageIn);
+        }
+
+        private void decodeRecord(int tag, InputStream in) throws IOException, SAXException {
+            switch (tag) {
+            case IFBinaryFormat.DEFINE_STRING:
+                strings.add(IFBinaryFormat.readString(in));
+                break;
+            case IFBinaryFormat.DEFINE_NAME:
+                names.add(new String[] {readStringRef(in), readStringRef(in), readStringRef(in)});
+                if (names.size() > lastValues.length) {
+                    lastValues = Arrays.copyOf(lastValues, lastValues.length * 2);
+                }
+                break;
+            case IFBinaryFormat.START_ELEMENT:
+                String[] element = readName(in);
+                atts.clear();
+                for (int i = 0, c = IFBinaryFormat.readVarint(in); i < c; i++) {
+                    int name = IFBinaryFormat.readVarint(in);
+                    String[] attribute = getName(name);
+                    atts.addAttribute(attribute[0], attribute[1], attribute[2], "CDATA",
+                            readValue(name, in));
+                }
+                elements.add(element);
+                contentHandler.startElement(element[0], element[1], element[2], atts);
+                break;
+            case IFBinaryFormat.END_ELEMENT:
+                if (elements.isEmpty()) {
+                    throw new SAXException("Unbalanced end element in binary intermediate format");
+                }
+                String[] endedElement = elements.removeLast();
+                contentHandler.endElement(endedElement[0], endedElement[1], endedElement[2]);
+                if (elements.size() == pageDepth) {
+                    pageDepth = -1;
+                }
+                break;
+            case IFBinaryFormat.CHARACTERS:
+                char[] chars = IFBinaryFormat.readString(in).toCharArray();
+                contentHandler.characters(chars, 0, chars.length);
+                break;
+            case IFBinaryFormat.START_PREFIX_MAPPING:
+                contentHandler.startPrefixMapping(readStringRef(in), readStringRef(in));
+                break;
+            case IFBinaryFormat.END_PREFIX_MAPPING:
+                contentHandler.endPrefixMapping(readStringRef(in));
+                break;
+            case IFBinaryFormat.PROCESSING_INSTRUCTION:
+                contentHandler.processingInstruction(readStringRef(in),
+                        IFBinaryFormat.readString(in));
+                break;
+            default:
+                throw new SAXException("Unknown record in binary intermediate format: " + tag);
+            }
+        }
+
+        private String readStringRef(InputStream in) throws IOException, SAXException {
+            int index = IFBinaryFormat.readVarint(in) - 1;
+            if (index == -1) {
+                return null;
+            } else if (index < 0 || index >= strings.size()) {
+                throw new SAXException("Undefined string in binary intermediate format: " + index);
+            }
+            return strings.get(index);
+        }
+
+        private String[] readName(InputStream in) throws IOException, SAXException {
+            return getName(IFBinaryFormat.readVarint(in));
+        }
+
+        private String[] getName(int index) throws SAXException {
+            if (index >= names.size()) {
+                throw new SAXException("Undefined name in binary intermediate format: " + index);
+            }
+            return names.get(index);
+        }
+
+        private String readValue(int name, InputStream in) throws IOException, SAXException {
+            int type = in.read();
+            switch (type) {
+            case IFBinaryFormat.VALUE_STRING_REF:
+                return readStringRef(in);
+            case IFBinaryFormat.VALUE_STRING:
+                return IFBinaryFormat.readString(in);
+            case IFBinaryFormat.VALUE_INT:
+                int value = IFBinaryFormat.readSignedVarint(in);
+                if (pageDepth >= 0) {
+                    value += lastValues[name];
+                    lastValues[name] = value;
+                }
+                return Integer.toString(value);
+            case IFBinaryFormat.VALUE_INT_LIST:
+                int count = IFBinaryFormat.readVarint(in);
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append(IFBinaryFormat.readSignedVarint(in));
+                }
+                return sb.toString();
+            default:
+                throw new SAXException("Unknown value type in binary intermediate format: " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * SAX ContentHandler writing the intermediate format in its compact binary encoding
+ * (see {@link IFBinaryFormat}). Use {@link IFBinaryReader} to turn it back into SAX events.
+ */
+public class IFBinaryWriter implements ContentHandler {
+
+    private final OutputStream out;
+
+    /** the interned strings and their index in the string table */
+    private final Map<String, Integer> strings = new java.util.HashMap<String, Integer>();
+    private int valueCount;
+    /** the interned names (namespace, local name, qualified name) and their index */
+    private final Map<List<String>, Integer> names = new java.util.HashMap<List<String>, Integer>();
+    /** the last integer value of each attribute name on the current page */
+    private int[] lastValues = new int[64];
+
+    /** the record being encoded */
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    /** the records of the current page, null outside pages */
+    private ByteArrayOutputStream page;
+    /** the strings defined while encoding the current page */
+    private final ByteArrayOutputStream pageStrings = new ByteArrayOutputStream();
+    private int pageDepth;
+
+    private final StringBuilder characters = new StringBuilder();
+
+    /**
+     * Creates a new writer.
+     * @param out the stream to write the binary intermediate format to
+     */
+    public IFBinaryWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out);
+    }
+
+    /** {@inheritDoc} */
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    /** {@inheritDoc} */
+    public void startDocument() throws SAXException {
+        try {
+            out.write(IFBinaryFormat.SIGNATURE);
+            out.write(IFBinaryFormat.VERSION);
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void endDocument() throws SAXException {
+        try {
+            flushCharacters();
+            out.flush();
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        try {
+            flushCharacters();
+            record.write(IFBinaryFormat.START_PREFIX_MAPPING);
+            writeStringRef(prefix);
+            writeStringRef(uri);
+            writeRecord();
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void endPrefixMapping(String prefix) throws SAXException {
+        try {
+            flushCharacters();
+            record.write(IFBinaryFormat.END_PREFIX_MAPPING);
+            writeStringRef(prefix);
+            writeRecord();
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+            throws SAXException {
+        try {
+            flushCharacters();
+            if (page != null) {
+                pageDepth++;
+            } else if (IFConstants.NAMESPACE.equals(uri) && IFConstants.EL_PAGE.equals(localName)) {
+                page = new ByteArrayOutputStream();
+                pageDepth = 1;
+                Arrays.fill(lastValues, 0);
+            }
+            record.write(IFBinaryFormat.START_ELEMENT);
+            IFBinaryFormat.writeVarint(record, internName(uri, localName, qName));
+            IFBinaryFormat.writeVarint(record, atts.getLength());
+            for (int i = 0, c = atts.getLength(); i < c; i++) {
+                int name = internName(atts.getURI(i), atts.getLocalName(i), atts.getQName(i));
+                IFBinaryFormat.writeVarint(record, name);
+                writeValue(name, atts.getValue(i));
+            }
+            writeRecord();
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        try {
+            flushCharacters();
+            record.write(IFBinaryFormat.END_ELEMENT);
+            writeRecord();
+            if (page != null && --pageDepth == 0) {
+                //Strings first used on the page precede it so readers can skip the page
+                pageStrings.writeTo(out);
+                pageStrings.reset();
+                out.write(IFBinaryFormat.PAGE);
+                IFBinaryFormat.writeVarint(out, page.size());
+                page.writeTo(out);
+                page = null;
+            }
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void characters(char[] ch, int start, int length) {
+        characters.append(ch, start, length);
+    }
+
+    /** {@inheritDoc} */
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters(ch, start, length);
+    }
+
+    /** {@inheritDoc} */
+    public void processingInstruction(String target, String data) throws SAXException {
+        try {
+            flushCharacters();
+            record.write(IFBinaryFormat.PROCESSING_INSTRUCTION);
+            writeStringRef(target);
+            IFBinaryFormat.writeString(record, data);
+            writeRecord();
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void skippedEntity(String name) {
+    }
+
+    private void flushCharacters() throws IOException {
+        if (characters.length() > 0) {
+            record.write(IFBinaryFormat.CHARACTERS);
+            IFBinaryFormat.writeString(record, characters.toString());
+            characters.setLength(0);
+            writeRecord();
+        }
+    }
+
+    private void writeRecord() throws IOException {
+        record.writeTo(page != null ? page : out);
+        record.reset();
+    }
+
+    private void writeStringRef(String s) throws IOException {
+        writeStringRef(record, s);
+    }
+
+    private void writeStringRef(OutputStream target, String s) throws IOException {
+        //0 stands for null
+        IFBinaryFormat.writeVarint(target, s == null ? 0 : intern(s) + 1);
+    }
+
+    private OutputStream getDefinitionTarget() {
+        return page != null ? pageStrings : out;
+    }
+
+    private int intern(String s) throws IOException {
+        Integer index = strings.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.put(s, index);
+            OutputStream target = getDefinitionTarget();
+            target.write(IFBinaryFormat.DEFINE_STRING);
+            IFBinaryFormat.writeString(target, s);
+        }
+        return index;
+    }
+
+    private int internName(String uri, String localName, String qName) throws IOException {
+        List<String> key = Arrays.asList(uri, localName, qName);
+        Integer index = names.get(key);
+        if (index == null) {
+            ByteArrayOutputStream definition = new ByteArrayOutputStream();
+            definition.write(IFBinaryFormat.DEFINE_NAME);
+            //The strings are defined before the name
+            writeStringRef(definition, uri);
+            writeStringRef(definition, localName);
+            writeStringRef(definition, qName);
+            definition.writeTo(getDefinitionTarget());
+            index = names.size();
+            names.put(key, index);
+            if (index >= lastValues.length) {
+                lastValues = Arrays.copyOf(lastValues, lastValues.length * 2);
+            }
+        }
+        return index;
+    }
+
+    private void writeValue(int name, String value) throws IOException {
+        int count = countIntegers(value);
+        if (count == 1) {
+            int intValue = Integer.parseInt(value);
+            record.write(IFBinaryFormat.VALUE_INT);
+            if (page != null) {
+                IFBinaryFormat.writeSignedVarint(record, intValue - lastValues[name]);
+                lastValues[name] = intValue;
+            } else {
+                IFBinaryFormat.writeSignedVarint(record, intValue);
+            }
+        } else if (count > 1) {
+            record.write(IFBinaryFormat.VALUE_INT_LIST);
+            IFBinaryFormat.writeVarint(record, count);
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                int end = value.indexOf(' ', start);
+                if (end < 0) {
+                    end = value.length();
+                }
+                IFBinaryFormat.writeSignedVarint(record,
+                        Integer.parseInt(value.substring(start, end)));
+                start = end + 1;
+            }
+        } else if (value.length() <= IFBinaryFormat.MAX_INTERNED_LENGTH
+                && (strings.containsKey(value) || valueCount < IFBinaryFormat.MAX_INTERNED_VALUES)) {
+            if (!strings.containsKey(value)) {
+                valueCount++;
+            }
+            record.write(IFBinaryFormat.VALUE_STRING_REF);
+            writeStringRef(value);
+        } else {
+            record.write(IFBinaryFormat.VALUE_STRING);
+            IFBinaryFormat.writeString(record, value);
+        }
+    }
+
+    /**
+     * Returns the number of integers in a value made of integers separated by single spaces.
+     * Only integers printed exactly as {@link Integer#toString(int)} prints them are counted
+     * so the value can be restored as is.
+     * @param value the attribute value
+     * @return the number of integers, 0 if the value is something else
+     */
+    private static int countIntegers(String value) {
+        int count = 0;
+        int start = 0;
+        int length = value.length();
+        if (length == 0) {
+            return 0;
+        }
+        while (start <= length) {
+            int end = value.indexOf(' ', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (!isCanonicalInteger(value, start, end)) {
+                return 0;
+            }
+            count++;
+            start = end + 1;
+        }
+        return count;
+    }
+
+    private static boolean isCanonicalInteger(String s, int start, int end) {
+        int i = start;
+        if (i < end && s.charAt(i) == '-') {
+            i++;
+        }
+        int digits = end - i;
+        if (digits == 0 || digits > 10 || (s.charAt(i) == '0' && (digits > 1 || i > start))) {
+            return false;
+        }
+        for (int j = i; j < end; j++) {
+            char c = s.charAt(j);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (digits == 10) {
+            long value = Long.parseLong(s.substring(start, end));
+            return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+        }
+        return true;
+    }
+}
@@ -247,6 +247,25 @@ public class IFContext implements PageIndexContext {
         this.pageNumber = pageNumber;
     }
 
+    /**
+     * Copies the state of another context into this one, for example to paint a page
+     * recorded against that context on another thread. Everything but the user agent is
+     * copied: foreign attributes, language, structure tree element, ID, location,
+     * hyphenation, page index and number, and region type.
+     * @param context the context to copy the state from
+     */
+    public void copyStateFrom(IFContext context) {
+        this.foreignAttributes = context.foreignAttributes;
+        this.language = context.language;
+        this.structureTreeElement = context.structureTreeElement;
+        this.id = context.id;
+        this.location = context.location;
+        this.hyphenated = context.hyphenated;
+        this.pageIndex = context.pageIndex;
+        this.pageNumber = context.pageNumber;
+        this.regionType = context.regionType;
+    }
+
     private enum RegionType {
         Footer,
         Header
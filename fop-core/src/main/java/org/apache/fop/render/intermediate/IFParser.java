@@ -24,6 +24,10 @@ import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -33,7 +37,9 @@ import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.stream.StreamSource;
 
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
@@ -43,6 +49,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -99,13 +106,30 @@ public class IFParser implements IFConstants {
      */
     public void parse(Source src, IFDocumentHandler documentHandler, FOUserAgent userAgent)
             throws TransformerException, IFException {
+        parse(src, documentHandler, userAgent, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parses an intermediate file and paints it, decoding only the content of a range of pages
+     * where the encoding allows it. Pages of the binary encoding outside the range are reported
+     * as empty pages without being decoded. The XML encoding is always parsed completely.
+     * @param src the Source instance pointing to the intermediate file
+     * @param documentHandler the intermediate format document handler used to process the IF events
+     * @param userAgent the user agent
+     * @param firstPage the number of the first page whose content is needed (one-based)
+     * @param lastPage the number of the last page whose content is needed (inclusive)
+     * @throws TransformerException if an error occurs while parsing the area tree XML
+     * @throws IFException if an IF-related error occurs inside the target document handler
+     */
+    public void parse(Source src, IFDocumentHandler documentHandler, FOUserAgent userAgent,
+            int firstPage, int lastPage) throws TransformerException, IFException {
         try {
             Transformer transformer = tFactory.newTransformer();
             transformer.setErrorListener(new DefaultErrorListener(log));
 
             SAXResult res = new SAXResult(getContentHandler(documentHandler, userAgent));
 
-            transformer.transform(src, res);
+            transformer.transform(detectBinaryIF(src, firstPage, lastPage), res);
         } catch (TransformerException te) {
             Throwable cause = te.getCause();
             //Unpack original IFException if applicable
@@ -122,6 +146,60 @@ public class IFParser implements IFConstants {
         }
     }
 
+    /**
+     * Replaces a stream source holding the binary encoding of the intermediate format by one
+     * reading it through {@link IFBinaryReader}, and passes the page range on to the reader.
+     * @param src the Source instance pointing to the intermediate file
+     * @param firstPage the number of the first page whose content is needed (one-based)
+     * @param lastPage the number of the last page whose content is needed (inclusive)
+     * @return the Source to parse
+     * @throws TransformerException if an I/O error occurs while checking the format
+     */
+    private static Source detectBinaryIF(Source src, int firstPage, int lastPage)
+            throws TransformerException {
+        if (src instanceof SAXSource && ((SAXSource) src).getXMLReader() instanceof IFBinaryReader) {
+            ((IFBinaryReader) ((SAXSource) src).getXMLReader()).setPageRange(firstPage, lastPage);
+            return src;
+        }
+        if (!(src instanceof StreamSource)) {
+            return src;
+        }
+        StreamSource streamSource = (StreamSource) src;
+        String systemId = streamSource.getSystemId();
+        InputStream in = streamSource.getInputStream();
+        try {
+            if (in != null) {
+                if (!in.markSupported()) {
+                    in = new BufferedInputStream(in);
+                    streamSource.setInputStream(in);
+                }
+                if (IFBinaryReader.isBinaryIF(in)) {
+                    return createBinarySource(in, systemId, firstPage, lastPage);
+                }
+            } else if (streamSource.getReader() == null && systemId != null
+                    && systemId.startsWith("file:")) {
+                in = new BufferedInputStream(new URL(systemId).openStream());
+                try {
+                    if (IFBinaryReader.isBinaryIF(in)) {
+                        return createBinarySource(null, systemId, firstPage, lastPage);
+                    }
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new TransformerException(ioe);
+        }
+        return src;
+    }
+
+    private static Source createBinarySource(InputStream in, String systemId,
+            int firstPage, int lastPage) {
+        SAXSource source = IFBinaryReader.createSource(in, systemId);
+        ((IFBinaryReader) source.getXMLReader()).setPageRange(firstPage, lastPage);
+        return source;
+    }
+
     /**
      * Creates a new ContentHandler instance that you can send the area tree XML to. The parsed
      * pages are added to the AreaTreeModel instance you pass in as a parameter.
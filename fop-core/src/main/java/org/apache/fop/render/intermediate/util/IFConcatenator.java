@@ -20,6 +20,11 @@
 package org.apache.fop.render.intermediate.util;
 
 import java.awt.Dimension;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
@@ -29,6 +34,7 @@ import org.apache.xmlgraphics.xmp.Metadata;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFDocumentNavigationHandler;
 import org.apache.fop.render.intermediate.IFException;
+import org.apache.fop.render.intermediate.IFPainter;
 import org.apache.fop.render.intermediate.IFParser;
 
 /**
@@ -42,6 +48,11 @@ import org.apache.fop.render.intermediate.IFParser;
  * Note: document-level extensions will only be transferred from the first document passed in.
  * If you need to merge extensions from all the concatenated documents, you may have to merge
  * these manually on the XML level, for example using XSLT.
+ * <p>
+ * A range of pages can be selected from each appended document. Page sequences without
+ * selected pages are left out and parsing stops after the last selected page. Fonts and images
+ * are set up once by the target document handler, so those used by several appended documents
+ * are only embedded once.
  */
 public class IFConcatenator {
 
@@ -107,12 +118,105 @@ public class IFConcatenator {
                 getTargetHandler().getContext().getUserAgent());
     }
 
+    /**
+     * Appends a range of pages from another intermediate format document to the current output
+     * file. Page sequences containing none of these pages are left out. The document is only
+     * parsed up to the end of the last selected page. The pages before the first selected page
+     * are still read in sequence; the binary intermediate format only saves decoding them.
+     * This method shall not be called after {@link #finish()} has been called.
+     * @param src the JAXP Source identifying the input document
+     * @param firstPage the number of the first page to append (one-based, counted from the start
+     *          of the input document)
+     * @param lastPage the number of the last page to append (inclusive), may be beyond the end
+     *          of the input document
+     * @throws TransformerException if an XML-related exception occurs during
+     * @throws IFException if an IF-related error occurs
+     */
+    public void appendDocument(Source src, int firstPage, int lastPage)
+            throws TransformerException, IFException {
+        if (firstPage < 1 || lastPage < firstPage) {
+            throw new IllegalArgumentException("Invalid page range: " + firstPage + "-" + lastPage);
+        }
+        IFPageSequenceFilter filter = new IFPageSequenceFilter(getTargetHandler(),
+                firstPage - 1, lastPage - 1);
+        IFParser parser = new IFParser();
+        try {
+            //Don't decode the content of the pages left out
+            parser.parse(src, filter, getTargetHandler().getContext().getUserAgent(),
+                    firstPage, lastPage);
+        } catch (EndOfPageRangeException e) {
+            //The rest of the document is skipped
+            filter.endPageSequence();
+            inFirstDocument = false;
+        }
+    }
+
+    /** Thrown to stop parsing once the last selected page has been passed on. */
+    private static class EndOfPageRangeException extends IFException {
+
+        private static final long serialVersionUID = 5307373283441574862L;
+
+        EndOfPageRangeException() {
+            super("End of page range");
+        }
+    }
+
+    /** Paints nothing, used for pages outside the selected range. */
+    private static final IFPainter NULL_PAINTER = (IFPainter) Proxy.newProxyInstance(
+            IFPainter.class.getClassLoader(), new Class<?>[] {IFPainter.class},
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getReturnType() == Boolean.TYPE) {
+                        return Boolean.FALSE;
+                    } else if (method.getReturnType() == Integer.TYPE) {
+                        return System.identityHashCode(proxy);
+                    } else if (method.getReturnType() == String.class) {
+                        return "NullPainter";
+                    }
+                    return null;
+                }
+            });
+
     private class IFPageSequenceFilter extends IFDocumentHandlerProxy {
 
         private boolean inPageSequence;
 
+        /** the selected page range (zero-based page indices), -1 if all pages are selected */
+        private final int firstPageIndex;
+        private final int lastPageIndex;
+
+        private int pageIndex;
+        private boolean skippingPage;
+
+        /** the page sequence is only started when it contains a selected page */
+        private boolean pageSequenceStarted;
+        private String pageSequenceID;
+        private List<Object> pageSequenceExtensions;
+
         public IFPageSequenceFilter(IFDocumentHandler delegate) {
+            this(delegate, -1, -1);
+        }
+
+        public IFPageSequenceFilter(IFDocumentHandler delegate, int firstPageIndex,
+                int lastPageIndex) {
             super(delegate);
+            this.firstPageIndex = firstPageIndex;
+            this.lastPageIndex = lastPageIndex;
+        }
+
+        private boolean isSelectingPages() {
+            return firstPageIndex >= 0;
+        }
+
+        private void startSelectedPageSequence() throws IFException {
+            if (!this.pageSequenceStarted) {
+                this.pageSequenceStarted = true;
+                super.startPageSequence(this.pageSequenceID);
+                for (Object extension : this.pageSequenceExtensions) {
+                    super.handleExtensionObject(extension);
+                }
+                this.pageSequenceExtensions = null;
+            }
         }
 
         /** {@inheritDoc} */
@@ -135,20 +239,94 @@ public class IFConcatenator {
             assert !this.inPageSequence;
             this.inPageSequence = true;
 
-            super.startPageSequence(id);
+            if (isSelectingPages()) {
+                this.pageSequenceStarted = false;
+                this.pageSequenceID = id;
+                this.pageSequenceExtensions = new ArrayList<Object>();
+            } else {
+                this.pageSequenceStarted = true;
+                super.startPageSequence(id);
+            }
         }
 
         /** {@inheritDoc} */
         public void startPage(int index, String name, String pageMasterName, Dimension size)
                 throws IFException {
+            if (isSelectingPages()) {
+                this.skippingPage = pageIndex < firstPageIndex || pageIndex > lastPageIndex;
+                this.pageIndex++;
+                if (this.skippingPage) {
+                    return;
+                }
+                startSelectedPageSequence();
+            }
             //Adjust page indices
             super.startPage(nextPageIndex, name, pageMasterName, size);
             nextPageIndex++;
         }
 
+        /** {@inheritDoc} */
+        public void startPageHeader() throws IFException {
+            if (!this.skippingPage) {
+                super.startPageHeader();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void endPageHeader() throws IFException {
+            if (!this.skippingPage) {
+                super.endPageHeader();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public IFPainter startPageContent() throws IFException {
+            if (this.skippingPage) {
+                return NULL_PAINTER;
+            }
+            return super.startPageContent();
+        }
+
+        /** {@inheritDoc} */
+        public void endPageContent() throws IFException {
+            if (!this.skippingPage) {
+                super.endPageContent();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void startPageTrailer() throws IFException {
+            if (!this.skippingPage) {
+                super.startPageTrailer();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void endPageTrailer() throws IFException {
+            if (!this.skippingPage) {
+                super.endPageTrailer();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void endPage() throws IFException {
+            if (this.skippingPage) {
+                this.skippingPage = false;
+            } else {
+                super.endPage();
+            }
+            if (isSelectingPages() && this.pageIndex > this.lastPageIndex) {
+                throw new EndOfPageRangeException();
+            }
+        }
+
         /** {@inheritDoc} */
         public void endPageSequence() throws IFException {
-            super.endPageSequence();
+            if (this.pageSequenceStarted) {
+                super.endPageSequence();
+            }
+            this.pageSequenceStarted = false;
+            this.pageSequenceExtensions = null;
 
             assert this.inPageSequence;
             this.inPageSequence = false;
@@ -172,7 +350,13 @@ public class IFConcatenator {
 
         /** {@inheritDoc} */
         public void handleExtensionObject(Object extension) throws IFException {
-            if (inPageSequence || inFirstDocument) {
+            if (this.skippingPage) {
+                return;
+            }
+            if (inPageSequence && !pageSequenceStarted) {
+                //Passed on if the page sequence turns out to contain a selected page
+                this.pageSequenceExtensions.add(extension);
+            } else if (inPageSequence || inFirstDocument) {
                 //Only pass through when inside page-sequence
                 //or for the first document (for document-level extensions).
                 super.handleExtensionObject(extension);
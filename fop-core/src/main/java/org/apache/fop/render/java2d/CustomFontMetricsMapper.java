@@ -121,7 +121,7 @@ public class CustomFontMetricsMapper extends Typeface implements FontMetricsMapp
     }
 
     /** {@inheritDoc} */
-    public final Font getFont(final int size) {
+    public final synchronized Font getFont(final int size) {
         if (this.size == size) {
             return font;
         }
@@ -39,6 +39,8 @@ import java.util.Map;
  * Since layout is word by word and since it is expected that
  * two subsequent words often share the same style, the
  * Font and FontMetrics is buffered and only changed if needed.
+ * The public methods are synchronized on that buffer as pages
+ * may be painted on several threads at once.
  * <p>
  * Since FontState and FontInfo multiply all factors by
  * size, we assume a "standard" font of FONT_SIZE.
@@ -140,7 +142,7 @@ public class Java2DFontMetrics {
      * @param size font size
      * @return ascent in milliponts
      */
-    public int getMaxAscent(String family, int style, int size) {
+    public synchronized int getMaxAscent(String family, int style, int size) {
         setFont(family, style, size);
         return Math.round(lineMetrics.getAscent() * FONT_FACTOR);
     }
@@ -153,7 +155,7 @@ public class Java2DFontMetrics {
      * @param size font size
      * @return ascent in milliponts
      */
-    public int getAscender(String family, int style, int size) {
+    public synchronized int getAscender(String family, int style, int size) {
         setFont(family, style, size);
         return ascender * 1000;
 
@@ -191,7 +193,7 @@ public class Java2DFontMetrics {
      * @param size font size
      * @return capital height in millipoints
      */
-    public int getCapHeight(String family, int style, int size) {
+    public synchronized int getCapHeight(String family, int style, int size) {
         // currently just gets Ascent value but maybe should use
         // getMaxAcent() at some stage
         return getAscender(family, style, size);
@@ -205,7 +207,7 @@ public class Java2DFontMetrics {
      * @param size font size
      * @return descent in milliponts
      */
-    public int getDescender(String family, int style, int size) {
+    public synchronized int getDescender(String family, int style, int size) {
         setFont(family, style, size);
         return descender * 1000;
     }
@@ -218,27 +220,27 @@ public class Java2DFontMetrics {
      * @param size font size
      * @return font height in milliponts
      */
-    public int getXHeight(String family, int style, int size) {
+    public synchronized int getXHeight(String family, int style, int size) {
         setFont(family, style, size);
         return xHeight * 1000;
     }
 
-    public int getUnderlinePosition(String family, int style, int size) {
+    public synchronized int getUnderlinePosition(String family, int style, int size) {
         setFont(family, style, size);
         return -Math.round(lineMetrics.getUnderlineOffset());
     }
 
-    public int getUnderlineThickness(String family, int style, int size) {
+    public synchronized int getUnderlineThickness(String family, int style, int size) {
         setFont(family, style, size);
         return Math.round(lineMetrics.getUnderlineThickness());
     }
 
-    public int getStrikeoutPosition(String family, int style, int size) {
+    public synchronized int getStrikeoutPosition(String family, int style, int size) {
         setFont(family, style, size);
         return -Math.round(lineMetrics.getStrikethroughOffset());
     }
 
-    public int getStrikeoutThickness(String family, int style, int size) {
+    public synchronized int getStrikeoutThickness(String family, int style, int size) {
         setFont(family, style, size);
         return Math.round(lineMetrics.getStrikethroughThickness());
     }
@@ -252,7 +254,7 @@ public class Java2DFontMetrics {
      * @param size font size
      * @return character width in millipoints
      */
-    public int width(int i, String family, int style, int size) {
+    public synchronized int width(int i, String family, int style, int size) {
         int w;
         setFont(family, style, size);
         w = internalCharWidth(i) * 1000;
@@ -274,7 +276,7 @@ public class Java2DFontMetrics {
      * @param size font size
      * @return array of character widths in millipoints
      */
-    public int[] getWidths(String family, int style, int size) {
+    public synchronized int[] getWidths(String family, int style, int size) {
         int i;
 
         if (width == null) {
@@ -369,7 +371,7 @@ public class Java2DFontMetrics {
      * @param size font size
      * @return font with the desired characeristics.
      */
-    public java.awt.Font getFont(String family, int style, int size) {
+    public synchronized java.awt.Font getFont(String family, int style, int size) {
         setFont(family, style, size);
         return f1;
         /*
@@ -390,7 +392,7 @@ public class Java2DFontMetrics {
      * @param c the glyph to check
      * @return true if the character is supported
      */
-    public boolean hasChar(String family, int style, int size, char c) {
+    public synchronized boolean hasChar(String family, int style, int size, char c) {
         setFont(family, style, size);
         return f1.canDisplay(c);
     }
@@ -183,24 +183,35 @@ public class PDFDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
 
     /** {@inheritDoc} */
     public void endDocument() throws IFException {
-        pdfDoc.getResources().addFonts(pdfDoc, fontInfo);
         try {
+            pdfDoc.getResources().addFonts(pdfDoc, fontInfo);
             if (pdfDoc.isLinearizationEnabled()) {
                 generator.flushPDFDoc();
             } else {
                 pdfDoc.outputTrailer(this.outputStream);
             }
-            this.pdfDoc = null;
-
-            pdfResources = null;
-            this.generator = null;
-            currentPage = null;
         } catch (IOException ioe) {
             throw new IFException("I/O error in endDocument()", ioe);
+        } finally {
+            closeStreamCache();
         }
+        this.pdfDoc = null;
+
+        pdfResources = null;
+        this.generator = null;
+        currentPage = null;
         super.endDocument();
     }
 
+    /** Releases the memory and scratch file of the stream caches, even if the output failed. */
+    private void closeStreamCache() {
+        try {
+            pdfDoc.getStreamCacheFactory().close();
+        } catch (IOException ioe) {
+            log.warn("Unable to release the stream cache: " + ioe.getMessage());
+        }
+    }
+
     /** {@inheritDoc} */
     public void startPageSequence(String id) throws IFException {
         //nop
@@ -99,6 +99,27 @@ public enum PDFRendererOption implements RendererConfigOption {
             return Boolean.valueOf(value);
         }
     },
+    /**
+     * Rendering Options key for the number of threads used to compress streams,
+     * default: 0 (streams are compressed by the thread writing the document)
+     */
+    COMPRESSION_THREADS("compression-threads", 0) {
+        @Override
+        Integer deserialize(String value) {
+            return Integer.valueOf(value);
+        }
+    },
+    /**
+     * Rendering Options key for the number of bytes of memory the encoded streams of a document
+     * may occupy before they are moved to a scratch file, default: -1 (streams are kept on the
+     * heap)
+     */
+    STREAM_CACHE_MEMORY_LIMIT("stream-cache-memory-limit", -1) {
+        @Override
+        Integer deserialize(String value) {
+            return Integer.valueOf(value);
+        }
+    },
     /** Rendering Options key for the ICC profile for the output intent. */
     OUTPUT_PROFILE("output-profile") {
         @Override
@@ -31,6 +31,7 @@ import org.apache.fop.pdf.PDFVTMode;
 import org.apache.fop.pdf.PDFXMode;
 import org.apache.fop.pdf.Version;
 
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION_THREADS;
 import static org.apache.fop.render.pdf.PDFRendererOption.DISABLE_SRGB_COLORSPACE;
 import static org.apache.fop.render.pdf.PDFRendererOption.FILTER_LIST;
 import static org.apache.fop.render.pdf.PDFRendererOption.FORM_XOBJECT;
@@ -41,6 +42,7 @@ import static org.apache.fop.render.pdf.PDFRendererOption.PDF_A_MODE;
 import static org.apache.fop.render.pdf.PDFRendererOption.PDF_UA_MODE;
 import static org.apache.fop.render.pdf.PDFRendererOption.PDF_VT_MODE;
 import static org.apache.fop.render.pdf.PDFRendererOption.PDF_X_MODE;
+import static org.apache.fop.render.pdf.PDFRendererOption.STREAM_CACHE_MEMORY_LIMIT;
 import static org.apache.fop.render.pdf.PDFRendererOption.VERSION;
 
 /**
@@ -147,4 +149,12 @@ public final class PDFRendererOptionsConfig {
     public Boolean getFormXObjectEnabled() {
         return (Boolean)properties.get(FORM_XOBJECT);
     }
+
+    public Integer getCompressionThreads() {
+        return (Integer)properties.get(COMPRESSION_THREADS);
+    }
+
+    public Integer getStreamCacheMemoryLimit() {
+        return (Integer)properties.get(STREAM_CACHE_MEMORY_LIMIT);
+    }
 }
@@ -75,6 +75,7 @@ import org.apache.fop.pdf.PDFReference;
 import org.apache.fop.pdf.PDFSetOCGStateAction;
 import org.apache.fop.pdf.PDFTransitionAction;
 import org.apache.fop.pdf.PDFXMode;
+import org.apache.fop.pdf.StreamCacheFactory;
 import org.apache.fop.pdf.Version;
 import org.apache.fop.pdf.VersionController;
 import org.apache.fop.render.pdf.extensions.PDFActionExtension;
@@ -621,6 +622,12 @@ class PDFRenderingUtil {
         pdfDoc.setMergeFontsEnabled(rendererConfig.getMergeFontsEnabled());
         pdfDoc.setLinearizationEnabled(rendererConfig.getLinearizationEnabled());
         pdfDoc.setFormXObjectEnabled(rendererConfig.getFormXObjectEnabled());
+        pdfDoc.setCompressionThreads(rendererConfig.getCompressionThreads());
+        int streamCacheMemoryLimit = rendererConfig.getStreamCacheMemoryLimit();
+        if (streamCacheMemoryLimit >= 0) {
+            pdfDoc.setStreamCacheFactory(
+                    StreamCacheFactory.newPooledInstance(streamCacheMemoryLimit, null));
+        }
 
         return this.pdfDoc;
     }
@@ -23,11 +23,15 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
 
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.apache.commons.io.IOUtils;
 
@@ -75,6 +79,73 @@ public class HyphenationTestCase {
         f.delete();
     }
 
+    @Test
+    public void testHyphenatorCompiled() throws HyphenationException, IOException {
+        File f = File.createTempFile("hyp", "fop");
+        f.delete();
+        f.mkdir();
+        InternalResourceResolver resourceResolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                f.toURI());
+
+        File xml = new File(f, "ex.xml");
+        FileOutputStream fos = new FileOutputStream(xml);
+        fos.write(("<hyphenation-info><classes>aA bB cC eE hH kK lL oO tT</classes>"
+                + "<exceptions>ta<hyphen pre=\"k\" no=\"ck\" post=\"k\"/>ble bo-ok</exceptions>"
+                + "<patterns>1ba 1be 1bl 1co 1ha 1he 1la 1le 1lo 1ta 1te 1to</patterns>"
+                + "</hyphenation-info>").getBytes());
+        fos.close();
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadPatterns(xml.getAbsolutePath());
+        File hyp = new File(f, "ex.hyp");
+        FileOutputStream out = new FileOutputStream(hyp);
+        hTree.write(out);
+        out.close();
+
+        for (String word : new String[] {"hello", "tackble", "book", "cable", "oello"}) {
+            Hyphenation expected = hTree.hyphenate(word, 1, 1);
+            Hyphenation hyph = Hyphenator.hyphenate("ex.hyp" + Hyphenator.HYPTYPE, null, resourceResolver,
+                    null, word, 1, 1, fopFactory.newFOUserAgent());
+            assertEquals(String.valueOf(expected), String.valueOf(hyph));
+        }
+        assertEquals("bo-ok", String.valueOf(Hyphenator.hyphenate("ex.hyp" + Hyphenator.HYPTYPE, null,
+                resourceResolver, null, "book", 1, 1, fopFactory.newFOUserAgent())));
+
+        xml.delete();
+        hyp.delete();
+        f.delete();
+    }
+
+    @Test
+    public void testFopHyphenationTreeShared() throws HyphenationException, IOException {
+        File f = File.createTempFile("hyp", "fop");
+        f.delete();
+        File hyph = new File(f, "hyph");
+        hyph.mkdirs();
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadPatterns(new File("test/resources/fop/fr.xml").getAbsolutePath());
+        File hyp = new File(hyph, "zz_FOPTEST.hyp");
+        FileOutputStream out = new FileOutputStream(hyp);
+        hTree.write(out);
+        out.close();
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        URLClassLoader loader = new URLClassLoader(new URL[] {f.toURI().toURL()}, contextClassLoader);
+        thread.setContextClassLoader(loader);
+        try {
+            HyphenationTree first = Hyphenator.getFopHyphenationTree("zz_FOPTEST");
+            assertNotNull(first);
+            assertEquals("oel-lo", first.hyphenate("oello", 0, 0).toString());
+            assertSame(first, Hyphenator.getFopHyphenationTree("zz_FOPTEST"));
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+
+        hyp.delete();
+        hyph.delete();
+        f.delete();
+    }
+
     @Test
     public void testHyphenatorCache() throws IOException {
         File f = File.createTempFile("hyp", "fop");
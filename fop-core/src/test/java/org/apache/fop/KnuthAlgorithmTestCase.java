@@ -25,6 +25,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.apache.fop.layoutmgr.BlockKnuthSequence;
 import org.apache.fop.layoutmgr.BreakingAlgorithm;
@@ -81,6 +82,65 @@ public class KnuthAlgorithmTestCase {
         assertEquals(5000, parts[1].difference);
     }
 
+    /**
+     * Tests that recycling the nodes between runs of the algorithm doesn't change the
+     * breaks, and that the nodes of the previous run are actually reused.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testNodeRecycling() throws Exception {
+        MyBreakingAlgorithm plain = new MyBreakingAlgorithm(0, 0, true, true, 0);
+        plain.setConstantLineWidth(30000);
+        MyBreakingAlgorithm recycling = new MyBreakingAlgorithm(0, 0, true, true, 0);
+        recycling.setNodeRecycling(true);
+        recycling.setConstantLineWidth(30000);
+        for (int allowedBreaks : new int[] {BreakingAlgorithm.NO_FLAGGED_PENALTIES,
+                BreakingAlgorithm.ALL_BREAKS, BreakingAlgorithm.ALL_BREAKS}) {
+            plain.reset();
+            plain.findBreakingPoints(getKnuthSequence1(), 1, true, allowedBreaks);
+            recycling.reset();
+            recycling.findBreakingPoints(getKnuthSequence1(), 1, true, allowedBreaks);
+            Part[] expected = plain.getParts();
+            Part[] parts = recycling.getParts();
+            assertEquals(3, expected.length);
+            assertEquals(expected.length, parts.length);
+            for (int i = 0; i < parts.length; i++) {
+                assertEquals(expected[i].position, parts[i].position);
+                assertEquals(expected[i].difference, parts[i].difference);
+                assertEquals(expected[i].ratio, parts[i].ratio, 0);
+            }
+        }
+
+        recycling = new MyBreakingAlgorithm(0, 0, true, true, 0);
+        recycling.setNodeRecycling(true);
+        recycling.setConstantLineWidth(30000);
+        recycling.findBreakingPoints(getKnuthSequence1(), 1, true, BreakingAlgorithm.ALL_BREAKS);
+        assertEquals(3, recycling.getParts().length);
+        Object firstNode = recycling.lastNode;
+        recycling.reset();
+        recycling.findBreakingPoints(getKnuthSequence1(), 1, true, BreakingAlgorithm.ALL_BREAKS);
+        assertSame(firstNode, recycling.lastNode);
+    }
+
+    /**
+     * Tests that algorithm instances sharing a node pool reuse each other's nodes.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testSharedNodePool() throws Exception {
+        BreakingAlgorithm.NodePool pool = new BreakingAlgorithm.NodePool();
+        MyBreakingAlgorithm first = new MyBreakingAlgorithm(0, 0, true, true, 0);
+        first.setNodePool(pool);
+        first.setConstantLineWidth(30000);
+        first.findBreakingPoints(getKnuthSequence1(), 1, true, BreakingAlgorithm.ALL_BREAKS);
+        MyBreakingAlgorithm second = new MyBreakingAlgorithm(0, 0, true, true, 0);
+        second.setNodePool(pool);
+        second.setConstantLineWidth(30000);
+        second.findBreakingPoints(getKnuthSequence1(), 1, true, BreakingAlgorithm.ALL_BREAKS);
+        assertSame(first.lastNode, second.lastNode);
+        assertEquals(3, second.getParts().length);
+    }
+
     private class Part {
         private int difference;
         private double ratio;
@@ -90,12 +150,28 @@ public class KnuthAlgorithmTestCase {
     private class MyBreakingAlgorithm extends BreakingAlgorithm {
 
         private final List<Part> parts = new java.util.ArrayList<Part>();
+        private KnuthNode lastNode;
 
         public MyBreakingAlgorithm(int align, int alignLast, boolean first,
                     boolean partOverflowRecovery, int maxFlagCount) {
             super(align, alignLast, first, partOverflowRecovery, maxFlagCount);
         }
 
+        @Override
+        public void setNodeRecycling(boolean recycle) {
+            super.setNodeRecycling(recycle);
+        }
+
+        @Override
+        public void setNodePool(NodePool pool) {
+            super.setNodePool(pool);
+        }
+
+        public void reset() {
+            parts.clear();
+            lastNode = null;
+        }
+
         public Part[] getParts() {
             return parts.toArray(new Part[parts.size()]);
         }
@@ -107,15 +183,18 @@ public class KnuthAlgorithmTestCase {
 
         @Override
         public void updateData2(KnuthNode bestActiveNode, KnuthSequence sequence, int total) {
-            int difference = bestActiveNode.difference;
+            if (lastNode == null) {
+                lastNode = bestActiveNode;
+            }
+            int difference = bestActiveNode.getDifference();
             // it is always allowed to adjust space, so the ratio must be set regardless of
             // the value of the property display-align; the ratio must be <= 1
-            double ratio = bestActiveNode.adjustRatio;
+            double ratio = bestActiveNode.getAdjustRatio();
             if (ratio < 0) {
                 // page break with a negative difference:
                 // spaces always have enough shrink
                 difference = 0;
-            } else if (ratio <= 1 && bestActiveNode.line < total) {
+            } else if (ratio <= 1 && bestActiveNode.getLine() < total) {
                 // not-last page break with a positive difference smaller than the available
                 // stretch: spaces can stretch to fill the whole difference
                 difference = 0;
@@ -123,7 +202,7 @@ public class KnuthAlgorithmTestCase {
                 // not-last page with a positive difference greater than the available stretch
                 // spaces can stretch to fill the difference only partially
                 ratio = 1;
-                difference -= bestActiveNode.availableStretch;
+                difference -= bestActiveNode.getAvailableStretch();
             } else {
                 // last page with a positive difference:
                 // spaces do not need to stretch
@@ -135,7 +214,7 @@ public class KnuthAlgorithmTestCase {
             Part part = new Part();
             part.difference = difference;
             part.ratio = ratio;
-            part.position = bestActiveNode.position;
+            part.position = bestActiveNode.getPosition();
             parts.add(0, part);
         }
 
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRendererTestCase {
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    private static String createFO(int pages) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">"
+                + "<fo:layout-master-set><fo:simple-page-master master-name=\"p\">"
+                + "<fo:region-body/></fo:simple-page-master></fo:layout-master-set>"
+                + "<fo:page-sequence master-reference=\"p\"><fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 0; i < pages; i++) {
+            sb.append("<fo:block break-before=\"page\">page ").append(i + 1).append("</fo:block>");
+        }
+        sb.append("</fo:flow></fo:page-sequence></fo:root>");
+        return sb.toString();
+    }
+
+    private static BatchJob createJob(String fo) {
+        return new BatchJob(new StreamSource(new StringReader(fo)), MimeConstants.MIME_PDF,
+                new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testResultsInJobOrder() throws Exception {
+        List<BatchJob> jobs = new ArrayList<BatchJob>();
+        for (int i = 1; i <= 8; i++) {
+            jobs.add(createJob(createFO(i)).setId(i));
+        }
+        List<BatchResult> results = fopFactory.renderAll(jobs, 3);
+        assertEquals(jobs.size(), results.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            BatchResult result = results.get(i);
+            assertTrue(result.isSuccessful());
+            assertEquals(jobs.get(i), result.getJob());
+            assertEquals(i + 1, result.getFormattingResults().getPageCount());
+            String pdf = ((ByteArrayOutputStream) jobs.get(i).getOutputStream()).toString("ISO-8859-1");
+            assertTrue(pdf.startsWith("%PDF-"));
+        }
+    }
+
+    @Test
+    public void testFailureDoesNotStopBatch() throws Exception {
+        List<BatchJob> jobs = new ArrayList<BatchJob>();
+        jobs.add(createJob(createFO(1)));
+        jobs.add(createJob("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\"><fo:foo/>"));
+        jobs.add(createJob(createFO(2)));
+        List<BatchResult> results = fopFactory.renderAll(jobs, 2);
+        assertTrue(results.get(0).isSuccessful());
+        assertFalse(results.get(1).isSuccessful());
+        assertNotNull(results.get(1).getFailure());
+        assertNull(results.get(1).getFormattingResults());
+        assertEquals(2, results.get(2).getFormattingResults().getPageCount());
+    }
+
+    @Test
+    public void testStylesheet() throws Exception {
+        String xsl = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\""
+                + " xmlns:fo=\"http://www.w3.org/1999/XSL/Format\"><xsl:param name=\"count\"/>"
+                + "<xsl:template match=\"/\"><fo:root><fo:layout-master-set>"
+                + "<fo:simple-page-master master-name=\"p\"><fo:region-body/>"
+                + "</fo:simple-page-master></fo:layout-master-set>"
+                + "<fo:page-sequence master-reference=\"p\" initial-page-number=\"{$count}\">"
+                + "<fo:flow flow-name=\"xsl-region-body\"><fo:block><xsl:value-of select=\"doc\"/>"
+                + "</fo:block></fo:flow></fo:page-sequence></fo:root></xsl:template></xsl:stylesheet>";
+        Templates templates = TransformerFactory.newInstance().newTemplates(
+                new StreamSource(new StringReader(xsl)));
+        BatchJob job = new BatchJob(new StreamSource(new StringReader("<doc>hello</doc>")),
+                MimeConstants.MIME_PDF, new ByteArrayOutputStream());
+        job.setTemplates(templates).setParameters(Collections.<String, Object>singletonMap("count", "5"));
+        BatchResult result = fopFactory.renderAll(Collections.singletonList(job), 1).get(0);
+        assertTrue(String.valueOf(result.getFailure()), result.isSuccessful());
+        assertEquals(1, result.getFormattingResults().getPageCount());
+    }
+
+    @Test
+    public void testJobsAreTakenWhenWorkersAreFree() throws Exception {
+        final int maxConcurrentJobs = 2;
+        final AtomicInteger taken = new AtomicInteger();
+        final AtomicInteger maxAhead = new AtomicInteger();
+        final List<BatchJob> produced = Collections.synchronizedList(new ArrayList<BatchJob>());
+        Iterable<BatchJob> jobs = new Iterable<BatchJob>() {
+            public Iterator<BatchJob> iterator() {
+                return new Iterator<BatchJob>() {
+                    public boolean hasNext() {
+                        return taken.get() < 10;
+                    }
+
+                    public BatchJob next() {
+                        taken.incrementAndGet();
+                        int done = 0;
+                        for (BatchJob job : produced) {
+                            if (((ByteArrayOutputStream) job.getOutputStream()).size() > 0) {
+                                done++;
+                            }
+                        }
+                        maxAhead.set(Math.max(maxAhead.get(), produced.size() - done));
+                        BatchJob job = createJob(createFO(3));
+                        produced.add(job);
+                        return job;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        List<BatchResult> results = new BatchRenderer(fopFactory, maxConcurrentJobs).render(jobs);
+        assertEquals(10, results.size());
+        assertTrue(maxAhead.get() <= maxConcurrentJobs);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectedJob() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        new BatchRenderer(fopFactory, executor, 1).render(Collections.singletonList(createJob(createFO(1))));
+    }
+}
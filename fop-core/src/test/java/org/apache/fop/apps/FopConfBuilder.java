@@ -191,6 +191,16 @@ public class FopConfBuilder implements FontConfigurator<FopConfBuilder> {
         return createElement("prefer-renderer", String.valueOf(value));
     }
 
+    /**
+     * Set the &lt;layout-threads&gt; tag within the fop.xconf.
+     *
+     * @param threads the number of threads laying out page-sequences in parallel
+     * @return <b>this</b>
+     */
+    public FopConfBuilder setLayoutThreads(int threads) {
+        return createElement("layout-threads", String.valueOf(threads));
+    }
+
     /**
      * Set the &lt;default-page-settings&gt; tag within the fop.xconf.
      *
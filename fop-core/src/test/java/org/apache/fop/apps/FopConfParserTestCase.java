@@ -135,6 +135,14 @@ public class FopConfParserTestCase {
         assertTrue(buildFactory().getRendererFactory().isRendererPreferred());
     }
 
+    @Test
+    public void testLayoutThreads() {
+        builder.setLayoutThreads(3);
+        FOUserAgent userAgent = buildFactory().newFOUserAgent();
+        assertEquals(3, userAgent.getLayoutThreads());
+        assertTrue(userAgent.isParallelLayoutEnabled());
+    }
+
     @Test
     public void testRelativeURINoBaseNoFont() throws Exception {
         checkRelativeURIs("test/config/relative-uri/no-base_no-font.xconf",
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.fonts.DefaultFontConfigurator;
+import org.apache.fop.fonts.EmbedFontInfo;
+import org.apache.fop.fonts.FontConfig;
+import org.apache.fop.fonts.FontEventListener;
+import org.apache.fop.fonts.FontTriplet;
+import org.apache.fop.render.pdf.PDFRendererConfig.PDFRendererConfigParser;
+
+public class FopFactoryPreloadTestCase {
+
+    private FopFactory fopFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        fopFactory = new FopConfParser(new FopConfBuilder()
+                .startRendererConfig(PDFRendererConfBuilder.class)
+                .startFontsConfig()
+                    .startFont(null, "test/resources/fonts/ttf/glb12.ttf")
+                        .addTriplet("Gladiator", "normal", "normal")
+                    .endFont()
+                .endFontConfig()
+            .endRendererConfig().build(), new File(".").toURI()).getFopFactoryBuilder().build();
+    }
+
+    @Test
+    public void testPreloadConfiguresFonts() throws Exception {
+        FontConfig fontConfig = getFontConfig();
+        assertNull(fopFactory.getFontManager().getConfiguredFonts(fontConfig));
+
+        fopFactory.preload(MimeConstants.MIME_PDF);
+        List<EmbedFontInfo> fonts = fopFactory.getFontManager().getConfiguredFonts(fontConfig);
+        assertNotNull(fonts);
+        assertEquals(1, fonts.size());
+        assertEquals("Gladiator", fonts.get(0).getFontTriplets().get(0).getName());
+
+        //A second run re-uses the font list
+        fopFactory.preload(MimeConstants.MIME_PDF);
+        assertSame(fonts, fopFactory.getFontManager().getConfiguredFonts(fontConfig));
+    }
+
+    @Test
+    public void testFontEventsAreReportedForEveryConfiguration() throws Exception {
+        fopFactory = new FopConfParser(new FopConfBuilder()
+                .startRendererConfig(PDFRendererConfBuilder.class)
+                .startFontsConfig()
+                    .addDirectory("test/resources/fonts/no-such-directory", false)
+                .endFontConfig()
+            .endRendererConfig().build(), new File(".").toURI()).getFopFactoryBuilder().build();
+        FontConfig fontConfig = getFontConfig();
+
+        DirectoryNotFoundListener first = new DirectoryNotFoundListener();
+        List<EmbedFontInfo> fonts = new DefaultFontConfigurator(fopFactory.getFontManager(), first,
+                false).configure(fontConfig);
+        assertEquals(1, first.directories.size());
+
+        //The cached font list is re-used, but the event still reaches the second listener
+        DirectoryNotFoundListener second = new DirectoryNotFoundListener();
+        assertSame(fonts, new DefaultFontConfigurator(fopFactory.getFontManager(), second,
+                false).configure(fontConfig));
+        assertEquals(first.directories, second.directories);
+    }
+
+    @Test
+    public void testPreloadLoadsHyphenationPatterns() throws Exception {
+        fopFactory.preload(MimeConstants.MIME_PDF, "xx_YY");
+        assertTrue(fopFactory.getHyphenationTreeCache().isMissing("xx"));
+    }
+
+    private FontConfig getFontConfig() throws FOPException {
+        return fopFactory.newFOUserAgent().getRendererConfig(MimeConstants.MIME_PDF,
+                new PDFRendererConfigParser()).getFontInfoConfig();
+    }
+
+    private static final class DirectoryNotFoundListener implements FontEventListener {
+
+        private final List<String> directories = new ArrayList<String>();
+
+        public void fontSubstituted(Object source, FontTriplet requested, FontTriplet effective) {
+        }
+
+        public void fontLoadingErrorAtAutoDetection(Object source, String fontURL, Exception e) {
+        }
+
+        public void glyphNotAvailable(Object source, char ch, String fontName) {
+        }
+
+        public void fontDirectoryNotFound(Object source, String dir) {
+            directories.add(dir);
+        }
+
+        public void svgTextStrokedAsShapes(Object source, String fontFamily) {
+        }
+    }
+}
@@ -137,6 +137,10 @@ public final class MutableConfig implements FopFactoryConfig {
         return delegate.getHyphenationPatternNames();
     }
 
+    public int getLayoutThreads() {
+        return delegate.getLayoutThreads();
+    }
+
     public InternalResourceResolver getHyphenationResourceResolver() {
         return delegate.getHyphenationResourceResolver();
     }
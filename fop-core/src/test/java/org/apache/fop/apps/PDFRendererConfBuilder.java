@@ -29,12 +29,14 @@ import static org.apache.fop.render.pdf.PDFEncryptionOption.ENCRYPTION_LENGTH;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.ENCRYPTION_PARAMS;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.OWNER_PASSWORD;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.USER_PASSWORD;
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION_THREADS;
 import static org.apache.fop.render.pdf.PDFRendererOption.DISABLE_SRGB_COLORSPACE;
 import static org.apache.fop.render.pdf.PDFRendererOption.FILTER_LIST;
 import static org.apache.fop.render.pdf.PDFRendererOption.FORM_XOBJECT;
 import static org.apache.fop.render.pdf.PDFRendererOption.OUTPUT_PROFILE;
 import static org.apache.fop.render.pdf.PDFRendererOption.PDF_A_MODE;
 import static org.apache.fop.render.pdf.PDFRendererOption.PDF_X_MODE;
+import static org.apache.fop.render.pdf.PDFRendererOption.STREAM_CACHE_MEMORY_LIMIT;
 import static org.apache.fop.render.pdf.PDFRendererOption.VERSION;
 
 /**
@@ -99,6 +101,16 @@ public final class PDFRendererConfBuilder extends RendererConfBuilder {
         return this;
     }
 
+    public PDFRendererConfBuilder setCompressionThreads(int threads) {
+        createTextElement(COMPRESSION_THREADS, String.valueOf(threads));
+        return this;
+    }
+
+    public PDFRendererConfBuilder setStreamCacheMemoryLimit(int limit) {
+        createTextElement(STREAM_CACHE_MEMORY_LIMIT, String.valueOf(limit));
+        return this;
+    }
+
     public final class EncryptionParamsBuilder {
         private final Element el;
 
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFException;
+import org.apache.fop.render.intermediate.IFSerializer;
+
+/**
+ * Tests two-pass layout (see {@link FOUserAgent#setTwoPassLayout(boolean)}).
+ */
+public class TwoPassLayoutTestCase {
+
+    private static final int CHAPTERS = 5;
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testTableOfContentsIsNotHeldBack() throws Exception {
+        Rendering singlePass = render(false);
+        Rendering twoPass = render(true);
+
+        //The table of contents waits for the last chapter in a single pass
+        assertTrue(singlePass.laidOutPagesBeforeFirstPage > 0);
+        //but is rendered before any chapter is laid out with two-pass layout
+        assertEquals(0, twoPass.laidOutPagesBeforeFirstPage);
+
+        List<String> texts = extract(twoPass.output, "<text [^>]*>([^<]*)</text>");
+        for (int i = 1; i <= CHAPTERS; i++) {
+            int entry = texts.indexOf("Chapter " + i + " on page ");
+            assertEquals(String.valueOf(i + 1), texts.get(entry + 1));
+        }
+        assertEquals(extract(singlePass.output, "<text [^>]*>([^<]*)</text>"), texts);
+        List<String> links = extract(twoPass.output, "(<nav:goto-xy [^>]*>)");
+        //Forward links are completed once their target is rendered
+        for (int i = 1; i <= CHAPTERS; i++) {
+            assertTrue(links.contains("<nav:goto-xy id=\"c" + i + "\" page-index=\"" + i
+                    + "\" x=\"10000\" y=\"10000\"/>"));
+        }
+    }
+
+    @Test
+    public void testParallelLayoutKeepsPageKeys() throws Exception {
+        String serial = renderAreaTree(false);
+        for (int run = 0; run < 5; run++) {
+            //Chapters of different length finish in varying order on the worker threads,
+            //yet pages have to get the keys the links were pre-resolved against
+            assertEquals(serial, renderAreaTree(true));
+        }
+        List<String> links = extract(serial, "internal-link=\"\\((P\\d+)");
+        assertEquals(CHAPTERS, links.size());
+        List<String> pageKeys = extract(serial, "<pageViewport [^>]*key=\"(P\\d+)\"");
+        for (String link : links) {
+            assertTrue(pageKeys.contains(link));
+        }
+    }
+
+    @Test
+    public void testSinglePassForFlowFormats() throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setTwoPassLayout(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_RTF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(createDocument())),
+                new SAXResult(fop.getDefaultHandler()));
+        assertTrue(out.toString("US-ASCII").contains("Chapter 5"));
+    }
+
+    private List<String> extract(String s, String regex) {
+        List<String> found = new java.util.ArrayList<String>();
+        Matcher m = Pattern.compile(regex).matcher(s);
+        while (m.find()) {
+            found.add(m.group(1));
+        }
+        return found;
+    }
+
+    private String createDocument() {
+        return createDocument(false);
+    }
+
+    private String createDocument(boolean independentChapters) {
+        StringBuilder fo = new StringBuilder()
+                .append("<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format'>")
+                .append("<fo:layout-master-set><fo:simple-page-master master-name='page'")
+                .append(" page-height='200pt' page-width='300pt' margin='10pt'>")
+                .append("<fo:region-body/></fo:simple-page-master></fo:layout-master-set>")
+                .append("<fo:page-sequence master-reference='page'>")
+                .append("<fo:flow flow-name='xsl-region-body'>");
+        for (int i = 1; i <= CHAPTERS; i++) {
+            fo.append("<fo:block><fo:basic-link internal-destination='c").append(i)
+                    .append("'>Chapter ").append(i).append(" on page ")
+                    .append("<fo:page-number-citation ref-id='c").append(i)
+                    .append("'/></fo:basic-link></fo:block>");
+        }
+        fo.append("</fo:flow></fo:page-sequence>");
+        for (int i = 1; i <= CHAPTERS; i++) {
+            fo.append("<fo:page-sequence master-reference='page'");
+            if (independentChapters) {
+                //an explicit initial-page-number allows the chapter to be laid out in parallel
+                fo.append(" initial-page-number='").append(1 + (i - 1) * CHAPTERS + 1).append("'");
+            }
+            fo.append("><fo:flow flow-name='xsl-region-body'><fo:block id='c").append(i)
+                    .append("'>Chapter ").append(i).append("</fo:block>");
+            if (independentChapters) {
+                for (int j = 0; j < (CHAPTERS - i) * 20; j++) {
+                    fo.append("<fo:block>Paragraph ").append(j).append("</fo:block>");
+                }
+            }
+            fo.append("</fo:flow></fo:page-sequence>");
+        }
+        return fo.append("</fo:root>").toString();
+    }
+
+    private String renderAreaTree(boolean parallel) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setTwoPassLayout(true);
+        userAgent.setParallelLayout(parallel);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(createDocument(true))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("UTF-8");
+    }
+
+    private Rendering render(boolean twoPass) throws Exception {
+        final Rendering rendering = new Rendering();
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setTwoPassLayout(twoPass);
+        final Fop[] fop = new Fop[1];
+        userAgent.setDocumentHandlerOverride(new IFSerializer(new IFContext(userAgent)) {
+            public void endPage() throws IFException {
+                if (rendering.laidOutPagesBeforeFirstPage < 0) {
+                    rendering.laidOutPagesBeforeFirstPage = fop[0].getResults().getPageCount();
+                }
+                super.endPage();
+            }
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fop[0] = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(createDocument())),
+                new SAXResult(fop[0].getDefaultHandler()));
+        rendering.output = out.toString("UTF-8");
+        return rendering;
+    }
+
+    private static final class Rendering {
+        private int laidOutPagesBeforeFirstPage = -1;
+        private String output;
+    }
+}
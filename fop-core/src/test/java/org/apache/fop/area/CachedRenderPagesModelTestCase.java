@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.area.inline.TextArea;
+import org.apache.fop.fo.Constants;
+
+/**
+ * Tests for {@link CachedRenderPagesModel} and the page serialization it uses.
+ */
+public class CachedRenderPagesModelTestCase {
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testForwardReferences() throws Exception {
+        String fo = createDocument();
+        String fromFiles = render(fo, true, false);
+        //Every citation of the last page is resolved like without the cache
+        String lastPage = "<word>21</word>";
+        assertEquals(count(render(fo, false, false), lastPage), count(fromFiles, lastPage));
+        assertEquals(fromFiles, render(fo, true, true));
+    }
+
+    @Test
+    public void testClassDescriptorsNotRepeated() throws Exception {
+        for (boolean compress : new boolean[] {false, true}) {
+            PageCache cache = new PageCache(compress);
+            PageViewport first = createPage(1);
+            byte[] firstData = cache.save(first);
+            assertNull(first.getPage());
+            PageViewport second = createPage(2);
+            byte[] secondData = cache.save(second);
+
+            //The class descriptors are only referred to by number
+            ByteArrayOutputStream plain = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(plain);
+            createPage(2).savePage(out);
+            out.close();
+            assertTrue(secondData.length * 2 < plain.size());
+
+            cache.load(second, secondData);
+            cache.load(first, firstData);
+            for (PageViewport page : new PageViewport[] {first, second}) {
+                RegionReference body = page.getPage().getRegionViewport(Constants.FO_REGION_BODY)
+                        .getRegionReference();
+                Block block = (Block) body.getBlocks().get(0);
+                LineArea line = (LineArea) block.getChildAreas().get(0);
+                TextArea text = (TextArea) line.getInlineAreas().get(0);
+                assertEquals("Page " + page.getPageNumberString(), text.getText());
+            }
+            cache.dispose();
+        }
+    }
+
+    private PageViewport createPage(int number) {
+        PageViewport page = new PageViewport(new Rectangle(0, 0, 300000, 200000), number,
+                String.valueOf(number), "page", false);
+        Page content = new Page();
+        RegionViewport viewport = new RegionViewport(new Rectangle(0, 0, 300000, 200000));
+        RegionReference body = new RegionReference(Constants.FO_REGION_BODY, "body", viewport);
+        viewport.setRegionReference(body);
+        content.setRegionViewport(Constants.FO_REGION_BODY, viewport);
+        Block block = new Block();
+        LineArea line = new LineArea();
+        TextArea text = new TextArea();
+        text.addWord("Page", 0);
+        text.addWord(" ", 0);
+        text.addWord(String.valueOf(number), 0);
+        line.addInlineArea(text);
+        block.addLineArea(line);
+        body.addBlock(block);
+        page.setPage(content);
+        return page;
+    }
+
+    private int count(String s, String part) {
+        int count = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private String createDocument() {
+        StringBuilder fo = new StringBuilder()
+                .append("<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format'>")
+                .append("<fo:layout-master-set><fo:simple-page-master master-name='page'")
+                .append(" page-height='200pt' page-width='300pt' margin='10pt'>")
+                .append("<fo:region-body margin-top='20pt'/><fo:region-before extent='15pt'/>")
+                .append("</fo:simple-page-master></fo:layout-master-set>")
+                .append("<fo:page-sequence master-reference='page' id='seq'>")
+                .append("<fo:static-content flow-name='xsl-region-before'><fo:block>Page ")
+                .append("<fo:page-number/> of <fo:page-number-citation-last ref-id='seq'/>")
+                .append("</fo:block></fo:static-content><fo:flow flow-name='xsl-region-body'>")
+                .append("<fo:block>See page <fo:page-number-citation ref-id='end'/>.</fo:block>");
+        for (int i = 0; i < 20; i++) {
+            fo.append("<fo:block break-before='page'>Chapter ").append(i)
+                    .append(" <fo:inline font-weight='bold'>bold</fo:inline></fo:block>");
+        }
+        return fo.append("<fo:block id='end'>End</fo:block></fo:flow></fo:page-sequence></fo:root>")
+                .toString();
+    }
+
+    private String render(String fo, boolean conserveMemory, boolean compressedPageCache)
+            throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setConserveMemoryPolicy(conserveMemory);
+        userAgent.setCompressedPageCache(compressedPageCache);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(fo)),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("UTF-8");
+    }
+}
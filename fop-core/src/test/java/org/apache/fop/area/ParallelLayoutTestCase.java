@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopConfBuilder;
+import org.apache.fop.apps.FopConfParser;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FormattingResults;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.apps.PDFRendererConfBuilder;
+
+/**
+ * Checks that parallel page-sequence layout produces the same output as serial layout.
+ */
+public class ParallelLayoutTestCase {
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testIndependentPageSequences() throws Exception {
+        StringBuilder fo = startDocument();
+        for (int i = 0; i < 8; i++) {
+            addPageSequence(fo, String.valueOf(i * 10 + 1), "auto", "Sequence " + i, 40);
+        }
+        checkSameAsSerial(fo.append("</fo:root>").toString());
+    }
+
+    @Test
+    public void testMixedPageSequences() throws Exception {
+        StringBuilder fo = startDocument();
+        fo.append("<fo:page-sequence master-reference='page' id='toc'><fo:flow flow-name='xsl-region-body'>")
+                .append("<fo:block>See page <fo:page-number-citation ref-id='target'/>.</fo:block>")
+                .append("</fo:flow></fo:page-sequence>");
+        addPageSequence(fo, "5", "end-on-even", "Explicit", 25);
+        addPageSequence(fo, "auto", "auto", "Auto", 25);
+        addPageSequence(fo, "100", "auto", "Explicit again", 25);
+        fo.append("<fo:page-sequence master-reference='page' initial-page-number='201'>")
+                .append("<fo:flow flow-name='xsl-region-body'><fo:block id='target'>Target</fo:block>")
+                .append("</fo:flow></fo:page-sequence>");
+        addPageSequence(fo, "auto-odd", "auto", "Auto odd", 25);
+        checkSameAsSerial(fo.append("</fo:root>").toString());
+    }
+
+    @Test
+    public void testLinksWithinPageSequence() throws Exception {
+        StringBuilder fo = startDocument();
+        for (int i = 0; i < 4; i++) {
+            String text = "Linked " + i;
+            String first = text.replace(' ', '_') + "_0";
+            String last = text.replace(' ', '_') + "_39";
+            fo.append("<fo:page-sequence master-reference='page' initial-page-number='")
+                    .append(i * 10 + 1).append("'><fo:flow flow-name='xsl-region-body'>")
+                    .append("<fo:block><fo:basic-link internal-destination='").append(last)
+                    .append("'>Forward</fo:basic-link></fo:block>");
+            for (int j = 0; j < 40; j++) {
+                fo.append("<fo:block id='").append(text.replace(' ', '_')).append('_').append(j)
+                        .append("'>").append(text).append(", block ").append(j)
+                        .append(": the quick brown fox jumps over the lazy dog.</fo:block>");
+            }
+            fo.append("<fo:block><fo:basic-link internal-destination='").append(first)
+                    .append("'>Back</fo:basic-link></fo:block></fo:flow></fo:page-sequence>");
+        }
+        String document = fo.append("</fo:root>").toString();
+        String serial = render(document, false, false);
+        String parallel = render(document, true, false);
+        assertEquals(serial, parallel);
+        Matcher links = Pattern.compile("internal-link=\"\\(([^,]+),").matcher(parallel);
+        int linkCount = 0;
+        while (links.find()) {
+            assertTrue(parallel.contains("key=\"" + links.group(1) + "\""));
+            linkCount++;
+        }
+        assertEquals(8, linkCount);
+    }
+
+    @Test
+    public void testEmbeddedFontSubsets() throws Exception {
+        InputStream conf = new FopConfBuilder()
+                .setFontBaseURI("test/resources/fonts/ttf/")
+                .startRendererConfig(PDFRendererConfBuilder.class)
+                    .startFontsConfig()
+                        .startFont(null, "DejaVuLGCSerif.ttf")
+                            .addTriplet("DejaVu LGC Serif", "normal", "normal")
+                        .endFont()
+                    .endFontConfig()
+                .endRendererConfig().build();
+        FopFactory factory = new FopConfParser(conf, new File(".").toURI()).getFopFactoryBuilder()
+                .build();
+        StringBuilder fo = startDocument();
+        String alphabet = "abcdefghijklmnopqrstuvwxyz\u03b1\u03b2\u03b3\u03b4\u03b5\u03b6";
+        for (int i = 0; i < 8; i++) {
+            // every page-sequence adds other glyphs to the subset
+            String text = alphabet.substring(i * 4, i * 4 + 4);
+            fo.append("<fo:page-sequence master-reference='page' initial-page-number='")
+                    .append(i * 10 + 1).append("' font-family='DejaVu LGC Serif'>")
+                    .append("<fo:flow flow-name='xsl-region-body'>");
+            for (int j = 0; j < 20; j++) {
+                fo.append("<fo:block>").append(text).append(' ').append(text.toUpperCase())
+                        .append("</fo:block>");
+            }
+            fo.append("</fo:flow></fo:page-sequence>");
+        }
+        String document = fo.append("</fo:root>").toString();
+        assertEquals(renderPDF(factory, document, false), renderPDF(factory, document, true));
+    }
+
+    private String renderPDF(FopFactory factory, String fo, boolean parallel) throws Exception {
+        FOUserAgent userAgent = factory.newFOUserAgent();
+        userAgent.setParallelLayout(parallel);
+        userAgent.setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = factory.newFop(MimeConstants.MIME_PDF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(fo)),
+                new SAXResult(fop.getDefaultHandler()));
+        // the file identifier depends on the time the document is written
+        return out.toString("ISO-8859-1").replaceAll("/ID \\[<[0-9A-F]+> <[0-9A-F]+>\\]", "");
+    }
+
+    private StringBuilder startDocument() {
+        return new StringBuilder()
+                .append("<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format'>")
+                .append("<fo:layout-master-set><fo:simple-page-master master-name='page'")
+                .append(" page-height='200pt' page-width='300pt' margin='10pt'>")
+                .append("<fo:region-body margin-top='20pt'/><fo:region-before extent='15pt'/>")
+                .append("</fo:simple-page-master></fo:layout-master-set>");
+    }
+
+    private void addPageSequence(StringBuilder fo, String initialPageNumber, String forcePageCount,
+            String text, int blocks) {
+        fo.append("<fo:page-sequence master-reference='page' initial-page-number='")
+                .append(initialPageNumber).append("' force-page-count='").append(forcePageCount)
+                .append("'><fo:static-content flow-name='xsl-region-before'>")
+                .append("<fo:block>").append(text).append(" - <fo:page-number/></fo:block>")
+                .append("</fo:static-content><fo:flow flow-name='xsl-region-body'>");
+        for (int i = 0; i < blocks; i++) {
+            fo.append("<fo:block id='").append(text.replace(' ', '_')).append('_').append(i)
+                    .append("'>").append(text).append(", block ").append(i)
+                    .append(": the quick brown fox jumps over the lazy dog.</fo:block>");
+        }
+        fo.append("</fo:flow></fo:page-sequence>");
+    }
+
+    private void checkSameAsSerial(String fo) throws Exception {
+        String serial = render(fo, false);
+        String parallel = render(fo, true);
+        assertEquals(serial, parallel);
+    }
+
+    private String render(String fo, boolean parallel) throws Exception {
+        // page keys are only required to be unique, so they may be handed out in another order
+        return render(fo, parallel, true);
+    }
+
+    private String render(String fo, boolean parallel, boolean ignorePageKeys)
+            throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setParallelLayout(parallel);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Source src = new StreamSource(new StringReader(fo));
+        Result res = new SAXResult(fop.getDefaultHandler());
+        transformer.transform(src, res);
+        FormattingResults results = fop.getResults();
+        StringBuilder summary = new StringBuilder();
+        summary.append(results.getPageCount()).append(' ')
+                .append(results.getPageSequences().size()).append('\n');
+        String areaTree = out.toString("UTF-8");
+        if (ignorePageKeys) {
+            areaTree = areaTree.replaceAll(" key=\"P\\d+\"", "");
+        }
+        return summary.append(areaTree).toString();
+    }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -104,6 +105,12 @@ public class CommonAccessibilityHolderTestCase {
         }
     }
 
+    @Test
+    public void equalPropertiesShareOneInstance() throws Exception {
+        PropertyList mockPList = mockPropertyList();
+        assertSame(CommonAccessibility.getInstance(mockPList), CommonAccessibility.getInstance(mockPList));
+    }
+
     private PropertyList mockPropertyList() throws PropertyException {
         final PropertyList mockPList = PropertyListMocks.mockPropertyList();
         PropertyListMocks.mockTableProperties(mockPList);
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo.properties;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.FODocumentParser;
+import org.apache.fop.fo.FODocumentParser.FOEventHandlerFactory;
+import org.apache.fop.fo.FOEventHandler;
+import org.apache.fop.fo.flow.Block;
+
+public class CommonMarginBlockTestCase {
+
+    private final List<CommonMarginBlock> margins = new ArrayList<CommonMarginBlock>();
+
+    @Test
+    public void testAbsoluteMarginsAreShared() throws Exception {
+        parse("<fo:block margin='2pt' space-before='3pt'>a</fo:block>"
+                + "<fo:block margin='2pt' space-before='3pt'>b</fo:block>"
+                + "<fo:block margin='2pt' space-before='4pt'>c</fo:block>");
+        assertEquals(3, margins.size());
+        assertSame(margins.get(0), margins.get(1));
+        assertNotSame(margins.get(0), margins.get(2));
+    }
+
+    @Test
+    public void testRelativeMarginsAreNotShared() throws Exception {
+        parse("<fo:block margin-left='10%'>a</fo:block>"
+                + "<fo:block margin-left='10%'>b</fo:block>");
+        assertEquals(2, margins.size());
+        assertNotSame(margins.get(0), margins.get(1));
+    }
+
+    private void parse(String blocks) throws Exception {
+        String fo = "<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format'>"
+                + "<fo:layout-master-set>"
+                + "<fo:simple-page-master master-name='page' page-width='200pt' page-height='200pt'>"
+                + "<fo:region-body/>"
+                + "</fo:simple-page-master>"
+                + "</fo:layout-master-set>"
+                + "<fo:page-sequence master-reference='page'>"
+                + "<fo:flow flow-name='xsl-region-body'>" + blocks + "</fo:flow>"
+                + "</fo:page-sequence>"
+                + "</fo:root>";
+        FODocumentParser parser = FODocumentParser.newInstance(new FOEventHandlerFactory() {
+            public FOEventHandler newFOEventHandler(FOUserAgent foUserAgent) {
+                return new FOEventHandler(foUserAgent) {
+                    @Override
+                    public void startBlock(Block bl) {
+                        margins.add(bl.getCommonMarginBlock());
+                    }
+                };
+            }
+        });
+        InputStream document = new ByteArrayInputStream(fo.getBytes("UTF-8"));
+        parser.parse(document);
+    }
+}
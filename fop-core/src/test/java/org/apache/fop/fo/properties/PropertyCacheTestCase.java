@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo.properties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyCacheTestCase {
+
+    /** A value whose hash code only depends on a part of its state. */
+    private static final class Value {
+
+        private final int hash;
+
+        private final int value;
+
+        Value(int hash, int value) {
+            this.hash = hash;
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Value)) {
+                return false;
+            }
+            Value other = (Value) obj;
+            return hash == other.hash && value == other.value;
+        }
+    }
+
+    @Test
+    public void testFetchReturnsCachedInstance() {
+        PropertyCache<Value> cache = new PropertyCache<Value>(true);
+        Value first = new Value(1, 1);
+        assertSame(first, cache.fetch(first));
+        assertSame(first, cache.fetch(new Value(1, 1)));
+        Value other = new Value(2, 2);
+        assertSame(other, cache.fetch(other));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testHitsAreOnlyCountedWithStatistics() {
+        PropertyCache<Value> cache = new PropertyCache<Value>(false);
+        Value first = new Value(1, 1);
+        cache.fetch(first);
+        assertSame(first, cache.fetch(new Value(1, 1)));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testHashCodeCollisions() {
+        PropertyCache<Value> cache = new PropertyCache<Value>(true);
+        List<Value> values = new ArrayList<Value>();
+        for (int i = 0; i < 100; i++) {
+            Value value = new Value(42, i);
+            values.add(value);
+            assertSame(value, cache.fetch(value));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertSame(values.get(i), cache.fetch(new Value(42, i)));
+        }
+        assertEquals(100, cache.getHitCount());
+        assertEquals(100, cache.getMissCount());
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void testReclaimedInstancesAreEvicted() throws InterruptedException {
+        PropertyCache<Value> cache = new PropertyCache<Value>();
+        Value kept = new Value(0, 0);
+        cache.fetch(kept);
+        for (int i = 1; i <= 1000; i++) {
+            cache.fetch(new Value(i, i));
+        }
+        for (int i = 0; i < 50 && cache.getEvictionCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            // cleanup happens when adding instances
+            for (int j = 0; j < 100; j++) {
+                cache.fetch(new Value(-j - 1, i));
+            }
+        }
+        assertTrue(cache.getEvictionCount() > 0);
+        assertTrue(cache.size() < cache.getMissCount());
+        assertSame(kept, cache.fetch(new Value(0, 0)));
+    }
+
+    @Test
+    public void testConcurrentFetchesReturnTheSameInstance() throws Exception {
+        final PropertyCache<Value> cache = new PropertyCache<Value>(true);
+        final int valueCount = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Value[]>> results = new ArrayList<Future<Value[]>>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(new Callable<Value[]>() {
+                    public Value[] call() {
+                        Value[] values = new Value[valueCount];
+                        for (int i = 0; i < valueCount; i++) {
+                            values[i] = cache.fetch(new Value(i % 10, i));
+                        }
+                        return values;
+                    }
+                }));
+            }
+            Value[] expected = results.get(0).get();
+            for (Future<Value[]> result : results) {
+                Value[] values = result.get();
+                for (int i = 0; i < valueCount; i++) {
+                    assertSame(expected[i], values[i]);
+                }
+            }
+            assertEquals(valueCount, cache.getMissCount());
+            assertEquals(7 * valueCount, cache.getHitCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class FontCacheTestCase {
+
+    private final InternalResourceResolver resolver
+            = ResourceResolverFactory.createDefaultInternalResourceResolver(new File(".").toURI());
+
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFile = File.createTempFile("fop-fonts", ".cache");
+        cacheFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        cacheFile.delete();
+        new File(cacheFile.getPath() + ".lock").delete();
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        FontCache cache = new FontCache();
+        EmbedFontInfo fontInfo = createFontInfo("test/resources/fonts/ttf/glb12.ttf", "Gladiator");
+        cache.addFont(fontInfo, resolver);
+        cache.registerFailedFont("file:/broken.ttf", 42L);
+        assertTrue(cache.hasChanged());
+        cache.saveTo(cacheFile);
+        assertFalse(cache.hasChanged());
+
+        FontCache loaded = FontCache.loadFrom(cacheFile);
+        assertNotNull(loaded);
+        String key = FontCache.getCacheKey(fontInfo);
+        assertTrue(loaded.containsFont(key));
+        long lastModified = FontCache.getLastModified(URI.create(key));
+        EmbedFontInfo[] infos = loaded.getFontInfos(key, lastModified);
+        assertEquals(1, infos.length);
+        assertEquals("Gladiator", infos[0].getPostScriptName());
+        assertEquals(fontInfo.getEmbedURI(), infos[0].getEmbedURI());
+        assertEquals(fontInfo.getEncodingMode(), infos[0].getEncodingMode());
+        assertEquals(fontInfo.getFontTriplets(), infos[0].getFontTriplets());
+        assertTrue(loaded.isFailedFont("file:/broken.ttf", 42L));
+        assertFalse(loaded.hasChanged());
+        assertTrue(new File(cacheFile.getPath() + ".lock").exists());
+    }
+
+    @Test
+    public void testMergeConcurrentWriters() throws Exception {
+        FontCache first = new FontCache();
+        first.saveTo(cacheFile);
+        first.addFont(createFontInfo("test/resources/fonts/ttf/glb12.ttf", "Gladiator"), resolver);
+        first.saveTo(cacheFile);
+
+        //Another process which loaded the cache before the first one added its font
+        FontCache second = new FontCache();
+        second.addFont(createFontInfo("test/resources/fonts/ttf/DejaVuLGCSerif.ttf", "DejaVu"),
+                resolver);
+        second.saveTo(cacheFile);
+
+        FontCache loaded = FontCache.loadFrom(cacheFile);
+        assertTrue(loaded.containsFont(resolve("test/resources/fonts/ttf/glb12.ttf")));
+        assertTrue(loaded.containsFont(resolve("test/resources/fonts/ttf/DejaVuLGCSerif.ttf")));
+    }
+
+    @Test
+    public void testRemovedFontsAreNotMergedBack() throws Exception {
+        FontCache cache = new FontCache();
+        cache.addFont(createFontInfo("test/resources/fonts/ttf/glb12.ttf", "Gladiator"), resolver);
+        cache.saveTo(cacheFile);
+
+        FontCache loaded = FontCache.loadFrom(cacheFile);
+        loaded.removeFont(resolve("test/resources/fonts/ttf/glb12.ttf"));
+        loaded.saveTo(cacheFile);
+
+        assertFalse(FontCache.loadFrom(cacheFile).containsFont(
+                resolve("test/resources/fonts/ttf/glb12.ttf")));
+    }
+
+    @Test
+    public void testSerializedCacheIsDiscarded() throws Exception {
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(cacheFile));
+        out.writeObject(new FontCache());
+        out.close();
+        assertNull(FontCache.loadFrom(cacheFile));
+        assertFalse(cacheFile.exists());
+    }
+
+    private String resolve(String path) {
+        return resolver.resolveFromBase(URI.create(path)).toASCIIString();
+    }
+
+    private EmbedFontInfo createFontInfo(String path, String psName) {
+        List<FontTriplet> triplets = new ArrayList<FontTriplet>();
+        triplets.add(new FontTriplet(psName, "normal", Font.WEIGHT_NORMAL));
+        EmbedFontInfo fontInfo = new EmbedFontInfo(new FontUris(resolver.resolveFromBase(
+                URI.create(path)), null), true, true, triplets, null, EncodingMode.CID,
+                EmbeddingMode.SUBSET, false, false);
+        fontInfo.setPostScriptName(psName);
+        return fontInfo;
+    }
+}
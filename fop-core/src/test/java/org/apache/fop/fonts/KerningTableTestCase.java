@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KerningTableTestCase {
+
+    @Test
+    public void testLookup() {
+        Map<Integer, Map<Integer, Integer>> kerning = new HashMap<Integer, Map<Integer, Integer>>();
+        putKerning(kerning, 'A', 'V', -80);
+        putKerning(kerning, 'A', 'W', -60);
+        putKerning(kerning, 'V', 'A', -75);
+        putKerning(kerning, 0x1F600, 0xFFFF, 10);
+        KerningTable table = KerningTable.valueOf(kerning);
+        assertEquals(4, table.size());
+        assertEquals(-80, table.getKernValue('A', 'V'));
+        assertEquals(-60, table.getKernValue('A', 'W'));
+        assertEquals(-75, table.getKernValue('V', 'A'));
+        assertEquals(10, table.getKernValue(0x1F600, 0xFFFF));
+        assertEquals(0, table.getKernValue('W', 'A'));
+        assertEquals(0, table.getKernValue('A', 'A'));
+        assertEquals(0, table.getKernValue(-1, 'V'));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertSame(KerningTable.EMPTY, KerningTable.valueOf(null));
+        assertSame(KerningTable.EMPTY,
+                KerningTable.valueOf(new HashMap<Integer, Map<Integer, Integer>>()));
+        assertTrue(KerningTable.EMPTY.isEmpty());
+        assertEquals(0, KerningTable.EMPTY.getKernValue('A', 'V'));
+    }
+
+    @Test
+    public void testCustomFontKerningTable() {
+        CustomFont font = new SingleByteFont(null, EmbeddingMode.AUTO);
+        font.putKerningEntry((int) 'T', new HashMap<Integer, Integer>());
+        font.getKerningInfo().get((int) 'T').put((int) 'o', -90);
+        KerningTable table = font.getKerningTable();
+        assertEquals(-90, table.getKernValue('T', 'o'));
+        assertSame(table, font.getKerningTable());
+
+        Map<Integer, Map<Integer, Integer>> kerning = new HashMap<Integer, Map<Integer, Integer>>();
+        putKerning(kerning, 'T', 'o', -40);
+        font.replaceKerningMap(kerning);
+        assertEquals(-40, font.getKerningTable().getKernValue('T', 'o'));
+
+        font.setKerningEnabled(false);
+        assertSame(KerningTable.EMPTY, font.getKerningTable());
+    }
+
+    private static void putKerning(Map<Integer, Map<Integer, Integer>> kerning, int ch1, int ch2,
+            int value) {
+        Map<Integer, Integer> pairs = kerning.get(ch1);
+        if (pairs == null) {
+            pairs = new HashMap<Integer, Integer>();
+            kerning.put(ch1, pairs);
+        }
+        pairs.put(ch2, value);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts.truetype;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.EmbeddingMode;
+import org.apache.fop.fonts.EncodingMode;
+import org.apache.fop.fonts.MultiByteFont;
+import org.apache.fop.fonts.SingleByteFont;
+
+/**
+ * Test case for {@link SharedFontTables}.
+ */
+public class SharedFontTablesTestCase {
+
+    private static final URI FONT_URI = new File("test/resources/fonts/ttf/DejaVuLGCSerif.ttf").toURI();
+
+    private final InternalResourceResolver resolver
+            = ResourceResolverFactory.createDefaultInternalResourceResolver(new File(".").toURI());
+
+    @Before
+    public void setUp() {
+        SharedFontTables.clear();
+    }
+
+    @Test
+    public void testTablesAreSharedBetweenLoads() throws IOException {
+        MultiByteFont first = loadFont(true, true);
+        MultiByteFont second = loadFont(true, true);
+        assertNotSame(first, second);
+        assertEquals(1, SharedFontTables.size());
+        assertArrayEquals(first.getWidths(), second.getWidths());
+        assertSame(first.getKerningInfo(), second.getKerningInfo());
+        assertTrue(second.hasKerningInfo());
+        assertEquals(first.getCMap().length, second.getCMap().length);
+        assertSame(first.getCMap()[0], second.getCMap()[0]);
+        assertSame(first.getGSUB(), second.getGSUB());
+        assertNotNull(second.getGSUB());
+        //glyph usage is per font instance
+        second.mapChar('A');
+        assertEquals(1, first.getUsedGlyphs().size());
+        assertEquals(2, second.getUsedGlyphs().size());
+    }
+
+    @Test
+    public void testSharedMetricsCannotBeChanged() throws IOException {
+        MultiByteFont first = loadFont(true, true);
+        int glyph = first.mapChar('A');
+        int width = first.getWidth(glyph, 1);
+        first.getWidths()[first.findGlyphIndex('A')]++;
+        first.getBoundingBox(glyph, 1).width++;
+        MultiByteFont second = loadFont(true, true);
+        assertEquals(glyph, second.mapChar('A'));
+        assertEquals(width, second.getWidth(glyph, 1));
+        assertEquals(first.getBoundingBox(glyph, 1), second.getBoundingBox(glyph, 1));
+    }
+
+    @Test
+    public void testFontsKeepTheirTablesReachable() throws IOException {
+        MultiByteFont font = loadFont(true, true);
+        WeakReference<SharedFontTables> tables = new WeakReference<SharedFontTables>(
+                SharedFontTables.get(SharedFontTables.createKey(FONT_URI, null, true, true)));
+        assertNotNull(tables.get());
+        //Even if the store lets go of the tables, the font still uses them
+        SharedFontTables.clear();
+        System.gc();
+        assertNotNull(tables.get());
+        assertNotNull(font.getGSUB());
+    }
+
+    @Test
+    public void testLoadingOptionsArePartOfTheKey() throws IOException {
+        MultiByteFont kerned = loadFont(true, false);
+        MultiByteFont unkerned = loadFont(false, false);
+        assertEquals(2, SharedFontTables.size());
+        assertTrue(kerned.hasKerningInfo());
+        assertTrue(!unkerned.hasKerningInfo());
+        assertNull(unkerned.getGSUB());
+    }
+
+    @Test
+    public void testSingleByteFontsAreNotShared() throws IOException {
+        OFFontLoader loader = new OFFontLoader(FONT_URI, null, true, EmbeddingMode.AUTO,
+                EncodingMode.SINGLE_BYTE, true, true, resolver, false, false);
+        assertTrue(loader.getFont() instanceof SingleByteFont);
+        assertEquals(0, SharedFontTables.size());
+    }
+
+    @Test
+    public void testOnlyLocalFilesAreShared() {
+        assertNull(SharedFontTables.createKey(URI.create("http://localhost/font.ttf"), null, true, true));
+        assertNull(SharedFontTables.createKey(new File("does-not-exist.ttf").toURI(), null, true, true));
+        assertEquals(SharedFontTables.createKey(FONT_URI, null, true, true),
+                SharedFontTables.createKey(FONT_URI, null, true, true));
+    }
+
+    private MultiByteFont loadFont(boolean useKerning, boolean useAdvanced) throws IOException {
+        OFFontLoader loader = new OFFontLoader(FONT_URI, null, true, EmbeddingMode.AUTO,
+                EncodingMode.AUTO, useKerning, useAdvanced, resolver, false, false);
+        return (MultiByteFont) loader.getFont();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+/**
+ * Tests {@link HyphenationCache}.
+ */
+public class HyphenationCacheTestCase {
+
+    private HyphenationTree tree;
+
+    @Before
+    public void setUp() throws HyphenationException {
+        tree = new HyphenationTree();
+        tree.loadPatterns(new File("test/resources/fop/fr.xml").getAbsolutePath());
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        HyphenationCache cache = new HyphenationCache();
+        Hyphenation hyph = cache.hyphenate(tree, "fr", null, "hello", 0, 0);
+        assertEquals(tree.hyphenate("hello", 0, 0).toString(), hyph.toString());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertSame(hyph, cache.hyphenate(tree, "fr", null, "hello", 0, 0));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRate(), 0);
+
+        // the character counts and the language are part of the key
+        assertEquals(tree.hyphenate("hello", 2, 2).toString(),
+                cache.hyphenate(tree, "fr", null, "hello", 2, 2).toString());
+        cache.hyphenate(tree, "fr", "FR", "hello", 0, 0);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testWordWithoutHyphenation() {
+        HyphenationCache cache = new HyphenationCache();
+        assertNull(tree.hyphenate("x", 0, 0));
+        assertNull(cache.hyphenate(tree, "fr", null, "x", 0, 0));
+        assertNull(cache.hyphenate(tree, "fr", null, "x", 0, 0));
+        assertEquals(1, cache.getHitCount());
+        assertNull(cache.hyphenate(null, "xx", null, "hello", 0, 0));
+    }
+
+    @Test
+    public void testEviction() {
+        HyphenationCache cache = new HyphenationCache(2);
+        cache.hyphenate(tree, "fr", null, "hello", 0, 0);
+        cache.hyphenate(tree, "fr", null, "oello", 0, 0);
+        cache.hyphenate(tree, "fr", null, "hello", 0, 0);
+        cache.hyphenate(tree, "fr", null, "bonjour", 0, 0);
+        assertEquals(2, cache.size());
+        // "oello" was the least recently used word
+        cache.hyphenate(tree, "fr", null, "hello", 0, 0);
+        cache.hyphenate(tree, "fr", null, "oello", 0, 0);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+
+        cache.setMaxEntries(0);
+        assertEquals(0, cache.size());
+        assertEquals(tree.hyphenate("hello", 0, 0).toString(),
+                cache.hyphenate(tree, "fr", null, "hello", 0, 0).toString());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSegmentedCache() throws InterruptedException {
+        final HyphenationCache cache = new HyphenationCache(4096);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 5000; i++) {
+                        cache.hyphenate(tree, "fr", null, "bonjour" + i, 0, 0);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4 * 5000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.size() <= 4096);
+        assertTrue(cache.size() > 4096 / 2);
+    }
+
+    @Test
+    public void testSharedByFactory() {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        InternalResourceResolver resourceResolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                new File("test/resources/fop").toURI());
+        String lang = "fr.xml" + Hyphenator.XMLTYPE;
+        Hyphenation first = Hyphenator.hyphenate(lang, null, resourceResolver, null, "hello", 0, 0,
+                fopFactory.newFOUserAgent());
+        Hyphenation second = Hyphenator.hyphenate(lang, null, resourceResolver, null, "hello", 0, 0,
+                fopFactory.newFOUserAgent());
+        assertEquals("-hel-lo", first.toString());
+        assertSame(first, second);
+        HyphenationCache cache = fopFactory.getHyphenationCache();
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.area.Area;
+import org.apache.fop.area.RegionReference;
+import org.apache.fop.render.intermediate.IFRenderer;
+
+/**
+ * Tests that page-independent static content is laid out once and shared by the pages.
+ */
+public class StaticContentReuseTestCase {
+
+    private final List<Area> headers = new ArrayList<Area>();
+    private final List<Area> footers = new ArrayList<Area>();
+
+    @Test
+    public void testPageIndependentContentIsShared() throws Exception {
+        render("<fo:static-content flow-name='xsl-region-before'>"
+                + "<fo:block>Confidential</fo:block></fo:static-content>"
+                + "<fo:static-content flow-name='xsl-region-after'>"
+                + "<fo:block>Page <fo:page-number/></fo:block></fo:static-content>");
+        assertEquals(3, headers.size());
+        assertSame(headers.get(0), headers.get(1));
+        assertSame(headers.get(0), headers.get(2));
+        assertEquals(3, footers.size());
+        assertNotSame(footers.get(0), footers.get(1));
+        assertNotSame(footers.get(1), footers.get(2));
+    }
+
+    @Test
+    public void testContentWithIdIsNotShared() throws Exception {
+        render("<fo:static-content flow-name='xsl-region-before'>"
+                + "<fo:block id='header'>Confidential</fo:block></fo:static-content>");
+        assertEquals(3, headers.size());
+        assertNotSame(headers.get(0), headers.get(1));
+    }
+
+    private void render(String staticContent) throws Exception {
+        String fo = "<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format'>"
+                + "<fo:layout-master-set><fo:simple-page-master master-name='page'"
+                + " page-height='200pt' page-width='300pt' margin='10pt'>"
+                + "<fo:region-body margin='20pt 0'/><fo:region-before extent='15pt'/>"
+                + "<fo:region-after extent='15pt'/></fo:simple-page-master></fo:layout-master-set>"
+                + "<fo:page-sequence master-reference='page'>" + staticContent
+                + "<fo:flow flow-name='xsl-region-body'>"
+                + "<fo:block>one</fo:block><fo:block break-before='page'>two</fo:block>"
+                + "<fo:block break-before='page'>three</fo:block></fo:flow></fo:page-sequence>"
+                + "</fo:root>";
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setRendererOverride(new IFRenderer(userAgent) {
+            protected void renderRegion(RegionReference region) {
+                if (region.getBlocks().isEmpty()) {
+                    //no static content for this region
+                } else if ("xsl-region-before".equals(region.getRegionName())) {
+                    headers.add(region.getBlocks().get(0));
+                } else if ("xsl-region-after".equals(region.getRegionName())) {
+                    footers.add(region.getBlocks().get(0));
+                }
+                super.renderRegion(region);
+            }
+        });
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, userAgent, new ByteArrayOutputStream());
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(fo)),
+                new SAXResult(fop.getDefaultHandler()));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FormattingResults;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.events.Event;
+import org.apache.fop.events.EventListener;
+
+/**
+ * Checks windowed page breaking against breaking whole flows.
+ */
+public class WindowedPageBreakingTestCase {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog and runs away. ";
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testSingleLineBlocks() throws Exception {
+        StringBuilder flow = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            flow.append("<fo:block>Block ").append(i).append("</fo:block>");
+        }
+        checkSameAsWholeFlow(createDocument(flow), 3);
+    }
+
+    @Test
+    public void testParagraphsSplitAcrossPages() throws Exception {
+        StringBuilder flow = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            flow.append("<fo:block space-before='6pt'>Paragraph ").append(i).append(". ");
+            for (int j = 0; j < i % 7 + 1; j++) {
+                flow.append(TEXT);
+            }
+            flow.append("</fo:block>");
+        }
+        checkSameAsWholeFlow(createDocument(flow), 2);
+        checkSameAsWholeFlow(createDocument(flow), 5);
+    }
+
+    @Test
+    public void testForcedBreaksAndFootnotes() throws Exception {
+        StringBuilder flow = new StringBuilder();
+        for (int i = 0; i < 80; i++) {
+            flow.append("<fo:block").append(i % 25 == 24 ? " break-after='page'" : "").append('>')
+                    .append("Block ").append(i);
+            if (i % 10 == 3) {
+                flow.append("<fo:footnote><fo:inline>*</fo:inline><fo:footnote-body><fo:block>")
+                        .append("Footnote ").append(i).append("</fo:block></fo:footnote-body></fo:footnote>");
+            }
+            flow.append(' ').append(TEXT).append("</fo:block>");
+        }
+        checkSameAsWholeFlow(createDocument(flow), 2);
+    }
+
+    @Test
+    public void testTablesAndLists() throws Exception {
+        StringBuilder flow = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            flow.append("<fo:table width='100%'><fo:table-body>");
+            for (int r = 0; r < 6; r++) {
+                flow.append("<fo:table-row><fo:table-cell><fo:block>Row ").append(r)
+                        .append("</fo:block></fo:table-cell><fo:table-cell><fo:block>").append(TEXT)
+                        .append("</fo:block></fo:table-cell></fo:table-row>");
+            }
+            flow.append("</fo:table-body></fo:table><fo:list-block>");
+            for (int l = 0; l < 3; l++) {
+                flow.append("<fo:list-item><fo:list-item-label end-indent='label-end()'><fo:block>")
+                        .append(l).append("</fo:block></fo:list-item-label>")
+                        .append("<fo:list-item-body start-indent='body-start()'><fo:block>").append(TEXT)
+                        .append("</fo:block></fo:list-item-body></fo:list-item>");
+            }
+            flow.append("</fo:list-block>");
+        }
+        checkSameAsWholeFlow(createDocument(flow), 3);
+    }
+
+    @Test
+    public void testWindowWithoutRestartableBreakIsExtended() throws Exception {
+        // every page ends inside a table, so no page of a window can be kept
+        StringBuilder flow = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            appendTableBlock(flow, 15);
+        }
+        List<String> events = new ArrayList<String>();
+        assertEquals(render(createDocument(flow), 0, null), render(createDocument(flow), 2, events));
+        assertEquals("[]", events.toString());
+    }
+
+    @Test
+    public void testWindowWithoutRestartableBreakIsReported() throws Exception {
+        // the window starts after a forced break inside a child, so it can't be laid out again
+        StringBuilder flow = new StringBuilder("<fo:block><fo:block>Intro</fo:block><fo:block break-before='page'>");
+        for (int i = 0; i < 2; i++) {
+            appendTableBlock(flow, 15);
+        }
+        flow.append("</fo:block></fo:block><fo:block>End</fo:block>");
+        List<String> events = new ArrayList<String>();
+        render(createDocument(flow), 2, events);
+        assertEquals("[pageBreakingWindowEndsWithPageBreak]", events.toString());
+    }
+
+    @Test
+    public void testLargeWindow() throws Exception {
+        // an A4 page holds about 800,000 millipoints: an int would overflow beyond 2,600 pages
+        assertEquals(3000L * 800000, FlowLayoutManager.getWindowBPD(3000, 800000));
+        assertTrue(FlowLayoutManager.getWindowBPD(Integer.MAX_VALUE, 800000) > 0);
+
+        StringBuilder flow = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            flow.append("<fo:block>Block ").append(i).append("</fo:block>");
+        }
+        checkSameAsWholeFlow(createDocument(flow), Integer.MAX_VALUE);
+    }
+
+    private void appendTableBlock(StringBuilder flow, int rows) {
+        flow.append("<fo:block><fo:table width='100%'><fo:table-body>");
+        for (int r = 0; r < rows; r++) {
+            flow.append("<fo:table-row><fo:table-cell><fo:block>Row ").append(r)
+                    .append("</fo:block></fo:table-cell></fo:table-row>");
+        }
+        flow.append("</fo:table-body></fo:table></fo:block>");
+    }
+
+    private String createDocument(StringBuilder flow) {
+        return "<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format'>"
+                + "<fo:layout-master-set><fo:simple-page-master master-name='page'"
+                + " page-height='200pt' page-width='300pt' margin='10pt'>"
+                + "<fo:region-body/></fo:simple-page-master></fo:layout-master-set>"
+                + "<fo:page-sequence master-reference='page'><fo:flow flow-name='xsl-region-body'>"
+                + flow + "</fo:flow></fo:page-sequence></fo:root>";
+    }
+
+    private void checkSameAsWholeFlow(String fo, int window) throws Exception {
+        assertEquals(render(fo, 0), render(fo, window));
+    }
+
+    private String render(String fo, int window) throws Exception {
+        return render(fo, window, null);
+    }
+
+    private String render(String fo, int window, final List<String> windowEvents) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setPageBreakingWindow(window);
+        if (windowEvents != null) {
+            userAgent.getEventBroadcaster().addEventListener(new EventListener() {
+                public void processEvent(Event event) {
+                    if (event.getEventKey().startsWith("pageBreakingWindow")) {
+                        windowEvents.add(event.getEventKey());
+                    }
+                }
+            });
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Source src = new StreamSource(new StringReader(fo));
+        Result res = new SAXResult(fop.getDefaultHandler());
+        transformer.transform(src, res);
+        FormattingResults results = fop.getResults();
+        // the offset of empty footnote areas depends on the footnotes seen earlier in the list
+        return results.getPageCount() + "\n"
+                + out.toString("UTF-8").replaceAll("<footnote top-offset=\"\\d+\"/>", "<footnote/>");
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr.inline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Tests {@link ParagraphLayoutCache}.
+ */
+public class ParagraphLayoutCacheTestCase {
+
+    private static final String FOOTER = "This document is provided as is, without warranty of any"
+            + " kind, express or implied, including but not limited to the warranties of"
+            + " merchantability and fitness for a particular purpose.";
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testRepeatedParagraphsAreBrokenOnce() throws Exception {
+        String expected = render(null);
+        ParagraphLayoutCache cache = new ParagraphLayoutCache();
+        assertEquals(expected, render(cache));
+        long misses = cache.getMissCount();
+        assertTrue(cache.getHitCount() > misses);
+        assertEquals(misses, cache.size());
+
+        //A second document with the same content doesn't break any paragraph
+        assertEquals(expected, render(cache));
+        assertEquals(misses, cache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedParagraphsAreEvicted() throws Exception {
+        ParagraphLayoutCache cache = new ParagraphLayoutCache(2);
+        assertEquals(render(null), render(cache));
+        assertEquals(2, cache.size());
+    }
+
+    private String createDocument() {
+        StringBuilder fo = new StringBuilder()
+                .append("<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format'>")
+                .append("<fo:layout-master-set><fo:simple-page-master master-name='page'")
+                .append(" page-height='300pt' page-width='300pt' margin='10pt'>")
+                .append("<fo:region-body margin-bottom='60pt'/><fo:region-after extent='50pt'/>")
+                .append("</fo:simple-page-master></fo:layout-master-set>")
+                .append("<fo:page-sequence master-reference='page'>")
+                .append("<fo:static-content flow-name='xsl-region-after'>")
+                .append("<fo:block text-align='justify'>").append(FOOTER).append("</fo:block>")
+                .append("</fo:static-content>")
+                .append("<fo:flow flow-name='xsl-region-body'>")
+                .append("<fo:table width='100%'><fo:table-body>");
+        for (int i = 0; i < 60; i++) {
+            fo.append("<fo:table-row><fo:table-cell><fo:block>Amount due</fo:block></fo:table-cell>")
+                    .append("<fo:table-cell><fo:block text-align='justify'>").append(FOOTER)
+                    .append("</fo:block></fo:table-cell></fo:table-row>");
+        }
+        return fo.append("</fo:table-body></fo:table></fo:flow></fo:page-sequence></fo:root>")
+                .toString();
+    }
+
+    private String render(ParagraphLayoutCache cache) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        userAgent.setParagraphLayoutCache(cache);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(createDocument())),
+                new SAXResult(fop.getDefaultHandler()));
+        assertTrue(fop.getResults().getPageCount() > 5);
+        //the metadata date is always the current time
+        return out.toString("UTF-8").replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr.inline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.hyphenation.HyphenationCache;
+
+/**
+ * Tests targeted hyphenation (see {@link FOUserAgent#setTargetedHyphenation(boolean)}).
+ */
+public class TargetedHyphenationTestCase {
+
+    private static final String TEXT = "Lorem ipsum dolor sit amet, consectetuer adipiscing elit."
+            + " Maecenas semper. Proin at nisi. Pellentesque habitant morbi tristique senectus et"
+            + " netus et malesuada fames ac turpis egestas. Vestibulum tortor quam, feugiat vitae,"
+            + " ultricies eget, tempor sit amet, ante.";
+
+    private long lookups;
+
+    @Test
+    public void testOnlyWordsNearBreaksAreHyphenated() throws Exception {
+        for (String width : new String[] {"200pt", "400pt"}) {
+            for (String align : new String[] {"start", "justify"}) {
+                String expected = render(width, align, false);
+                long allLookups = lookups;
+                String targeted = render(width, align, true);
+                assertTrue(lookups > 0);
+                assertTrue(lookups < allLookups);
+                assertEquals(expected, targeted);
+            }
+        }
+    }
+
+    private String createDocument(String width, String align) {
+        //several paragraphs in the same text node, which share a text layout manager
+        return "<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format' language='en' hyphenate='true'>"
+                + "<fo:layout-master-set><fo:simple-page-master master-name='page'"
+                + " page-height='2000pt' page-width='" + width + "'>"
+                + "<fo:region-body/></fo:simple-page-master></fo:layout-master-set>"
+                + "<fo:page-sequence master-reference='page'><fo:flow flow-name='xsl-region-body'>"
+                + "<fo:block linefeed-treatment='preserve' text-align='" + align + "'>"
+                + TEXT + "\n" + TEXT + "\n" + TEXT
+                + "</fo:block></fo:flow></fo:page-sequence></fo:root>";
+    }
+
+    private String render(String width, String align, boolean targeted) throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        userAgent.setTargetedHyphenation(targeted);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(createDocument(width, align))),
+                new SAXResult(fop.getDefaultHandler()));
+        HyphenationCache cache = fopFactory.getHyphenationCache();
+        lookups = cache.getHitCount() + cache.getMissCount();
+        //the metadata date is always the current time
+        return out.toString("UTF-8").replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ObjectOffsetListTestCase {
+
+    @Test
+    public void testAddAndSet() {
+        List<Long> offsets = new ObjectOffsetList();
+        for (long i = 0; i < 3000; i++) {
+            offsets.add(i * 10);
+        }
+        assertEquals(3000, offsets.size());
+        assertEquals(Long.valueOf(29990), offsets.get(2999));
+        offsets.set(5, 1234L);
+        assertEquals(Long.valueOf(1234), offsets.get(5));
+    }
+
+    @Test
+    public void testUnsetOffsetsAreNull() {
+        List<Long> offsets = new ObjectOffsetList();
+        offsets.add(null);
+        offsets.add(15L);
+        assertNull(offsets.get(0));
+        assertEquals(Long.valueOf(15), offsets.get(1));
+        offsets.set(0, 0L);
+        assertEquals(Long.valueOf(0), offsets.get(0));
+    }
+
+    @Test
+    public void testRemove() {
+        List<Long> offsets = new ObjectOffsetList();
+        offsets.add(1L);
+        offsets.add(2L);
+        offsets.add(3L);
+        assertEquals(Long.valueOf(2), offsets.remove(1));
+        assertEquals(2, offsets.size());
+        assertEquals(Long.valueOf(3), offsets.get(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        new ObjectOffsetList().get(0);
+    }
+}
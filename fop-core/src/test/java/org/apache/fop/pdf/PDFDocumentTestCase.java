@@ -21,10 +21,17 @@ package org.apache.fop.pdf;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test case for {@link PDFDocument}
@@ -59,4 +66,109 @@ public class PDFDocumentTestCase {
         PDFDocument.flushTextBuffer(textBuffer, out);
         assertEquals(fullString, out.toString());
     }
+
+    @Test
+    public void testPagesReleasedWithoutLinearization() {
+        PDFDocument doc = new PDFDocument("test");
+        doc.addObject(doc.getFactory().makePage(doc.getResources(), 595, 842));
+        assertTrue(doc.pageObjs.isEmpty());
+
+        doc = new PDFDocument("test");
+        doc.setLinearizationEnabled(true);
+        doc.addObject(doc.getFactory().makePage(doc.getResources(), 595, 842));
+        assertEquals(1, doc.pageObjs.size());
+    }
+
+    @Test
+    public void testObjectOffsets() throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.outputHeader(out);
+        PDFDictionary dict = new PDFDictionary();
+        doc.registerObject(dict);
+        doc.output(out);
+        int number = dict.getObjectNumber().getNumber();
+        String pdf = out.toString("ISO-8859-1");
+        assertEquals(pdf.indexOf("\n" + number + " 0 obj") + 1,
+                doc.indirectObjectOffsets.get(number - 1).longValue());
+    }
+
+    @Test
+    public void testParallelCompressionIsByteIdentical() throws IOException {
+        String serial = createDocumentWithStreams(0);
+        String parallel = createDocumentWithStreams(3);
+        assertEquals(serial, parallel);
+    }
+
+    @Test
+    public void testStreamsEncodedAheadAreBounded() throws IOException {
+        final int compressionThreads = 2;
+        final List<PDFStream> streams = new java.util.ArrayList<PDFStream>();
+        final int[] maxPending = new int[1];
+        PDFDocument doc = new PDFDocument("test");
+        doc.setCompressionThreads(compressionThreads);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.outputHeader(out);
+        for (int i = 0; i < 50; i++) {
+            PDFStream stream = new PDFStream() {
+                public int output(OutputStream stream) throws IOException {
+                    int pending = 0;
+                    for (PDFStream s : streams) {
+                        pending += s.isEncodingPending() ? 1 : 0;
+                    }
+                    maxPending[0] = Math.max(maxPending[0], pending);
+                    return super.output(stream);
+                }
+            };
+            streams.add(stream);
+            doc.registerObject(stream);
+            stream.add("BT /F1 12 Tf " + i + " 0 Td (Line) Tj ET\n");
+        }
+        doc.output(out);
+        doc.outputTrailer(out);
+        assertTrue(maxPending[0] > 0);
+        assertTrue(maxPending[0] <= 2 * compressionThreads);
+    }
+
+    @Test
+    public void testLargeStreamsAreWrittenDirectly() throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        PDFStream small = new PDFStream();
+        PDFStream large = new PDFStream();
+        doc.registerObject(small);
+        doc.registerObject(large);
+        small.add("BT /F1 12 Tf (Line) Tj ET\n");
+        byte[] data = new byte[(int) AbstractPDFStream.ENCODE_AHEAD_SIZE_LIMIT + 1];
+        large.getBufferOutputStream().write(data);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertTrue(small.startEncoding(executor));
+            assertFalse(large.startEncoding(executor));
+            assertFalse(large.isEncodingPending());
+        } finally {
+            executor.shutdown();
+        }
+        doc.output(new ByteArrayOutputStream());
+    }
+
+    private String createDocumentWithStreams(int compressionThreads) throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        doc.setCompressionThreads(compressionThreads);
+        doc.getInfo().setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.outputHeader(out);
+        for (int page = 0; page < 5; page++) {
+            for (int i = 0; i < 4; i++) {
+                PDFStream stream = new PDFStream();
+                doc.registerObject(stream);
+                for (int j = 0; j < 200; j++) {
+                    stream.add("BT /F1 12 Tf " + j + " " + (page * i) + " Td (Line) Tj ET\n");
+                }
+            }
+            doc.output(out);
+        }
+        doc.outputTrailer(out);
+        //The file ID is based on the current time
+        return out.toString("ISO-8859-1").replaceAll("/ID \\[.*\\]", "");
+    }
 }
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PooledStreamCacheTestCase {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("fop-stream-cache", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] writeAndRead(StreamCache cache, byte[] data) throws IOException {
+        //Mix single byte and array writes
+        cache.getOutputStream().write(data, 0, data.length / 2);
+        for (int i = data.length / 2; i < data.length / 2 + 100 && i < data.length; i++) {
+            cache.getOutputStream().write(data[i]);
+        }
+        int written = Math.min(data.length, data.length / 2 + 100);
+        cache.getOutputStream().write(data, written, data.length - written);
+        assertEquals(data.length, cache.getSize());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(data.length, cache.outputContents(out));
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSmallStreamStaysInMemory() throws IOException {
+        StreamCachePool pool = new StreamCachePool(1024 * 1024, directory);
+        byte[] data = createData(3000);
+        assertArrayEquals(data, writeAndRead(new PooledStreamCache(pool), data));
+        assertEquals(StreamCachePool.SMALL_BLOCK_SIZE, pool.getAllocatedMemory());
+        assertEquals(0, pool.getScratchLength());
+        pool.close();
+    }
+
+    @Test
+    public void testLargeStreamIsSpilled() throws IOException {
+        StreamCachePool pool = new StreamCachePool(64 * 1024 * 1024, directory);
+        byte[] data = createData(3 * StreamCachePool.SPILL_THRESHOLD + 12345);
+        assertArrayEquals(data, writeAndRead(new PooledStreamCache(pool), data));
+        assertTrue(pool.getScratchLength() > 2 * StreamCachePool.SPILL_THRESHOLD);
+        assertEquals(1, directory.list().length);
+        pool.close();
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testAbandonedScratchFileIsDeleted() throws Exception {
+        StreamCachePool pool = new StreamCachePool(0, directory);
+        new PooledStreamCache(pool).write(createData(StreamCachePool.SPILL_THRESHOLD + 1000));
+        assertEquals(1, directory.list().length);
+        pool = null;
+        for (int i = 0; i < 50 && directory.list().length > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            //the scratch files of collected pools are deleted when a new pool is created
+            new StreamCachePool(0, directory).close();
+        }
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testMemoryLimit() throws IOException {
+        StreamCachePool pool = new StreamCachePool(StreamCachePool.LARGE_BLOCK_SIZE, directory);
+        StreamCache[] caches = new StreamCache[20];
+        byte[][] data = new byte[caches.length][];
+        for (int i = 0; i < caches.length; i++) {
+            caches[i] = new PooledStreamCache(pool);
+            data[i] = createData(10000 + i);
+            caches[i].write(data[i]);
+        }
+        assertTrue(pool.getAllocatedMemory() <= StreamCachePool.LARGE_BLOCK_SIZE);
+        assertTrue(pool.getScratchLength() > 0);
+        for (int i = 0; i < caches.length; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            caches[i].outputContents(out);
+            assertArrayEquals(data[i], out.toByteArray());
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testClearReturnsMemory() throws IOException {
+        StreamCachePool pool = new StreamCachePool(1024 * 1024, directory);
+        StreamCache cache = new PooledStreamCache(pool);
+        cache.write(createData(200000));
+        long allocated = pool.getAllocatedMemory();
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        byte[] data = createData(150000);
+        assertArrayEquals(data, writeAndRead(new PooledStreamCache(pool), data));
+        assertEquals(allocated, pool.getAllocatedMemory());
+        //Appending after output continues the stream
+        cache.write(data);
+        cache.outputContents(new ByteArrayOutputStream());
+        cache.write(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.outputContents(out);
+        byte[] twice = Arrays.copyOf(data, 2 * data.length);
+        System.arraycopy(data, 0, twice, data.length, data.length);
+        assertArrayEquals(twice, out.toByteArray());
+        pool.close();
+    }
+
+    @Test
+    public void testContentStreamUsesDocumentPool() throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        StreamCacheFactory factory = StreamCacheFactory.newPooledInstance(64 * 1024 * 1024, directory);
+        doc.setStreamCacheFactory(factory);
+        PDFStream content = doc.getFactory().makeStream(PDFFilterList.CONTENT_FILTER, false);
+        StringBuilder operators = new StringBuilder();
+        while (operators.length() <= StreamCachePool.SPILL_THRESHOLD) {
+            operators.append("0 0 m 100 100 l S\n");
+        }
+        content.add(operators.toString());
+        assertEquals(operators.length(), content.getDataLength());
+        //the content was buffered by the pool and spilled to its scratch file
+        assertEquals(1, directory.list().length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.outputRawStreamData(out);
+        assertEquals(operators.toString(), out.toString("US-ASCII"));
+        factory.close();
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testDocumentIsByteIdentical() throws IOException {
+        assertEquals(createDocument(null), createDocument(StreamCacheFactory.newPooledInstance(8192, directory)));
+        assertEquals(0, directory.list().length);
+    }
+
+    private String createDocument(StreamCacheFactory factory) throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        if (factory != null) {
+            doc.setStreamCacheFactory(factory);
+        }
+        doc.getInfo().setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.outputHeader(out);
+        for (int i = 0; i < 20; i++) {
+            PDFStream stream = new PDFStream();
+            doc.registerObject(stream);
+            stream.setData(createData(i * 5000));
+        }
+        doc.output(out);
+        doc.outputTrailer(out);
+        //The file ID is based on the current time
+        return out.toString("ISO-8859-1").replaceAll("/ID \\[.*\\]", "");
+    }
+}
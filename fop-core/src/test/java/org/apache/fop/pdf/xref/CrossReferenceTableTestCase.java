@@ -20,6 +20,7 @@
 package org.apache.fop.pdf.xref;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -46,6 +47,15 @@ public class CrossReferenceTableTestCase extends CrossReferenceObjectTest {
         runTest(Arrays.asList(0xffL, 0xffffL, 0x7fffffffL));
     }
 
+    @Test
+    public void testWithManyOffsets() throws IOException {
+        List<Long> manyOffsets = new ArrayList<Long>();
+        for (long i = 0; i < 5000; i++) {
+            manyOffsets.add(i * 1000);
+        }
+        runTest(manyOffsets);
+    }
+
     private void runTest(List<Long> offsets) throws IOException {
         this.offsets = offsets;
         runTest();
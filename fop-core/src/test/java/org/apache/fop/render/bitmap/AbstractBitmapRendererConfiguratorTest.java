@@ -117,4 +117,13 @@ public abstract class AbstractBitmapRendererConfiguratorTest extends
         parseConfig(createBuilder());
         assertEquals(BufferedImage.TYPE_INT_ARGB, settings.getBufferedImageType());
     }
+
+    @Test
+    public void testRenderingThreads() throws Exception {
+        parseConfig(createBuilder().setRenderingThreads(4));
+        assertEquals(4, settings.getRenderingThreads());
+
+        parseConfig(createBuilder());
+        assertEquals(0, settings.getRenderingThreads());
+    }
 }
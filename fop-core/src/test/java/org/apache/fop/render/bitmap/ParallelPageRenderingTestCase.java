@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.render.intermediate.IFContext;
+
+/**
+ * Checks that pages painted on worker threads produce the same bitmaps as pages painted
+ * on the thread delivering them.
+ */
+public class ParallelPageRenderingTestCase {
+
+    private static final int PAGE_COUNT = 9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testTIFFPagesMatchSerialRendering() throws Exception {
+        byte[] serial = renderTIFF(0);
+        byte[] parallel = renderTIFF(4);
+        assertTrue(serial.length > 0);
+        assertArrayEquals(serial, parallel);
+    }
+
+    @Test
+    public void testPNGPagesMatchSerialRendering() throws Exception {
+        File serialDir = folder.newFolder("serial");
+        File parallelDir = folder.newFolder("parallel");
+        renderPNG(0, serialDir);
+        renderPNG(3, parallelDir);
+        for (int i = 1; i <= PAGE_COUNT; i++) {
+            File serialPage = new File(serialDir, "page" + i + ".png");
+            File parallelPage = new File(parallelDir, "page" + i + ".png");
+            assertTrue(serialPage.length() > 0);
+            assertArrayEquals("page " + i, FileUtils.readFileToByteArray(serialPage),
+                    FileUtils.readFileToByteArray(parallelPage));
+        }
+        assertEquals(PAGE_COUNT, parallelDir.list().length);
+    }
+
+    private byte[] renderTIFF(int threads) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        TIFFDocumentHandler handler = new TIFFDocumentHandler(new IFContext(userAgent));
+        handler.getSettings().setRenderingThreads(threads);
+        userAgent.setDocumentHandlerOverride(handler);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        render(userAgent, out);
+        return out.toByteArray();
+    }
+
+    private void renderPNG(int threads, File dir) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        File firstPage = new File(dir, "page1.png");
+        userAgent.setOutputFile(firstPage);
+        PNGDocumentHandler handler = new PNGDocumentHandler(new IFContext(userAgent));
+        handler.getSettings().setRenderingThreads(threads);
+        userAgent.setDocumentHandlerOverride(handler);
+        OutputStream out = new FileOutputStream(firstPage);
+        try {
+            render(userAgent, out);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private void render(FOUserAgent userAgent, OutputStream out) throws Exception {
+        Fop fop = userAgent.newFop(userAgent.getDocumentHandlerOverride().getMimeType(), out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(createDocument())),
+                new SAXResult(fop.getDefaultHandler()));
+    }
+
+    private String createDocument() {
+        StringBuilder fo = new StringBuilder();
+        fo.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\""
+                + " xmlns:svg=\"http://www.w3.org/2000/svg\">"
+                + "<fo:layout-master-set>"
+                + "<fo:simple-page-master master-name=\"page\" page-width=\"200pt\""
+                + " page-height=\"150pt\" margin=\"10pt\">"
+                + "<fo:region-body margin-top=\"15pt\"/><fo:region-before extent=\"12pt\"/>"
+                + "</fo:simple-page-master>"
+                + "</fo:layout-master-set>"
+                + "<fo:page-sequence master-reference=\"page\">"
+                + "<fo:static-content flow-name=\"xsl-region-before\">"
+                + "<fo:block font-size=\"8pt\">Page <fo:page-number/></fo:block>"
+                + "</fo:static-content>"
+                + "<fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 1; i <= PAGE_COUNT; i++) {
+            fo.append("<fo:block break-before=\"page\" font-size=\"10pt\" border=\"1pt solid blue\""
+                    + " background-color=\"#ffeecc\" padding=\"2pt\">Section " + i
+                    + " of a document painted on several threads.</fo:block>"
+                    + "<fo:block font-style=\"italic\" text-align=\"justify\">Some more text"
+                    + " to check that the fonts are set up the same way for every page.</fo:block>"
+                    + "<fo:block><fo:leader leader-pattern=\"rule\" leader-length=\"100%\"/></fo:block>"
+                    + "<fo:block><fo:instream-foreign-object>"
+                    + "<svg:svg width=\"40\" height=\"20\"><svg:rect width=\"" + (4 * i)
+                    + "\" height=\"20\" fill=\"green\"/></svg:svg>"
+                    + "</fo:instream-foreign-object></fo:block>");
+        }
+        fo.append("</fo:flow></fo:page-sequence></fo:root>");
+        return fo.toString();
+    }
+}
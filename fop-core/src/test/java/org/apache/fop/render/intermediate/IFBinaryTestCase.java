@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Date;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+public class IFBinaryTestCase {
+
+    private static final String[] VALUES = {"0", "-12", "2147483647", "-2147483648", "2147483648",
+        "007", "-0", "+1", "1 -2 3", "1  2", "1 ", " 1", "", "#ff0000", "translate(1000,2000)",
+        "a very long attribute value that is not worth putting in the string table"};
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testAttributeValuesRoundTrip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IFBinaryWriter writer = new IFBinaryWriter(out);
+        writer.startDocument();
+        writer.startPrefixMapping("", IFConstants.NAMESPACE);
+        writer.startElement(IFConstants.NAMESPACE, "document", "document", new AttributesImpl());
+        for (int i = 0; i < 2; i++) {
+            AttributesImpl atts = new AttributesImpl();
+            for (int j = 0; j < VALUES.length; j++) {
+                atts.addAttribute("", "a" + j, "a" + j, "CDATA", VALUES[j]);
+            }
+            writer.startElement(IFConstants.NAMESPACE, "page", "page", atts);
+            char[] text = "text é中".toCharArray();
+            writer.characters(text, 0, text.length);
+            writer.endElement(IFConstants.NAMESPACE, "page", "page");
+        }
+        writer.endElement(IFConstants.NAMESPACE, "document", "document");
+        writer.endPrefixMapping("");
+        writer.endDocument();
+
+        assertTrue(IFBinaryReader.isBinaryIF(new ByteArrayInputStream(out.toByteArray())));
+        IFBinaryReader reader = new IFBinaryReader();
+        final StringBuilder text = new StringBuilder();
+        final int[] pages = new int[1];
+        reader.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName,
+                    Attributes atts) {
+                assertEquals(IFConstants.NAMESPACE, uri);
+                if ("page".equals(localName)) {
+                    pages[0]++;
+                    assertEquals(VALUES.length, atts.getLength());
+                    for (int j = 0; j < VALUES.length; j++) {
+                        assertEquals(VALUES[j], atts.getValue("a" + j));
+                    }
+                }
+            }
+
+            public void characters(char[] ch, int start, int length) {
+                text.append(ch, start, length);
+            }
+        });
+        reader.parse(IFBinaryReader.createSource(new ByteArrayInputStream(out.toByteArray()), null)
+                .getInputSource());
+        assertEquals(2, pages[0]);
+        assertEquals("text é中text é中", text.toString());
+    }
+
+    @Test
+    public void testBinaryParsesLikeXML() throws Exception {
+        String fo = createDocument(10);
+        byte[] xml = render(fo, MimeConstants.MIME_FOP_IF);
+        byte[] binary = render(fo, MimeConstants.MIME_FOP_IF_BINARY);
+        assertFalse(IFBinaryReader.isBinaryIF(new ByteArrayInputStream(xml)));
+        assertTrue(IFBinaryReader.isBinaryIF(new ByteArrayInputStream(binary)));
+        assertTrue(binary.length * 2 < xml.length);
+
+        String expected = reserialize(new StreamSource(new ByteArrayInputStream(xml)));
+        assertEquals(expected, reserialize(new StreamSource(new ByteArrayInputStream(binary))));
+    }
+
+    @Test
+    public void testPageRange() throws Exception {
+        byte[] binary = render(createDocument(3), MimeConstants.MIME_FOP_IF_BINARY);
+        IFBinaryReader reader = new IFBinaryReader();
+        reader.setPageRange(2, 2);
+        final StringBuilder pages = new StringBuilder();
+        reader.setContentHandler(new DefaultHandler() {
+            private String page;
+            private int elements;
+
+            public void startElement(String uri, String localName, String qName,
+                    Attributes atts) {
+                if ("page".equals(localName)) {
+                    page = atts.getValue("name");
+                    elements = 0;
+                } else if (page != null) {
+                    elements++;
+                }
+            }
+
+            public void endElement(String uri, String localName, String qName) {
+                if ("page".equals(localName)) {
+                    pages.append(page).append(elements > 0 ? "+" : "-");
+                    page = null;
+                }
+            }
+        });
+        reader.parse(IFBinaryReader.createSource(new ByteArrayInputStream(binary), null)
+                .getInputSource());
+        assertEquals("1-2+3-", pages.toString());
+    }
+
+    @Test
+    public void testParserPassesPageRangeToReader() throws Exception {
+        byte[] binary = render(createDocument(3), MimeConstants.MIME_FOP_IF_BINARY);
+        String result = reserialize(new StreamSource(new ByteArrayInputStream(binary)), 2, 2);
+        assertTrue(result.contains("Page 2"));
+        assertFalse(result.contains("Page 1"));
+        assertFalse(result.contains("Page 3"));
+    }
+
+    private String reserialize(Source src) throws Exception {
+        return reserialize(src, 1, Integer.MAX_VALUE);
+    }
+
+    private String reserialize(Source src, int firstPage, int lastPage) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        IFSerializer serializer = new IFSerializer(new IFContext(userAgent));
+        StringWriter writer = new StringWriter();
+        serializer.setResult(new StreamResult(writer));
+        new IFParser().parse(src, serializer, userAgent, firstPage, lastPage);
+        //The metadata date is the rendering time, which may differ between the two renderings
+        return writer.toString().replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private byte[] render(String fo, String mimeType) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        //Keep the metadata of both renderings identical
+        userAgent.setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(mimeType, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(fo)),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toByteArray();
+    }
+
+    private String createDocument(int pageCount) {
+        StringBuilder fo = new StringBuilder("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\""
+                + " xmlns:svg=\"http://www.w3.org/2000/svg\">"
+                + "<fo:layout-master-set><fo:simple-page-master master-name=\"page\""
+                + " page-width=\"300pt\" page-height=\"200pt\" margin=\"10pt\"><fo:region-body/>"
+                + "</fo:simple-page-master></fo:layout-master-set>"
+                + "<fo:page-sequence master-reference=\"page\" language=\"en\">"
+                + "<fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 1; i <= pageCount; i++) {
+            fo.append("<fo:block id=\"b" + i + "\" break-before=\"page\" border=\"1pt solid red\""
+                    + " background-color=\"#eeeeff\" letter-spacing=\"0.5pt\">Page " + i
+                    + " with some <fo:inline font-weight=\"bold\">bold</fo:inline> text and"
+                    + " a <fo:basic-link internal-destination=\"b1\">link</fo:basic-link>.</fo:block>"
+                    + "<fo:block><fo:instream-foreign-object><svg:svg width=\"20\" height=\"10\">"
+                    + "<svg:circle cx=\"5\" cy=\"5\" r=\"" + i + "\"/></svg:svg>"
+                    + "</fo:instream-foreign-object></fo:block>");
+        }
+        fo.append("</fo:flow></fo:page-sequence></fo:root>");
+        return fo.toString();
+    }
+}
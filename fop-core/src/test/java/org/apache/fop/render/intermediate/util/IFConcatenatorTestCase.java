@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFDocumentHandler;
+import org.apache.fop.render.intermediate.IFSerializer;
+
+public class IFConcatenatorTestCase {
+
+    private FopFactory fopFactory;
+
+    /** an IF document with a page sequence of 3 pages followed by one of 2 pages */
+    private byte[] document;
+
+    /** the same document in the binary encoding of the intermediate format */
+    private byte[] binaryDocument;
+
+    @Before
+    public void setUp() throws Exception {
+        fopFactory = FopFactory.newInstance(new File(".").toURI());
+        StringBuilder fo = new StringBuilder("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">"
+                + "<fo:layout-master-set>"
+                + "<fo:simple-page-master master-name=\"first\" page-width=\"200pt\""
+                + " page-height=\"100pt\"><fo:region-body/></fo:simple-page-master>"
+                + "<fo:simple-page-master master-name=\"second\" page-width=\"300pt\""
+                + " page-height=\"100pt\"><fo:region-body/></fo:simple-page-master>"
+                + "</fo:layout-master-set>");
+        appendPageSequence(fo, "first", 3);
+        appendPageSequence(fo, "second", 2);
+        fo.append("</fo:root>");
+        document = render(fo.toString(), MimeConstants.MIME_FOP_IF);
+        binaryDocument = render(fo.toString(), MimeConstants.MIME_FOP_IF_BINARY);
+    }
+
+    private byte[] render(String fo, String mimeType) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(mimeType, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(fo)),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toByteArray();
+    }
+
+    private void appendPageSequence(StringBuilder fo, String master, int pages) {
+        fo.append("<fo:page-sequence master-reference=\"" + master + "\">"
+                + "<fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 1; i <= pages; i++) {
+            fo.append("<fo:block break-before=\"page\">" + master + " " + i + "</fo:block>");
+        }
+        fo.append("</fo:flow></fo:page-sequence>");
+    }
+
+    @Test
+    public void testAppendAllPages() throws Exception {
+        IFDocumentHandler target = createTarget();
+        IFConcatenator concatenator = new IFConcatenator(target, null);
+        concatenator.appendDocument(getSource());
+        concatenator.appendDocument(getSource());
+        concatenator.finish();
+
+        Document result = getResult();
+        assertEquals(4, result.getElementsByTagName("page-sequence").getLength());
+        assertPages(result, "1", "2", "3", "4", "5", "1", "2", "3", "4", "5");
+    }
+
+    @Test
+    public void testAppendPageRange() throws Exception {
+        IFDocumentHandler target = createTarget();
+        IFConcatenator concatenator = new IFConcatenator(target, null);
+        //Only pages from the first page sequence, parsing stops after page 2
+        concatenator.appendDocument(getSource(), 2, 2);
+        //Pages from both page sequences
+        concatenator.appendDocument(getSource(), 3, 4);
+        //Only pages from the second page sequence, the range goes past the end
+        concatenator.appendDocument(getSource(), 5, 100);
+        concatenator.finish();
+
+        Document result = getResult();
+        NodeList sequences = result.getElementsByTagName("page-sequence");
+        List<String> pageWidths = new ArrayList<String>();
+        for (int i = 0; i < sequences.getLength(); i++) {
+            NodeList pages = ((Element) sequences.item(i)).getElementsByTagName("page");
+            for (int j = 0; j < pages.getLength(); j++) {
+                pageWidths.add(i + ":" + ((Element) pages.item(j)).getAttribute("width"));
+            }
+        }
+        assertEquals("[0:200000, 1:200000, 2:300000, 3:300000]", pageWidths.toString());
+        assertPages(result, "2", "3", "4", "5");
+    }
+
+    @Test
+    public void testAppendPageRangeFromBinaryStream() throws Exception {
+        IFDocumentHandler target = createTarget();
+        IFConcatenator concatenator = new IFConcatenator(target, null);
+        concatenator.appendDocument(new StreamSource(new ByteArrayInputStream(binaryDocument)), 2, 2);
+        concatenator.appendDocument(new StreamSource(new ByteArrayInputStream(binaryDocument)), 3, 4);
+        concatenator.finish();
+
+        Document result = getResult();
+        assertEquals(3, result.getElementsByTagName("page-sequence").getLength());
+        assertPages(result, "2", "3", "4");
+        NodeList texts = result.getElementsByTagName("text");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < texts.getLength(); i++) {
+            content.append(texts.item(i).getTextContent()).append(' ');
+        }
+        assertEquals("first 2 first 3 second 1 ", content.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPageRange() throws Exception {
+        new IFConcatenator(createTarget(), null).appendDocument(getSource(), 3, 2);
+    }
+
+    private ByteArrayOutputStream output;
+
+    private IFDocumentHandler createTarget() throws Exception {
+        IFSerializer serializer = new IFSerializer(new IFContext(fopFactory.newFOUserAgent()));
+        output = new ByteArrayOutputStream();
+        serializer.setResult(new StreamResult(output));
+        return serializer;
+    }
+
+    private Source getSource() {
+        return new StreamSource(new ByteArrayInputStream(document));
+    }
+
+    private Document getResult() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    private void assertPages(Document result, String... names) {
+        NodeList pages = result.getElementsByTagName("page");
+        assertEquals(names.length, pages.getLength());
+        for (int i = 0; i < names.length; i++) {
+            Element page = (Element) pages.item(i);
+            assertEquals(names[i], page.getAttribute("name"));
+            assertEquals(String.valueOf(i), page.getAttribute("index"));
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.MimeConstants;
 import org.apache.fop.apps.PDFRendererConfBuilder;
 import org.apache.fop.pdf.PDFDocument;
+import org.apache.fop.pdf.StreamCacheFactory;
 import org.apache.fop.render.intermediate.IFContext;
 import org.apache.fop.render.intermediate.IFException;
 
@@ -73,4 +74,27 @@ public class PDFRendererConfiguratorTestCase extends
         docHandler.startDocument();
         Assert.assertTrue(getDocHandler().getThePDFDocument().isFormXObjectEnabled());
     }
+
+    @Test
+    public void testCompressionThreads() throws Exception {
+        parseConfig(createBuilder().setCompressionThreads(4));
+        docHandler.startDocument();
+        Assert.assertEquals(4, getDocHandler().getThePDFDocument().getCompressionThreads());
+    }
+
+    @Test
+    public void testDefaultStreamCache() throws Exception {
+        parseConfig(createBuilder());
+        docHandler.startDocument();
+        Assert.assertSame(StreamCacheFactory.getInstance(),
+                getDocHandler().getThePDFDocument().getStreamCacheFactory());
+    }
+
+    @Test
+    public void testStreamCacheMemoryLimit() throws Exception {
+        parseConfig(createBuilder().setStreamCacheMemoryLimit(1024 * 1024));
+        docHandler.startDocument();
+        Assert.assertNotSame(StreamCacheFactory.getInstance(),
+                getDocHandler().getThePDFDocument().getStreamCacheFactory());
+    }
 }